@@ -0,0 +1,424 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.rpc;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.cloudcoder.app.server.persist.Database;
+import org.cloudcoder.app.server.persist.PersistenceException;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeCheckpoint;
+import org.cloudcoder.app.shared.model.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes batches of {@link Change}s to the database on a dedicated
+ * writer thread, combining the batches stored by many sessions
+ * into a single transaction ("group commit").  While the writer
+ * thread is running one transaction, batches submitted by other
+ * threads accumulate in the queue, and are all written by the next
+ * transaction.  A thread calling {@link #storeChanges(Change[], ChangeCheckpoint)}
+ * waits until the transaction containing its changes has committed, so
+ * returning from that method (and acknowledging the changes to the client)
+ * still means that the changes are durable.
+ * 
+ * <p>The memory used by queued changes is bounded: when the queue is
+ * full, threads wait until there is room.  If a combined transaction
+ * fails, each of its batches is written in a separate transaction,
+ * so that one bad batch does not cause other sessions' changes to
+ * be lost.
+ * 
+ * @author David Hovemeyer
+ */
+public class ChangeWriter {
+	private static final Logger logger = LoggerFactory.getLogger(ChangeWriter.class);
+	
+	/** Maximum (estimated) memory used by queued changes, in bytes. */
+	public static final long MAX_QUEUED_BYTES = 16L*1024*1024;
+	
+	/** Maximum number of changes written by one transaction. */
+	public static final int MAX_CHANGES_PER_TRANSACTION = 2000;
+	
+	/** Time to wait for queued changes to be written when shutting down, in milliseconds. */
+	public static final long SHUTDOWN_TIMEOUT_MS = 10000L;
+	
+	// Rough estimate of the memory used by a Change, not counting its text
+	private static final int CHANGE_OVERHEAD_BYTES = 200;
+	
+	// Number of one-minute intervals for which flush latencies are tracked
+	private static final int LATENCY_WINDOW_MINUTES = 5;
+	
+	private static class SingletonHolder {
+		private static final ChangeWriter INSTANCE = new ChangeWriter();
+	}
+	
+	/**
+	 * @return the singleton instance
+	 */
+	public static ChangeWriter getInstance() {
+		return SingletonHolder.INSTANCE;
+	}
+	
+	private static class PendingBatch {
+		final Change[] changeList;
+		final ChangeCheckpoint checkpoint;
+		final long sizeInBytes;
+		final long enqueueTime;
+		final CountDownLatch done;
+		RuntimeException failure;
+		
+		PendingBatch(Change[] changeList, ChangeCheckpoint checkpoint) {
+			this.changeList = changeList;
+			this.checkpoint = checkpoint;
+			long size = 0L;
+			for (Change change : changeList) {
+				String text = change.getText();
+				size += CHANGE_OVERHEAD_BYTES + (text != null ? 2L*text.length() : 0L);
+			}
+			if (checkpoint != null && checkpoint.getText() != null) {
+				size += 2L*checkpoint.getText().length();
+			}
+			this.sizeInBytes = size;
+			this.enqueueTime = System.currentTimeMillis();
+			this.done = new CountDownLatch(1);
+		}
+	}
+	
+	private final Object lock;
+	
+	// Fields guarded by lock
+	private final LinkedList<PendingBatch> queue;
+	private long queuedBytes;
+	private int queuedChanges;
+	private boolean shutdown;
+	private long numTransactions;
+	private long numBatches;
+	private long numChanges;
+	private final long[] latencyMinute;
+	private final long[] latencyMax;
+	private final long[] latencySum;
+	private final long[] latencyCount;
+	
+	private final Thread writerThread;
+	
+	private ChangeWriter() {
+		this.lock = new Object();
+		this.queue = new LinkedList<PendingBatch>();
+		this.latencyMinute = new long[LATENCY_WINDOW_MINUTES];
+		this.latencyMax = new long[LATENCY_WINDOW_MINUTES];
+		this.latencySum = new long[LATENCY_WINDOW_MINUTES];
+		this.latencyCount = new long[LATENCY_WINDOW_MINUTES];
+		this.writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeChanges();
+			}
+		}, "ChangeWriter");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+	
+	/**
+	 * Store {@link Change}s, waiting until they have been committed
+	 * to the database.
+	 * 
+	 * @param changeList  the changes to store
+	 * @param checkpoint  checkpoint of the text after the last change is applied
+	 *                    (null if no checkpoint should be stored)
+	 * @throws PersistenceException if the changes could not be stored
+	 */
+	public void storeChanges(Change[] changeList, ChangeCheckpoint checkpoint) {
+		PendingBatch batch = new PendingBatch(changeList, checkpoint);
+		
+		boolean enqueued = false;
+		synchronized (lock) {
+			// Wait until there is room in the queue (a batch is always
+			// accepted if the queue is empty, no matter how large it is)
+			while (!shutdown && !queue.isEmpty() && queuedBytes + batch.sizeInBytes > MAX_QUEUED_BYTES) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new PersistenceException("Interrupted while waiting to store changes");
+				}
+			}
+			if (!shutdown) {
+				queue.add(batch);
+				queuedBytes += batch.sizeInBytes;
+				queuedChanges += changeList.length;
+				lock.notifyAll();
+				enqueued = true;
+			}
+		}
+		
+		if (!enqueued) {
+			// Shutting down: just store the changes directly
+			Database.getInstance().storeChanges(changeList, checkpoint);
+			return;
+		}
+		
+		// Wait for the changes to be committed
+		boolean interrupted = false;
+		while (true) {
+			try {
+				batch.done.await();
+				break;
+			} catch (InterruptedException e) {
+				// The changes will be written regardless, so keep waiting
+				// to find out whether they were written successfully
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (batch.failure != null) {
+			throw new PersistenceException("Could not store changes", batch.failure);
+		}
+	}
+	
+	/**
+	 * Stop the writer thread, waiting (up to {@link #SHUTDOWN_TIMEOUT_MS}
+	 * milliseconds) for queued changes to be written.  Changes stored after
+	 * this method is called are written directly, without being queued.
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			shutdown = true;
+			lock.notifyAll();
+		}
+		try {
+			writerThread.join(SHUTDOWN_TIMEOUT_MS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (writerThread.isAlive()) {
+			logger.warn("ChangeWriter thread did not finish writing queued changes");
+		}
+	}
+	
+	/**
+	 * @return the number of changes waiting to be written (or being written)
+	 */
+	public int getQueuedChanges() {
+		synchronized (lock) {
+			return queuedChanges;
+		}
+	}
+	
+	/**
+	 * @return the number of transactions used to write changes
+	 */
+	public long getNumTransactions() {
+		synchronized (lock) {
+			return numTransactions;
+		}
+	}
+	
+	/**
+	 * @return the number of batches of changes written
+	 */
+	public long getNumBatches() {
+		synchronized (lock) {
+			return numBatches;
+		}
+	}
+	
+	/**
+	 * @return the number of changes written
+	 */
+	public long getNumChanges() {
+		synchronized (lock) {
+			return numChanges;
+		}
+	}
+	
+	/**
+	 * Get the average flush latency (the time from when a batch of changes
+	 * was queued until it was committed) over the last five minutes.
+	 * 
+	 * @return the average flush latency in milliseconds
+	 */
+	public long getAvgFlushLatencyMsLastFiveMinutes() {
+		long now = System.currentTimeMillis() / 60000L;
+		long sum = 0L, count = 0L;
+		synchronized (lock) {
+			for (int i = 0; i < LATENCY_WINDOW_MINUTES; i++) {
+				if (now - latencyMinute[i] < LATENCY_WINDOW_MINUTES) {
+					sum += latencySum[i];
+					count += latencyCount[i];
+				}
+			}
+		}
+		return count > 0 ? sum / count : 0L;
+	}
+	
+	/**
+	 * Get the maximum flush latency (the time from when a batch of changes
+	 * was queued until it was committed) over the last five minutes.
+	 * 
+	 * @return the maximum flush latency in milliseconds
+	 */
+	public long getMaxFlushLatencyMsLastFiveMinutes() {
+		long now = System.currentTimeMillis() / 60000L;
+		long max = 0L;
+		synchronized (lock) {
+			for (int i = 0; i < LATENCY_WINDOW_MINUTES; i++) {
+				if (now - latencyMinute[i] < LATENCY_WINDOW_MINUTES) {
+					max = Math.max(max, latencyMax[i]);
+				}
+			}
+		}
+		return max;
+	}
+	
+	private void writeChanges() {
+		while (true) {
+			List<PendingBatch> group = takeGroup();
+			if (group == null) {
+				// Shut down and all queued changes have been written
+				return;
+			}
+			try {
+				writeGroup(group);
+			} catch (Throwable e) {
+				logger.error("Unexpected exception writing changes", e);
+				for (PendingBatch batch : group) {
+					if (batch.done.getCount() > 0) {
+						complete(batch, new PersistenceException("Unexpected exception writing changes", e));
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Wait for queued batches, and remove as many as will fit in one transaction.
+	 * 
+	 * @return the batches to write, or null if the writer should shut down
+	 */
+	private List<PendingBatch> takeGroup() {
+		synchronized (lock) {
+			while (queue.isEmpty()) {
+				if (shutdown) {
+					return null;
+				}
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					// Keep going: the thread only exits on shutdown
+				}
+			}
+			
+			// Always take at least one batch
+			List<PendingBatch> group = new ArrayList<PendingBatch>();
+			int count = 0;
+			while (!queue.isEmpty() &&
+					(group.isEmpty() || count + queue.getFirst().changeList.length <= MAX_CHANGES_PER_TRANSACTION)) {
+				PendingBatch batch = queue.removeFirst();
+				group.add(batch);
+				count += batch.changeList.length;
+			}
+			return group;
+		}
+	}
+	
+	private void writeGroup(List<PendingBatch> group) {
+		try {
+			Database.getInstance().storeChangeBatches(toBatchList(group));
+			recordTransaction();
+			for (PendingBatch batch : group) {
+				complete(batch, null);
+			}
+			return;
+		} catch (RuntimeException e) {
+			if (group.size() == 1) {
+				recordTransaction();
+				complete(group.get(0), e);
+				return;
+			}
+			logger.warn("Could not store " + group.size() + " batches of changes together: storing them separately", e);
+		}
+		
+		// Store each batch in its own transaction, so that only the batches
+		// that can't be stored fail
+		for (PendingBatch batch : group) {
+			List<PendingBatch> single = new ArrayList<PendingBatch>();
+			single.add(batch);
+			try {
+				Database.getInstance().storeChangeBatches(toBatchList(single));
+				recordTransaction();
+				complete(batch, null);
+			} catch (RuntimeException e) {
+				recordTransaction();
+				complete(batch, e);
+			}
+		}
+	}
+	
+	private static List<Pair<Change[], ChangeCheckpoint>> toBatchList(List<PendingBatch> group) {
+		List<Pair<Change[], ChangeCheckpoint>> result = new ArrayList<Pair<Change[], ChangeCheckpoint>>();
+		for (PendingBatch batch : group) {
+			result.add(new Pair<Change[], ChangeCheckpoint>(batch.changeList, batch.checkpoint));
+		}
+		return result;
+	}
+	
+	private void recordTransaction() {
+		synchronized (lock) {
+			numTransactions++;
+		}
+	}
+	
+	private void complete(PendingBatch batch, RuntimeException failure) {
+		long now = System.currentTimeMillis();
+		synchronized (lock) {
+			queuedBytes -= batch.sizeInBytes;
+			queuedChanges -= batch.changeList.length;
+			if (failure == null) {
+				numBatches++;
+				numChanges += batch.changeList.length;
+				recordLatency(now, now - batch.enqueueTime);
+			}
+			
+			// There is now room in the queue
+			lock.notifyAll();
+		}
+		batch.failure = failure;
+		batch.done.countDown();
+	}
+	
+	// Must be called with lock held
+	private void recordLatency(long now, long latencyMs) {
+		long minute = now / 60000L;
+		int i = (int) (minute % LATENCY_WINDOW_MINUTES);
+		if (latencyMinute[i] != minute) {
+			latencyMinute[i] = minute;
+			latencyMax[i] = 0L;
+			latencySum[i] = 0L;
+			latencyCount[i] = 0L;
+		}
+		latencyMax[i] = Math.max(latencyMax[i], latencyMs);
+		latencySum[i] += latencyMs;
+		latencyCount[i]++;
+	}
+}
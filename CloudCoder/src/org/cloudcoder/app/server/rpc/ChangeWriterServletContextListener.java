@@ -0,0 +1,41 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.rpc;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * A servlet context listener that shuts down the {@link ChangeWriter}
+ * when the webapp is stopped, so that changes that have been queued
+ * are written to the database before the database connection pool
+ * goes away.
+ * 
+ * @author David Hovemeyer
+ */
+public class ChangeWriterServletContextListener implements ServletContextListener {
+	@Override
+	public void contextInitialized(ServletContextEvent e) {
+		// nothing to do: the ChangeWriter is started when it is first used
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent e) {
+		ChangeWriter.getInstance().shutdown();
+	}
+}
@@ -0,0 +1,393 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package org.cloudcoder.app.server.rpc;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudcoder.app.server.persist.Database;
+import org.cloudcoder.app.server.persist.IDatabase;
+import org.cloudcoder.app.shared.model.ApplyChangeToTextDocument;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeCheckpoint;
+import org.cloudcoder.app.shared.model.ChangeType;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.ProblemText;
+import org.cloudcoder.app.shared.model.TextDocument;
+import org.cloudcoder.app.shared.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server-side cache of the current text of each {@link User}'s work on
+ * each {@link Problem}.  The cached text is updated incrementally as
+ * {@link Change}s are stored, so loading the current text normally does
+ * not require any database access.
+ * 
+ * <p>Changes are written by the {@link ChangeWriter}, which combines
+ * the changes stored by many sessions into fewer transactions.
+ * The lock for a user/problem is held until the changes have been
+ * committed, so changes for one user and problem are always written
+ * in order.
+ * 
+ * <p>All changes for a user and problem should be stored using
+ * {@link #storeChanges(User, Change[])}: every
+ * {@link #CHECKPOINT_INTERVAL_DELTAS} deltas (or every
+ * {@link #CHECKPOINT_INTERVAL_MS} milliseconds of editing) a
+ * {@link ChangeCheckpoint} is written along with the changes,
+ * so reconstructing the text from the database when it is
+ * not cached requires replaying a bounded number of changes.
+ * 
+ * @author David Hovemeyer
+ */
+public class CurrentTextCache {
+	private static final Logger logger = LoggerFactory.getLogger(CurrentTextCache.class);
+	
+	/** Maximum number of user/problem texts to cache. */
+	public static final int MAX_ENTRIES = 2000;
+	
+	/** Number of deltas after which a checkpoint is written. */
+	public static final int CHECKPOINT_INTERVAL_DELTAS = 200;
+	
+	/** Time (of editing) after which a checkpoint is written, in milliseconds. */
+	public static final long CHECKPOINT_INTERVAL_MS = 2L*60*1000;
+	
+	// Number of locks used to serialize operations on a single user/problem
+	private static final int NUM_LOCKS = 64;
+
+	private static final CurrentTextCache instance = new CurrentTextCache();
+	
+	/**
+	 * @return the singleton instance
+	 */
+	public static CurrentTextCache getInstance() {
+		return instance;
+	}
+	
+	private static class Key {
+		final int userId;
+		final int problemId;
+		
+		Key(int userId, int problemId) {
+			this.userId = userId;
+			this.problemId = problemId;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return userId == other.userId && problemId == other.problemId;
+		}
+		
+		@Override
+		public int hashCode() {
+			return userId * 31 + problemId;
+		}
+	}
+	
+	private static class Entry {
+		// The current text
+		TextDocument doc;
+		
+		// True if the user has stored any changes
+		boolean hasChanges;
+		
+		// Number of deltas stored since the last checkpoint or full-text change
+		int deltasSinceCheckpoint;
+		
+		// Time of the last checkpoint
+		long lastCheckpointTime;
+		
+		Entry() {
+			this.doc = new TextDocument();
+		}
+	}
+	
+	private final Map<Key, Entry> cache;
+	private final Object[] locks;
+	
+	/**
+	 * Constructor.  Only used directly by tests: use {@link #getInstance()}.
+	 */
+	CurrentTextCache() {
+		this.cache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+		this.locks = new Object[NUM_LOCKS];
+		for (int i = 0; i < NUM_LOCKS; i++) {
+			locks[i] = new Object();
+		}
+	}
+	
+	/**
+	 * Load the current text of given {@link User}'s work on
+	 * given {@link Problem}.
+	 * 
+	 * @param user     the {@link User}
+	 * @param problem  the {@link Problem}
+	 * @return the {@link ProblemText}: if the user has not worked on the problem,
+	 *         it will be the problem skeleton (if any), marked as new
+	 */
+	public ProblemText loadCurrentText(User user, Problem problem) {
+		Key key = new Key(user.getId(), problem.getProblemId());
+		synchronized (getLock(key)) {
+			Entry entry = getEntry(key, user);
+			if (entry == null) {
+				// Couldn't reconstruct the text: fall back on the last full text
+				Change fullText = getDatabase().getMostRecentFullTextChange(user, problem.getProblemId());
+				return new ProblemText(fullText != null ? fullText.getText() : "", false);
+			}
+			if (!entry.hasChanges) {
+				// Presumably, user has never worked on this problem.
+				logger.debug("No changes recorded for user " + user.getId() + ", problem " + problem.getProblemId());
+				
+				// If the problem has a skeleton, it is the initial problem text.
+				// Otherwise, just use the empty string.
+				String initialText = problem.hasSkeleton() ? problem.getSkeleton() : "";
+				return new ProblemText(initialText, true);
+			}
+			return new ProblemText(entry.doc.getText(), false);
+		}
+	}
+	
+	/**
+	 * Store {@link Change}s representing given {@link User}'s work,
+	 * updating the cached text and writing a {@link ChangeCheckpoint}
+	 * if one is due.  Normally, all of the changes will be for a single
+	 * problem: if not, they are stored without updating the cache.
+	 * Returns once the changes have been committed to the database.
+	 * 
+	 * @param user        the {@link User}
+	 * @param changeList  the changes to store
+	 */
+	public void storeChanges(User user, Change[] changeList) {
+		if (changeList.length == 0) {
+			return;
+		}
+		
+		int problemId = changeList[0].getEvent().getProblemId();
+		for (Change change : changeList) {
+			if (change.getEvent().getProblemId() != problemId) {
+				// Changes for more than one problem: just forget about the
+				// cached text for all of them (including any text reconstructed
+				// while the changes were being stored)
+				invalidate(user, changeList);
+				writeChanges(changeList, null);
+				invalidate(user, changeList);
+				return;
+			}
+		}
+		
+		Key key = new Key(user.getId(), problemId);
+		synchronized (getLock(key)) {
+			Entry entry = getEntry(key, user);
+			
+			ChangeCheckpoint checkpoint = null;
+			long now = System.currentTimeMillis();
+			if (entry != null) {
+				try {
+					applyChanges(entry, changeList);
+				} catch (RuntimeException e) {
+					logger.warn("Exception applying deltas to program text", e);
+					entry = null;
+				}
+				
+				if (entry != null && entry.deltasSinceCheckpoint > 0 &&
+						(entry.deltasSinceCheckpoint >= CHECKPOINT_INTERVAL_DELTAS ||
+						now - entry.lastCheckpointTime >= CHECKPOINT_INTERVAL_MS)) {
+					checkpoint = new ChangeCheckpoint();
+					checkpoint.setUserId(user.getId());
+					checkpoint.setProblemId(problemId);
+					checkpoint.setTimestamp(now);
+					checkpoint.setText(entry.doc.getText());
+				}
+			}
+			
+			// Until the changes are stored successfully, the cached text
+			// is not known to match the database
+			removeEntry(key);
+			
+			if (checkpoint != null && checkpoint.getText().length() <= ChangeCheckpoint.MAX_TEXT_LEN) {
+				writeChanges(changeList, checkpoint);
+				
+				// Make the cached text have exactly the lines that reconstructing it
+				// from the checkpoint would produce, so that later deltas are
+				// applied the same way in both cases
+				entry.doc = fromCheckpointText(checkpoint.getText());
+				entry.deltasSinceCheckpoint = 0;
+				entry.lastCheckpointTime = now;
+			} else {
+				writeChanges(changeList, null);
+			}
+			
+			if (entry != null) {
+				putEntry(key, entry);
+			}
+		}
+	}
+	
+	/**
+	 * @return the {@link IDatabase} from which changes and checkpoints are loaded
+	 */
+	protected IDatabase getDatabase() {
+		return Database.getInstance();
+	}
+	
+	/**
+	 * Write changes (and optionally a checkpoint) to the database,
+	 * returning once they have been committed.
+	 * 
+	 * @param changeList  the changes to write
+	 * @param checkpoint  the checkpoint to write (null if none)
+	 */
+	protected void writeChanges(Change[] changeList, ChangeCheckpoint checkpoint) {
+		ChangeWriter.getInstance().storeChanges(changeList, checkpoint);
+	}
+	
+	private void invalidate(User user, Change[] changeList) {
+		for (Change change : changeList) {
+			Key key = new Key(user.getId(), change.getEvent().getProblemId());
+			synchronized (getLock(key)) {
+				removeEntry(key);
+			}
+		}
+	}
+
+	private static void applyChanges(Entry entry, Change[] changeList) {
+		ApplyChangeToTextDocument applicator = new ApplyChangeToTextDocument();
+		for (Change change : changeList) {
+			if (change.getType() == ChangeType.FULL_TEXT) {
+				// Use the full text exactly as it was saved: a full-text change
+				// is as good as a checkpoint
+				entry.doc = fromCheckpointText(change.getText());
+				entry.deltasSinceCheckpoint = 0;
+			} else {
+				applicator.apply(change, entry.doc);
+				entry.deltasSinceCheckpoint++;
+			}
+			entry.hasChanges = true;
+		}
+	}
+
+	/**
+	 * Create a {@link TextDocument} containing exactly the given text
+	 * (of a checkpoint or full-text change).
+	 * (Unlike {@link TextDocument#setText(String)}, this does not add
+	 * a newline to the last line.)
+	 */
+	private static TextDocument fromCheckpointText(String text) {
+		TextDocument doc = new TextDocument();
+		int start = 0;
+		while (start < text.length()) {
+			int nl = text.indexOf('\n', start);
+			int end = (nl >= 0) ? nl + 1 : text.length();
+			doc.append(text.substring(start, end));
+			start = end;
+		}
+		return doc;
+	}
+
+	private Object getLock(Key key) {
+		return locks[(key.hashCode() & 0x7fffffff) % NUM_LOCKS];
+	}
+	
+	/**
+	 * Get the cache entry for given key, reconstructing it from the
+	 * database if necessary.  Must be called with the lock for the key held.
+	 * 
+	 * @return the entry, or null if the text could not be reconstructed
+	 */
+	private Entry getEntry(Key key, User user) {
+		Entry entry;
+		synchronized (cache) {
+			entry = cache.get(key);
+		}
+		if (entry == null) {
+			entry = reconstruct(user, key.problemId);
+			if (entry != null) {
+				putEntry(key, entry);
+			}
+		}
+		return entry;
+	}
+	
+	private void putEntry(Key key, Entry entry) {
+		synchronized (cache) {
+			cache.put(key, entry);
+		}
+	}
+	
+	private void removeEntry(Key key) {
+		synchronized (cache) {
+			cache.remove(key);
+		}
+	}
+
+	/**
+	 * Reconstruct the current text from the database, starting from the
+	 * more recent of the last checkpoint and the last full-text change,
+	 * and applying all later changes.
+	 * 
+	 * @return the entry, or null if the text could not be reconstructed
+	 */
+	private Entry reconstruct(User user, int problemId) {
+		Entry entry = new Entry();
+		
+		ChangeCheckpoint checkpoint = getDatabase().getChangeCheckpoint(user, problemId);
+		Change fullText = getDatabase().getMostRecentFullTextChange(user, problemId);
+		
+		// Find the base revision (event id) that the deltas are relative to, if any.
+		int baseRev;
+		if (checkpoint != null && (fullText == null || checkpoint.getEventId() > fullText.getEventId())) {
+			entry.doc = fromCheckpointText(checkpoint.getText());
+			entry.hasChanges = true;
+			entry.lastCheckpointTime = checkpoint.getTimestamp();
+			baseRev = checkpoint.getEventId();
+		} else if (fullText != null) {
+			entry.doc = fromCheckpointText(fullText.getText());
+			entry.hasChanges = true;
+			entry.lastCheckpointTime = System.currentTimeMillis();
+			baseRev = fullText.getEventId();
+		} else {
+			// no full-text change exists: base revision is implicitly the empty document
+			entry.lastCheckpointTime = System.currentTimeMillis();
+			baseRev = -1;
+		}
+		
+		// Get all deltas that follow the base revision, and apply them
+		List<Change> deltaList = getDatabase().getAllChangesNewerThan(user, problemId, baseRev);
+		try {
+			applyChanges(entry, deltaList.toArray(new Change[deltaList.size()]));
+		} catch (RuntimeException e) {
+			logger.warn("Exception applying deltas to program text", e);
+			return null;
+		}
+		
+		return entry;
+	}
+}
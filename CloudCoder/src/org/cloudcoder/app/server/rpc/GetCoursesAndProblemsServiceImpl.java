@@ -594,7 +594,7 @@ public class GetCoursesAndProblemsServiceImpl extends RemoteServiceServlet
 			return new SubmissionReceipt[0];
 		}
 		
-		return Database.getInstance().getAllSubmissionReceiptsForUser(problem, user);
+		return Database.getInstance().getAllSubmissionReceiptsForUser(problem, user, authenticatedUser);
 	}
 	
 	@Override
@@ -0,0 +1,60 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.rpc;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+
+import org.cloudcoder.app.server.submitsvc.SubmissionResultLongPoll;
+
+import com.google.gwt.user.server.rpc.RemoteServiceServlet;
+
+/**
+ * Base class for RPC servlets with methods that long-poll for a
+ * submission result using {@link SubmissionResultLongPoll}.
+ * When a request is suspended, the request payload is retained
+ * so that the RPC call can be decoded again when the
+ * request is redispatched.
+ * 
+ * @author David Hovemeyer
+ */
+public abstract class LongPollRemoteServiceServlet extends RemoteServiceServlet {
+	private static final long serialVersionUID = 1L;
+
+	private static final String PAYLOAD_ATTR = LongPollRemoteServiceServlet.class.getName() + ".payload";
+
+	@Override
+	protected String readContent(HttpServletRequest request) throws ServletException, IOException {
+		// If the request is being redispatched, the request body has already been read
+		String payload = (String) request.getAttribute(PAYLOAD_ATTR);
+		if (payload == null) {
+			payload = super.readContent(request);
+			request.setAttribute(PAYLOAD_ATTR, payload);
+		}
+		return payload;
+	}
+	
+	@Override
+	protected void doUnexpectedFailure(Throwable e) {
+		// If the request was suspended, let the servlet container handle it
+		SubmissionResultLongPoll.rethrowIfSuspended(e);
+		super.doUnexpectedFailure(e);
+	}
+}
@@ -26,6 +26,8 @@ import org.cloudcoder.app.client.rpc.RunService;
 import org.cloudcoder.app.server.submitsvc.DefaultSubmitService;
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
 import org.cloudcoder.app.server.submitsvc.ISubmitService;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
+import org.cloudcoder.app.server.submitsvc.SubmissionResultLongPoll;
 import org.cloudcoder.app.shared.model.CloudCoderAuthenticationException;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.SubmissionException;
@@ -36,15 +38,13 @@ import org.cloudcoder.app.shared.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gwt.user.server.rpc.RemoteServiceServlet;
-
 /**
  * RPC servlet to handle "playground" submissions.
  * 
  * @author David Hovemeyer
  * @author Jaime Spacco
  */
-public class RunServiceImpl extends RemoteServiceServlet implements RunService
+public class RunServiceImpl extends LongPollRemoteServiceServlet implements RunService
 {
     /**
      * 
@@ -80,7 +80,7 @@ public class RunServiceImpl extends RemoteServiceServlet implements RunService
             listTestCases.add(tc);
         }
         
-        IFutureSubmissionResult future = submitService.submitAsync(problem, listTestCases, programText);
+        IFutureSubmissionResult future = submitService.submitAsync(problem, listTestCases, programText, SubmissionPriority.EXERCISE, user.getId());
 
         // put the future into the session
         session.setAttribute(SessionAttributeKeys.FUTURE_SUBMISSION_RESULT_KEY, future);
@@ -108,7 +108,7 @@ public class RunServiceImpl extends RemoteServiceServlet implements RunService
         // See if the SubmissionResult is ready
         SubmissionResult result;
         try {
-            result = future.waitFor(IFutureSubmissionResult.STANDARD_POLL_WAIT_MS);
+            result = SubmissionResultLongPoll.poll(getThreadLocalRequest(), future, SubmissionResultLongPoll.DEFAULT_LONG_POLL_MS);
         } catch (SubmissionException e) {
             // If poll() throws an exception, the submission completed
             // with an error, but it did complete, so clear the session objects.
@@ -26,6 +26,8 @@ import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.server.submitsvc.DefaultSubmitService;
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
 import org.cloudcoder.app.server.submitsvc.ISubmitService;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
+import org.cloudcoder.app.server.submitsvc.SubmissionResultLongPoll;
 import org.cloudcoder.app.shared.model.Change;
 import org.cloudcoder.app.shared.model.ChangeType;
 import org.cloudcoder.app.shared.model.CloudCoderAuthenticationException;
@@ -42,15 +44,13 @@ import org.cloudcoder.app.shared.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gwt.user.server.rpc.RemoteServiceServlet;
-
 /**
  * RPC servlet to handle problem submissions.
  * 
  * @author David Hovemeyer
  * @author Jaime Spacco
  */
-public class SubmitServiceImpl extends RemoteServiceServlet implements SubmitService {
+public class SubmitServiceImpl extends LongPollRemoteServiceServlet implements SubmitService {
 	private static final long serialVersionUID = 1L;
 
 	private static final Logger logger=LoggerFactory.getLogger(SubmitServiceImpl.class);
@@ -91,7 +91,7 @@ public class SubmitServiceImpl extends RemoteServiceServlet implements SubmitSer
 				System.currentTimeMillis(),
 				user.getId(), problem.getProblemId(),
 				programText);
-		Database.getInstance().storeChanges(new Change[]{fullTextChange});
+		CurrentTextCache.getInstance().storeChanges(user, new Change[]{fullTextChange});
 		
 		// Get test cases.  (TODO: cache them?)
 		List<TestCase> testCaseList = Database.getInstance().getTestCasesForProblem(problemId);
@@ -99,7 +99,9 @@ public class SubmitServiceImpl extends RemoteServiceServlet implements SubmitSer
 		ISubmitService submitService = DefaultSubmitService.getInstance();
 
 		logger.info("Passing submission to submit service...");
-		IFutureSubmissionResult future = submitService.submitAsync(problem, testCaseList, programText);
+		// Submissions made during a quiz are tested before other submissions
+		SubmissionPriority priority = (quiz != null) ? SubmissionPriority.QUIZ : SubmissionPriority.EXERCISE;
+		IFutureSubmissionResult future = submitService.submitAsync(problem, testCaseList, programText, priority, user.getId());
 		
 		// Put the full-text Change and IFutureSubmissionResult in the user's session.
 		addSessionObjects(session, fullTextChange, future);
@@ -139,8 +141,7 @@ public class SubmitServiceImpl extends RemoteServiceServlet implements SubmitSer
 		// See if the SubmissionResult is ready
 		SubmissionResult result;
 		try {
-			//result = future.poll();
-			result = future.waitFor(IFutureSubmissionResult.STANDARD_POLL_WAIT_MS);
+			result = SubmissionResultLongPoll.poll(getThreadLocalRequest(), future, SubmissionResultLongPoll.DEFAULT_LONG_POLL_MS);
 		} catch (SubmissionException e) {
 			// If poll() throws an exception, the submission completed
 			// with an error, but it did complete, so clear the session objects.
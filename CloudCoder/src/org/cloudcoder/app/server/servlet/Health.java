@@ -19,6 +19,9 @@
 package org.cloudcoder.app.server.servlet;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -26,6 +29,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.cloudcoder.app.server.model.HealthDataSingleton;
+import org.cloudcoder.app.server.persist.ConnectionPoolStats;
+import org.cloudcoder.app.server.persist.Database;
+import org.cloudcoder.app.server.persist.TransactionStats;
+import org.cloudcoder.app.server.rpc.ChangeWriter;
 import org.cloudcoder.app.shared.model.HealthData;
 import org.cloudcoder.app.shared.model.json.JSONConversion;
 import org.json.simple.JSONValue;
@@ -42,9 +49,86 @@ public class Health extends HttpServlet {
 	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 		HealthData healthData = HealthDataSingleton.getInstance().getHealthData();
 		
+		// Add database connection pool statistics
+		ConnectionPoolStats poolStats = Database.getInstance().getConnectionPoolStats();
+		healthData.setDbPoolActiveConnections(poolStats.getActive());
+		healthData.setDbPoolIdleConnections(poolStats.getIdle());
+		healthData.setDbPoolMaxSize(poolStats.getMaxSize());
+		healthData.setDbPoolWaitingThreads(poolStats.getWaiting());
+		healthData.setDbPoolWaitTimeouts((int) poolStats.getWaitTimeouts());
+		healthData.setDbPoolConnectionsCreated((int) poolStats.getConnectionsCreated());
+		
+		// Add database transaction statistics: totals go in the HealthData,
+		// and the breakdown by transaction is added to the JSON object
+		// as the "dbTransactionStats" field
+		List<TransactionStats> txnStatsList = Database.getInstance().getTransactionStats();
+		TransactionStats txnTotals = new TransactionStats("total");
+		for (TransactionStats txnStats : txnStatsList) {
+			txnTotals.add(txnStats);
+		}
+		healthData.setDbTransactions((int) txnTotals.getCount());
+		healthData.setDbTransactionDeadlocks((int) txnTotals.getDeadlocks());
+		healthData.setDbTransactionDuplicateKeys((int) txnTotals.getDuplicateKeys());
+		healthData.setDbTransactionFailures((int) txnTotals.getFailures());
+		
+		// Add statistics about writing changes
+		ChangeWriter changeWriter = ChangeWriter.getInstance();
+		healthData.setChangeQueueSize(changeWriter.getQueuedChanges());
+		healthData.setChangeWriterTransactions((int) changeWriter.getNumTransactions());
+		healthData.setChangeWriterBatches((int) changeWriter.getNumBatches());
+		healthData.setChangeFlushLatencyAvgLastFiveMinutes((int) changeWriter.getAvgFlushLatencyMsLastFiveMinutes());
+		healthData.setChangeFlushLatencyMaxLastFiveMinutes((int) changeWriter.getMaxFlushLatencyMsLastFiveMinutes());
+		
 		resp.setStatus(HttpServletResponse.SC_OK);
 		resp.setContentType("application/json");
-		Object jsonValue = JSONConversion.convertModelObjectToJSON(healthData, healthData.getSchema());
+		Map<String, Object> jsonValue = JSONConversion.convertModelObjectToJSON(healthData, healthData.getSchema());
+		jsonValue.put("dbTransactionStats", convertTransactionStatsToJSON(txnStatsList));
+		
+		// If there is a read replica, add its connection pool statistics
+		// as the "dbReplicaPool" field
+		ConnectionPoolStats replicaPoolStats = Database.getInstance().getReplicaConnectionPoolStats();
+		if (replicaPoolStats != null) {
+			Map<String, Object> replicaPool = new LinkedHashMap<String, Object>();
+			replicaPool.put("activeConnections", replicaPoolStats.getActive());
+			replicaPool.put("idleConnections", replicaPoolStats.getIdle());
+			replicaPool.put("maxSize", replicaPoolStats.getMaxSize());
+			replicaPool.put("waitingThreads", replicaPoolStats.getWaiting());
+			replicaPool.put("waitTimeouts", replicaPoolStats.getWaitTimeouts());
+			replicaPool.put("connectionsCreated", replicaPoolStats.getConnectionsCreated());
+			jsonValue.put("dbReplicaPool", replicaPool);
+		}
+		
 		JSONValue.writeJSONString(jsonValue, resp.getWriter());
 	}
+
+	private static Map<String, Object> convertTransactionStatsToJSON(List<TransactionStats> txnStatsList) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		for (TransactionStats txnStats : txnStatsList) {
+			Map<String, Object> obj = new LinkedHashMap<String, Object>();
+			obj.put("count", txnStats.getCount());
+			obj.put("failures", txnStats.getFailures());
+			obj.put("deadlocks", txnStats.getDeadlocks());
+			obj.put("duplicateKeys", txnStats.getDuplicateKeys());
+			obj.put("totalAttempts", txnStats.getTotalAttempts());
+			obj.put("maxAttempts", txnStats.getMaxAttempts());
+			obj.put("totalLatencyMs", txnStats.getTotalLatencyMs());
+			obj.put("maxLatencyMs", txnStats.getMaxLatencyMs());
+			obj.put("totalBackoffMs", txnStats.getTotalBackoffMs());
+			obj.put("latencyHistogram", convertHistogramToJSON(
+					TransactionStats.getLatencyBucketLabels(), txnStats.getLatencyHistogram()));
+			obj.put("attemptsHistogram", convertHistogramToJSON(
+					TransactionStats.getAttemptsBucketLabels(), txnStats.getAttemptsHistogram()));
+			result.put(txnStats.getDescription(), obj);
+		}
+		return result;
+	}
+
+	// Convert a histogram to a JSON object mapping bucket labels to counts
+	private static Map<String, Object> convertHistogramToJSON(String[] labels, long[] counts) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < counts.length; i++) {
+			result.put(labels[i], counts[i]);
+		}
+		return result;
+	}
 }
@@ -0,0 +1,195 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudcoder.app.server.persist.IDatabase;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeCheckpoint;
+import org.cloudcoder.app.shared.model.ChangeType;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.User;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CurrentTextCacheTest {
+	private static final int USER_ID = 1;
+	private static final int PROBLEM_ID = 10;
+	
+	/**
+	 * In-memory stand-in for the cc_changes and cc_change_checkpoints tables.
+	 */
+	private static class ChangeStore implements InvocationHandler {
+		List<Change> changes = new ArrayList<Change>();
+		ChangeCheckpoint checkpoint;
+		int nextEventId = 1;
+		
+		synchronized void store(Change[] changeList, ChangeCheckpoint cp) {
+			for (Change change : changeList) {
+				change.getEvent().setId(nextEventId);
+				change.setEventId(nextEventId);
+				nextEventId++;
+				changes.add(change);
+			}
+			if (cp != null) {
+				cp.setEventId(changeList[changeList.length - 1].getEventId());
+				checkpoint = cp;
+			}
+		}
+		
+		@Override
+		public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("getChangeCheckpoint")) {
+				return checkpoint;
+			} else if (name.equals("getMostRecentFullTextChange")) {
+				Change fullText = null;
+				for (Change change : changes) {
+					if (change.getType() == ChangeType.FULL_TEXT) {
+						fullText = change;
+					}
+				}
+				return fullText;
+			} else if (name.equals("getAllChangesNewerThan")) {
+				int baseRev = (Integer) args[2];
+				List<Change> result = new ArrayList<Change>();
+				for (Change change : changes) {
+					if (change.getEventId() > baseRev) {
+						result.add(change);
+					}
+				}
+				return result;
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+	
+	private static class TestCache extends CurrentTextCache {
+		private final ChangeStore store;
+		private final IDatabase db;
+		
+		TestCache(ChangeStore store) {
+			this.store = store;
+			this.db = (IDatabase) Proxy.newProxyInstance(
+					IDatabase.class.getClassLoader(), new Class<?>[]{IDatabase.class}, store);
+		}
+		
+		@Override
+		protected IDatabase getDatabase() {
+			return db;
+		}
+		
+		@Override
+		protected void writeChanges(Change[] changeList, ChangeCheckpoint checkpoint) {
+			store.store(changeList, checkpoint);
+		}
+	}
+	
+	private ChangeStore store;
+	private TestCache cache;
+	private User user;
+	private Problem problem;
+	private long timestamp;
+	
+	@Before
+	public void setUp() {
+		store = new ChangeStore();
+		cache = new TestCache(store);
+		user = new User();
+		user.setId(USER_ID);
+		problem = new Problem();
+		problem.setProblemId(PROBLEM_ID);
+		timestamp = 1000L;
+	}
+	
+	private Change fullText(String text) {
+		return new Change(ChangeType.FULL_TEXT, 0, 0, 0, 0, timestamp++, USER_ID, PROBLEM_ID, text);
+	}
+	
+	private Change insertText(int row, int col, String text) {
+		return new Change(ChangeType.INSERT_TEXT, row, col, row, col + text.length(), timestamp++, USER_ID, PROBLEM_ID, text);
+	}
+	
+	/**
+	 * Check the text returned by the cache, and by a new (empty) cache
+	 * that must reconstruct the text from the database.
+	 */
+	private void checkText(String expected) {
+		assertEquals(expected, cache.loadCurrentText(user, problem).getText());
+		assertEquals(expected, new TestCache(store).loadCurrentText(user, problem).getText());
+	}
+	
+	@Test
+	public void testNoChanges() {
+		assertEquals("", cache.loadCurrentText(user, problem).getText());
+		assertEquals(true, cache.loadCurrentText(user, problem).isNew());
+	}
+	
+	@Test
+	public void testFullTextIsReturnedVerbatim() {
+		// No trailing newline
+		cache.storeChanges(user, new Change[]{ fullText("public class A {\n}") });
+		checkText("public class A {\n}");
+		
+		// Trailing blank lines
+		cache.storeChanges(user, new Change[]{ fullText("int x;\n\n\n") });
+		checkText("int x;\n\n\n");
+	}
+	
+	@Test
+	public void testFullTextThenDeltasThenCheckpoint() {
+		String base = "public class A {\n}";
+		cache.storeChanges(user, new Change[]{ fullText(base) });
+		checkText(base);
+		
+		// Enough deltas (in small batches, like logChange) to cause
+		// a checkpoint to be written
+		StringBuilder expected = new StringBuilder(base);
+		int col = 1;
+		int numDeltas = CurrentTextCache.CHECKPOINT_INTERVAL_DELTAS + 50;
+		for (int i = 0; i < numDeltas; i += 10) {
+			Change[] batch = new Change[10];
+			for (int j = 0; j < batch.length; j++) {
+				batch[j] = insertText(1, col++, "x");
+				expected.append("x");
+			}
+			cache.storeChanges(user, batch);
+		}
+		assertNotNull(store.checkpoint);
+		checkText(expected.toString());
+		
+		// Deltas after the checkpoint
+		cache.storeChanges(user, new Change[]{ insertText(1, col++, "\n"), insertText(2, 0, "// end") });
+		expected.append("\n// end");
+		checkText(expected.toString());
+		
+		// A later full-text change (e.g., on submit) replaces everything
+		cache.storeChanges(user, new Change[]{ fullText("int y;\n\n") });
+		checkText("int y;\n\n");
+		assertFalse(cache.loadCurrentText(user, problem).isNew());
+	}
+}
@@ -5,8 +5,10 @@ import java.util.List;
 
 import org.cloudcoder.analysis.incremental.compiler.EditSequence;
 import org.cloudcoder.analysis.incremental.compiler.LineEdit;
+import org.cloudcoder.app.server.persist.ConnectionPoolConfig;
 import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.server.persist.JDBCDatabaseConfig;
+import org.cloudcoder.app.server.persist.RetryPolicy;
 import org.cloudcoder.app.shared.model.ApplyChangeToTextDocument;
 import org.cloudcoder.app.shared.model.Change;
 import org.cloudcoder.app.shared.model.ChangeType;
@@ -90,6 +92,18 @@ public class CompileAll
             public String getPortStr() {
                 return ":8889";
             }
+            @Override
+            public ConnectionPoolConfig getConnectionPoolConfig() {
+                return new ConnectionPoolConfig();
+            }
+            @Override
+            public RetryPolicy getRetryPolicy() {
+                return new RetryPolicy();
+            }
+            @Override
+            public JDBCDatabaseConfig.ConfigProperties getReplicaConfigProperties() {
+                return null;
+            }
         });
     }
     
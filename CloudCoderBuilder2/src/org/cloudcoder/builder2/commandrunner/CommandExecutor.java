@@ -19,12 +19,20 @@
 package org.cloudcoder.builder2.commandrunner;
 
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.SubmissionResultAnnotation;
+import org.cloudcoder.builder2.model.BuilderSubmission;
 import org.cloudcoder.builder2.model.Command;
 import org.cloudcoder.builder2.model.CommandExecutionPreferences;
 import org.cloudcoder.builder2.model.CommandInput;
 import org.cloudcoder.builder2.model.CommandLimit;
 import org.cloudcoder.builder2.model.CommandResult;
+import org.cloudcoder.builder2.model.ISubmissionResultHook;
 import org.cloudcoder.builder2.model.ProcessStatus;
 import org.cloudcoder.builder2.process.LimitedProcessRunner;
 import org.cloudcoder.builder2.process.ProcessRunner;
@@ -50,12 +58,23 @@ public class CommandExecutor implements Runnable {
 	
 	private Thread thread;
 	private CommandResult commandResult;
+	private long elapsedMillis;
+	private long waitOverheadMicros;
 
 	/**
-	 * Number of milliseconds between polls to see if a test case
-	 * process has completed.
+	 * Key of the {@link SubmissionResultAnnotation} recording the wall-clock
+	 * time (in milliseconds) taken by each command, as a comma-separated list
+	 * in {@link CommandInput} order.
 	 */
-	public static final int POLL_INTERVAL_IN_MILLIS = 500;
+	public static final String COMMAND_ELAPSED_TIME_ANNOTATION = "CommandElapsedMs";
+
+	/**
+	 * Key of the {@link SubmissionResultAnnotation} recording the time
+	 * (in microseconds) between each command's completion and the
+	 * {@link CommandExecutor} noticing it, as a comma-separated list
+	 * in {@link CommandInput} order.
+	 */
+	public static final String COMMAND_WAIT_OVERHEAD_ANNOTATION = "CommandWaitOverheadUs";
 
 	/**
 	 * Maximum number of seconds (wall time) to allow a command process to run
@@ -118,30 +137,50 @@ public class CommandExecutor implements Runnable {
 
 		String[] cmd = ArrayUtil.toArray(command.getArgs(), String.class);
 		processRunner.runAsynchronous(command.getDir(), cmd);
+		
+		// Note that runAsynchronous() might have had to wait for other
+		// processes to finish, so the time limit starts now
+		long startNanos = System.nanoTime();
 
-		int elapsed = 0;
-		while (processRunner.isRunning() && elapsed < maxWaitTimeSec * 1000) {
+		// Wait for the process to complete, or for the deadline to pass
+		Future<Boolean> completion = processRunner.getCompletion();
+		long deadline = startNanos + TimeUnit.SECONDS.toNanos(maxWaitTimeSec);
+		Boolean started = null;
+		while (started == null) {
 			try {
-				Thread.sleep(CommandExecutor.POLL_INTERVAL_IN_MILLIS);
+				started = completion.get(Math.max(deadline - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
 			} catch (InterruptedException e) {
 				// can't happen
+			} catch (TimeoutException e) {
+				break;
+			} catch (ExecutionException e) {
+				logger.error("Error running process", e.getCause());
+				started = Boolean.FALSE;
 			}
-
-			elapsed += CommandExecutor.POLL_INTERVAL_IN_MILLIS;
 		}
+		long noticedNanos = System.nanoTime();
 
-		if (processRunner.isRunning()) {
+		if (started == null) {
 			// timed out!
 			processRunner.killProcess();
 			commandResult = new CommandResult(ProcessStatus.TIMED_OUT, processRunner.getStatusMessage());
+			elapsedMillis = TimeUnit.NANOSECONDS.toMillis(noticedNanos - startNanos);
 		} else {
-			// Either completed normally or killed by signal
-			commandResult = new CommandResult(
-					processRunner.getStatus(),
-					processRunner.getStatusMessage(),
-					processRunner.getExitCode(),
-					processRunner.getStdoutAsList(),
-					processRunner.getStderrAsList());
+			long completedNanos = processRunner.getCompletionTimeNanos();
+			elapsedMillis = TimeUnit.NANOSECONDS.toMillis(completedNanos - startNanos);
+			waitOverheadMicros = TimeUnit.NANOSECONDS.toMicros(noticedNanos - completedNanos);
+			if (!started) {
+				// The process could not be executed at all
+				commandResult = new CommandResult(ProcessStatus.COULD_NOT_START, processRunner.getStatusMessage());
+			} else {
+				// Either completed normally or killed by signal
+				commandResult = new CommandResult(
+						processRunner.getStatus(),
+						processRunner.getStatusMessage(),
+						processRunner.getExitCode(),
+						processRunner.getStdoutAsList(),
+						processRunner.getStderrAsList());
+			}
 		}
 		
 		if (commandResult == null) {
@@ -191,4 +230,51 @@ public class CommandExecutor implements Runnable {
 	public CommandResult getCommandResult() {
 		return commandResult;
 	}
+
+	/**
+	 * @return wall-clock time (in milliseconds) from starting the command
+	 *         until it completed (or timed out)
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * @return time (in microseconds) between the command completing and
+	 *         the completion being noticed (0 if the command timed out)
+	 */
+	public long getWaitOverheadMicros() {
+		return waitOverheadMicros;
+	}
+
+	/**
+	 * Record the elapsed and wait overhead times of given completed
+	 * {@link CommandExecutor}s as {@link SubmissionResultAnnotation}s
+	 * (with the keys {@link #COMMAND_ELAPSED_TIME_ANNOTATION} and
+	 * {@link #COMMAND_WAIT_OVERHEAD_ANNOTATION}).
+	 * 
+	 * @param submission the {@link BuilderSubmission}
+	 * @param executors  the completed {@link CommandExecutor}s
+	 */
+	public static void addTimingAnnotations(BuilderSubmission submission, CommandExecutor[] executors) {
+		StringBuilder elapsed = new StringBuilder();
+		StringBuilder overhead = new StringBuilder();
+		for (CommandExecutor executor : executors) {
+			if (elapsed.length() > 0) {
+				elapsed.append(',');
+				overhead.append(',');
+			}
+			elapsed.append(executor.getElapsedMillis());
+			overhead.append(executor.getWaitOverheadMicros());
+		}
+		final String elapsedTimes = elapsed.toString();
+		final String overheadTimes = overhead.toString();
+		submission.addSubmissionResultHook(new ISubmissionResultHook() {
+			@Override
+			public void invoke(SubmissionResult result) {
+				result.addAnnotation(new SubmissionResultAnnotation(COMMAND_ELAPSED_TIME_ANNOTATION, elapsedTimes));
+				result.addAnnotation(new SubmissionResultAnnotation(COMMAND_WAIT_OVERHEAD_ANNOTATION, overheadTimes));
+			}
+		});
+	}
 }
\ No newline at end of file
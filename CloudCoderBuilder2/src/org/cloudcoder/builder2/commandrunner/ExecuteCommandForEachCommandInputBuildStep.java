@@ -66,6 +66,8 @@ public class ExecuteCommandForEachCommandInputBuildStep implements IBuildStep {
 			commandResultList[i] = commandExecutorList[i].getCommandResult();
 		}
 		submission.addArtifact(commandResultList);
+		
+		CommandExecutor.addTimingAnnotations(submission, commandExecutorList);
 	}
 
 }
@@ -18,18 +18,15 @@
 
 package org.cloudcoder.builder2.javacompiler;
 
-import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
-import javax.tools.JavaCompiler;
 import javax.tools.JavaCompiler.CompilationTask;
 import javax.tools.JavaFileObject;
-import javax.tools.ToolProvider;
 
 import org.cloudcoder.app.shared.model.CompilationOutcome;
 import org.cloudcoder.app.shared.model.CompilationResult;
@@ -39,6 +36,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Compile Java source code into class files (bytecode) in memory.
+ * The compiler and standard file manager are reused from a warm
+ * {@link JavaCompilerContext} belonging to the current thread,
+ * so only the {@link MemoryFileManager} is specific to an
+ * instance of this class.
  * 
  * @author Jaime Spacco
  */
@@ -47,7 +48,6 @@ public class InMemoryJavaCompiler
 	private static final Logger logger=LoggerFactory.getLogger(InMemoryJavaCompiler.class);
 
 	private MemoryFileManager fm;
-	private JavaCompiler compiler;
 	private CompilationResult compileResult;
 	private List<JavaFileObject> sources;
 	private String extraClasspath;
@@ -56,8 +56,6 @@ public class InMemoryJavaCompiler
 	 * Constructor.
 	 */
 	public InMemoryJavaCompiler() {
-		compiler = ToolProvider.getSystemJavaCompiler();
-		fm = new MemoryFileManager(compiler.getStandardFileManager(null, null, null));
 		sources = new ArrayList<JavaFileObject>();
 	}
 	
@@ -91,19 +89,28 @@ public class InMemoryJavaCompiler
 	public boolean compile() {
 		DiagnosticCollector<JavaFileObject> collector= new DiagnosticCollector<JavaFileObject>();
 		
-		// Prepare compiler options.
-		// We use this opportunity to set the classpath.
-		StringBuilder fullClasspath = new StringBuilder();
-		fullClasspath.append(System.getProperty("java.class.path"));
-		if (extraClasspath != null) {
-			fullClasspath.append(File.pathSeparatorChar);
-			fullClasspath.append(extraClasspath);
+		// Get the warm compiler context for this thread.
+		// Its file manager already has the classpath set, so
+		// no compiler options are needed.
+		JavaCompilerContext ctx;
+		try {
+			ctx = JavaCompilerContext.forCurrentThread(extraClasspath);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not set compiler classpath", e);
 		}
-		List<String> options = Arrays.asList("-classpath", fullClasspath.toString());
+		fm = new MemoryFileManager(ctx.getFileManager());
 		
-		CompilationTask task = compiler.getTask(null, fm, collector, options, null, sources);
+		boolean success;
+		try {
+			CompilationTask task = ctx.getCompiler().getTask(null, fm, collector, null, null, sources);
+			success = task.call();
+		} catch (RuntimeException e) {
+			// Don't reuse a file manager that might be in a bad state
+			JavaCompilerContext.discard(ctx);
+			throw e;
+		}
 		
-		if (!task.call()) {
+		if (!success) {
 			// Compiler error
 			compileResult=new CompilationResult(CompilationOutcome.FAILURE);
 			List<CompilerDiagnostic> diagnosticList=new LinkedList<CompilerDiagnostic>();
@@ -126,7 +133,7 @@ public class InMemoryJavaCompiler
 
 	/**
 	 * Get the {@link MemoryFileManager} that is keeping track of sources
-	 * and compiled classes.
+	 * and compiled classes.  Only valid after {@link #compile()} has been called.
 	 * 
 	 * @return the {@link MemoryFileManager}
 	 */
@@ -0,0 +1,179 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package org.cloudcoder.builder2.javacompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A warmed, reusable Java compiler context: the system {@link JavaCompiler}
+ * and a {@link StandardJavaFileManager} whose class path has been set
+ * once.  Because the file manager is reused, the platform and class path
+ * archives it has opened (and the indexes of their contents) are reused
+ * by every compilation, so only the {@link MemoryFileManager} that
+ * collects the compiled classes varies per submission.
+ *
+ * <p>A {@link StandardJavaFileManager} is not thread safe, so contexts
+ * are cached per thread (see {@link #forCurrentThread(String)}).
+ * Builder threads are long-lived, so each one ends up with its own
+ * warm context.
+ *
+ * @author David Hovemeyer
+ */
+public class JavaCompilerContext {
+	private static final Logger logger = LoggerFactory.getLogger(JavaCompilerContext.class);
+
+	/**
+	 * Maximum number of contexts (one per distinct extra classpath,
+	 * i.e., per external library) cached by each thread.
+	 */
+	public static final int MAX_CONTEXTS_PER_THREAD = 4;
+
+	private static final JavaCompiler systemCompiler = ToolProvider.getSystemJavaCompiler();
+
+	private static final ThreadLocal<Map<String, JavaCompilerContext>> contexts =
+			new ThreadLocal<Map<String, JavaCompilerContext>>() {
+		@Override
+		protected Map<String, JavaCompilerContext> initialValue() {
+			return new LinkedHashMap<String, JavaCompilerContext>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, JavaCompilerContext> eldest) {
+					if (size() > MAX_CONTEXTS_PER_THREAD) {
+						eldest.getValue().close();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+	};
+
+	private final JavaCompiler compiler;
+	private final StandardJavaFileManager fileManager;
+	private final String extraClasspath;
+
+	/**
+	 * Constructor.  Creates a cold context: callers will normally want to
+	 * use {@link #forCurrentThread(String)} instead.
+	 *
+	 * @param extraClasspath extra classpath entries (null if none)
+	 * @throws IOException if the class path cannot be set
+	 */
+	public JavaCompilerContext(String extraClasspath) throws IOException {
+		if (systemCompiler == null) {
+			throw new IllegalStateException("No system Java compiler is available (is this a JRE rather than a JDK?)");
+		}
+		this.compiler = systemCompiler;
+		this.fileManager = compiler.getStandardFileManager(null, null, null);
+		this.extraClasspath = extraClasspath;
+		fileManager.setLocation(StandardLocation.CLASS_PATH, getClasspath(extraClasspath));
+	}
+
+	/**
+	 * Get the warm context for the current thread and given extra classpath,
+	 * creating it if necessary.
+	 *
+	 * @param extraClasspath extra classpath entries (null if none)
+	 * @return the {@link JavaCompilerContext}
+	 * @throws IOException if a new context is needed and its class path cannot be set
+	 */
+	public static JavaCompilerContext forCurrentThread(String extraClasspath) throws IOException {
+		Map<String, JavaCompilerContext> map = contexts.get();
+		String key = extraClasspath != null ? extraClasspath : "";
+		JavaCompilerContext ctx = map.get(key);
+		if (ctx == null) {
+			logger.debug("Creating Java compiler context for extra classpath {}", extraClasspath);
+			ctx = new JavaCompilerContext(extraClasspath);
+			map.put(key, ctx);
+		}
+		return ctx;
+	}
+
+	/**
+	 * Discard the current thread's cached context for the given
+	 * extra classpath.  This should be called if a compilation
+	 * fails unexpectedly, since the file manager might be left
+	 * in an inconsistent state.
+	 *
+	 * @param ctx the {@link JavaCompilerContext} to discard
+	 */
+	public static void discard(JavaCompilerContext ctx) {
+		Map<String, JavaCompilerContext> map = contexts.get();
+		String key = ctx.extraClasspath != null ? ctx.extraClasspath : "";
+		if (map.get(key) == ctx) {
+			map.remove(key);
+		}
+		ctx.close();
+	}
+
+	/**
+	 * @return the {@link JavaCompiler}
+	 */
+	public JavaCompiler getCompiler() {
+		return compiler;
+	}
+
+	/**
+	 * @return the shared {@link StandardJavaFileManager}: it must not be closed by the caller
+	 */
+	public StandardJavaFileManager getFileManager() {
+		return fileManager;
+	}
+
+	/**
+	 * Close the file manager, releasing the archives it has open.
+	 */
+	public void close() {
+		try {
+			fileManager.close();
+		} catch (IOException e) {
+			logger.warn("Error closing Java file manager", e);
+		}
+	}
+
+	private static List<File> getClasspath(String extraClasspath) {
+		StringBuilder fullClasspath = new StringBuilder();
+		fullClasspath.append(System.getProperty("java.class.path"));
+		if (extraClasspath != null) {
+			fullClasspath.append(File.pathSeparatorChar);
+			fullClasspath.append(extraClasspath);
+		}
+		List<File> result = new ArrayList<File>();
+		for (String entry : fullClasspath.toString().split(File.pathSeparator)) {
+			if (!entry.equals("")) {
+				result.add(new File(entry));
+			}
+		}
+		return result;
+	}
+}
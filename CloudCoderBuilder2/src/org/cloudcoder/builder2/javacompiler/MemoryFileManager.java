@@ -99,6 +99,15 @@ public final class MemoryFileManager extends ForwardingJavaFileManager<JavaFileM
 		return new ByteArrayClassLoader(classes);
 	}
 
+	/**
+	 * Does not close the delegate file manager, which may be shared
+	 * by other compilations (see {@link JavaCompilerContext}).
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
 	@Override
 	public JavaFileObject getJavaFileForOutput(Location location,
 			String name,
@@ -85,6 +85,7 @@ public class ExecuteJavaMethodTestsBuildStep implements IBuildStep {
 
         // run each task in a separate thread
         pool.run();
+        SandboxUtil.addTestExecutionTimeAnnotation(submission, pool);
 
         // merge outcomes with their buffered inputs for stdout/stderr
         List<TestResult> outcomes = SandboxUtil.getStdoutStderr(pool);
@@ -0,0 +1,165 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javaprogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.cloudcoder.builder2.commandrunner.CommandExecutor;
+import org.cloudcoder.builder2.commandrunner.ExecuteCommandForEachCommandInputBuildStep;
+import org.cloudcoder.builder2.model.BuilderSubmission;
+import org.cloudcoder.builder2.model.Bytecode;
+import org.cloudcoder.builder2.model.BytecodeExecutable;
+import org.cloudcoder.builder2.model.Command;
+import org.cloudcoder.builder2.model.CommandExecutionPreferences;
+import org.cloudcoder.builder2.model.CommandInput;
+import org.cloudcoder.builder2.model.CommandResult;
+import org.cloudcoder.builder2.model.ExternalLibrary;
+import org.cloudcoder.builder2.model.IBuildStep;
+import org.cloudcoder.builder2.model.ProcessStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Run a Java program ({@link BytecodeExecutable}) for each {@link CommandInput}
+ * using the {@link JavaProgramRunnerPool}, saving the result of each execution
+ * as a {@link CommandResult}, as {@link ExecuteCommandForEachCommandInputBuildStep}
+ * would for the {@link Command}s created by {@link JavaProgramToCommandForEachCommandInputBuildStep}.
+ * If the pool is disabled, the {@link Command}s are executed instead.
+ * If there are {@link CommandExecutionPreferences} (which require per-process
+ * resource limits), or if all of the runners are busy, or if a runner fails,
+ * the test case is run in a new runner JVM (see
+ * {@link JavaProgramRunnerPool#runInNewJVM}), so the
+ * program runs with the same restrictions and produces the same results
+ * as it would in a pooled runner.
+ * 
+ * @author David Hovemeyer
+ */
+public class ExecuteJavaProgramForEachCommandInputBuildStep implements IBuildStep {
+	private static final Logger logger = LoggerFactory.getLogger(ExecuteJavaProgramForEachCommandInputBuildStep.class);
+	
+	private final ExecuteCommandForEachCommandInputBuildStep executeCommands = new ExecuteCommandForEachCommandInputBuildStep();
+
+	@Override
+	public void execute(BuilderSubmission submission, Properties config) {
+		JavaProgramRunnerPool pool = JavaProgramRunnerPool.getInstance(config);
+		if (!pool.isEnabled()) {
+			executeCommands.execute(submission, config);
+			return;
+		}
+		
+		BytecodeExecutable bytecodeExe = submission.requireArtifact(this.getClass(), BytecodeExecutable.class);
+		Bytecode[] bytecodeList = submission.requireArtifact(this.getClass(), Bytecode[].class);
+		CommandInput[] commandInputList = submission.requireArtifact(this.getClass(), CommandInput[].class);
+		CommandExecutionPreferences prefs = submission.getArtifact(CommandExecutionPreferences.class);
+		ExternalLibrary extLib = submission.getArtifact(ExternalLibrary.class);
+		File extLibFile = (extLib != null) ? new File(extLib.getFileName()) : null;
+		
+		// Run the test cases concurrently (test cases for which no
+		// runner is available are run as separate processes)
+		ProgramExecutor[] executorList = new ProgramExecutor[commandInputList.length];
+		for (int i = 0; i < commandInputList.length; i++) {
+			executorList[i] = new ProgramExecutor(pool, bytecodeExe.getMainClass(), bytecodeList, extLibFile,
+					bytecodeExe.getDir(), prefs, commandInputList[i], config);
+			executorList[i].start();
+		}
+		
+		CommandResult[] commandResultList = new CommandResult[commandInputList.length];
+		for (int i = 0; i < commandInputList.length; i++) {
+			commandResultList[i] = executorList[i].join();
+		}
+		submission.addArtifact(commandResultList);
+	}
+	
+	/**
+	 * Runs the program for one {@link CommandInput}.
+	 */
+	private static class ProgramExecutor implements Runnable {
+		private final JavaProgramRunnerPool pool;
+		private final String mainClass;
+		private final Bytecode[] bytecodeList;
+		private final File extLib;
+		private final File dir;
+		private final CommandExecutionPreferences prefs;
+		private final CommandInput commandInput;
+		private final Properties config;
+		private Thread thread;
+		private volatile CommandResult commandResult;
+		
+		ProgramExecutor(JavaProgramRunnerPool pool, String mainClass, Bytecode[] bytecodeList, File extLib,
+				File dir, CommandExecutionPreferences prefs, CommandInput commandInput, Properties config) {
+			this.pool = pool;
+			this.mainClass = mainClass;
+			this.bytecodeList = bytecodeList;
+			this.extLib = extLib;
+			this.dir = dir;
+			this.prefs = prefs;
+			this.commandInput = commandInput;
+			this.config = config;
+		}
+		
+		void start() {
+			thread = new Thread(this);
+			thread.start();
+		}
+		
+		@Override
+		public void run() {
+			if (prefs == null) {
+				try {
+					JavaProgramRunner runner = pool.borrow();
+					if (runner != null) {
+						try {
+							commandResult = runner.run(mainClass, bytecodeList, extLib, dir, commandInput.getInput(),
+									CommandExecutor.DEFAULT_MAX_TIME_IN_SECONDS * 1000L, 0L,
+									pool.getMaxOutputBytes(), pool.getWatchdog());
+						} finally {
+							pool.release(runner);
+						}
+						return;
+					}
+					logger.debug("All Java program runners are busy, running program as a separate process");
+				} catch (IOException e) {
+					logger.warn("Java program runner failed, running program as a separate process", e);
+				}
+			}
+			commandResult = pool.runInNewJVM(dir, mainClass, extLib, commandInput, prefs, config);
+		}
+		
+		CommandResult join() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					thread.join();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (commandResult == null) {
+				logger.error("Java program executor finished without a result");
+				return new CommandResult(ProcessStatus.COULD_NOT_START, "Program executor did not finish");
+			}
+			return commandResult;
+		}
+	}
+}
@@ -0,0 +1,257 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javaprogram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.io.IOUtils;
+import org.cloudcoder.builder2.model.Bytecode;
+import org.cloudcoder.builder2.model.CommandResult;
+import org.cloudcoder.builder2.model.ProcessStatus;
+import org.cloudcoder.builder2.process.IOutputCollector;
+import org.cloudcoder.builder2.process.OutputCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A runner JVM (see {@link JavaProgramRunnerMain}) that can run a
+ * series of Java programs, one at a time.  Runners are managed by
+ * a {@link JavaProgramRunnerPool}.
+ * 
+ * @author David Hovemeyer
+ */
+public class JavaProgramRunner {
+	private static final Logger logger = LoggerFactory.getLogger(JavaProgramRunner.class);
+	
+	/**
+	 * How long to wait for a response beyond the program's wall clock limit
+	 * before assuming that the runner is hung and killing it.
+	 */
+	private static final long RESPONSE_GRACE_MS = 5000L;
+	
+	// Stdin is encoded the same way as by InputSender
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Process process;
+	private final DataOutputStream toRunner;
+	private final DataInputStream fromRunner;
+	private int numRuns;
+	private boolean reusable;
+	private volatile boolean killed;
+	
+	private JavaProgramRunner(Process process) {
+		this.process = process;
+		this.toRunner = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+		this.fromRunner = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+		this.reusable = true;
+	}
+	
+	/**
+	 * Start a runner JVM.
+	 * 
+	 * @param command  the command to start the runner JVM
+	 * @param dir      the directory to start the runner JVM in
+	 * @return the {@link JavaProgramRunner}, which is ready to run programs
+	 * @throws IOException if the runner JVM could not be started
+	 */
+	public static JavaProgramRunner start(List<String> command, File dir) throws IOException {
+		Process process = new ProcessBuilder(command).directory(dir).start();
+		JavaProgramRunner runner = new JavaProgramRunner(process);
+		runner.logStderr();
+		try {
+			int ready = runner.fromRunner.readInt();
+			if (ready != JavaProgramRunnerMain.READY) {
+				throw new IOException("Unexpected handshake from runner JVM: " + Integer.toHexString(ready));
+			}
+		} catch (IOException e) {
+			runner.destroy();
+			throw e;
+		}
+		return runner;
+	}
+
+	// Anything the runner JVM writes to stderr is logged
+	private void logStderr() {
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						logger.info("Runner JVM: {}", line);
+					}
+				} catch (IOException e) {
+					// ignore
+				} finally {
+					IOUtils.closeQuietly(reader);
+				}
+			}
+		}, "JavaProgramRunner stderr");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/**
+	 * Run a Java program.
+	 * 
+	 * @param mainClass       fully-qualified name of the main class
+	 * @param bytecodeList    the program's classes
+	 * @param extLib          the external library jar file (null if none)
+	 * @param dir             the directory containing the program's class files,
+	 *                        which the program sees as its working directory
+	 *                        (the <code>user.dir</code> property)
+	 * @param stdin           text to send to the program as its standard input
+	 * @param wallLimitMs     the wall clock time limit in milliseconds
+	 * @param cpuLimitMs      the CPU time limit in milliseconds (0 for no limit)
+	 * @param maxOutputBytes  maximum number of bytes of stdout and stderr to capture
+	 * @param watchdog        timer used to kill the runner JVM if it doesn't respond
+	 * @return the {@link CommandResult}
+	 * @throws IOException if the runner JVM failed (other than by timing out)
+	 */
+	public CommandResult run(String mainClass, Bytecode[] bytecodeList, File extLib, File dir, String stdin,
+			long wallLimitMs, long cpuLimitMs, int maxOutputBytes, Timer watchdog) throws IOException {
+		numRuns++;
+		
+		// If the runner doesn't respond in time, kill it
+		TimerTask killer = new TimerTask() {
+			@Override
+			public void run() {
+				logger.warn("Runner JVM did not respond, killing it");
+				killed = true;
+				destroy();
+			}
+		};
+		watchdog.schedule(killer, wallLimitMs + RESPONSE_GRACE_MS);
+
+		try {
+			// Send the request
+			toRunner.writeInt(JavaProgramRunnerMain.REQUEST);
+			toRunner.writeUTF(mainClass);
+			toRunner.writeInt(bytecodeList.length);
+			for (Bytecode bytecode : bytecodeList) {
+				toRunner.writeUTF(bytecode.getClassName());
+				writeBytes(bytecode.getCode());
+			}
+			toRunner.writeUTF(extLib != null ? extLib.getAbsolutePath() : "");
+			toRunner.writeUTF(dir.getCanonicalPath());
+			writeBytes(stdin != null ? stdin.getBytes(UTF8) : new byte[0]);
+			toRunner.writeLong(wallLimitMs);
+			toRunner.writeLong(cpuLimitMs);
+			toRunner.writeInt(maxOutputBytes);
+			toRunner.flush();
+			
+			// Read the response
+			int magic = fromRunner.readInt();
+			if (magic != JavaProgramRunnerMain.RESPONSE) {
+				throw new IOException("Unexpected response from runner JVM: " + Integer.toHexString(magic));
+			}
+			int status = fromRunner.readInt();
+			int exitCode = fromRunner.readInt();
+			byte[] stdout = readBytes();
+			byte[] stderr = readBytes();
+			reusable = fromRunner.readBoolean();
+			
+			if (status == JavaProgramRunnerMain.STATUS_TIMED_OUT) {
+				reusable = false;
+				return new CommandResult(ProcessStatus.TIMED_OUT, "");
+			}
+			return new CommandResult(
+					ProcessStatus.EXITED,
+					"Process exited",
+					exitCode,
+					toLines(stdout),
+					toLines(stderr));
+		} catch (IOException e) {
+			reusable = false;
+			if (killed) {
+				return new CommandResult(ProcessStatus.TIMED_OUT, "");
+			}
+			throw e;
+		} finally {
+			killer.cancel();
+		}
+	}
+	
+	private void writeBytes(byte[] buf) throws IOException {
+		toRunner.writeInt(buf.length);
+		toRunner.write(buf);
+	}
+	
+	private byte[] readBytes() throws IOException {
+		byte[] buf = new byte[fromRunner.readInt()];
+		fromRunner.readFully(buf);
+		return buf;
+	}
+
+	// Split output into lines exactly the way ProcessRunner does
+	private static List<String> toLines(byte[] output) throws IOException {
+		IOutputCollector collector = new OutputCollector(new ByteArrayInputStream(output));
+		collector.start(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				// The output is already in memory, so just collect it here
+				command.run();
+			}
+		});
+		try {
+			collector.join();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while collecting output");
+		}
+		return collector.getCollectedOutput();
+	}
+
+	/**
+	 * @return the number of programs this runner has run
+	 */
+	public int getNumRuns() {
+		return numRuns;
+	}
+	
+	/**
+	 * @return true if the runner can be used to run another program,
+	 *         false if it should be discarded
+	 */
+	public boolean isReusable() {
+		return reusable;
+	}
+	
+	/**
+	 * Kill the runner JVM.
+	 */
+	public void destroy() {
+		reusable = false;
+		process.destroy();
+		IOUtils.closeQuietly(toRunner);
+		IOUtils.closeQuietly(fromRunner);
+	}
+}
@@ -0,0 +1,681 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javaprogram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.security.Permission;
+import java.security.PermissionCollection;
+import java.security.Permissions;
+import java.security.Policy;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PropertyPermission;
+
+/**
+ * Main class of a "runner" JVM, which runs Java programs on behalf of
+ * a {@link JavaProgramRunner}.  Requests (the program's bytecode and
+ * stdin) are read from the runner's stdin, and the results (the exit code and
+ * the program's stdout and stderr) are written to the runner's stdout.
+ * Each program is loaded by a fresh class loader and runs in its own
+ * thread group, with a security manager that prevents it from
+ * interfering with the runner or with the programs that run after it.
+ *
+ * <p>When started with the {@link #RUN_OPTION} option, the runner instead
+ * runs a single program, using its own stdin, stdout, stderr, and exit code.
+ * This is used when a test case can't be run by a pooled runner, so that
+ * the program runs in exactly the same environment either way.  In both
+ * cases the <code>user.dir</code> property is set to the directory containing
+ * the program's class files.  (The runner's actual working directory
+ * can't be changed, and recent JDKs resolve relative file names against
+ * the initial working directory, so a single-program runner is started in
+ * the same working directory as the pooled runners.)
+ *
+ * <p>This class (and its nested classes) must only depend on the JDK,
+ * since the runner JVM's classpath contains nothing else:
+ * see {@link #RUNNER_CLASSES}.
+ *
+ * @author David Hovemeyer
+ */
+public class JavaProgramRunnerMain {
+	/** Written by the runner once it is ready to accept requests. */
+	public static final int READY = 0x43435252;
+
+	/** Precedes each request. */
+	public static final int REQUEST = 0x43435251;
+
+	/** Precedes each response. */
+	public static final int RESPONSE = 0x43435253;
+
+	/** Response status: the program exited (normally or by calling System.exit). */
+	public static final int STATUS_EXITED = 0;
+
+	/** Response status: the program exceeded its wall clock or CPU time limit. */
+	public static final int STATUS_TIMED_OUT = 1;
+
+	/**
+	 * Option to run a single program: followed by the maximum number of
+	 * bytes of stdout and stderr to keep, the directory containing the
+	 * program's class files, the name of the main class, and (optionally)
+	 * the path of the external library jar file.
+	 */
+	public static final String RUN_OPTION = "-run";
+
+	/**
+	 * Line written to stderr by a single-program runner just before
+	 * the program's stderr output.
+	 */
+	public static final String PROGRAM_OUTPUT_MARKER = "<<CloudCoder program output>>";
+
+	/**
+	 * All of the classes needed to run the runner JVM: these are copied
+	 * into the runner's classpath by the {@link JavaProgramRunnerPool}.
+	 */
+	public static final Class<?>[] RUNNER_CLASSES = {
+		JavaProgramRunnerMain.class,
+		SandboxThreadGroup.class,
+		SandboxClassLoader.class,
+		SandboxPolicy.class,
+		SandboxSecurityManager.class,
+		CappedOutputStream.class,
+		ProgramThread.class,
+		ProgramResult.class,
+	};
+
+	// How often the runner checks whether the program has finished
+	// or exceeded its time limits
+	private static final long POLL_INTERVAL_MS = 10L;
+
+	// How long to wait for the program's threads to stop after System.exit
+	private static final long EXIT_GRACE_MS = 100L;
+
+	/**
+	 * Thread group for the threads of the program being run.
+	 * Also records whether the program called System.exit.
+	 */
+	static class SandboxThreadGroup extends ThreadGroup {
+		private final Object monitor;
+		private boolean exitRequested;
+		private int exitStatus;
+
+		SandboxThreadGroup(Object monitor) {
+			super("main");
+			this.monitor = monitor;
+		}
+
+		void requestExit(int status) {
+			synchronized (monitor) {
+				if (!exitRequested) {
+					exitRequested = true;
+					exitStatus = status;
+				}
+				monitor.notifyAll();
+			}
+		}
+
+		boolean isExitRequested() {
+			synchronized (monitor) {
+				return exitRequested;
+			}
+		}
+
+		int getExitStatus() {
+			synchronized (monitor) {
+				return exitStatus;
+			}
+		}
+	}
+
+	/**
+	 * Class loader for the classes of the program being run (and its
+	 * external library, if any.)
+	 */
+	static class SandboxClassLoader extends URLClassLoader {
+		private final Map<String, byte[]> classes;
+		private final ProtectionDomain domain;
+
+		SandboxClassLoader(Map<String, byte[]> classes, URL[] extLibUrls) {
+			// The parent is the system class loader's parent, so the program
+			// can see the JDK's classes, but not the runner's own classes
+			super(extLibUrls, ClassLoader.getSystemClassLoader().getParent());
+			this.classes = classes;
+			this.domain = new ProtectionDomain(
+					new CodeSource(null, (Certificate[]) null), new Permissions(), this, null);
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] code = classes.remove(name);
+			if (code != null) {
+				return defineClass(name, code, 0, code.length, domain);
+			}
+			return super.findClass(name);
+		}
+	}
+
+	/**
+	 * Grants all permissions except to classes loaded by a {@link SandboxClassLoader},
+	 * which may only read system properties and use reflection on
+	 * their own (and JDK) classes' members.  Because permissions are checked
+	 * against the entire call stack, this also allows JDK code called
+	 * by the program to do whatever it needs to in privileged blocks.
+	 */
+	static class SandboxPolicy extends Policy {
+		private final PermissionCollection sandboxPermissions;
+
+		SandboxPolicy() {
+			Permissions perms = new Permissions();
+			perms.add(new PropertyPermission("*", "read"));
+			perms.add(new RuntimePermission("accessDeclaredMembers"));
+			perms.setReadOnly();
+			this.sandboxPermissions = perms;
+		}
+
+		@Override
+		public boolean implies(ProtectionDomain domain, Permission permission) {
+			if (domain != null && domain.getClassLoader() instanceof SandboxClassLoader) {
+				return sandboxPermissions.implies(permission);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Security manager: in addition to the permission checks done using
+	 * {@link SandboxPolicy}, traps calls to System.exit and prevents the
+	 * program's threads from accessing threads that aren't part of the program.
+	 */
+	static class SandboxSecurityManager extends SecurityManager {
+		@Override
+		public void checkExit(int status) {
+			SandboxThreadGroup sandbox = CURRENT_SANDBOX.get();
+			if (sandbox != null) {
+				sandbox.requestExit(status);
+				throw new SecurityException("System.exit(" + status + ")");
+			}
+		}
+
+		@Override
+		public void checkAccess(Thread t) {
+			checkSandboxAccess(t.getThreadGroup());
+			super.checkAccess(t);
+		}
+
+		@Override
+		public void checkAccess(ThreadGroup g) {
+			checkSandboxAccess(g);
+			super.checkAccess(g);
+		}
+
+		private void checkSandboxAccess(ThreadGroup g) {
+			SandboxThreadGroup sandbox = CURRENT_SANDBOX.get();
+			if (sandbox != null && g != null && !sandbox.parentOf(g)) {
+				throw new SecurityException("Cannot access threads outside of the program");
+			}
+		}
+	}
+
+	/**
+	 * The {@link SandboxThreadGroup} of the program that the current thread
+	 * belongs to (null for the runner's own threads.)  This is inherited
+	 * by any threads that the program creates.
+	 */
+	private static final InheritableThreadLocal<SandboxThreadGroup> CURRENT_SANDBOX =
+			new InheritableThreadLocal<SandboxThreadGroup>();
+
+	/**
+	 * Output stream that keeps at most a fixed number of bytes:
+	 * output beyond that point is discarded.
+	 */
+	static class CappedOutputStream extends OutputStream {
+		private final ByteArrayOutputStream buf;
+		private final int maxBytes;
+
+		CappedOutputStream(int maxBytes) {
+			this.buf = new ByteArrayOutputStream();
+			this.maxBytes = maxBytes;
+		}
+
+		@Override
+		public synchronized void write(int b) {
+			if (buf.size() < maxBytes) {
+				buf.write(b);
+			}
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			int n = Math.min(len, maxBytes - buf.size());
+			if (n > 0) {
+				buf.write(b, off, n);
+			}
+		}
+
+		synchronized byte[] toByteArray() {
+			return buf.toByteArray();
+		}
+	}
+
+	/**
+	 * Runs the main method of the program, emulating the way the
+	 * java launcher reports errors and uncaught exceptions.
+	 */
+	static class ProgramThread implements Runnable {
+		private final ClassLoader loader;
+		private final String mainClassName;
+		private final SandboxThreadGroup group;
+		private volatile boolean done;
+		private volatile boolean failed;
+		private volatile boolean vmError;
+
+		ProgramThread(ClassLoader loader, String mainClassName, SandboxThreadGroup group) {
+			this.loader = loader;
+			this.mainClassName = mainClassName;
+			this.group = group;
+		}
+
+		@Override
+		public void run() {
+			CURRENT_SANDBOX.set(group);
+			try {
+				runMain();
+			} finally {
+				synchronized (group.monitor) {
+					done = true;
+					group.monitor.notifyAll();
+				}
+			}
+		}
+
+		private void runMain() {
+			Method main;
+			try {
+				Class<?> mainClass = loader.loadClass(mainClassName);
+				main = mainClass.getMethod("main", String[].class);
+				if (!Modifier.isStatic(main.getModifiers()) || main.getReturnType() != Void.TYPE) {
+					main = null;
+				}
+			} catch (ClassNotFoundException e) {
+				fail("Error: Could not find or load main class " + mainClassName);
+				return;
+			} catch (LinkageError e) {
+				fail("Error: Could not find or load main class " + mainClassName);
+				return;
+			} catch (NoSuchMethodException e) {
+				main = null;
+			}
+			if (main == null) {
+				fail("Error: Main method not found in class " + mainClassName + ", please define the main method as:\n" +
+						"   public static void main(String[] args)");
+				return;
+			}
+
+			try {
+				main.invoke(null, (Object) new String[0]);
+			} catch (Throwable e) {
+				if (e instanceof InvocationTargetException) {
+					e = e.getCause();
+				}
+				if (group.isExitRequested()) {
+					// Most likely this is the exception thrown by the
+					// security manager to unwind the stack after System.exit
+					return;
+				}
+				if (e instanceof VirtualMachineError) {
+					vmError = true;
+				}
+				for (Throwable t = e; t != null; t = t.getCause()) {
+					trimStackTrace(t);
+				}
+				failed = true;
+				try {
+					System.err.print("Exception in thread \"main\" ");
+					e.printStackTrace(System.err);
+				} catch (Throwable ignore) {
+					// The exception's toString() or getMessage() could throw
+				}
+			}
+		}
+
+		private void fail(String msg) {
+			failed = true;
+			System.err.println(msg);
+		}
+
+		// Remove the stack frames below the program's main method,
+		// which belong to the runner, not the program
+		private void trimStackTrace(Throwable t) {
+			StackTraceElement[] trace = t.getStackTrace();
+			for (int i = trace.length - 1; i >= 0; i--) {
+				if (trace[i].getClassName().equals(mainClassName) && trace[i].getMethodName().equals("main")) {
+					t.setStackTrace(Arrays.copyOf(trace, i + 1));
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Result of running a program.
+	 */
+	static class ProgramResult {
+		int status;
+		int exitCode;
+		byte[] stdout;
+		byte[] stderr;
+		boolean reusable;
+	}
+
+	/**
+	 * Main method of the runner JVM.
+	 *
+	 * @param args empty to run programs on behalf of a {@link JavaProgramRunner},
+	 *             or {@link #RUN_OPTION} and its arguments to run a single program
+	 * @throws IOException if an error occurs communicating with the builder
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && args[0].equals(RUN_OPTION)) {
+			runSingleProgram(args);
+			return;
+		}
+		
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+
+		// From now on, nothing else may write to the real stdout
+		PrintStream runnerErr = System.err;
+		System.setOut(runnerErr);
+
+		Policy.setPolicy(new SandboxPolicy());
+		System.setSecurityManager(new SandboxSecurityManager());
+
+		out.writeInt(READY);
+		out.flush();
+
+		try {
+			while (true) {
+				int magic;
+				try {
+					magic = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (magic != REQUEST) {
+					runnerErr.println("Unexpected request " + Integer.toHexString(magic));
+					break;
+				}
+				boolean reusable = handleRequest(in, out);
+				System.setIn(new ByteArrayInputStream(new byte[0]));
+				System.setOut(runnerErr);
+				System.setErr(runnerErr);
+				if (!reusable) {
+					break;
+				}
+			}
+		} finally {
+			// Exit explicitly: this stops any threads the program left running
+			System.exit(0);
+		}
+	}
+
+	private static boolean handleRequest(DataInputStream in, DataOutputStream out) throws IOException {
+		// Read the request
+		String mainClassName = in.readUTF();
+		int numClasses = in.readInt();
+		Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		for (int i = 0; i < numClasses; i++) {
+			String className = in.readUTF();
+			classes.put(className, readBytes(in));
+		}
+		String extLibPath = in.readUTF();
+		String workingDir = in.readUTF();
+		byte[] stdin = readBytes(in);
+		long wallLimitMs = in.readLong();
+		long cpuLimitMs = in.readLong();
+		int maxOutputBytes = in.readInt();
+
+		ProgramResult result = runProgram(mainClassName, classes, extLibPath, workingDir,
+				stdin, wallLimitMs, cpuLimitMs, maxOutputBytes);
+
+		// Send the response
+		out.writeInt(RESPONSE);
+		out.writeInt(result.status);
+		out.writeInt(result.exitCode);
+		writeBytes(out, result.stdout);
+		writeBytes(out, result.stderr);
+		out.writeBoolean(result.reusable);
+		out.flush();
+
+		return result.reusable;
+	}
+
+	// Run a single program whose classes are in the directory named by args[2].
+	// The time limit is enforced by whoever started the runner.
+	private static void runSingleProgram(String[] args) throws IOException {
+		if (args.length < 4) {
+			System.err.println("Usage: " + JavaProgramRunnerMain.class.getName() + " " + RUN_OPTION +
+					" <max output bytes> <class file dir> <main class> [<external library>]");
+			System.exit(1);
+		}
+		int maxOutputBytes = Integer.parseInt(args[1]);
+		File dir = new File(args[2]).getCanonicalFile();
+		String mainClassName = args[3];
+		String extLibPath = args.length > 4 ? args[4] : "";
+
+		Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		readClasses(dir, "", classes);
+
+		ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+		InputStream realIn = new FileInputStream(FileDescriptor.in);
+		byte[] buf = new byte[4096];
+		int n;
+		while ((n = realIn.read(buf)) >= 0) {
+			stdin.write(buf, 0, n);
+		}
+
+		PrintStream realOut = new PrintStream(new FileOutputStream(FileDescriptor.out));
+		PrintStream realErr = new PrintStream(new FileOutputStream(FileDescriptor.err));
+
+		Policy.setPolicy(new SandboxPolicy());
+		System.setSecurityManager(new SandboxSecurityManager());
+
+		// Anything the JVM wrote to stderr so far (e.g., recent JDKs' warning
+		// about installing a security manager) isn't part of the program's output
+		realErr.println(PROGRAM_OUTPUT_MARKER);
+		realErr.flush();
+
+		ProgramResult result = runProgram(mainClassName, classes, extLibPath, dir.getPath(),
+				stdin.toByteArray(), Long.MAX_VALUE, 0L, maxOutputBytes);
+		realOut.write(result.stdout);
+		realOut.flush();
+		realErr.write(result.stderr);
+		realErr.flush();
+
+		// Exit explicitly: this stops any daemon threads the program left running
+		System.exit(result.exitCode);
+	}
+
+	// Read the class files in a directory (and its subdirectories)
+	private static void readClasses(File dir, String packagePrefix, Map<String, byte[]> classes) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String name = file.getName();
+			if (file.isDirectory()) {
+				readClasses(file, packagePrefix + name + ".", classes);
+			} else if (name.endsWith(".class")) {
+				String className = packagePrefix + name.substring(0, name.length() - ".class".length());
+				DataInputStream in = new DataInputStream(new FileInputStream(file));
+				try {
+					byte[] code = new byte[(int) file.length()];
+					in.readFully(code);
+					classes.put(className, code);
+				} finally {
+					in.close();
+				}
+			}
+		}
+	}
+
+	private static ProgramResult runProgram(String mainClassName, Map<String, byte[]> classes,
+			String extLibPath, String workingDir, byte[] stdin,
+			long wallLimitMs, long cpuLimitMs, int maxOutputBytes) throws IOException {
+		URL[] extLibUrls = extLibPath.equals("")
+				? new URL[0]
+				: new URL[]{ new File(extLibPath).toURI().toURL() };
+		SandboxClassLoader loader = new SandboxClassLoader(classes, extLibUrls);
+
+		Object monitor = new Object();
+		SandboxThreadGroup group = new SandboxThreadGroup(monitor);
+		ProgramThread program = new ProgramThread(loader, mainClassName, group);
+
+		CappedOutputStream stdout = new CappedOutputStream(maxOutputBytes);
+		CappedOutputStream stderr = new CappedOutputStream(maxOutputBytes);
+		System.setIn(new ByteArrayInputStream(stdin));
+		System.setOut(new PrintStream(stdout, true));
+		System.setErr(new PrintStream(stderr, true));
+
+		// The program sees the directory containing its classes as its
+		// working directory, as it would if it were run by itself
+		String origWorkingDir = System.getProperty("user.dir");
+		System.setProperty("user.dir", workingDir);
+
+		Thread thread = new Thread(group, program, "main");
+		thread.setContextClassLoader(loader);
+
+		ProgramResult result = new ProgramResult();
+		result.status = STATUS_EXITED;
+		try {
+			// Run the program until it exits, or exceeds its time limits
+			ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+			boolean measureCpu = cpuLimitMs > 0 && threadMXBean.isThreadCpuTimeSupported();
+			Map<Long, Long> cpuTimes = new HashMap<Long, Long>();
+			long start = System.currentTimeMillis();
+			thread.start();
+			synchronized (monitor) {
+				while (true) {
+					if (group.isExitRequested()) {
+						result.exitCode = group.getExitStatus() & 0xff;
+						break;
+					}
+					if (program.done && !hasLiveThreads(group, false)) {
+						result.exitCode = program.failed ? 1 : 0;
+						break;
+					}
+					if (System.currentTimeMillis() - start >= wallLimitMs
+							|| (measureCpu && getCpuTimeMs(threadMXBean, group, cpuTimes) >= cpuLimitMs)) {
+						result.status = STATUS_TIMED_OUT;
+						break;
+					}
+					try {
+						monitor.wait(POLL_INTERVAL_MS);
+					} catch (InterruptedException e) {
+						throw new IOException("Interrupted while running program");
+					}
+				}
+			}
+
+			// The runner can only be reused if the program is completely finished
+			// and didn't leave the JVM in a questionable state
+			result.reusable = result.status == STATUS_EXITED && !program.vmError;
+			if (result.reusable && group.isExitRequested()) {
+				try {
+					thread.join(EXIT_GRACE_MS);
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted while running program");
+				}
+			}
+			if (result.reusable && hasLiveThreads(group, true)) {
+				result.reusable = false;
+			}
+		} finally {
+			System.setProperty("user.dir", origWorkingDir);
+		}
+
+		result.stdout = stdout.toByteArray();
+		result.stderr = stderr.toByteArray();
+		return result;
+	}
+
+	private static boolean hasLiveThreads(ThreadGroup group, boolean includeDaemons) {
+		Thread[] threads = new Thread[group.activeCount() + 8];
+		int n = group.enumerate(threads, true);
+		for (int i = 0; i < n; i++) {
+			if (threads[i].isAlive() && (includeDaemons || !threads[i].isDaemon())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Total CPU time used by the threads in the group so far.
+	// The CPU time of threads that have finished is remembered in cpuTimes.
+	private static long getCpuTimeMs(ThreadMXBean threadMXBean, ThreadGroup group, Map<Long, Long> cpuTimes) {
+		Thread[] threads = new Thread[group.activeCount() + 8];
+		int n = group.enumerate(threads, true);
+		for (int i = 0; i < n; i++) {
+			long id = threads[i].getId();
+			long cpuTime = threadMXBean.getThreadCpuTime(id);
+			if (cpuTime >= 0) {
+				cpuTimes.put(id, cpuTime);
+			}
+		}
+		long total = 0L;
+		for (Long cpuTime : cpuTimes.values()) {
+			total += cpuTime;
+		}
+		return total / 1000000L;
+	}
+
+	static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] buf = new byte[in.readInt()];
+		in.readFully(buf);
+		return buf;
+	}
+
+	static void writeBytes(DataOutputStream out, byte[] buf) throws IOException {
+		out.writeInt(buf.length);
+		out.write(buf);
+	}
+}
@@ -0,0 +1,416 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javaprogram;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.StringTokenizer;
+import java.util.Timer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.io.IOUtils;
+import org.cloudcoder.builder2.commandrunner.CommandExecutor;
+import org.cloudcoder.builder2.model.Command;
+import org.cloudcoder.builder2.model.CommandExecutionPreferences;
+import org.cloudcoder.builder2.model.CommandInput;
+import org.cloudcoder.builder2.model.CommandResult;
+import org.cloudcoder.builder2.util.DeleteDirectoryRecursively;
+import org.cloudcoder.builder2.util.FileUtil;
+import org.cloudcoder.builder2.util.SingletonHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of pre-started {@link JavaProgramRunner}s used to run
+ * {@link org.cloudcoder.app.shared.model.ProblemType#JAVA_PROGRAM}
+ * test cases without starting a new JVM for each test case.
+ * A runner is discarded (and replaced in the background) after it has
+ * run a configurable number of programs, or as soon as a program
+ * misbehaves (times out, leaves threads running, etc.)
+ * Borrowing a runner never waits for one to be returned: if all of the
+ * runners are busy (e.g., running test cases that will time out), the
+ * caller runs the test case as a separate process instead (see
+ * {@link #runInNewJVM}), so a slow submission
+ * can't hold up other test cases and submissions.
+ * 
+ * <p>Configuration properties:
+ * <ul>
+ * <li><code>cloudcoder.builder2.javaprogram.poolSize</code>: maximum number of
+ *     runner JVMs (0 disables the pool, so that each test case is run
+ *     using a separate <code>java</code> process).  Defaults to the larger
+ *     of the number of builder threads
+ *     (<code>cloudcoder.submitsvc.oop.numThreads</code>) and the number
+ *     of available processors.</li>
+ * <li><code>cloudcoder.builder2.javaprogram.maxRuns</code>: number of programs
+ *     a runner JVM may run before it is replaced</li>
+ * <li><code>cloudcoder.builder2.javaprogram.jvmArgs</code>: options for the
+ *     runner JVMs (e.g., heap size)</li>
+ * <li><code>cloudcoder.builder2.javaprogram.maxOutputBytes</code>: maximum number
+ *     of bytes of stdout and stderr captured for each test case</li>
+ * </ul>
+ * 
+ * @author David Hovemeyer
+ */
+public class JavaProgramRunnerPool {
+	private static final Logger logger = LoggerFactory.getLogger(JavaProgramRunnerPool.class);
+	
+	/** Default number of programs a runner JVM may run before it is replaced. */
+	public static final int DEFAULT_MAX_RUNS = 100;
+	
+	/** Default runner JVM options. */
+	public static final String DEFAULT_JVM_ARGS = "-Xmx256m -XX:+UseSerialGC";
+	
+	/** Default maximum number of bytes of stdout and stderr captured. */
+	public static final int DEFAULT_MAX_OUTPUT_BYTES = 1024*1024;
+
+	private static final SingletonHolder<JavaProgramRunnerPool, Properties> holder = new SingletonHolder<JavaProgramRunnerPool, Properties>() {
+		@Override
+		protected JavaProgramRunnerPool onCreate(Properties arg) {
+			return new JavaProgramRunnerPool(arg);
+		}
+	};
+	
+	/**
+	 * Get the singleton instance, creating it (and starting the runner JVMs)
+	 * if necessary.
+	 * 
+	 * @param config the builder configuration properties
+	 * @return the singleton instance
+	 */
+	public static JavaProgramRunnerPool getInstance(Properties config) {
+		return holder.get(config);
+	}
+	
+	/**
+	 * @return true if the singleton instance has been created
+	 */
+	public static boolean isCreated() {
+		return holder.isCreated();
+	}
+	
+	private final int maxSize;
+	private final int maxRuns;
+	private final int maxOutputBytes;
+	private final File runnerDir;
+	private final List<String> command;
+	
+	private final LinkedList<JavaProgramRunner> idle;
+	private int numRunners; // idle, in use, or being started
+	private boolean destroyed;
+	
+	private final ExecutorService starter;
+	private final Timer watchdog;
+	
+	/**
+	 * Constructor.  The builder uses the singleton instance
+	 * (see {@link #getInstance(Properties)}): this is public so that
+	 * tests can create (and destroy) a separate pool.
+	 * 
+	 * @param config the builder configuration properties
+	 */
+	public JavaProgramRunnerPool(Properties config) {
+		this.maxSize = getInt(config, "cloudcoder.builder2.javaprogram.poolSize", getDefaultPoolSize(config));
+		this.maxRuns = getInt(config, "cloudcoder.builder2.javaprogram.maxRuns", DEFAULT_MAX_RUNS);
+		this.maxOutputBytes = getInt(config, "cloudcoder.builder2.javaprogram.maxOutputBytes", DEFAULT_MAX_OUTPUT_BYTES);
+		this.idle = new LinkedList<JavaProgramRunner>();
+		this.starter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "JavaProgramRunnerPool starter");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.watchdog = new Timer("JavaProgramRunnerPool watchdog", true);
+		
+		if (maxSize <= 0) {
+			logger.info("Java program runner pool is disabled");
+			this.runnerDir = null;
+			this.command = null;
+			return;
+		}
+		
+		// Copy the runner's classes into a directory to use as the
+		// runner JVM's classpath.  (We could be running out of a jarfile.)
+		this.runnerDir = FileUtil.makeTempDir(config);
+		if (runnerDir == null) {
+			throw new IllegalStateException("Could not create directory for Java program runner");
+		}
+		try {
+			for (Class<?> cls : JavaProgramRunnerMain.RUNNER_CLASSES) {
+				externalizeClass(cls);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not write Java program runner classes", e);
+		}
+		
+		this.command = new ArrayList<String>();
+		command.add("java");
+		String jvmArgs = config.getProperty("cloudcoder.builder2.javaprogram.jvmArgs", DEFAULT_JVM_ARGS);
+		StringTokenizer tok = new StringTokenizer(jvmArgs);
+		while (tok.hasMoreTokens()) {
+			command.add(tok.nextToken());
+		}
+		command.add("-classpath");
+		command.add(runnerDir.getAbsolutePath());
+		command.add(JavaProgramRunnerMain.class.getName());
+		
+		logger.info("Starting {} Java program runners: {}", maxSize, command);
+		for (int i = 0; i < maxSize; i++) {
+			replenish();
+		}
+	}
+
+	/**
+	 * The default pool size allows each builder thread to run a test case,
+	 * and all of the processors to be used running the test cases of a
+	 * single submission.
+	 */
+	private static int getDefaultPoolSize(Properties config) {
+		int numThreads = getInt(config, "cloudcoder.submitsvc.oop.numThreads", 2);
+		return Math.max(numThreads, Runtime.getRuntime().availableProcessors());
+	}
+	
+	private static int getInt(Properties config, String propName, int defaultValue) {
+		String value = config.getProperty(propName);
+		if (value == null || value.trim().equals("")) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid integer value for " + propName + ": " + value);
+		}
+	}
+
+	private void externalizeClass(Class<?> cls) throws IOException {
+		String resourceName = cls.getName().replace('.', '/') + ".class";
+		InputStream in = null;
+		OutputStream out = null;
+		try {
+			in = JavaProgramRunnerMain.class.getClassLoader().getResourceAsStream(resourceName);
+			if (in == null) {
+				throw new IOException("Could not find resource " + resourceName);
+			}
+			File file = new File(runnerDir, resourceName);
+			file.getParentFile().mkdirs();
+			out = new FileOutputStream(file);
+			IOUtils.copy(in, out);
+		} finally {
+			IOUtils.closeQuietly(in);
+			IOUtils.closeQuietly(out);
+		}
+	}
+	
+	/**
+	 * @return true if Java programs should be run using the pool,
+	 *         false if the pool is disabled (or has been destroyed)
+	 */
+	public synchronized boolean isEnabled() {
+		return maxSize > 0 && !destroyed;
+	}
+	
+	/**
+	 * Run a program as a separate process, in a new runner JVM
+	 * (see {@link JavaProgramRunnerMain#RUN_OPTION}), for test cases
+	 * that can't be run using a pooled runner.  The program runs with
+	 * the same restrictions, and in the same working directory, as in a
+	 * pooled runner, so the {@link CommandResult} is the same as
+	 * {@link JavaProgramRunner#run} would produce.
+	 * 
+	 * @param dir           the directory containing the program's class files
+	 * @param mainClass     fully-qualified name of the main class
+	 * @param extLib        the external library jar file (null if none)
+	 * @param commandInput  the program's input
+	 * @param prefs         the {@link CommandExecutionPreferences} specifying
+	 *                      resource limits for the process (null if none)
+	 * @param config        the builder configuration properties
+	 * @return the {@link CommandResult}
+	 */
+	public CommandResult runInNewJVM(File dir, String mainClass, File extLib, CommandInput commandInput,
+			CommandExecutionPreferences prefs, Properties config) {
+		CommandExecutor executor = new CommandExecutor(createCommand(dir, mainClass, extLib), commandInput, config);
+		if (prefs != null) {
+			executor.setPrefs(prefs);
+		}
+		executor.run();
+		CommandResult result = executor.getCommandResult();
+		
+		// Remove (and log) whatever the runner JVM wrote to stderr
+		// before the program started
+		List<String> stderr = result.getStderr();
+		int marker = (stderr != null) ? stderr.indexOf(JavaProgramRunnerMain.PROGRAM_OUTPUT_MARKER) : -1;
+		if (marker < 0) {
+			return result;
+		}
+		for (String line : stderr.subList(0, marker)) {
+			logger.info("Runner JVM: {}", line);
+		}
+		return new CommandResult(result.getStatus(), result.getStatusMessage(), result.getExitCode(),
+				result.getStdout(), new ArrayList<String>(stderr.subList(marker + 1, stderr.size())));
+	}
+	
+	private Command createCommand(File dir, String mainClass, File extLib) {
+		List<String> args = new ArrayList<String>(command);
+		args.add(JavaProgramRunnerMain.RUN_OPTION);
+		args.add(String.valueOf(maxOutputBytes));
+		args.add(dir.getAbsolutePath());
+		args.add(mainClass);
+		if (extLib != null) {
+			args.add(extLib.getAbsolutePath());
+		}
+		return new Command(runnerDir, args);
+	}
+	
+	/**
+	 * @return maximum number of bytes of stdout and stderr to capture
+	 */
+	public int getMaxOutputBytes() {
+		return maxOutputBytes;
+	}
+	
+	/**
+	 * @return timer to use to kill runners that don't respond
+	 */
+	public Timer getWatchdog() {
+		return watchdog;
+	}
+	
+	/**
+	 * Get a runner, if one is idle or the pool has room to start one.
+	 * This method does not wait for a busy runner to be returned.
+	 * The runner must be returned by calling {@link #release(JavaProgramRunner)}.
+	 * 
+	 * @return a {@link JavaProgramRunner}, or null if all runners are busy
+	 *         (in which case the program should be run as a separate process)
+	 * @throws IOException if a new runner JVM could not be started
+	 */
+	public JavaProgramRunner borrow() throws IOException {
+		synchronized (this) {
+			if (destroyed) {
+				throw new IOException("Java program runner pool has been destroyed");
+			}
+			if (!idle.isEmpty()) {
+				return idle.removeFirst();
+			}
+			if (numRunners >= maxSize) {
+				return null;
+			}
+			// Reserve a slot for a new runner
+			numRunners++;
+		}
+		
+		try {
+			return JavaProgramRunner.start(command, runnerDir);
+		} catch (IOException e) {
+			releaseSlot();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Return a runner to the pool.  If it has run too many programs,
+	 * or can't be reused, it is killed and replaced.
+	 * 
+	 * @param runner the {@link JavaProgramRunner} to return
+	 */
+	public void release(JavaProgramRunner runner) {
+		if (runner.isReusable() && runner.getNumRuns() < maxRuns) {
+			synchronized (this) {
+				if (!destroyed) {
+					idle.addFirst(runner);
+					return;
+				}
+			}
+		}
+		
+		runner.destroy();
+		releaseSlot();
+		
+		// Start a replacement so that the next program
+		// doesn't have to wait for a JVM to start
+		replenish();
+	}
+	
+	private synchronized void releaseSlot() {
+		numRunners--;
+	}
+	
+	// Start a new runner in the background, if the pool isn't full
+	private void replenish() {
+		synchronized (this) {
+			if (destroyed || numRunners >= maxSize) {
+				return;
+			}
+			numRunners++;
+		}
+		
+		starter.execute(new Runnable() {
+			@Override
+			public void run() {
+				JavaProgramRunner runner;
+				try {
+					runner = JavaProgramRunner.start(command, runnerDir);
+				} catch (IOException e) {
+					logger.warn("Could not start Java program runner", e);
+					releaseSlot();
+					return;
+				}
+				synchronized (JavaProgramRunnerPool.this) {
+					if (!destroyed) {
+						idle.addLast(runner);
+						return;
+					}
+				}
+				runner.destroy();
+				releaseSlot();
+			}
+		});
+	}
+	
+	/**
+	 * Kill all of the idle runners and delete the runner classes.
+	 * Runners that are in use are killed when they are returned.
+	 */
+	public void destroy() {
+		List<JavaProgramRunner> toDestroy;
+		synchronized (this) {
+			destroyed = true;
+			toDestroy = new ArrayList<JavaProgramRunner>(idle);
+			numRunners -= idle.size();
+			idle.clear();
+		}
+		for (JavaProgramRunner runner : toDestroy) {
+			runner.destroy();
+		}
+		starter.shutdown();
+		watchdog.cancel();
+		if (runnerDir != null) {
+			new DeleteDirectoryRecursively(runnerDir).delete();
+		}
+	}
+}
@@ -22,6 +22,8 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,7 +54,10 @@ public abstract class AbstractKillableTaskManager<T>
     /** List of Outcomes; essentially placeholders objects where tasks will put their results */
     private List<Outcome<T>> results;
     private long maxRunTime;
-    private int numPauses = 5;
+    /** Wall-clock time (in milliseconds) taken by the most recent call to {@link #run()} */
+    private long elapsedTime;
+    /** Number of worker threads that had to be stopped by the most recent call to {@link #run()} */
+    private int numKilled;
 
     protected ThreadedPrintStreamMonitor stdOutMonitor;
     protected ThreadedPrintStreamMonitor stdErrMonitor;
@@ -124,58 +129,88 @@ public abstract class AbstractKillableTaskManager<T>
     }
 
     public void run() {
+        long start = System.currentTimeMillis();
+        long deadline = start + maxRunTime;
+        numKilled = 0;
+
         // re-direct stdout/stderr to print stream monitors
         // that will buffer the outputs for each thread
         redirectStandardOutputStreams();
+        try {
+            runTasks(deadline);
+        } finally {
+            // return the original stdout/stderr
+            // how to do this varies between Java, Python/Jython
+            // and Ruby/JRuby
+            unredirectStandardOutputStreams();
+        }
+
+        elapsedTime = System.currentTimeMillis() - start;
+        logger.debug("Ran {} tasks in {} ms", tasks.size(), elapsedTime);
+    }
+
+    private void runTasks(long deadline) {
+        // Each worker thread counts down the latch when its task completes
+        // (normally or abnormally), so we can stop waiting as soon as
+        // the last task is done
+        CountDownLatch done=new CountDownLatch(tasks.size());
 
         Thread[] pool=new Thread[tasks.size()];
         for (int i=0; i<tasks.size(); i++) {
             IsolatedTask<T> task=tasks.get(i);
-            pool[i]=new WorkerThread<T>(task, results.get(i));
+            pool[i]=new WorkerThread<T>(task, results.get(i), done);
             pool[i].setDaemon(true);
             pool[i].start();
         }
 
-        // now pause a couple of times
-        for (int i=1; i<=numPauses; i++) {
-            if (!pauseAndPoll(maxRunTime/numPauses, pool)) {
-                // we can stop pausing
-                break;
-            }
-        }
+        // wait for all tasks to complete, or until the deadline passes
+        awaitCompletion(done, deadline, pool);
 
         // Go through and kill any threads that haven't finished yet
         // Also put the buffered output from stdout/stderr into the map
         for (int i=0; i<pool.length; i++) {
             Thread t=pool[i];
+            Outcome<T> outcome=results.get(i);
             if (t.isAlive()) {
                 //XXX Yes, I know that stop() is deprecated.  
                 //But this is a necessary use of stop!
                 t.stop();
+                numKilled++;
 
                 //TODO Log that a thread is being stopped
 
-                // stop the monitors
-                stdOutMonitor.flush(t);
-                stdOutMonitor.close(t);
-
-                stdErrMonitor.flush(t);
-                stdErrMonitor.close(t);
-
                 // handle a timeout
-                results.get(i).result=timeoutHandler.handleTimeout();
+                outcome.result=timeoutHandler.handleTimeout();
             }
-            stdOutMap.put(i, stdOutMonitor.getBufferedOutput(t));
-            stdErrMap.put(i, stdErrMonitor.getBufferedOutput(t));
+            // Whatever the task printed before finishing (or being
+            // stopped) is in its Outcome's buffers
+            stdOutMap.put(i, outcome.stdout.toString());
+            stdErrMap.put(i, outcome.stderr.toString());
         }
-        // return the original stdout/stderr
-        // how to do this varies between Java, Python/Jython
-        // and Ruby/JRuby
-        unredirectStandardOutputStreams();
+    }
+
+    /**
+     * Get the wall-clock time taken by the most recent call to {@link #run()}.
+     * 
+     * @return the elapsed time in milliseconds
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Get the number of worker threads that had to be stopped
+     * (because their tasks timed out) by the most recent call to {@link #run()}.
+     * 
+     * @return the number of worker threads stopped
+     */
+    public int getNumKilled() {
+        return numKilled;
     }
     
     /**
-     * Redirect standard output and standard error.
+     * Put standard output and standard error back the
+     * way that they were.
      * 
      * How to do this varies between Java, Python/Jython,
      * and Ruby/JRuby.
@@ -183,8 +218,11 @@ public abstract class AbstractKillableTaskManager<T>
      */
     public abstract void unredirectStandardOutputStreams();
     /**
-     * Put standard output and standard error back the
-     * way that they were.
+     * Redirect standard output and standard error by setting
+     * {@link #stdOutMonitor} and {@link #stdErrMonitor} and
+     * making them the destination of the tasks' output.
+     * Each worker thread captures its task's output in its
+     * {@link Outcome} via the monitors.
      * 
      * How to do this varies between Java, Python/Jython,
      * and Ruby/JRuby.
@@ -192,28 +230,38 @@ public abstract class AbstractKillableTaskManager<T>
     public abstract void redirectStandardOutputStreams();
 
     /**
-     * Pause for a certain amount of time.  Return true if any
-     * of the threads in the given threadpool are still alive,
-     * and false if they are all finished.
-     * @param time
-     * @param pool
-     * @return
+     * Wait until all of the worker threads have completed their tasks,
+     * or until the deadline passes, whichever comes first.
+     * 
+     * @param done      latch counted down by each worker thread when its task completes
+     * @param deadline  the deadline (as returned by {@link System#currentTimeMillis()})
+     * @param pool      the worker threads
      */
-    private boolean pauseAndPoll(long time, Thread[] pool) {
+    private void awaitCompletion(CountDownLatch done, long deadline, Thread[] pool) {
         try {
-            Thread.sleep(time);
+            long remaining;
+            while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+                if (done.await(remaining, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            }
+
+            // Every task that has completed has counted down the latch,
+            // but its thread may not quite have exited yet.  Wait for
+            // those threads (bounded by the deadline), so that a completed
+            // task is never mistaken for a timeout.
             for (Thread t : pool) {
-                if (t.isAlive()) {
-                    return true;
+                remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
                 }
+                t.join(remaining);
             }
         } catch (InterruptedException e) {
-            // should never happen; to be safe, assume a thread may
-            // still be running.
-            return true;
+            // should never happen; any threads still running
+            // will be treated as having timed out
+            logger.warn("Interrupted while waiting for tasks to complete", e);
         }
-        // no threads are alive, so we can stop waiting
-        return false;
     }
 
     /**
@@ -244,8 +292,9 @@ public abstract class AbstractKillableTaskManager<T>
     }
 
     /**
-     * Simple container for a result of type T and whether the task
-     * producing T finished normally.
+     * Simple container for a result of type T, whether the task
+     * producing T finished normally, and the task's buffered
+     * stdout/stderr output.
      * 
      * @author jspacco
      *
@@ -255,6 +304,8 @@ public abstract class AbstractKillableTaskManager<T>
         //Outcome() {}
         boolean finished;
         T result;
+        final BoundedOutputBuffer stdout=new BoundedOutputBuffer();
+        final BoundedOutputBuffer stderr=new BoundedOutputBuffer();
     }
     /**
      * Worker thread takes a given Task, calls its execute() method
@@ -273,6 +324,7 @@ public abstract class AbstractKillableTaskManager<T>
     {
         private IsolatedTask<E> task;
         private Outcome<E> out;
+        private CountDownLatch done;
 
         /**
          * Create a thread that executes the given task and puts
@@ -280,12 +332,14 @@ public abstract class AbstractKillableTaskManager<T>
          * 
          * @param task The task to execute
          * @param out The container in which to put the result of the task
+         * @param done Latch to count down when the task completes
          */
-        public WorkerThread(IsolatedTask<E> task, Outcome<E> out)
+        public WorkerThread(IsolatedTask<E> task, Outcome<E> out, CountDownLatch done)
         {
             super(WORKER_THREAD_GROUP, threadNamePrefix+(numThreads++));
             this.task=task;
             this.out=out;
+            this.done=done;
         }
 
         /**
@@ -299,6 +353,8 @@ public abstract class AbstractKillableTaskManager<T>
          */
         public void run() {
             E o;
+            stdOutMonitor.startCapture(out.stdout);
+            stdErrMonitor.startCapture(out.stderr);
             try {
                 o=task.execute();
                 out.result=o;
@@ -312,6 +368,9 @@ public abstract class AbstractKillableTaskManager<T>
             } finally {
                 //System.err.println(System.getSecurityManager());
                 //System.out.println(System.getSecurityManager());
+                stdOutMonitor.stopCapture();
+                stdErrMonitor.stopCapture();
+                done.countDown();
             }
         }
     }
@@ -0,0 +1,103 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javasandbox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Buffer for the output (stdout or stderr) of a single isolated task.
+ * Only the first {@link #getMaxBytes()} bytes written are kept:
+ * anything beyond that is discarded, and {@link #toString()} notes
+ * that the output was truncated.
+ *
+ * <p>Writes are synchronized on the buffer itself, so threads started by
+ * the task may share it, but tasks never contend with each other.
+ *
+ * @author David Hovemeyer
+ */
+public class BoundedOutputBuffer extends OutputStream {
+	/** Default maximum number of bytes kept by a buffer. */
+	public static final int DEFAULT_MAX_BYTES = 65536;
+
+	/** Appended to the output when some of it was discarded. */
+	public static final String TRUNCATED_MESSAGE = "\n[Output truncated]\n";
+
+	private final int maxBytes;
+	private final ByteArrayOutputStream buf;
+	private boolean truncated;
+
+	/**
+	 * Constructor: keeps up to {@link #DEFAULT_MAX_BYTES} bytes.
+	 */
+	public BoundedOutputBuffer() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxBytes maximum number of bytes to keep
+	 */
+	public BoundedOutputBuffer(int maxBytes) {
+		this.maxBytes = maxBytes;
+		this.buf = new ByteArrayOutputStream(Math.min(maxBytes, 256));
+	}
+
+	/**
+	 * @return the maximum number of bytes kept
+	 */
+	public int getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public synchronized void write(int b) {
+		if (buf.size() < maxBytes) {
+			buf.write(b);
+		} else {
+			truncated = true;
+		}
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		int avail = maxBytes - buf.size();
+		if (len > avail) {
+			truncated = true;
+			len = Math.max(avail, 0);
+		}
+		buf.write(b, off, len);
+	}
+
+	/**
+	 * @return true if some output was discarded because the buffer was full
+	 */
+	public synchronized boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * @return the buffered output, decoded using the platform's default charset
+	 */
+	@Override
+	public synchronized String toString() {
+		String s = buf.toString();
+		return truncated ? s + TRUNCATED_MESSAGE : s;
+	}
+}
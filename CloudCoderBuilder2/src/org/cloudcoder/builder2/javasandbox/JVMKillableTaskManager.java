@@ -42,8 +42,15 @@ import java.util.List;
  */
 public class JVMKillableTaskManager<T> extends AbstractKillableTaskManager<T>
 {
-    private final PrintStream originalStdOut=System.out;
-    private final PrintStream originalStdErr=System.err;
+    // System.out and System.err are global, so all instances share one pair
+    // of monitors (each worker thread captures its own output through them).
+    // They are installed while at least one instance is running tasks.
+    private static final Object redirectLock=new Object();
+    private static int numRedirected;
+    private static PrintStream originalStdOut;
+    private static PrintStream originalStdErr;
+    private static ThreadedPrintStreamMonitor sharedStdOutMonitor;
+    private static ThreadedPrintStreamMonitor sharedStdErrMonitor;
     
     public JVMKillableTaskManager(List<IsolatedTask<T>> tasks, 
         long maxRunTime, 
@@ -53,15 +60,31 @@ public class JVMKillableTaskManager<T> extends AbstractKillableTaskManager<T>
     }
     
     public void redirectStandardOutputStreams() {
-        stdOutMonitor=new ThreadedPrintStreamMonitor(System.out);
-        stdErrMonitor=new ThreadedPrintStreamMonitor();
-        System.setOut(stdOutMonitor);
-        System.setErr(stdErrMonitor);
+        synchronized (redirectLock) {
+            if (numRedirected==0) {
+                originalStdOut=System.out;
+                originalStdErr=System.err;
+                sharedStdOutMonitor=new ThreadedPrintStreamMonitor(originalStdOut);
+                sharedStdErrMonitor=new ThreadedPrintStreamMonitor(originalStdErr);
+                System.setOut(sharedStdOutMonitor);
+                System.setErr(sharedStdErrMonitor);
+            }
+            numRedirected++;
+            stdOutMonitor=sharedStdOutMonitor;
+            stdErrMonitor=sharedStdErrMonitor;
+        }
     }
     
     @Override
     public void unredirectStandardOutputStreams() {
-        System.setOut(originalStdOut);
-        System.setErr(originalStdErr);
+        synchronized (redirectLock) {
+            numRedirected--;
+            if (numRedirected==0) {
+                System.setOut(originalStdOut);
+                System.setErr(originalStdErr);
+                sharedStdOutMonitor=null;
+                sharedStdErrMonitor=null;
+            }
+        }
     }
 }
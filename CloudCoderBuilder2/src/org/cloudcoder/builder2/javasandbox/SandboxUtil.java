@@ -42,7 +42,11 @@ import java.util.Map;
 import org.cloudcoder.app.shared.model.CompilationOutcome;
 import org.cloudcoder.app.shared.model.CompilationResult;
 import org.cloudcoder.app.shared.model.CompilerDiagnostic;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.SubmissionResultAnnotation;
 import org.cloudcoder.app.shared.model.TestResult;
+import org.cloudcoder.builder2.model.BuilderSubmission;
+import org.cloudcoder.builder2.model.ISubmissionResultHook;
 import org.cloudcoder.builder2.model.ProgramSource;
 
 /**
@@ -52,6 +56,12 @@ import org.cloudcoder.builder2.model.ProgramSource;
  * @author David Hovemeyer
  */
 public abstract class SandboxUtil {
+	/**
+	 * Key of the {@link SubmissionResultAnnotation} recording the wall-clock
+	 * time (in milliseconds) taken to execute a submission's test cases.
+	 */
+	public static final String TEST_EXECUTION_TIME_ANNOTATION = "TestExecutionTimeMs";
+	
 	/**
 	 * Annotate all {@link TestResult}s produced by given {@link JVMKillableTaskManager}
 	 * with stdout/stderr text.
@@ -108,4 +118,24 @@ public abstract class SandboxUtil {
 		compilationResult.adjustDiagnosticLineNumbers(programSource.getPrologueLength(), programSource.getEpilogueLength());
 		return compilationResult;
 	}
+
+	/**
+	 * Record the wall-clock time taken by given {@link AbstractKillableTaskManager}
+	 * to execute the test cases as a {@link SubmissionResultAnnotation}
+	 * (with the key {@link #TEST_EXECUTION_TIME_ANNOTATION}).
+	 * The annotation is added by a submission result hook, so it works
+	 * regardless of which build step creates the {@link SubmissionResult}.
+	 * 
+	 * @param submission the {@link BuilderSubmission}
+	 * @param pool       the {@link AbstractKillableTaskManager} that executed the test cases
+	 */
+	public static void addTestExecutionTimeAnnotation(BuilderSubmission submission, AbstractKillableTaskManager<?> pool) {
+		final String elapsedTime = String.valueOf(pool.getElapsedTime());
+		submission.addSubmissionResultHook(new ISubmissionResultHook() {
+			@Override
+			public void invoke(SubmissionResult result) {
+				result.addAnnotation(new SubmissionResultAnnotation(TEST_EXECUTION_TIME_ANNOTATION, elapsedTime));
+			}
+		});
+	}
 }
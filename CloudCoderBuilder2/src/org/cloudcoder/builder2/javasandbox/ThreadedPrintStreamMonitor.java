@@ -17,12 +17,10 @@
 
 package org.cloudcoder.builder2.javasandbox;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 
 /**
  * PrintStream that captures and buffers all output for however many
@@ -30,16 +28,34 @@ import java.util.Map;
  * 
  * Common case is to pass an instance of this stream to System.setOut
  * right before starting a bunch of threads that print to System.out.
+ * Each thread whose output should be captured calls
+ * {@link #startCapture(OutputStream)} with its own buffer (threads it
+ * starts inherit the buffer).  Output from threads that aren't
+ * capturing goes to the stream passed to the constructor.
+ * 
+ * Routing a write is a single thread-local lookup, and there is no
+ * state shared between threads, so any number of tasks (from any number
+ * of task managers) can print through the same monitor concurrently.
  * 
  * @author jspacco
  *
  */
 public class ThreadedPrintStreamMonitor extends PrintStream
 {
-    /** Maps stdout and stderr for each thread */
-    private Map<String, PrintStream> printStreamMap=new HashMap<String, PrintStream>();
-    private Map<String, ByteArrayOutputStream> baosMap=
-        new HashMap<String, ByteArrayOutputStream>();
+    /** Stream discarding everything written to it. */
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    /** Capture stream for the current thread (null if its output isn't being captured) */
+    private final ThreadLocal<PrintStream> capture=new InheritableThreadLocal<PrintStream>();
+    /** Destination of output from threads that aren't capturing */
+    private final PrintStream fallback;
 
     public ThreadedPrintStreamMonitor(PrintStream stream) {
         // XXX Is this a reasonable constructor?
@@ -51,40 +67,41 @@ public class ThreadedPrintStreamMonitor extends PrintStream
         // get random method calls on whatever stream (probably stdout and stderr)
         // the constructor is called on.
         super(stream);
+        this.fallback=stream;
     }
     
+    /**
+     * Constructor for a monitor that discards output from
+     * threads that aren't capturing.
+     */
     public ThreadedPrintStreamMonitor() {
-        super(new ByteArrayOutputStream());
+        this(new PrintStream(DISCARD));
     }
     
-    private PrintStream getPrintStream() {
-        return getPrintStream(Thread.currentThread());
+    /**
+     * Start capturing the output printed by the current thread
+     * (and by any threads it starts from now on).
+     * 
+     * @param buffer the buffer in which to capture the output
+     */
+    public void startCapture(OutputStream buffer) {
+        capture.set(new PrintStream(buffer));
     }
     
-    private PrintStream getPrintStream(Thread t) {
-        String name=t.getName();
-        if (!baosMap.containsKey(name)) {
-            baosMap.put(name, new ByteArrayOutputStream());
-        }
-        if (!printStreamMap.containsKey(name)) {
-            printStreamMap.put(name, new PrintStream(baosMap.get(name)));
+    /**
+     * Stop capturing the output printed by the current thread.
+     */
+    public void stopCapture() {
+        PrintStream ps=capture.get();
+        if (ps!=null) {
+            ps.flush();
+            capture.remove();
         }
-        return printStreamMap.get(name);
     }
     
-    /**
-     * Given a thread, look up the backing ByteArrayOutputStream
-     * that was used to buffer that thread's output, and return
-     * it as a String.
-     * 
-     * @param t Thread
-     * @return String containing that thread's buffered printing output.
-     */
-    public String getBufferedOutput(Thread t) {
-        PrintStream ps=getPrintStream(t);
-        ps.flush();
-        ps.close();
-        return baosMap.get(t.getName()).toString();
+    private PrintStream getPrintStream() {
+        PrintStream ps=capture.get();
+        return ps!=null ? ps : fallback;
     }
     
     /* (non-Javadoc)
@@ -284,28 +301,17 @@ public class ThreadedPrintStreamMonitor extends PrintStream
     public void flush() {
         getPrintStream().flush();
     }
-    public void flush(Thread t) {
-        getPrintStream(t).flush();
-    }
-    public void flushAll() {
-        for (PrintStream ps : printStreamMap.values()) {
-            ps.flush();
-        }
-    }
-    public void closeAll() {
-        for (PrintStream ps : printStreamMap.values()) {
-            ps.close();
-        }
-    }
     /* (non-Javadoc)
      * @see java.io.PrintStream#close()
      */
     @Override
     public void close() {
-        getPrintStream().close();
-    }
-    public void close(Thread t) {
-        getPrintStream(t).close();
+        // Only a capture stream may be closed: the fallback stream
+        // is shared by every thread that isn't capturing
+        PrintStream ps=capture.get();
+        if (ps!=null) {
+            ps.close();
+        }
     }
     /* (non-Javadoc)
      * @see java.io.PrintStream#format(java.lang.String, java.lang.Object[])
@@ -0,0 +1,88 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.process;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * A blocking I/O task for a process (e.g., reading its stdout) that
+ * runs on a thread borrowed from an {@link Executor}, but which can be
+ * joined and interrupted as though it had its own thread.
+ * 
+ * @author David Hovemeyer
+ */
+class AsyncIOTask implements Runnable {
+	private final Runnable body;
+	private final CountDownLatch done;
+	private volatile Thread thread;
+	private volatile boolean interrupted;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param body the I/O to perform
+	 */
+	public AsyncIOTask(Runnable body) {
+		this.body = body;
+		this.done = new CountDownLatch(1);
+	}
+	
+	/**
+	 * Start the task.
+	 * 
+	 * @param executor the {@link Executor} to run the task
+	 */
+	public void start(Executor executor) {
+		executor.execute(this);
+	}
+	
+	@Override
+	public void run() {
+		thread = Thread.currentThread();
+		try {
+			if (!interrupted) {
+				body.run();
+			}
+		} finally {
+			thread = null;
+			done.countDown();
+		}
+	}
+	
+	/**
+	 * Wait for the task to finish.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void join() throws InterruptedException {
+		done.await();
+	}
+	
+	/**
+	 * Interrupt the thread running the task (if it is running),
+	 * or prevent it from running (if it hasn't started yet).
+	 */
+	public void interrupt() {
+		interrupted = true;
+		Thread t = thread;
+		if (t != null) {
+			t.interrupt();
+		}
+	}
+}
@@ -18,6 +18,7 @@
 package org.cloudcoder.builder2.process;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Interface implemented by objects that collect text output
@@ -28,8 +29,10 @@ import java.util.List;
 public interface IOutputCollector {
 	/**
 	 * Start collecting output (asynchronously).
+	 * 
+	 * @param executor the {@link Executor} providing the thread that collects the output
 	 */
-	public abstract void start();
+	public abstract void start(Executor executor);
 
 	/**
 	 * Interrupt the thread that is collecting output.
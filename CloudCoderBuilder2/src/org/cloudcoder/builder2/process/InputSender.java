@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.io.IOUtils;
 
@@ -32,7 +33,7 @@ import org.apache.commons.io.IOUtils;
 public class InputSender {
 	private OutputStream outputStream;
 	private String stdin;
-	private Thread writerThread;
+	private AsyncIOTask writerTask;
 	private OutputStreamWriter writer;
 
 	/**
@@ -47,13 +48,15 @@ public class InputSender {
 	}
 
 	/**
-	 * Start a thread to send text to the stdin of the process.
+	 * Start sending text to the stdin of the process.
+	 * 
+	 * @param executor the {@link Executor} providing the thread that sends the text
 	 */
-	public void start() {
+	public void start(Executor executor) {
 		Charset utf8 = Charset.forName("UTF-8");
 		this.writer = new OutputStreamWriter(outputStream, utf8);
 		
-		this.writerThread = new Thread(new Runnable() {
+		this.writerTask = new AsyncIOTask(new Runnable() {
 			/* (non-Javadoc)
 			 * @see java.lang.Runnable#run()
 			 */
@@ -73,16 +76,16 @@ public class InputSender {
 			}
 		});
 		
-		this.writerThread.start();
+		this.writerTask.start(executor);
 	}
 
 	/**
-	 * Wait for the InputSender's thread to complete.
+	 * Wait for the InputSender to finish sending.
 	 * 
 	 * @throws InterruptedException 
 	 */
 	public void join() throws InterruptedException {
-		writerThread.join();
+		writerTask.join();
 	}
 
 	/**
@@ -95,6 +98,6 @@ public class InputSender {
 		
 		// And, just in case the thread is blocked on some interruptable
 		// action (sleep, wait, etc.), interrupt it.
-		writerThread.interrupt();
+		writerTask.interrupt();
 	}
 }
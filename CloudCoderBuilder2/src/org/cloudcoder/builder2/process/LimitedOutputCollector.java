@@ -19,11 +19,11 @@ package org.cloudcoder.builder2.process;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.io.IOUtils;
 
@@ -33,6 +33,18 @@ import org.apache.commons.io.IOUtils;
  * tested processes from generating huge amounts of output and
  * crashing the Builder, swamping the database, etc.
  * 
+ * <p>Output is read in blocks and scanned for line breaks at the
+ * byte level: only the lines that are retained are decoded into
+ * strings.  Once the maximum number of bytes has been read, the
+ * collector stops reading and closes the stream (see {@link #isTruncated()}).
+ * Once the maximum number of lines has been collected, the remaining
+ * output (up to the maximum number of bytes) is read and discarded
+ * without being examined.
+ * 
+ * <p>Note that up to <code>maxLinesAllowed+1</code> lines of up to
+ * <code>maxCharactersPerLine+1</code> characters each are retained,
+ * which is what earlier versions of this class did.
+ * 
  * @author David Hovemeyer
  */
 public class LimitedOutputCollector implements IOutputCollector {
@@ -45,14 +57,21 @@ public class LimitedOutputCollector implements IOutputCollector {
 	/** Default maximum number of characters per line. */
 	public static final int DEFAULT_MAX_CHARACTERS_PER_LINE = 80;
 	
+	/** Size of the buffer used to read output. */
+	private static final int BUFFER_SIZE = 4096;
+	
 	private int maxBytesAllowed;
 	private int maxLinesAllowed;
 	private int maxCharactersPerLine;
 	
 	private InputStream in;
-	private Reader reader;
-	private Thread thread;
+	private AsyncIOTask task;
 	private List<String> collectedLines;
+	private volatile boolean truncated;
+	
+	// Bytes of the current (partial) line
+	private byte[] lineBuf;
+	private int lineLen;
 	
 	/**
 	 * Constructor.
@@ -96,55 +115,112 @@ public class LimitedOutputCollector implements IOutputCollector {
 	 * @see org.cloudcoder.submitsvc.oop.builder.IOutputCollector#start()
 	 */
 	@Override
-	public void start() {
+	public void start(Executor executor) {
 		Runnable runnable = new Runnable() {
 			/* (non-Javadoc)
 			 * @see java.lang.Runnable#run()
 			 */
 			@Override
 			public void run() {
-				reader = new InputStreamReader(new LimitedInputStream(in, maxBytesAllowed));
-				
-				try {
-					int c;
-					StringBuilder line = new StringBuilder();
-					while (true) {
-						c = reader.read();
-						if (c < 0) {
-							// End of input.
-							// See if we have a partial line.
-							if (line.length() > 0 && collectedLines.size() < maxLinesAllowed) {
-								collectedLines.add(line.toString());
-							}
-							break;
-						}
-
-						// If we've exceeded max number of lines, ignore this character.
-						if (collectedLines.size() > maxLinesAllowed) {
-							continue;
-						}
-
-						// Reached end of line?
-						if (c == '\n') {
-							collectedLines.add(line.toString());
-							line = new StringBuilder();
-						} else {
-							// Only append the character if we haven't exceeded the max
-							// number of characters per line.
-							if (line.length() <= maxCharactersPerLine) {
-								line.append((char) c);
-							}
-						}
+				collect();
+			}
+		};
+		task = new AsyncIOTask(runnable);
+		task.start(executor);
+	}
+	
+	/**
+	 * Read and collect output until end of input, or until the
+	 * maximum number of bytes has been read.
+	 */
+	private void collect() {
+		byte[] buf = new byte[Math.min(BUFFER_SIZE, maxBytesAllowed + 1)];
+		lineBuf = new byte[Math.min(maxCharactersPerLine + 1, maxBytesAllowed) + 1];
+		int totalBytes = 0;
+		
+		try {
+			while (true) {
+				int n = in.read(buf, 0, buf.length);
+				if (n < 0) {
+					// End of input.
+					// See if we have a partial line.
+					if (lineLen > 0 && collectedLines.size() < maxLinesAllowed) {
+						addLine();
 					}
-				} catch (IOException e) {
-					// Ignore
-				} finally {
-					IOUtils.closeQuietly(reader);
+					break;
+				}
+				
+				// Only the bytes up to the limit count
+				boolean exceeded = totalBytes + n > maxBytesAllowed;
+				if (exceeded) {
+					n = maxBytesAllowed - totalBytes;
+				}
+				totalBytes += n;
+				
+				// Once there are too many lines, the output isn't examined
+				if (collectedLines.size() <= maxLinesAllowed) {
+					scan(buf, n);
+				}
+				
+				if (exceeded) {
+					// Stop reading: any partial line is discarded
+					truncated = true;
+					break;
 				}
 			}
-		};
-		thread = new Thread(runnable);
-		thread.start();
+		} catch (IOException e) {
+			// Ignore
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+	
+	/**
+	 * Scan a block of output for complete lines.
+	 */
+	private void scan(byte[] buf, int len) {
+		int start = 0;
+		for (int i = 0; i < len; i++) {
+			if (buf[i] == '\n') {
+				appendToLine(buf, start, i - start);
+				addLine();
+				start = i + 1;
+				if (collectedLines.size() > maxLinesAllowed) {
+					return;
+				}
+			}
+		}
+		appendToLine(buf, start, len - start);
+	}
+	
+	private void appendToLine(byte[] buf, int off, int len) {
+		if (lineLen + len > lineBuf.length) {
+			byte[] bigger = new byte[Math.max(lineBuf.length * 2, lineLen + len)];
+			System.arraycopy(lineBuf, 0, bigger, 0, lineLen);
+			lineBuf = bigger;
+		}
+		System.arraycopy(buf, off, lineBuf, lineLen, len);
+		lineLen += len;
+	}
+	
+	private void addLine() {
+		// Decode the same way an InputStreamReader would
+		String line = new String(lineBuf, 0, lineLen, Charset.defaultCharset());
+		if (line.length() > maxCharactersPerLine + 1) {
+			line = line.substring(0, maxCharactersPerLine + 1);
+		}
+		collectedLines.add(line);
+		lineLen = 0;
+	}
+	
+	/**
+	 * Check whether the output was truncated because the maximum number of
+	 * bytes was exceeded.  Don't call this until the collector has finished.
+	 * 
+	 * @return true if the output was truncated, false if not
+	 */
+	public boolean isTruncated() {
+		return truncated;
 	}
 
 	/* (non-Javadoc)
@@ -152,7 +228,7 @@ public class LimitedOutputCollector implements IOutputCollector {
 	 */
 	@Override
 	public void interrupt() {
-		thread.interrupt();
+		task.interrupt();
 	}
 
 	/* (non-Javadoc)
@@ -160,7 +236,7 @@ public class LimitedOutputCollector implements IOutputCollector {
 	 */
 	@Override
 	public void join() throws InterruptedException {
-		thread.join();
+		task.join();
 	}
 
 	/* (non-Javadoc)
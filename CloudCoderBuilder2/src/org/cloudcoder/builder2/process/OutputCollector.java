@@ -24,17 +24,18 @@ import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.io.IOUtils;
 
 /**
- * Start a thread to collect all of the data from a given
+ * Asynchronously collect all of the data from a given
  * input stream (which could be the output of a process.)
  * The data is stored as a List of Strings, one per line of output.
  */
 public class OutputCollector implements IOutputCollector {
 	private InputStream inputStream;
-	private Thread readerThread;
+	private AsyncIOTask readerTask;
 	private List<String> collectedOutput;
 	
 	/* (non-Javadoc)
@@ -42,7 +43,7 @@ public class OutputCollector implements IOutputCollector {
 	 */
 	@Override
 	public void interrupt() {
-	    readerThread.interrupt();
+	    readerTask.interrupt();
 	}
 
 	public OutputCollector(InputStream inputStream) {
@@ -54,8 +55,8 @@ public class OutputCollector implements IOutputCollector {
 	 * @see org.cloudcoder.submitsvc.oop.builder.IOutputCollector#start()
 	 */
 	@Override
-	public void start() {
-		readerThread = new Thread(new Runnable() {
+	public void start(Executor executor) {
+		readerTask = new AsyncIOTask(new Runnable() {
 			@Override
 			public void run() {
 				BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
@@ -75,7 +76,7 @@ public class OutputCollector implements IOutputCollector {
 			}
 		});
 
-		readerThread.start();
+		readerTask.start(executor);
 	}
 
 	/* (non-Javadoc)
@@ -91,7 +92,7 @@ public class OutputCollector implements IOutputCollector {
 	 */
 	@Override
 	public void join() throws InterruptedException {
-		readerThread.join();
+		readerTask.join();
 	}
 
 }
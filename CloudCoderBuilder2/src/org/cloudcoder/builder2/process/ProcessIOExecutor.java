@@ -0,0 +1,198 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.process;
+
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudcoder.builder2.util.SingletonHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared resources used by every {@link ProcessRunner} in the builder:
+ * a global cap on the number of concurrently running processes, and a
+ * bounded pool of threads used to wait for processes and to
+ * send/collect their stdin, stdout, and stderr.
+ * 
+ * <p>Each running process needs at most {@link #IO_TASKS_PER_PROCESS}
+ * I/O tasks, so capping the number of running processes also caps the
+ * number of I/O threads, regardless of how many builder threads and
+ * test cases there are.  Idle I/O threads are reused rather than a new
+ * thread being created for each stream of each process.  (They are
+ * daemon threads, and exit after being idle for a while, so no
+ * cleanup is needed.)
+ * 
+ * <p>Configuration properties:
+ * <ul>
+ * <li><code>cloudcoder.builder2.process.maxConcurrent</code>: maximum number
+ *     of processes that may run at the same time (default is twice the
+ *     number of available processors, but at least 4)</li>
+ * </ul>
+ * 
+ * @author David Hovemeyer
+ */
+public class ProcessIOExecutor {
+	private static final Logger logger = LoggerFactory.getLogger(ProcessIOExecutor.class);
+	
+	/**
+	 * Maximum number of I/O tasks needed by a running process:
+	 * waiting for it to exit, sending its stdin, and collecting
+	 * its stdout and stderr.
+	 */
+	public static final int IO_TASKS_PER_PROCESS = 4;
+	
+	/**
+	 * Smallest default maximum number of concurrent processes.
+	 * (Many test processes spend most of their time blocked or sleeping,
+	 * so even a machine with few cores can run a few at a time.)
+	 */
+	private static final int MIN_DEFAULT_MAX_PROCESSES = 4;
+	
+	/** Number of seconds an idle I/O thread is kept before it exits. */
+	private static final int IDLE_THREAD_KEEPALIVE_SEC = 60;
+	
+	private static final SingletonHolder<ProcessIOExecutor, Properties> holder = new SingletonHolder<ProcessIOExecutor, Properties>() {
+		@Override
+		protected ProcessIOExecutor onCreate(Properties arg) {
+			return new ProcessIOExecutor(arg);
+		}
+	};
+	
+	/**
+	 * Get the singleton instance, creating it if necessary.
+	 * 
+	 * @param config the builder configuration properties
+	 * @return the singleton instance
+	 */
+	public static ProcessIOExecutor getInstance(Properties config) {
+		return holder.get(config);
+	}
+	
+	/**
+	 * @return true if the singleton instance has been created
+	 */
+	public static boolean isCreated() {
+		return holder.isCreated();
+	}
+	
+	private final int maxProcesses;
+	private final Semaphore processSlots;
+	private final ThreadPoolExecutor executor;
+	
+	private ProcessIOExecutor(Properties config) {
+		this.maxProcesses = getMaxProcesses(config);
+		this.processSlots = new Semaphore(maxProcesses, true);
+		
+		final AtomicInteger threadCount = new AtomicInteger();
+		ThreadFactory threadFactory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ProcessIO-" + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+		
+		// A process releases its slot just before its wait task finishes,
+		// so allow one extra process's worth of threads.
+		int maxThreads = (maxProcesses + 1) * IO_TASKS_PER_PROCESS;
+		
+		// If the pool is somehow exhausted, run the task in a new thread
+		// rather than failing (or blocking, which could deadlock).
+		RejectedExecutionHandler overflow = new RejectedExecutionHandler() {
+			@Override
+			public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+				logger.warn("Process I/O pool exhausted, starting an extra thread");
+				Thread t = new Thread(r, "ProcessIO-overflow");
+				t.setDaemon(true);
+				t.start();
+			}
+		};
+		
+		this.executor = new ThreadPoolExecutor(
+				0, maxThreads,
+				IDLE_THREAD_KEEPALIVE_SEC, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(),
+				threadFactory,
+				overflow);
+		
+		logger.info("At most {} processes may run concurrently ({} I/O threads)", maxProcesses, maxThreads);
+	}
+	
+	private static int getMaxProcesses(Properties config) {
+		int defaultValue = Math.max(MIN_DEFAULT_MAX_PROCESSES, Runtime.getRuntime().availableProcessors() * 2);
+		String value = config.getProperty("cloudcoder.builder2.process.maxConcurrent");
+		if (value == null || value.trim().equals("")) {
+			return defaultValue;
+		}
+		try {
+			int n = Integer.parseInt(value.trim());
+			return n > 0 ? n : defaultValue;
+		} catch (NumberFormatException e) {
+			logger.warn("Invalid value for cloudcoder.builder2.process.maxConcurrent: {}", value);
+			return defaultValue;
+		}
+	}
+	
+	/**
+	 * @return the {@link Executor} to use for process I/O tasks
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * Wait until fewer than the maximum number of processes are running,
+	 * and reserve a slot for a new process.  Every successful call must
+	 * be matched by a call to {@link #releaseProcessSlot()}.
+	 * 
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void acquireProcessSlot() throws InterruptedException {
+		processSlots.acquire();
+	}
+	
+	/**
+	 * Release a slot reserved by {@link #acquireProcessSlot()}.
+	 */
+	public void releaseProcessSlot() {
+		processSlots.release();
+	}
+	
+	/**
+	 * @return the maximum number of processes that may run concurrently
+	 */
+	public int getMaxProcesses() {
+		return maxProcesses;
+	}
+	
+	/**
+	 * @return the number of processes currently running (or starting)
+	 */
+	public int getNumRunningProcesses() {
+		return maxProcesses - processSlots.availablePermits();
+	}
+}
@@ -30,6 +30,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.io.IOUtils;
 import org.cloudcoder.builder2.model.ProcessStatus;
@@ -59,7 +63,8 @@ public class ProcessRunner {
 	private ProcessStatus status;
 	
 	private volatile Process process;
-	private Thread exitValueMonitor;
+	private FutureTask<Boolean> completion;
+	private volatile long completionTimeNanos;
 	private String stdin;
 	private IOutputCollector stdoutCollector;
 	private IOutputCollector stderrCollector;
@@ -139,11 +144,57 @@ public class ProcessRunner {
 		return statusMessage;
 	}
 	
+	/**
+	 * Run the process and wait for it to complete.
+	 * If the maximum number of processes are already running
+	 * (see {@link ProcessIOExecutor}), waits for one of them to finish
+	 * before starting the process.
+	 * 
+	 * @param workingDir the working directory
+	 * @param command    the command to run
+	 * @return true if the process was run, false if it could not be
+	 *         executed (see {@link #getStatusMessage()})
+	 */
 	public boolean runSynchronous(File workingDir, String... command) {
+		ProcessIOExecutor io = ProcessIOExecutor.getInstance(config);
+		PreparedCommand prepared = prepare(workingDir, command);
+		if (prepared == null || !acquireProcessSlot(io, prepared)) {
+			return false;
+		}
+		try {
+			return execute(prepared, io.getExecutor());
+		} finally {
+			io.releaseProcessSlot();
+		}
+	}
+	
+	/**
+	 * A command that is ready to be executed.
+	 */
+	private static class PreparedCommand {
+		final File workingDir;
+		final String[] command;
+		final String[] envp;
+		final File exitStatusFile;
+		
+		PreparedCommand(File workingDir, String[] command, String[] envp, File exitStatusFile) {
+			this.workingDir = workingDir;
+			this.command = command;
+			this.envp = envp;
+			this.exitStatusFile = exitStatusFile;
+		}
+	}
+	
+	/**
+	 * Do everything needed to execute a command short of starting the process.
+	 * Note that this can involve running other processes (e.g., to compile
+	 * the native exe wrapper), so it must be done before a process
+	 * slot is acquired.
+	 */
+	private PreparedCommand prepare(File workingDir, String[] command) {
 		// wrap command (by default, using the runProcess.sh script)
 		command = wrapCommand(command);
 		
-		// exec command
 		logger.info("Running in {} the command: {}", workingDir.toString(), StringUtil.mergeOneLine(command));
 		try {
 			// Create a temp file in which the runProcess.sh script can save
@@ -152,28 +203,48 @@ public class ProcessRunner {
 			//logger.debug("Creating exit status file " + exitStatusFile.getPath());
 			exitStatusFile.deleteOnExit();
 
-			// Start process, setting CC_PROC_STAT_FILE env var
-			// to indicate where runProcess.sh should write the process's
-			// exit status information
-			process = Runtime.getRuntime().exec(
-					command,
-					getEnvp("CC_PROC_STAT_FILE=" + exitStatusFile.getPath()),
-					workingDir);
+			// Set CC_PROC_STAT_FILE env var to indicate where runProcess.sh
+			// should write the process's exit status information
+			String[] envp = getEnvp("CC_PROC_STAT_FILE=" + exitStatusFile.getPath());
+			
+			return new PreparedCommand(workingDir, command, envp, exitStatusFile);
+		} catch (IOException e) {
+			statusMessage = "Could not execute process: " + e.getMessage();
+			return null;
+		}
+	}
+	
+	private boolean acquireProcessSlot(ProcessIOExecutor io, PreparedCommand prepared) {
+		try {
+			io.acquireProcessSlot();
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			statusMessage = "Interrupted waiting to start process";
+			prepared.exitStatusFile.delete();
+			return false;
+		}
+	}
+	
+	private boolean execute(PreparedCommand prepared, Executor executor) {
+		try {
+			// Start process
+			process = Runtime.getRuntime().exec(prepared.command, prepared.envp, prepared.workingDir);
 
 			// Collect process output
 			stdoutCollector = createOutputCollector(process.getInputStream());
 			stderrCollector = createOutputCollector(process.getErrorStream());
-			stdoutCollector.start();
-			stderrCollector.start();
+			stdoutCollector.start(executor);
+			stderrCollector.start(executor);
 
 			// If stdin was provided, send it
 			if (stdin != null) {
 				//System.out.println("Creating InputSender for input: " + stdin);
 				stdinSender = new InputSender(process.getOutputStream(), stdin);
-				stdinSender.start();
+				stdinSender.start(executor);
 			}
 
-			// wait for process and output collector threads to finish
+			// wait for process and output collectors to finish
 			exitCode = process.waitFor();
 			stdoutCollector.join();
 			stderrCollector.join();
@@ -182,13 +253,14 @@ public class ProcessRunner {
 			}
 			
 			// Read the process's exit status information
-			readProcessExitStatus(exitStatusFile);
+			readProcessExitStatus(prepared.exitStatusFile);
 			return true;
 		} catch (IOException e) {
 			statusMessage = "Could not execute process: " + e.getMessage();
 		} catch (InterruptedException e) {
 			statusMessage = "Process was interrupted (infinite loop killed?)";
 		}
+		prepared.exitStatusFile.delete();
 		return false;
 	}
 
@@ -290,13 +362,69 @@ public class ProcessRunner {
 		}
 	}
 
-	public void runAsynchronous(final File workingDir, final String... command) {
-	    exitValueMonitor=new Thread() {
-	        public void run() {
-	            runSynchronous(workingDir, command);
-	        }
-	    };
-	    exitValueMonitor.start();
+	/**
+	 * Start the process, using a thread from the {@link ProcessIOExecutor}
+	 * to wait for it to complete.  Use {@link #getCompletion()} to wait for
+	 * the process to finish.  If the maximum number of processes are already
+	 * running, this method waits for one of them to finish before
+	 * starting the process.
+	 * 
+	 * @param workingDir the working directory
+	 * @param command    the command to run
+	 */
+	public void runAsynchronous(File workingDir, String... command) {
+		final ProcessIOExecutor io = ProcessIOExecutor.getInstance(config);
+		final PreparedCommand prepared = prepare(workingDir, command);
+		final boolean canStart = prepared != null && acquireProcessSlot(io, prepared);
+		completion = new FutureTask<Boolean>(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				try {
+					if (!canStart) {
+						return false;
+					}
+					try {
+						return execute(prepared, io.getExecutor());
+					} finally {
+						io.releaseProcessSlot();
+					}
+				} finally {
+					completionTimeNanos = System.nanoTime();
+				}
+			}
+		});
+		if (canStart) {
+			io.getExecutor().execute(completion);
+		} else {
+			completion.run();
+		}
+	}
+	
+	/**
+	 * Get a {@link Future} which completes when a process started by
+	 * {@link #runAsynchronous(File, String...)} has exited, its output
+	 * has been collected, and its exit status has been read.
+	 * The value of the future is true if the process was run,
+	 * false if it could not be executed (see {@link #getStatusMessage()}).
+	 * Waiting on the future (with a timeout) avoids having to
+	 * poll {@link #isRunning()}.
+	 * 
+	 * @return the completion {@link Future}, or null if
+	 *         {@link #runAsynchronous(File, String...)} hasn't been called
+	 */
+	public Future<Boolean> getCompletion() {
+		return completion;
+	}
+	
+	/**
+	 * Get the value of {@link System#nanoTime()} at the moment the
+	 * completion future (see {@link #getCompletion()}) completed.
+	 * <b>Important:</b>: don't call this unless the completion future is done.
+	 * 
+	 * @return the completion time in nanoseconds
+	 */
+	public long getCompletionTimeNanos() {
+		return completionTimeNanos;
 	}
 	
 	/**
@@ -421,6 +549,10 @@ public class ProcessRunner {
 	 * Forcibly kill the process.
 	 */
 	public void killProcess() {
+		if (process == null) {
+			// Process was never started
+			return;
+		}
 		logger.info("Killing process");
 		process.destroy();
 		
@@ -30,6 +30,8 @@ import java.io.InputStream;
  * @author David Hovemeyer
  */
 public class StripPrefixInputStream extends InputStream {
+	private static final int NO_BYTE = Integer.MIN_VALUE;
+	
 	private InputStream delegate;
 	private int count;
 	private byte[] prefix;
@@ -45,8 +47,41 @@ public class StripPrefixInputStream extends InputStream {
 
 	@Override
 	public int read() throws IOException {
-		// If we've read fewer bytes than the length of the prefix,
-		// attempt to read the entire prefix
+		int b = skipPrefix();
+		if (b != NO_BYTE) {
+			return b;
+		}
+		
+		// Prefix has been read/skipped, so just read data normally
+		return delegate.read();
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int first = skipPrefix();
+		if (first == NO_BYTE) {
+			// Prefix has been read/skipped, so just read data normally
+			return delegate.read(b, off, len);
+		}
+		if (first < 0) {
+			return first;
+		}
+		b[off] = (byte) first;
+		return 1;
+	}
+	
+	/**
+	 * If we've read fewer bytes than the length of the prefix,
+	 * attempt to read the entire prefix.
+	 * 
+	 * @return {@link #NO_BYTE} if the prefix was read/skipped,
+	 *         otherwise the byte (or end of stream) which did not
+	 *         match the prefix
+	 */
+	private int skipPrefix() throws IOException {
 		while (count < prefix.length) {
 			// Read a byte
 			int b = delegate.read();
@@ -66,10 +101,7 @@ public class StripPrefixInputStream extends InputStream {
 			count++;
 		}
 		
-		// Prefix has been read/skipped, so just read data normally
-		return delegate.read();
+		return NO_BYTE;
 	}
-	
-	// TODO: override other read methods for efficiency
 
 }
@@ -30,12 +30,14 @@ import org.cloudcoder.app.shared.model.CompilerDiagnostic;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.ProblemType;
 import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.SubmissionResultAnnotation;
 import org.cloudcoder.app.shared.model.TestCase;
 import org.cloudcoder.app.shared.model.TestResult;
 import org.cloudcoder.builder2.javasandbox.SandboxUtil;
 import org.cloudcoder.builder2.javasandbox.TimeoutHandler;
 import org.cloudcoder.builder2.model.BuilderSubmission;
 import org.cloudcoder.builder2.model.IBuildStep;
+import org.cloudcoder.builder2.model.ISubmissionResultHook;
 import org.cloudcoder.builder2.model.InternalBuilderException;
 import org.cloudcoder.builder2.model.ProgramSource;
 import org.cloudcoder.builder2.util.TestResultUtil;
@@ -43,6 +45,7 @@ import org.python.core.PyException;
 import org.python.core.PyFunction;
 import org.python.core.PyObject;
 import org.python.core.PySyntaxError;
+import org.python.core.PySystemState;
 import org.python.util.PythonInterpreter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,10 +60,23 @@ import org.slf4j.LoggerFactory;
 public class TestPythonFunctionBuildStep implements IBuildStep {
 	public static final Logger logger = LoggerFactory.getLogger(TestPythonFunctionBuildStep.class);
 	public static final long TIMEOUT_LIMIT = 2000;
+
+	/**
+	 * Key of the {@link SubmissionResultAnnotation} recording the time
+	 * (in microseconds) taken to create the interpreter and to compile
+	 * and execute the scaffolded script.
+	 */
+	public static final String SCRIPT_LOAD_TIME_ANNOTATION = "PythonScriptLoadTimeUs";
 	
 	static {
 		// Force preloading of classes needed by PythonTestCaseTask
 		new PythonUtil();
+		
+		// Initialize the Jython runtime (loading the registry, the builtin
+		// modules, etc.) now, so the first submission doesn't pay for it.
+		// After this, each PythonInterpreter only needs a copy of the
+		// initialized PySystemState, which is cheap.
+		PySystemState.initialize();
 	}
 
 	@Override
@@ -91,26 +107,25 @@ public class TestPythonFunctionBuildStep implements IBuildStep {
 		TestCase[] testCaseList_ = submission.requireArtifact(TestPythonFunctionBuildStep.class, TestCase[].class);
 		List<TestCase> testCaseList= Arrays.asList(testCaseList_);
 
-		final byte[] sBytes = programText.getBytes();
-
-		// Check if the Python code is syntactically correct.
+		// Create a Python interpreter (with its own namespace and PySystemState,
+		// so submissions are isolated from each other) and execute our script.
+		// Note that our script will have all statements outside of a function
+		// stripped out (except for import statements) so no global variables.
+		// This also checks whether the Python code is syntactically correct.
 		// Because Python is a dynamic language, this will only find invalid syntax,
 		// unknown imports, and similar issues.
-		CompilationResult compres = compilePythonScript(problem, programSource);
+		long loadStart = System.nanoTime();
+		final PythonInterpreter terp=new PythonInterpreter();
+		CompilationResult compres = compilePythonScript(terp, problem, programSource);
+		addScriptLoadTimeAnnotation(submission, (System.nanoTime() - loadStart) / 1000L);
 		if (compres.getOutcome() != CompilationOutcome.SUCCESS) {
 			compres.adjustDiagnosticLineNumbers(programSource.getPrologueLength(), programSource.getEpilogueLength());
 			return new SubmissionResult(compres);
 		}
 		
-		// Create a Python interpreter, load True from the interpreter
-		// then execute our script.
-		// Note that our script will have all statements outside of a function
-		// stripped out (except for import statements) so no global variables
-		final PythonInterpreter terp=new PythonInterpreter();
+		// The script's functions are now defined in the interpreter,
+		// so the test case functions can be called directly
 		final PyObject True=terp.eval("True");
-		// won't throw an exception because we checked it at the top of
-		// the method to make sure the code will compile
-		terp.execfile(new ByteArrayInputStream(sBytes));
 
 		// Create PythonTestCaseTasks, one to execute each test case function
 		List<PythonTestCaseTask> tasks=new ArrayList<PythonTestCaseTask>();
@@ -134,6 +149,7 @@ public class TestPythonFunctionBuildStep implements IBuildStep {
 
 		// run each task in a separate thread
 		pool.run();
+		SandboxUtil.addTestExecutionTimeAnnotation(submission, pool);
 		
 		// Collect any CompilerDiagnostics that may have been reported.
 		// Because Python is a dynamic language, some errors that would be
@@ -158,18 +174,19 @@ public class TestPythonFunctionBuildStep implements IBuildStep {
 
 	/**
 	 * "Compile" scaffolded python code to detect syntax errors, missing imports, and
-	 * other "static" errors.
+	 * other "static" errors.  The code is executed in the given interpreter,
+	 * which (if compilation is successful) is then ready to run the tests.
 	 * 
+	 * @param terp          the {@link PythonInterpreter} in which to execute the code
 	 * @param problem       the {@link Problem}
 	 * @param programSource the scaffolded code
 	 * @return the {@link CompilationResult}
 	 */
-	private CompilationResult compilePythonScript(Problem problem, ProgramSource programSource) {
+	private CompilationResult compilePythonScript(PythonInterpreter terp, Problem problem, ProgramSource programSource) {
 		String programText = programSource.getProgramText();
 		
 		try {
 		    logger.info("\n"+programText);
-			PythonInterpreter terp=new PythonInterpreter();
 			terp.execfile(new ByteArrayInputStream(programText.getBytes()));
 			
 			// Check to see if the test code actually defines the required
@@ -205,4 +222,22 @@ public class TestPythonFunctionBuildStep implements IBuildStep {
 			return compres;
 		}
 	}
+
+	/**
+	 * Record the time taken to load the scaffolded script as a
+	 * {@link SubmissionResultAnnotation} (with the key
+	 * {@link #SCRIPT_LOAD_TIME_ANNOTATION}).
+	 * 
+	 * @param submission  the {@link BuilderSubmission}
+	 * @param elapsedUs   the load time in microseconds
+	 */
+	private static void addScriptLoadTimeAnnotation(BuilderSubmission submission, long elapsedUs) {
+		final String elapsed = String.valueOf(elapsedUs);
+		submission.addSubmissionResultHook(new ISubmissionResultHook() {
+			@Override
+			public void invoke(SubmissionResult result) {
+				result.addAnnotation(new SubmissionResultAnnotation(SCRIPT_LOAD_TIME_ANNOTATION, elapsed));
+			}
+		});
+	}
 }
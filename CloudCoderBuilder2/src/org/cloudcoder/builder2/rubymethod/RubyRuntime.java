@@ -0,0 +1,137 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.rubymethod;
+
+import org.jruby.embed.LocalContextScope;
+import org.jruby.embed.ScriptingContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A booted JRuby runtime (a {@link ScriptingContainer}) managed by
+ * {@link RubyRuntimePool}.  A runtime is used by one submission at a time.
+ * No attempt is made to undo the changes a submission makes to the
+ * runtime (reopened core classes, instance variables of the top-level
+ * object, class variables, etc.), so a runtime that is used for more than
+ * one submission exposes each submission to the state left behind
+ * by the previous ones.
+ * 
+ * @author David Hovemeyer
+ */
+public class RubyRuntime {
+	private static final Logger logger = LoggerFactory.getLogger(RubyRuntime.class);
+	
+	private final ScriptingContainer container;
+	private final long bootTimeMs;
+	private int numRuns;
+	private boolean reusable;
+	private boolean bootedOnDemand;
+	
+	private RubyRuntime(ScriptingContainer container, long bootTimeMs) {
+		this.container = container;
+		this.bootTimeMs = bootTimeMs;
+		this.reusable = true;
+	}
+	
+	/**
+	 * Boot a new runtime.
+	 * 
+	 * @return the {@link RubyRuntime}
+	 */
+	public static RubyRuntime boot() {
+		long start = System.currentTimeMillis();
+		ScriptingContainer container = new ScriptingContainer(LocalContextScope.CONCURRENT);
+		container.runScriptlet("true");
+		long bootTimeMs = System.currentTimeMillis() - start;
+		logger.info("Booted JRuby runtime in {} ms", bootTimeMs);
+		return new RubyRuntime(container, bootTimeMs);
+	}
+	
+	/**
+	 * @return the {@link ScriptingContainer}
+	 */
+	public ScriptingContainer getContainer() {
+		return container;
+	}
+	
+	/**
+	 * @return the time (in milliseconds) that it took to boot the runtime
+	 */
+	public long getBootTimeMs() {
+		return bootTimeMs;
+	}
+	
+	/**
+	 * @return true if the runtime was booted by {@link RubyRuntimePool#borrow()}
+	 *         because no booted runtime was available, so that the current
+	 *         submission had to wait for it to boot
+	 */
+	public boolean isBootedOnDemand() {
+		return bootedOnDemand;
+	}
+	
+	/**
+	 * Mark the runtime as having been booted for the submission that
+	 * borrowed it.
+	 */
+	void markBootedOnDemand() {
+		bootedOnDemand = true;
+	}
+	
+	/**
+	 * @return the number of submissions that have used the runtime
+	 */
+	public int getNumRuns() {
+		return numRuns;
+	}
+	
+	/**
+	 * @return true if the runtime can be used for another submission
+	 */
+	public boolean isReusable() {
+		return reusable;
+	}
+	
+	/**
+	 * Mark the runtime as not reusable: for example, because a test thread
+	 * running in the runtime had to be killed, possibly leaving the
+	 * runtime in an inconsistent state.
+	 */
+	public void markNotReusable() {
+		reusable = false;
+	}
+	
+	/**
+	 * Called when a submission has finished using the runtime.
+	 */
+	void finishRun() {
+		numRuns++;
+		bootedOnDemand = false;
+	}
+	
+	/**
+	 * Shut down the runtime.
+	 */
+	void terminate() {
+		try {
+			container.terminate();
+		} catch (RuntimeException e) {
+			logger.warn("Error terminating JRuby runtime", e);
+		}
+	}
+}
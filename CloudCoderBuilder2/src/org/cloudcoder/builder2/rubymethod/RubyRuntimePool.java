@@ -0,0 +1,258 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.rubymethod;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.cloudcoder.builder2.util.SingletonHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of booted {@link RubyRuntime}s used to test
+ * {@link org.cloudcoder.app.shared.model.ProblemType#RUBY_METHOD}
+ * submissions, so that submissions don't wait for a JRuby runtime
+ * to boot, and so that concurrent submissions don't share a runtime.
+ * A runtime is discarded (and replaced in the background) after it has
+ * been used by a configurable number of submissions (by default, one),
+ * or as soon as a test had to be killed while running in it.
+ * 
+ * <p>Configuration properties:
+ * <ul>
+ * <li><code>cloudcoder.builder2.ruby.poolSize</code>: maximum number of
+ *     JRuby runtimes (each one takes a significant amount of heap)</li>
+ * <li><code>cloudcoder.builder2.ruby.maxRuns</code>: number of submissions
+ *     a runtime may be used for before it is replaced.  Changes a submission
+ *     makes to a runtime are not undone, so a value greater than 1 lets
+ *     a submission see (and interfere with) the classes, methods, and
+ *     variables defined by earlier submissions.</li>
+ * </ul>
+ * 
+ * @author David Hovemeyer
+ */
+public class RubyRuntimePool {
+	private static final Logger logger = LoggerFactory.getLogger(RubyRuntimePool.class);
+	
+	/** Default maximum number of runtimes. */
+	public static final int DEFAULT_POOL_SIZE = 2;
+	
+	/** Default number of submissions a runtime may be used for before it is replaced. */
+	public static final int DEFAULT_MAX_RUNS = 1;
+	
+	private static final SingletonHolder<RubyRuntimePool, Properties> holder = new SingletonHolder<RubyRuntimePool, Properties>() {
+		@Override
+		protected RubyRuntimePool onCreate(Properties arg) {
+			return new RubyRuntimePool(arg);
+		}
+	};
+	
+	/**
+	 * Get the singleton instance, creating it (and booting the runtimes)
+	 * if necessary.
+	 * 
+	 * @param config the builder configuration properties
+	 * @return the singleton instance
+	 */
+	public static RubyRuntimePool getInstance(Properties config) {
+		return holder.get(config);
+	}
+	
+	/**
+	 * @return true if the singleton instance has been created
+	 */
+	public static boolean isCreated() {
+		return holder.isCreated();
+	}
+	
+	private final int maxSize;
+	private final int maxRuns;
+	
+	private final LinkedList<RubyRuntime> idle;
+	private int numRuntimes; // idle, in use, or being booted
+	private boolean destroyed;
+	
+	private final ExecutorService starter;
+	
+	private RubyRuntimePool(Properties config) {
+		this.maxSize = Math.max(1, getInt(config, "cloudcoder.builder2.ruby.poolSize", DEFAULT_POOL_SIZE));
+		this.maxRuns = getInt(config, "cloudcoder.builder2.ruby.maxRuns", DEFAULT_MAX_RUNS);
+		this.idle = new LinkedList<RubyRuntime>();
+		this.starter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "RubyRuntimePool starter");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		
+		logger.info("Booting {} JRuby runtimes", maxSize);
+		for (int i = 0; i < maxSize; i++) {
+			replenish();
+		}
+	}
+
+	private static int getInt(Properties config, String propName, int defaultValue) {
+		String value = config.getProperty(propName);
+		if (value == null || value.trim().equals("")) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid integer value for " + propName + ": " + value);
+		}
+	}
+	
+	/**
+	 * Get a runtime, waiting for one to become available if necessary.
+	 * The runtime must be returned by calling {@link #release(RubyRuntime)}.
+	 * 
+	 * @return a {@link RubyRuntime}
+	 * @throws InterruptedException if interrupted while waiting for a runtime
+	 */
+	public RubyRuntime borrow() throws InterruptedException {
+		synchronized (this) {
+			while (true) {
+				if (destroyed) {
+					throw new IllegalStateException("Ruby runtime pool has been destroyed");
+				}
+				if (!idle.isEmpty()) {
+					return idle.removeFirst();
+				}
+				if (numRuntimes < maxSize) {
+					// Reserve a slot for a new runtime
+					numRuntimes++;
+					break;
+				}
+				wait();
+			}
+		}
+		
+		try {
+			RubyRuntime runtime = RubyRuntime.boot();
+			runtime.markBootedOnDemand();
+			return runtime;
+		} catch (RuntimeException e) {
+			releaseSlot();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Return a runtime to the pool.  If it has been used too many times,
+	 * or can't be reused, it is terminated and replaced.
+	 * 
+	 * @param runtime the {@link RubyRuntime} to return
+	 */
+	public void release(RubyRuntime runtime) {
+		runtime.finishRun();
+		if (runtime.isReusable() && runtime.getNumRuns() < maxRuns) {
+			synchronized (this) {
+				if (!destroyed) {
+					idle.addFirst(runtime);
+					notify();
+					return;
+				}
+			}
+		}
+		
+		releaseSlot();
+		terminateInBackground(runtime);
+		
+		// Boot a replacement so that the next submission
+		// doesn't have to wait for a runtime to boot
+		replenish();
+	}
+	
+	private synchronized void releaseSlot() {
+		numRuntimes--;
+		notify();
+	}
+	
+	// Boot a new runtime in the background, if the pool isn't full
+	private void replenish() {
+		synchronized (this) {
+			if (destroyed || numRuntimes >= maxSize) {
+				return;
+			}
+			numRuntimes++;
+		}
+		
+		starter.execute(new Runnable() {
+			@Override
+			public void run() {
+				RubyRuntime runtime;
+				try {
+					runtime = RubyRuntime.boot();
+				} catch (RuntimeException e) {
+					logger.warn("Could not boot JRuby runtime", e);
+					releaseSlot();
+					return;
+				}
+				synchronized (RubyRuntimePool.this) {
+					if (!destroyed) {
+						idle.addLast(runtime);
+						RubyRuntimePool.this.notify();
+						return;
+					}
+				}
+				releaseSlot();
+				runtime.terminate();
+			}
+		});
+	}
+	
+	// Terminating a runtime runs its at_exit hooks, which are
+	// untrusted code, so don't make the caller wait for it
+	private static void terminateInBackground(final RubyRuntime runtime) {
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runtime.terminate();
+			}
+		}, "RubyRuntimePool terminator");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/**
+	 * Terminate all of the idle runtimes.
+	 * Runtimes that are in use are terminated when they are returned.
+	 */
+	public void destroy() {
+		List<RubyRuntime> toTerminate;
+		synchronized (this) {
+			destroyed = true;
+			toTerminate = new ArrayList<RubyRuntime>(idle);
+			numRuntimes -= idle.size();
+			idle.clear();
+			notifyAll();
+		}
+		for (RubyRuntime runtime : toTerminate) {
+			runtime.terminate();
+		}
+		starter.shutdown();
+	}
+}
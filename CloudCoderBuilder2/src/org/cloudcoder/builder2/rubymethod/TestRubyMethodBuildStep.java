@@ -26,18 +26,20 @@ import org.cloudcoder.app.shared.model.CompilationResult;
 import org.cloudcoder.app.shared.model.CompilerDiagnostic;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.ProblemType;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.SubmissionResultAnnotation;
 import org.cloudcoder.app.shared.model.TestCase;
 import org.cloudcoder.app.shared.model.TestResult;
 import org.cloudcoder.builder2.javasandbox.SandboxUtil;
 import org.cloudcoder.builder2.javasandbox.TimeoutHandler;
 import org.cloudcoder.builder2.model.BuilderSubmission;
 import org.cloudcoder.builder2.model.IBuildStep;
+import org.cloudcoder.builder2.model.ISubmissionResultHook;
 import org.cloudcoder.builder2.model.InternalBuilderException;
 import org.cloudcoder.builder2.model.ProgramSource;
 import org.cloudcoder.builder2.util.ArrayUtil;
 import org.cloudcoder.builder2.util.TestResultUtil;
 import org.jruby.embed.EvalFailedException;
-import org.jruby.embed.LocalContextScope;
 import org.jruby.embed.ParseFailedException;
 import org.jruby.embed.ScriptingContainer;
 import org.jruby.exceptions.RaiseException;
@@ -57,17 +59,26 @@ public class TestRubyMethodBuildStep implements IBuildStep {
 	private static Logger logger = LoggerFactory.getLogger(TestRubyMethodBuildStep.class);
 	
 	public static final long TIMEOUT_LIMIT = 5000;
+
+	/**
+	 * Key of the {@link SubmissionResultAnnotation} recording the time
+	 * (in milliseconds) the submission waited for a JRuby runtime,
+	 * not including the time to boot one (see {@link #RUNTIME_BOOT_TIME_ANNOTATION}).
+	 */
+	public static final String RUNTIME_WAIT_TIME_ANNOTATION = "RubyRuntimeWaitMs";
 	
-	private static ScriptingContainer container;
+	/**
+	 * Key of the {@link SubmissionResultAnnotation} recording the time
+	 * (in milliseconds) spent booting a JRuby runtime for the submission
+	 * (0 if a booted runtime was available).
+	 */
+	public static final String RUNTIME_BOOT_TIME_ANNOTATION = "RubyRuntimeBootMs";
 	
 	// Preload classes that will be needed to test the Ruby submission in the
-	// IsolatedTask, and create the ScriptingContainer.
+	// IsolatedTask.
 	static {
 		TestResultUtil.createResultForTimeout();
-		//TODO cannot execute any code with ruby before redirecting
-		container = new ScriptingContainer(LocalContextScope.CONCURRENT);
-		container.runScriptlet("true");
-		new RubyTester(container, new Object(), new Problem(), new TestCase());
+		new RubyTester(null, new Object(), new Problem(), new TestCase());
 	}
 
 	@Override
@@ -77,7 +88,6 @@ public class TestRubyMethodBuildStep implements IBuildStep {
 			throw new InternalBuilderException(this.getClass(), "Only one source file is expected");
 		}
 		ProgramSource programSource = programSourceList[0];
-		final String testSource = programSource.getProgramText();
 
 		// Get Problem
 		final Problem problem = submission.requireArtifact(this.getClass(), Problem.class);
@@ -85,6 +95,30 @@ public class TestRubyMethodBuildStep implements IBuildStep {
 		// Get TestCase list
 		TestCase[] testCaseList = submission.requireArtifact(this.getClass(), TestCase[].class);
 		
+		// Get a booted JRuby runtime for the exclusive use of this submission
+		RubyRuntimePool runtimePool = RubyRuntimePool.getInstance(config);
+		long waitStart = System.currentTimeMillis();
+		RubyRuntime runtime;
+		try {
+			runtime = runtimePool.borrow();
+		} catch (InterruptedException e) {
+			throw new InternalBuilderException(this.getClass(), "Interrupted waiting for a JRuby runtime", e);
+		}
+		long bootMs = runtime.isBootedOnDemand() ? runtime.getBootTimeMs() : 0L;
+		addRuntimeAnnotations(submission, Math.max(System.currentTimeMillis() - waitStart - bootMs, 0L), bootMs);
+		
+		try {
+			testSubmission(submission, programSource, problem, testCaseList, runtime);
+		} finally {
+			runtimePool.release(runtime);
+		}
+	}
+
+	private void testSubmission(BuilderSubmission submission, ProgramSource programSource,
+			Problem problem, TestCase[] testCaseList, RubyRuntime runtime) {
+		final String testSource = programSource.getProgramText();
+		ScriptingContainer container = runtime.getContainer();
+		
 		// Compile the test scriptlet
 		// TODO: do this in a sandbox?
 		final Object receiver;
@@ -130,6 +164,12 @@ public class TestRubyMethodBuildStep implements IBuildStep {
 
 		pool.setThreadNamePrefix("RubyTest_"); // enable Ruby-specific security manager rules
 		pool.run();
+		SandboxUtil.addTestExecutionTimeAnnotation(submission, pool);
+		if (pool.getNumKilled() > 0) {
+			// A thread stopped in the middle of executing Ruby code
+			// could leave the runtime in an inconsistent state
+			runtime.markNotReusable();
+		}
 		
 		// Collect "dynamic" compiler diagnostics.
 		List<CompilerDiagnostic> dynamicCompilerDiagnosticList = SandboxUtil.collectDynamicCompilerDiagnostics(tasks);
@@ -145,6 +185,18 @@ public class TestRubyMethodBuildStep implements IBuildStep {
 		submission.addArtifact(ArrayUtil.toArray(testResults, TestResult.class));
 	}
 
+	private static void addRuntimeAnnotations(BuilderSubmission submission, long waitMs, long bootMs) {
+		final String wait = String.valueOf(waitMs);
+		final String boot = String.valueOf(bootMs);
+		submission.addSubmissionResultHook(new ISubmissionResultHook() {
+			@Override
+			public void invoke(SubmissionResult result) {
+				result.addAnnotation(new SubmissionResultAnnotation(RUNTIME_WAIT_TIME_ANNOTATION, wait));
+				result.addAnnotation(new SubmissionResultAnnotation(RUNTIME_BOOT_TIME_ANNOTATION, boot));
+			}
+		});
+	}
+
 	private void failedCompilation(BuilderSubmission submission,
 			CompilerDiagnostic diag) {
 		CompilationResult compres = new CompilationResult(CompilationOutcome.FAILURE);
@@ -69,6 +69,7 @@ public class Builder2 {
 	 * @return a {@link SubmissionResult} for the submission
 	 */
 	public SubmissionResult testSubmission(Problem problem, List<TestCase> testCaseList, String programText) {
+	   long start = System.currentTimeMillis();
 	   SubmissionResult result;
 	   try {
 		  // Based on the ProblemType, find a Tester
@@ -106,7 +107,7 @@ public class Builder2 {
 		  result.setTestResults(new TestResult[0]);
 	   }
 
-	   logger.info("Sending SubmissionResult back to server");
+	   logger.info("Sending SubmissionResult back to server (built and tested in {} ms)", System.currentTimeMillis() - start);
 	   for (SubmissionResultAnnotation annotation : result.getAnnotationList()) {
 		   logger.info("Annotation: key={}, value={}", annotation.getKey(), annotation.getValue());
 	   }
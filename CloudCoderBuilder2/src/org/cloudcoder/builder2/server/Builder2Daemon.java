@@ -20,8 +20,6 @@ package org.cloudcoder.builder2.server;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Properties;
 
 import org.cloudcoder.builder2.util.DeleteDirectoryRecursively;
@@ -39,18 +37,10 @@ import org.slf4j.LoggerFactory;
 public class Builder2Daemon implements IDaemon {
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
 	
-	private List<BuilderAndThread> builderAndThreadList;
+	private Builder2Server builder;
+	private Thread builderThread;
 	private Properties config;
 	private File instanceTempDir;
-
-	private static class BuilderAndThread {
-		final Builder2Server builder;
-		final Thread thread;
-		public BuilderAndThread(Builder2Server builder, Thread thread) {
-			this.builder = builder;
-			this.thread = thread;
-		}
-	}
 	
 	/**
 	 * Options describing how to connect to the webapp.
@@ -72,10 +62,20 @@ public class Builder2Daemon implements IDaemon {
 			return Integer.parseInt(config.getProperty("cloudcoder.submitsvc.oop.port", "47374"));
 		}
 
+		/**
+		 * @return the number of submissions to test at the same time
+		 */
 		public int getNumThreads() {
 			return Integer.parseInt(config.getProperty("cloudcoder.submitsvc.oop.numThreads", "2"));
 		}
 		
+		/**
+		 * @return the maximum number of problems (and their test cases) to cache
+		 */
+		public int getProblemCacheSize() {
+			return Integer.parseInt(config.getProperty("cloudcoder.submitsvc.oop.problemCacheSize", "100"));
+		}
+		
 		public boolean useSSL() {
 			return Boolean.parseBoolean(config.getProperty("cloudcoder.submitsvc.oop.ssl.useSSL", "true"));
 		}
@@ -154,17 +154,11 @@ public class Builder2Daemon implements IDaemon {
 		logger.info("appPort={}", options.getAppPort());
 		logger.info("numThreads={}", options.getNumThreads());
 		
-		// Start Builder threads
-		this.builderAndThreadList = new ArrayList<BuilderAndThread>();
-		for (int i = 0; i < options.getNumThreads(); i++) {
-			Builder2Server builder_ = new Builder2Server(webappSocketFactory, config);
-			Thread thread_ = new Thread(builder_);
-		
-			BuilderAndThread builderAndThread = new BuilderAndThread(builder_, thread_);
-			builderAndThreadList.add(builderAndThread);
-			
-			builderAndThread.thread.start();
-		}
+		// Start the Builder server loop: it uses a single connection
+		// to the webapp, and tests up to numThreads submissions at once
+		this.builder = new Builder2Server(webappSocketFactory, config);
+		this.builderThread = new Thread(builder);
+		builderThread.start();
 	}
 
 	/* (non-Javadoc)
@@ -181,15 +175,13 @@ public class Builder2Daemon implements IDaemon {
 	 */
 	@Override
 	public void shutdown() {
-		// Shut down all Builder threads
-		for (BuilderAndThread builderAndThread : builderAndThreadList) {
-			try {
-				builderAndThread.builder.shutdown();
-				builderAndThread.thread.join();
-				logger.info("Finished");
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+		// Shut down the Builder server loop
+		try {
+			builder.shutdown();
+			builderThread.join();
+			logger.info("Finished");
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
 
 		// Perform global cleanup.
@@ -20,12 +20,21 @@ package org.cloudcoder.builder2.server;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.security.GeneralSecurityException;
 import java.util.List;
 import java.util.Properties;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudcoder.app.buildprotocol.BuildProtocol;
+import org.cloudcoder.app.buildprotocol.Frame;
+import org.cloudcoder.app.buildprotocol.FrameConnection;
+import org.cloudcoder.app.buildprotocol.FrameType;
+import org.cloudcoder.app.buildprotocol.Handshake;
+import org.cloudcoder.app.buildprotocol.SubmitMessage;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.SubmissionResult;
 import org.cloudcoder.app.shared.model.TestCase;
@@ -39,6 +48,14 @@ import org.slf4j.LoggerFactory;
  * For each submission received, it compiles it, tests it,
  * and reports back a SubmissionResult.
  * 
+ * <p>A single connection to the webapp is used for all submissions:
+ * the server loop reads submissions from the connection and hands them
+ * to a pool of worker threads, so up to {@link Builder2Daemon.Options#getNumThreads()}
+ * submissions may be tested at the same time.  Problems and test cases
+ * are cached (see {@link ProblemCache}), so the webapp only needs to send
+ * them when they have changed.  See {@link BuildProtocol} for details
+ * of the protocol.
+ * 
  * @author David Hovemeyer
  * @author Jaime Spacco
  */
@@ -53,6 +70,12 @@ public class Builder2Server implements Runnable {
 	 */
 	private static final long MAX_WAIT_MS = 60000L; // after 1 minute of waiting, assume connection is bad
 
+	/**
+	 * Maximum amount of time to wait for submissions that are being tested
+	 * to complete when shutting down.
+	 */
+	private static final long SHUTDOWN_WAIT_MS = 60000L;
+
 	/**
 	 * Runnable for watchdog thread.
 	 */
@@ -100,17 +123,8 @@ public class Builder2Server implements Runnable {
 		ATTEMPTING_TO_CONNECT,
 		/** Connected to the webapp. */
 		CONNECTED,
-		/** Server loop is waiting for a keepalive signal from the webapp. */
+		/** Server loop is waiting for a submission or keepalive signal from the webapp. */
 		WAITING_FOR_KEEPALIVE,
-		/** Actively working on building/testing a submission. */
-		WORKING;
-
-		/**
-		 * @return true if it is safe to shutdown, false if not
-		 */
-		public boolean allowShutdown() {
-			return this != WORKING;
-		}
 	}
 	
 	/**
@@ -165,25 +179,20 @@ public class Builder2Server implements Runnable {
 	 */
 	private static class Connection {
 		private ISocket socket;
-		private ObjectInputStream in;
-		private ObjectOutputStream out;
+		private FrameConnection frameConnection;
 		
-		public Connection(ISocket socket, ObjectInputStream in, ObjectOutputStream out) {
+		public Connection(ISocket socket, FrameConnection frameConnection) {
 			this.socket = socket;
-			this.in = in;
-			this.out = out;
-		}
-
-		public ISocket getSocket() {
-			return socket;
+			this.frameConnection = frameConnection;
 		}
 		
-		public ObjectInputStream getIn() {
-			return in;
+		public FrameConnection getFrameConnection() {
+			return frameConnection;
 		}
 		
-		public ObjectOutputStream getOut() {
-			return out;
+		public void close() {
+			IOUtil.closeQuietly(socket);
+			frameConnection.close();
 		}
 	}
 	
@@ -231,9 +240,7 @@ public class Builder2Server implements Runnable {
 				if (conn != null) {
 					Connection c = conn;
 					conn = null;
-					IOUtil.closeQuietly(c.getSocket());
-					IOUtil.closeQuietly(c.getIn());
-					IOUtil.closeQuietly(c.getOut());
+					c.close();
 				}
 			}
 		}
@@ -245,6 +252,9 @@ public class Builder2Server implements Runnable {
 	private WebappSocketFactory webappSocketFactory;
 	private Builder2 builder2;
 	private ConnectionManager connectionManager;
+	private int concurrency;
+	private ProblemCache problemCache;
+	private ExecutorService workerPool;
 	
 	private Thread watchdogThread;
 
@@ -262,6 +272,18 @@ public class Builder2Server implements Runnable {
 		this.webappSocketFactory = webappSocketFactory;
 		this.builder2 = new Builder2(config);
 		this.connectionManager = new ConnectionManager();
+		
+		Builder2Daemon.Options options = new Builder2Daemon.Options(config);
+		this.concurrency = options.getNumThreads();
+		this.problemCache = new ProblemCache(options.getProblemCacheSize());
+		this.workerPool = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "Builder2Server worker " + count.incrementAndGet());
+			}
+		});
 	}
 
 	/**
@@ -281,8 +303,9 @@ public class Builder2Server implements Runnable {
 	}
 
 	/**
-	 * Attempt to read one submission, compile and test it, and send the
-	 * result back to the webapp.
+	 * Attempt to read one message from the webapp.  If it is a submission,
+	 * hand it off to a worker thread to be compiled and tested: the worker
+	 * thread will send the result back to the webapp.
 	 */
 	protected void runOnce() {
 		try {
@@ -293,74 +316,97 @@ public class Builder2Server implements Runnable {
 			Connection conn = connectionManager.getConnection();
 
 			// This is a critical point: the server loop will block waiting
-			// for a problem id / keepalive signal.  If there are connection
+			// for a submission / keepalive signal.  If there are connection
 			// issues, this might block indefinitely.  Entering the
 			// WAITING_FOR_KEEPALIVE state lets the watchdog thread know
 			// that the connection should be forcibly closed if the server
 			// loop gets hung up here.
 			stateManager.setState(State.WAITING_FOR_KEEPALIVE);
-			Integer problemId = safeReadObject(conn.getIn());
-			stateManager.setState(State.WORKING);
-
-			// The CloudCoder app will send us a negative problem id as
-			// a keepalive signal when there are no submissions that need building/testing.
-			// We can just ignore these.
-			if (problemId < 0) {
-				stateManager.setState(State.CONNECTED);
-				return;
-			}
-
-			// The protocol allows the builder to cache Problems and TestCases by their problem id,
-			// but this is a very bad idea, since the Problem and TestCases could change on the
-			// webapp side (for example, if an instructor is editing an exercise).
-			// For this reason, we ALWAYS claim not to have the Problem/TestCases, forcing
-			// the webapp to send the most up to date versions.  It's a small amount
-			// of data, and it's important for correct behavior.
-
-			// Tell the webapp we don't have this Problem/TestCases
-			conn.getOut().writeObject(Boolean.FALSE);
-			conn.getOut().flush();
-
-			// Receive the Problem and TestCases
-			Problem problem = safeReadObject(conn.getIn());
-			List<TestCase> testCaseList = safeReadObject(conn.getIn());
-
-			// read program text
-			String programText = safeReadObject(conn.getIn());
-
-			// Test the submission!
-			SubmissionResult result = builder2.testSubmission(problem, testCaseList, programText);
-
-			// Send the SubmissionResult back to the webapp
-			conn.getOut().writeObject(result);
-			conn.getOut().flush();
-			
-			// Everything went well: return to the CONNECTED state
+			Frame frame = conn.getFrameConnection().read();
 			stateManager.setState(State.CONNECTED);
+
+			switch (frame.getType()) {
+			case KEEPALIVE:
+				// The CloudCoder app sends a keepalive signal when there are
+				// no submissions that need building/testing.
+				// We can just ignore these.
+				break;
+			case SUBMIT:
+				handleSubmission(conn, frame);
+				break;
+			default:
+				throw new IOException("Unexpected frame type " + frame.getType());
+			}
 		} catch (IOException e) {
 			// Quite possibly, this is a routine shutdown of the CloudCoder server.
 			// We'll try connecting again soon.
-			logger.error("Error communicating with server", e);
-			connectionManager.forceClose();
-			stateManager.setState(State.NOT_CONNECTED);
-		} catch (ClassNotFoundException e) {
-			// This should not happen!
-			logger.error("Unexpected ClassNotFoundException, shutting down builder thread", e);
+			if (!shutdownRequested) {
+				logger.error("Error communicating with server", e);
+			}
 			connectionManager.forceClose();
 			stateManager.setState(State.NOT_CONNECTED);
-			shutdown();
-			throw new IllegalStateException("Class not found reading message", e);
 		}
 	}
 
+	private void handleSubmission(final Connection conn, Frame frame) throws IOException {
+		if (shutdownRequested) {
+			// Don't start any new work: the webapp will put the submission
+			// back in its queue when the connection is closed.
+			return;
+		}
+		
+		final int requestId = frame.getRequestId();
+		SubmitMessage msg = SubmitMessage.fromFrame(frame);
+
+		final Problem problem;
+		final List<TestCase> testCaseList;
+		if (msg.hasProblem()) {
+			problem = msg.getProblem();
+			testCaseList = msg.getTestCaseList();
+			if (msg.getProblemHash() != null) {
+				problemCache.put(msg.getProblemId(), msg.getProblemHash(), problem, testCaseList);
+			}
+		} else {
+			ProblemCache.Entry entry = problemCache.get(msg.getProblemId(), msg.getProblemHash());
+			if (entry == null) {
+				// We don't have this version of the Problem/TestCases:
+				// the webapp will send the submission again, including them
+				logger.debug("Problem {} not cached, requesting it", msg.getProblemId());
+				conn.getFrameConnection().write(new Frame(FrameType.NEED_PROBLEM, requestId));
+				return;
+			}
+			problem = entry.getProblem();
+			testCaseList = entry.getTestCaseList();
+		}
+		final String programText = msg.getProgramText();
+
+		workerPool.execute(new Runnable() {
+			@Override
+			public void run() {
+				// Test the submission!
+				SubmissionResult result = builder2.testSubmission(problem, testCaseList, programText);
+
+				// Send the SubmissionResult back to the webapp
+				try {
+					conn.getFrameConnection().write(BuildProtocol.createResultFrame(requestId, result));
+				} catch (IOException e) {
+					// The webapp will retest the submission when we reconnect.
+					// Closing the connection will cause the server loop to notice
+					// that it is broken, if it hasn't already.
+					logger.error("Error sending SubmissionResult to server", e);
+					conn.close();
+				}
+			}
+		});
+	}
+
 	private ISocket createSecureSocket() throws IOException, GeneralSecurityException {
 		return webappSocketFactory.connectToWebapp();
 	}
 
 	public void attemptToConnectToServer() {
 		ISocket socket = null;
-		ObjectInputStream in = null;
-		ObjectOutputStream out = null;
+		FrameConnection frameConnection = null;
 		
 		try {
 			try {
@@ -371,16 +417,25 @@ public class Builder2Server implements Runnable {
 				stateManager.setState(State.NOT_CONNECTED);
 				throw new RuntimeException(e);
 			}
-			in = new ObjectInputStream(socket.getInputStream());
-			out = new ObjectOutputStream(socket.getOutputStream());
-			logger.info("Connected!");
+			frameConnection = new FrameConnection(socket.getInputStream(), socket.getOutputStream());
+			
+			// Handshake: tell the webapp which protocol version we speak and
+			// how many submissions we can test at once, and find out
+			// what the webapp agreed to
+			frameConnection.writeMagic();
+			frameConnection.write(new Handshake(BuildProtocol.VERSION, concurrency).toFrame(FrameType.HELLO));
+			frameConnection.readGreeting();
+			Handshake ack = Handshake.fromFrame(frameConnection.read(), FrameType.HELLO_ACK);
+			
+			logger.info("Connected! (protocol version {}, concurrency {})", ack.getVersion(), ack.getConcurrency());
 			stateManager.setState(State.CONNECTED);
 			noConnectTimer.connected();
-			connectionManager.setConnection(new Connection(socket, in, out));
+			connectionManager.setConnection(new Connection(socket, frameConnection));
 		} catch (IOException e) {
 			IOUtil.closeQuietly(socket);
-			IOUtil.closeQuietly(in);
-			IOUtil.closeQuietly(out);
+			if (frameConnection != null) {
+				frameConnection.close();
+			}
 			logger.info("Failed attempt to connect to server at {}", System.currentTimeMillis());
 			stateManager.setState(State.NOT_CONNECTED);
 			noConnectTimer.notConnected(e);
@@ -393,15 +448,6 @@ public class Builder2Server implements Runnable {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private<E> E safeReadObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-		Object o = in.readObject();
-		if (o == null) {
-			throw new IOException("Could not read!");
-		}
-		return (E) o;
-	}
-
 	public void shutdown() {
 		shutdownRequested = true;
 
@@ -414,14 +460,16 @@ public class Builder2Server implements Runnable {
 		}
 
 		// Shut down the server loop.
-		// If building/testing is in progress, wait for it to finish.
-		while (!stateManager.getStateData().getState().allowShutdown()) {
-			logger.info("shutdown(): waiting for building/testing of current submission to complete");
-			try {
-				Thread.sleep(2000L);
-			} catch (InterruptedException e) {
-				logger.error("Interrupted waiting for server loop to finish current submission");
+		// If building/testing is in progress, wait for it to finish
+		// (so that the results can be sent back to the webapp).
+		logger.info("shutdown(): waiting for building/testing of current submissions to complete");
+		workerPool.shutdown();
+		try {
+			if (!workerPool.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS)) {
+				logger.warn("shutdown(): submissions still being tested after {} ms", SHUTDOWN_WAIT_MS);
 			}
+		} catch (InterruptedException e) {
+			logger.error("Interrupted waiting for worker threads to finish current submissions");
 		}
 		
 		// Close the socket that the server loop is using
@@ -22,9 +22,11 @@ import java.util.Properties;
 
 import org.cloudcoder.builder2.csandbox.EasySandboxSharedLibrary;
 import org.cloudcoder.builder2.extlib.ExternalLibraryCache;
+import org.cloudcoder.builder2.javaprogram.JavaProgramRunnerPool;
 import org.cloudcoder.builder2.javasandbox.JVMKillableTaskManager;
 import org.cloudcoder.builder2.process.RunProcessNativeExe;
 import org.cloudcoder.builder2.pythonfunction.PythonKillableTaskManager;
+import org.cloudcoder.builder2.rubymethod.RubyRuntimePool;
 
 /**
  * Global setup and cleanup needed for before builders start and
@@ -43,6 +45,9 @@ public class Global {
 		// Install KillableTaskManager's security manager
 		JVMKillableTaskManager.installSecurityManager();
 		PythonKillableTaskManager.installSecurityManager();
+		
+		// Start the runner JVMs used to test Java programs
+		JavaProgramRunnerPool.getInstance(config);
 	}
 	
 	/**
@@ -62,5 +67,15 @@ public class Global {
 		
 		// Delete directories/files used by the RunProcessNativeExe
 		RunProcessNativeExe.getInstance(config).cleanup();
+		
+		// Kill the runner JVMs used to test Java programs
+		if (JavaProgramRunnerPool.isCreated()) {
+			JavaProgramRunnerPool.getInstance(config).destroy();
+		}
+		
+		// Terminate the JRuby runtimes used to test Ruby methods
+		if (RubyRuntimePool.isCreated()) {
+			RubyRuntimePool.getInstance(config).destroy();
+		}
 	}
 }
@@ -0,0 +1,112 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.server;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.TestCase;
+
+/**
+ * Least-recently-used cache of {@link Problem}s and {@link TestCase}s
+ * received from the webapp, keyed by problem id.  Each entry records
+ * the hash of the problem and test case content, so if the problem
+ * is edited on the webapp side, the cached version will no longer
+ * match and the webapp will be asked to send the new version.
+ * This class is thread-safe.
+ * 
+ * @author David Hovemeyer
+ */
+public class ProblemCache {
+	/**
+	 * A cached {@link Problem} and its {@link TestCase}s.
+	 */
+	public static class Entry {
+		private final String hash;
+		private final Problem problem;
+		private final List<TestCase> testCaseList;
+		
+		Entry(String hash, Problem problem, List<TestCase> testCaseList) {
+			this.hash = hash;
+			this.problem = problem;
+			this.testCaseList = testCaseList;
+		}
+		
+		/**
+		 * @return the {@link Problem}
+		 */
+		public Problem getProblem() {
+			return problem;
+		}
+		
+		/**
+		 * @return the {@link TestCase}s
+		 */
+		public List<TestCase> getTestCaseList() {
+			return testCaseList;
+		}
+	}
+	
+	private final Map<Integer, Entry> map;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxSize maximum number of problems to cache
+	 */
+	public ProblemCache(final int maxSize) {
+		this.map = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+	
+	/**
+	 * Add a problem and its test cases to the cache.
+	 * 
+	 * @param problemId     the problem id
+	 * @param hash          hash of the problem and test case content
+	 * @param problem       the {@link Problem}
+	 * @param testCaseList  the {@link TestCase}s
+	 */
+	public synchronized void put(int problemId, String hash, Problem problem, List<TestCase> testCaseList) {
+		map.put(problemId, new Entry(hash, problem, testCaseList));
+	}
+	
+	/**
+	 * Get a cached problem and its test cases.
+	 * 
+	 * @param problemId  the problem id
+	 * @param hash       hash of the problem and test case content
+	 * @return the cached {@link Entry}, or null if the problem isn't cached
+	 *         or the cached version doesn't match the hash
+	 */
+	public synchronized Entry get(int problemId, String hash) {
+		if (hash == null) {
+			return null;
+		}
+		Entry entry = map.get(problemId);
+		return (entry != null && entry.hash.equals(hash)) ? entry : null;
+	}
+}
@@ -42,6 +42,7 @@ import org.cloudcoder.builder2.javacompiler.LoadClassesBuildStep;
 import org.cloudcoder.builder2.javamethod.AddJavaMethodScaffoldingBuildStep;
 import org.cloudcoder.builder2.javamethod.AddJavaMethodTestDriverBuildStep;
 import org.cloudcoder.builder2.javamethod.ExecuteJavaMethodTestsBuildStep;
+import org.cloudcoder.builder2.javaprogram.ExecuteJavaProgramForEachCommandInputBuildStep;
 import org.cloudcoder.builder2.javaprogram.JavaProgramToCommandForEachCommandInputBuildStep;
 import org.cloudcoder.builder2.model.IBuildStep;
 import org.cloudcoder.builder2.model.Tester;
@@ -114,7 +115,7 @@ public abstract class TesterFactory {
 		new BytecodeToBytecodeExecutableBuildStep(),
 		new CreateCommandInputsForEachTestCaseBuildStep(),
 		new JavaProgramToCommandForEachCommandInputBuildStep(),
-		new ExecuteCommandForEachCommandInputBuildStep(),
+		new ExecuteJavaProgramForEachCommandInputBuildStep(),
 		new CheckCommandResultsUsingRegexBuildStep(),
 		new CreateSubmissionResultBuildStep(),
 	};
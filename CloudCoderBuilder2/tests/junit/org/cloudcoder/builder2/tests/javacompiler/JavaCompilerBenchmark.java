@@ -0,0 +1,121 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package org.cloudcoder.builder2.tests.javacompiler;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import org.cloudcoder.builder2.javacompiler.JavaCompilerContext;
+import org.cloudcoder.builder2.javacompiler.MemoryFileManager;
+
+/**
+ * Benchmark comparing the latency of compiling a small submission
+ * using a cold {@link JavaCompilerContext} (a new compiler file manager
+ * for each compilation, which is how the builder used to work)
+ * with a warm context reused across compilations.
+ * Run as a Java application: the optional argument is the number
+ * of measured iterations.
+ *
+ * @author David Hovemeyer
+ */
+public class JavaCompilerBenchmark {
+	private static final int WARMUP_ITERATIONS = 20;
+
+	private static final String CLASS_NAME = "Submission";
+	private static final String SOURCE =
+			"import java.util.*;\n" +
+			"public class Submission {\n" +
+			"    public static int sumOfSquares(List<Integer> list) {\n" +
+			"        int sum = 0;\n" +
+			"        for (Integer i : list) { sum += i * i; }\n" +
+			"        return sum;\n" +
+			"    }\n" +
+			"    public static void main(String[] args) {\n" +
+			"        Scanner keyboard = new Scanner(System.in);\n" +
+			"        List<Integer> list = new ArrayList<Integer>();\n" +
+			"        while (keyboard.hasNextInt()) { list.add(keyboard.nextInt()); }\n" +
+			"        System.out.println(sumOfSquares(list));\n" +
+			"    }\n" +
+			"}\n";
+
+	public static void main(String[] args) throws IOException {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+
+		// Warm up the JIT and the compiler classes for both cases
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			compileCold();
+			compileWarm();
+		}
+
+		long[] cold = new long[iterations];
+		long[] warm = new long[iterations];
+		for (int i = 0; i < iterations; i++) {
+			cold[i] = compileCold();
+			warm[i] = compileWarm();
+		}
+
+		report("cold", cold);
+		report("warm", warm);
+	}
+
+	private static long compileCold() throws IOException {
+		long begin = System.nanoTime();
+		JavaCompilerContext ctx = new JavaCompilerContext(null);
+		try {
+			compile(ctx);
+		} finally {
+			ctx.close();
+		}
+		return System.nanoTime() - begin;
+	}
+
+	private static long compileWarm() throws IOException {
+		long begin = System.nanoTime();
+		compile(JavaCompilerContext.forCurrentThread(null));
+		return System.nanoTime() - begin;
+	}
+
+	private static void compile(JavaCompilerContext ctx) {
+		MemoryFileManager fm = new MemoryFileManager(ctx.getFileManager());
+		DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<JavaFileObject>();
+		List<JavaFileObject> sources = Arrays.asList(MemoryFileManager.makeSource(CLASS_NAME, SOURCE));
+		if (!ctx.getCompiler().getTask(null, fm, collector, null, null, sources).call()) {
+			throw new IllegalStateException("Compilation failed: " + collector.getDiagnostics());
+		}
+	}
+
+	private static void report(String label, long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		long total = 0L;
+		for (long t : sorted) {
+			total += t;
+		}
+		System.out.printf("%s: mean=%.2fms, median=%.2fms, p90=%.2fms (%d iterations)\n",
+				label,
+				(total / (double) sorted.length) / 1000000.0,
+				sorted[sorted.length / 2] / 1000000.0,
+				sorted[(int) (sorted.length * 0.9)] / 1000000.0,
+				sorted.length);
+	}
+}
@@ -0,0 +1,126 @@
+package org.cloudcoder.builder2.tests.javaprogram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Properties;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.commons.io.FileUtils;
+import org.cloudcoder.builder2.commandrunner.CommandExecutor;
+import org.cloudcoder.builder2.javaprogram.JavaProgramRunner;
+import org.cloudcoder.builder2.javaprogram.JavaProgramRunnerPool;
+import org.cloudcoder.builder2.model.Bytecode;
+import org.cloudcoder.builder2.model.CommandInput;
+import org.cloudcoder.builder2.model.CommandResult;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Check that a Java program run in a pooled runner JVM produces the
+ * same result as when it is run in a separate process (which is
+ * what happens when all of the runners are busy).
+ */
+public class JavaProgramRunnerEquivalenceTest {
+	private static final String SOURCE =
+			"import java.io.*;\n" +
+			"public class Main {\n" +
+			"  public static void main(String[] args) throws IOException {\n" +
+			"    BufferedReader r = new BufferedReader(new InputStreamReader(System.in));\n" +
+			"    System.out.println(\"input: \" + r.readLine());\n" +
+			"    System.out.println(System.getProperty(\"user.dir\"));\n" +
+			"    System.out.println(new File(\"Main.class\").getAbsolutePath());\n" +
+			"    try {\n" +
+			"      new FileInputStream(\"Main.class\").close();\n" +
+			"      System.out.println(\"allowed\");\n" +
+			"    } catch (SecurityException e) {\n" +
+			"      System.out.println(\"denied\");\n" +
+			"    }\n" +
+			"    System.err.println(\"error output\");\n" +
+			"    System.exit(3);\n" +
+			"  }\n" +
+			"}\n";
+	
+	private static Properties config;
+	private static JavaProgramRunnerPool pool;
+	
+	private File dir;
+	
+	@BeforeClass
+	public static void createPool() {
+		config = new Properties();
+		config.setProperty("cloudcoder.builder2.javaprogram.poolSize", "1");
+		config.setProperty("cloudcoder.builder2.tmpdir", System.getProperty("java.io.tmpdir"));
+		pool = new JavaProgramRunnerPool(config);
+	}
+	
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("ccequiv", "").getCanonicalFile();
+		dir.delete();
+		dir.mkdir();
+		File sourceFile = new File(dir, "Main.java");
+		FileWriter writer = new FileWriter(sourceFile);
+		try {
+			writer.write(SOURCE);
+		} finally {
+			writer.close();
+		}
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assertEquals(0, compiler.run(null, null, null, "-d", dir.getPath(), sourceFile.getPath()));
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+	
+	@Test
+	public void testPooledAndSeparateProcessResultsMatch() throws IOException, InterruptedException {
+		String input = "hello\n";
+		
+		// Run in a pooled runner
+		Bytecode[] bytecodeList = new Bytecode[]{
+				new Bytecode("Main", FileUtils.readFileToByteArray(new File(dir, "Main.class")))
+		};
+		// Runners are started in the background, so wait for one
+		JavaProgramRunner runner = pool.borrow();
+		for (int i = 0; runner == null && i < 300; i++) {
+			Thread.sleep(100L);
+			runner = pool.borrow();
+		}
+		assertNotNull(runner);
+		CommandResult pooled;
+		try {
+			pooled = runner.run("Main", bytecodeList, null, dir, input,
+					CommandExecutor.DEFAULT_MAX_TIME_IN_SECONDS * 1000L, 0L,
+					pool.getMaxOutputBytes(), pool.getWatchdog());
+		} finally {
+			pool.release(runner);
+		}
+		
+		// Run as a separate process
+		CommandResult separate = pool.runInNewJVM(dir, "Main", null, new CommandInput(input), null, config);
+		
+		assertEquals(separate.getStatus(), pooled.getStatus());
+		assertEquals(separate.getStatusMessage(), pooled.getStatusMessage());
+		assertEquals(3, pooled.getExitCode());
+		assertEquals(separate.getExitCode(), pooled.getExitCode());
+		assertEquals(separate.getStdout(), pooled.getStdout());
+		assertEquals(separate.getStderr(), pooled.getStderr());
+		assertEquals(dir.getPath(), pooled.getStdout().get(1));
+	}
+	
+	@AfterClass
+	public static void destroyPool() {
+		pool.destroy();
+	}
+}
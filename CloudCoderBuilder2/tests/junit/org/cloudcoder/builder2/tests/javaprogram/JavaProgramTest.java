@@ -0,0 +1,55 @@
+package org.cloudcoder.builder2.tests.javaprogram;
+
+import static org.junit.Assert.assertEquals;
+
+import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.TestOutcome;
+import org.cloudcoder.app.shared.model.TestResult;
+import org.cloudcoder.builder2.tests.BuilderTest;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JavaProgramTest extends BuilderTest {
+	private ProblemAndTestCaseList skip3;
+	
+	@Before
+	public void start() {
+		if (createContext()) {
+			skip3 = getContext().getExercise("skip3_java");
+		}
+	}
+	
+	@Test
+	public void testSkip3GoodSubmission() {
+		String source = getContext().getSourceText("skip3_pass.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, skip3);
+		super.assertAllTestsPassed(result, skip3);
+	}
+	
+	@Test
+	public void testSkip3TimeoutInfiniteLoop() {
+		String source = getContext().getSourceText("skip3_timeout_infinite_loop.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, skip3);
+		super.assertAllTestsTimedOut(result, skip3);
+	}
+	
+	@Test
+	public void testSkip3ExitEarly() {
+		String source = getContext().getSourceText("skip3_exit_early.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, skip3);
+		super.assertAllTestCasesHaveTestResults(result, skip3);
+		for (TestResult tr : result.getTestResults()) {
+			assertEquals(TestOutcome.FAILED_ASSERTION, tr.getOutcome());
+		}
+		
+		// System.exit must not have affected the runner JVMs
+		testSkip3GoodSubmission();
+	}
+	
+	@AfterClass
+	public static void whenDone() {
+		BuilderTest.getInstance().destroyContext();
+	}
+}
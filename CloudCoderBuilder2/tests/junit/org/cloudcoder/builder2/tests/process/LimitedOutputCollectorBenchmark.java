@@ -0,0 +1,164 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.tests.process;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.cloudcoder.builder2.process.LimitedInputStream;
+import org.cloudcoder.builder2.process.LimitedOutputCollector;
+
+/**
+ * Benchmark comparing {@link LimitedOutputCollector}, which scans
+ * output in blocks at the byte level, with the character-at-a-time
+ * implementation it replaced.  Run as a Java application: the optional
+ * argument is the number of measured iterations.
+ *
+ * @author David Hovemeyer
+ */
+public class LimitedOutputCollectorBenchmark {
+	private static final int WARMUP_ITERATIONS = 2000;
+
+	private static final Executor SAME_THREAD = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	public static void main(String[] args) throws IOException {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+		// Typical output: well within the limits
+		StringBuilder typical = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			typical.append("Enter a number: The sum of the first ").append(i).append(" squares is ").append(i * i).append('\n');
+		}
+
+		// A program spewing short lines (e.g., an infinite loop)
+		StringBuilder spew = new StringBuilder();
+		for (int i = 0; spew.length() < 1024*1024; i++) {
+			spew.append("i = ").append(i).append('\n');
+		}
+
+		// Very long lines
+		StringBuilder longLines = new StringBuilder();
+		while (longLines.length() < 64*1024) {
+			for (int i = 0; i < 1000; i++) {
+				longLines.append((char) ('a' + (i % 26)));
+			}
+			longLines.append('\n');
+		}
+
+		run("typical", typical.toString().getBytes("UTF-8"), iterations);
+		run("spew", spew.toString().getBytes("UTF-8"), iterations);
+		run("longLines", longLines.toString().getBytes("UTF-8"), iterations);
+	}
+
+	private static void run(String label, byte[] output, int iterations) throws IOException {
+		// Output within the limits must be collected identically
+		if (output.length <= LimitedOutputCollector.DEFAULT_MAX_BYTES_ALLOWED
+				&& !collectBlocks(output).equals(collectCharAtATime(output))) {
+			throw new IllegalStateException("Collectors disagree on " + label + " output");
+		}
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			collectCharAtATime(output);
+			collectBlocks(output);
+		}
+
+		long[] charAtATime = new long[iterations];
+		long[] blocks = new long[iterations];
+		for (int i = 0; i < iterations; i++) {
+			long begin = System.nanoTime();
+			collectCharAtATime(output);
+			charAtATime[i] = System.nanoTime() - begin;
+
+			begin = System.nanoTime();
+			collectBlocks(output);
+			blocks[i] = System.nanoTime() - begin;
+		}
+
+		report(label + " (char at a time)", charAtATime);
+		report(label + " (blocks)", blocks);
+	}
+
+	private static List<String> collectBlocks(byte[] output) {
+		LimitedOutputCollector collector = new LimitedOutputCollector(new ByteArrayInputStream(output));
+		collector.start(SAME_THREAD);
+		return collector.getCollectedOutput();
+	}
+
+	// The previous implementation of LimitedOutputCollector
+	private static List<String> collectCharAtATime(byte[] output) {
+		int maxLinesAllowed = LimitedOutputCollector.DEFAULT_MAX_LINES_ALLOWED;
+		int maxCharactersPerLine = LimitedOutputCollector.DEFAULT_MAX_CHARACTERS_PER_LINE;
+		InputStream in = new ByteArrayInputStream(output);
+		Reader reader = new InputStreamReader(new LimitedInputStream(in, LimitedOutputCollector.DEFAULT_MAX_BYTES_ALLOWED));
+		List<String> collectedLines = new ArrayList<String>();
+		try {
+			int c;
+			StringBuilder line = new StringBuilder();
+			while (true) {
+				c = reader.read();
+				if (c < 0) {
+					if (line.length() > 0 && collectedLines.size() < maxLinesAllowed) {
+						collectedLines.add(line.toString());
+					}
+					break;
+				}
+				if (collectedLines.size() > maxLinesAllowed) {
+					continue;
+				}
+				if (c == '\n') {
+					collectedLines.add(line.toString());
+					line = new StringBuilder();
+				} else {
+					if (line.length() <= maxCharactersPerLine) {
+						line.append((char) c);
+					}
+				}
+			}
+		} catch (IOException e) {
+			// Ignore
+		}
+		return collectedLines;
+	}
+
+	private static void report(String label, long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		long total = 0L;
+		for (long t : sorted) {
+			total += t;
+		}
+		System.out.printf("%s: mean=%.2fus, median=%.2fus, p90=%.2fus (%d iterations)\n",
+				label,
+				(total / (double) sorted.length) / 1000.0,
+				sorted[sorted.length / 2] / 1000.0,
+				sorted[(int) (sorted.length * 0.9)] / 1000.0,
+				sorted.length);
+	}
+}
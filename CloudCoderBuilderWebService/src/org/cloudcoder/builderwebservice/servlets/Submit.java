@@ -33,8 +33,11 @@ import javax.servlet.http.HttpServletResponse;
 import org.cloudcoder.app.server.submitsvc.DefaultSubmitService;
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
 import org.cloudcoder.app.server.submitsvc.ISubmitService;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
+import org.cloudcoder.app.server.submitsvc.SubmissionResultLongPoll;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.SubmissionException;
+import org.cloudcoder.app.shared.model.SubmissionQueueFullException;
 import org.cloudcoder.app.shared.model.SubmissionResult;
 import org.cloudcoder.app.shared.model.TestCase;
 import org.cloudcoder.app.shared.model.json.JSONUtil;
@@ -79,9 +82,11 @@ public class Submit extends HttpServlet {
 				return;
 			}
 			
+			// Long poll for the result: the request is suspended (without
+			// tying up a thread) until the result is ready or the poll expires
 			SubmissionResult submissionResult;
 			try {
-				submissionResult = result.waitFor(IFutureSubmissionResult.STANDARD_POLL_WAIT_MS);
+				submissionResult = SubmissionResultLongPoll.poll(req, result, SubmissionResultLongPoll.DEFAULT_LONG_POLL_MS);
 			} catch (InterruptedException e) {
 				throw new ServletException("Unexpectedly interrupted waiting for submission result", e);
 			}
@@ -161,7 +166,7 @@ public class Submit extends HttpServlet {
 			
 			// Build a BuilderSubmission
 			ISubmitService submitSvc = DefaultSubmitService.getInstance();
-			IFutureSubmissionResult promise = submitSvc.submitAsync(problem, testCaseList, programText);
+			IFutureSubmissionResult promise = submitSvc.submitAsync(problem, testCaseList, programText, SubmissionPriority.WEB_SERVICE, -1);
 			
 			// Add the submission result to the ActiveSubmissionMap
 			String key = ActiveSubmissionMap.getInstance().add(promise);
@@ -183,6 +188,9 @@ public class Submit extends HttpServlet {
 			logger.warn("Exception interpreting request", e);
 		} catch (AuthenticationException e) {
 			ServletUtil.authorizationRequired(resp, e.getMessage(), "BuilderWebService");
+		} catch (SubmissionQueueFullException e) {
+			logger.warn("Submission queue is full, rejecting submission");
+			ServletUtil.sendResponse(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
 		} catch (SubmissionException e) {
 			logger.error("Error handling submission", e);
 			ServletUtil.internalServerError(resp, e.getMessage());
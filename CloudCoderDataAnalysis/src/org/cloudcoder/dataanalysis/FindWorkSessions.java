@@ -20,11 +20,11 @@ package org.cloudcoder.dataanalysis;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
 
 import org.cloudcoder.app.server.persist.Database;
+import org.cloudcoder.app.shared.model.ICallback;
 import org.cloudcoder.app.shared.model.SnapshotSelectionCriteria;
 import org.cloudcoder.app.shared.model.WorkSession;
 
@@ -52,12 +52,10 @@ public class FindWorkSessions {
 		Util.connectToDatabase(config);
 		
 		//int courseId = Integer.parseInt(Util.ask(keyboard, "Course id: "));
-		SnapshotSelectionCriteria criteria = Util.getSnapshotSelectionCriteria(keyboard);
-		int separationSeconds = Integer.parseInt(Util.ask(keyboard, "Separation in seconds: "));
+		final SnapshotSelectionCriteria criteria = Util.getSnapshotSelectionCriteria(keyboard);
+		final int separationSeconds = Integer.parseInt(Util.ask(keyboard, "Separation in seconds: "));
 		String resultFileName = Util.ask(keyboard, "Result filename: ");
 		
-		final List<WorkSession> workSessions = Database.getInstance().findWorkSessions(criteria, separationSeconds);
-		
 		PrintWriter pw = new PrintWriter(new FileWriter(resultFileName));
 		CSV csv = CSV
 				.separator('|')  // delimiter of fields
@@ -65,19 +63,23 @@ public class FindWorkSessions {
 				.create();       // new instance is immutable
 		csv.write(pw, new CSVWriteProc() {
 			@Override
-			public void process(CSVWriter w) {
+			public void process(final CSVWriter w) {
 				w.writeNext("courseId", "problemId", "userId", "startEventId", "endEventId", "startTime", "endTime");
-				for (WorkSession ws : workSessions) {
-					w.writeNext(
-							String.valueOf(ws.getCourseId()),
-							String.valueOf(ws.getProblemId()),
-							String.valueOf(ws.getUserId()),
-							String.valueOf(ws.getStartEventId()),
-							String.valueOf(ws.getEndEventId()),
-							String.valueOf(ws.getStartTime()),
-							String.valueOf(ws.getEndTime())
-					);
-				}
+				// Write each work session as soon as it is found
+				Database.getInstance().visitWorkSessions(criteria, separationSeconds, new ICallback<WorkSession>() {
+					@Override
+					public void call(WorkSession ws) {
+						w.writeNext(
+								String.valueOf(ws.getCourseId()),
+								String.valueOf(ws.getProblemId()),
+								String.valueOf(ws.getUserId()),
+								String.valueOf(ws.getStartEventId()),
+								String.valueOf(ws.getEndEventId()),
+								String.valueOf(ws.getStartTime()),
+								String.valueOf(ws.getEndTime())
+						);
+					}
+				});
 			}
 		});
 		pw.close();
@@ -555,7 +555,7 @@ public class ProgsnapExport {
 		}
 		
 		// Retrieve submission receipts
-		SubmissionReceipt[] receipts = Database.getInstance().getAllSubmissionReceiptsForUser(problem, student);
+		SubmissionReceipt[] receipts = Database.getInstance().getAllSubmissionReceiptsForUser(problem, student, null);
 		
 		// Use submission receipts to
 		// - annotate edit events with snapshot ids (which are submission event ids)
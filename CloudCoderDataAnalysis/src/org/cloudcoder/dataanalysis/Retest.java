@@ -33,11 +33,13 @@ import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.server.persist.SnapshotCallback;
 import org.cloudcoder.app.server.submitsvc.DefaultSubmitService;
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.server.submitsvc.oop.OutOfProcessSubmitService;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
 import org.cloudcoder.app.shared.model.SnapshotSelectionCriteria;
 import org.cloudcoder.app.shared.model.SubmissionException;
+import org.cloudcoder.app.shared.model.SubmissionQueueFullException;
 import org.cloudcoder.app.shared.model.SubmissionReceipt;
 import org.cloudcoder.app.shared.model.SubmissionResult;
 import org.cloudcoder.app.shared.model.TestCase;
@@ -127,7 +129,7 @@ public class Retest {
 			ProblemAndTestCaseList exercise = findExercise(snapshot.problemId);
 			IFutureSubmissionResult future;
 			try {
-				future = DefaultSubmitService.getInstance().submitAsync(exercise.getProblem(), exercise.getTestCaseData(), snapshot.programText);
+				future = submitForRetest(exercise, snapshot);
 				futureList.add(future);
 				
 				// Map the future to its snapshot
@@ -135,6 +137,8 @@ public class Retest {
 				snapshotMap.put(future, snapshot);
 			} catch (SubmissionException e) {
 				logger.error("Error submitting snapshot for retest", e);
+			} catch (InterruptedException e) {
+				logger.error("Interrupted submitting snapshot for retest", e);
 			}
 		}
 		
@@ -177,6 +181,19 @@ public class Retest {
 		System.out.println("exiting");
 	}
 
+	private IFutureSubmissionResult submitForRetest(ProblemAndTestCaseList exercise, RetestSnapshot snapshot)
+			throws SubmissionException, InterruptedException {
+		while (true) {
+			try {
+				return DefaultSubmitService.getInstance().submitAsync(exercise.getProblem(), exercise.getTestCaseData(),
+						snapshot.programText, SubmissionPriority.BATCH, snapshot.userId);
+			} catch (SubmissionQueueFullException e) {
+				// Wait for the builders to catch up
+				Thread.sleep(1000L);
+			}
+		}
+	}
+
 	private SubmissionResult waitForSubmissionResult(IFutureSubmissionResult future) throws SubmissionException, InterruptedException {
 		System.out.print("Waiting for submission result...");
 		SubmissionResult submissionResult = null;
@@ -97,7 +97,14 @@ public class TimeToSolve implements IAnalyzeSnapshots {
 		
 		System.out.print("Analyzing work sessions...");
 		System.out.flush();
+		int lastUserId = -1;
 		for (WorkSession session : sessions) {
+			if (session.getUserId() != lastUserId) {
+				// Work sessions are ordered by user, so the previous user's
+				// submission receipts won't be needed again
+				submissionReceiptMap.clear();
+				lastUserId = session.getUserId();
+			}
 			Progress progress = getProgress(session.getUserId(), session.getProblemId());
 			if (progress.solved) {
 				// problem was solved in a previous work session
@@ -169,7 +176,7 @@ public class TimeToSolve implements IAnalyzeSnapshots {
 			problem.setProblemId(problemId);
 			User user = new User();
 			user.setId(userId);
-			receipts = Arrays.asList(Database.getInstance().getAllSubmissionReceiptsForUser(problem, user));
+			receipts = Arrays.asList(Database.getInstance().getAllSubmissionReceiptsForUser(problem, user, null));
 			// sort by event id
 			Collections.sort(receipts, new Comparator<SubmissionReceipt>() {
 				@Override
@@ -27,12 +27,18 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -63,8 +69,8 @@ public class Export {
 	public static final long EVENT_SPACING = 200L;
 	
 	private Properties config;
-	private EventFactory eventFactory;
 	private long nextEventOrderValue;
+	private long sessionIdBase;
 	private MainTableWriter mainTableWriter;
 	
 	private static Export theInstance;
@@ -80,35 +86,44 @@ public class Export {
 		this.config = config;
 	}
 	
-	public void createEventFactory() {
-		//
-		// The EventFactory relies on the exporter creating ProgSnap2Event object
-		// in the "correct" order, i.e., our best-guess chronological order.
-		//
-		eventFactory = new EventFactory() {
-			private long sessionId = 1L;
-			
-			@Override
-			public ProgSnap2Event createEvent(EventType eventType, long eventId, int subjectId, String termId, long sessionId, String[] toolInstances) {
-				ProgSnap2Event evt = ProgSnap2Event.create(eventType, eventId, subjectId, sessionId, toolInstances);
-
-				// Order values are spaced out for the same reason as event ids:
-				// it allows us to generate new events in the created space.
-				// This is important, for example, for incorporating compiler
-				// diagnostics (which have to be reconstructed, since CloudCoder
-				// doesn't record them.)
-				evt.setOrder(nextEventOrderValue * EVENT_SPACING);
-				
-				nextEventOrderValue++;
-				evt.setTermId(termId);
-				return evt;
-			}
+	/**
+	 * The exported events for one student, computed by a worker thread.
+	 * Order values and session ids are assigned when the batch is written
+	 * to the main table (see {@link Export#writeBatch(StudentBatch)}), so that
+	 * they are the same as if the students had been exported one at a time.
+	 * Until then, session ids are numbered starting at 1 for each student.
+	 */
+	private static class StudentBatch implements EventFactory {
+		final User student;
+		final List<ProgSnap2Event> events;
+		long numSessions;
+		long numSourceEvents;
+
+		StudentBatch(User student) {
+			this.student = student;
+			this.events = new ArrayList<>();
+		}
 
-			@Override
-			public long nextSessionId() {
-				return sessionId++;
-			}
-		};
+		@Override
+		public ProgSnap2Event createEvent(EventType eventType, long eventId, int subjectId, String termId, long sessionId, String[] toolInstances) {
+			ProgSnap2Event evt = ProgSnap2Event.create(eventType, eventId, subjectId, sessionId, toolInstances);
+			evt.setTermId(termId);
+			return evt;
+		}
+
+		@Override
+		public long nextSessionId() {
+			return ++numSessions;
+		}
+
+		void addEvent(ProgSnap2Event evt, String currentCodeStateId) {
+			evt.setCodeStateId(currentCodeStateId);
+			events.add(evt);
+		}
+
+		void addEvent(ProgSnap2Event evt) {
+			events.add(evt);
+		}
 	}
 
 	public void setMainTableWriter(MainTableWriter mainTableWriter) {
@@ -127,19 +142,62 @@ public class Export {
 			System.out.printf("  %d\n", student.getId());
 		}
 		
-		ProblemList problems = findProblems(instructor, course);
-		
-		IDatabase db = Database.getInstance();
-		
-		// Write main event table
-		for (User student : students) {
-			for (Problem problem : problems.getProblemList()) {
-				System.out.printf("Retrieving events for student %d, problem %d\n", student.getId(), problem.getProblemId());
-				List<Triple<Event, Change, SubmissionReceipt>> events =
-						db.retrieveEvents(problem, student);
-				System.out.printf("  Retrieved %d events\n", events.size());
-				writeEvents(instructor, course, problem, student, events);
+		final ProblemList problems = findProblems(instructor, course);
+
+		// The term name is the same for every event, so look it up once
+		Term term = new Term();
+		term.setId(course.getTermId());
+		Database.getInstance().reloadModelObject(term);
+		final String termId = term.getName() + " " + course.getYear();
+
+		final File codeStates = mainTableWriter.makeSubdir("CodeStates");
+
+		// Write main event table.
+		// Each student's events are retrieved and converted (and their
+		// code states written) by a pool of worker threads, while this
+		// thread writes the completed batches to the main table in
+		// student order.  The number of batches that are in progress
+		// or waiting to be written is bounded, so memory use doesn't
+		// grow with the size of the course.
+		int numThreads = getNumThreads();
+		int maxPending = numThreads * 2;
+		System.out.printf("Exporting %d students using %d threads\n", students.size(), numThreads);
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			LinkedList<Future<StudentBatch>> pending = new LinkedList<>();
+			Iterator<User> studentIter = students.iterator();
+			int numDone = 0;
+			long numSourceEvents = 0L, numEventsWritten = 0L;
+			long startTime = System.currentTimeMillis();
+			while (studentIter.hasNext() || !pending.isEmpty()) {
+				// Keep the workers busy
+				while (studentIter.hasNext() && pending.size() < maxPending) {
+					final User student = studentIter.next();
+					pending.add(executor.submit(new Callable<StudentBatch>() {
+						@Override
+						public StudentBatch call() throws Exception {
+							return exportStudent(problems, student, termId, codeStates);
+						}
+					}));
+				}
+
+				// Write the oldest batch
+				StudentBatch batch = awaitBatch(pending.removeFirst());
+				writeBatch(batch);
+				numDone++;
+				numSourceEvents += batch.numSourceEvents;
+				numEventsWritten += batch.events.size();
+
+				long elapsed = Math.max(1L, System.currentTimeMillis() - startTime);
+				System.out.printf("Exported student %d (%d/%d): %d events, %.1f events/sec\n",
+						batch.student.getId(), numDone, students.size(), batch.events.size(),
+						numSourceEvents * 1000.0 / elapsed);
 			}
+			long elapsed = Math.max(1L, System.currentTimeMillis() - startTime);
+			System.out.printf("Exported %d CloudCoder events as %d ProgSnap2 events in %.1f seconds (%.1f events/sec)\n",
+					numSourceEvents, numEventsWritten, elapsed / 1000.0, numSourceEvents * 1000.0 / elapsed);
+		} finally {
+			executor.shutdownNow();
 		}
 		
 		// Write README.txt
@@ -157,22 +215,68 @@ public class Export {
 		}
 	}
 
-	private void writeEvents(User instructor, Course course, Problem problem, User student,
+	/**
+	 * Convert all of the events for one student (for all problems) to
+	 * ProgSnap2 events, writing the student's code states.
+	 * Called from a worker thread.
+	 */
+	private StudentBatch exportStudent(ProblemList problems, User student, String termId, File codeStates) {
+		IDatabase db = Database.getInstance();
+		StudentBatch batch = new StudentBatch(student);
+		for (Problem problem : problems.getProblemList()) {
+			List<Triple<Event, Change, SubmissionReceipt>> events =
+					db.retrieveEvents(problem, student);
+			batch.numSourceEvents += events.size();
+			writeEvents(batch, problem, student, termId, codeStates, events);
+		}
+		return batch;
+	}
+
+	private static StudentBatch awaitBatch(Future<StudentBatch> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for export", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException("Error exporting events", cause);
+		}
+	}
+
+	/**
+	 * Write a student's events to the main table, assigning order values
+	 * and (globally unique) session ids.
+	 */
+	private void writeBatch(StudentBatch batch) {
+		for (ProgSnap2Event evt : batch.events) {
+			// Order values are spaced out for the same reason as event ids:
+			// it allows us to generate new events in the created space.
+			// This is important, for example, for incorporating compiler
+			// diagnostics (which have to be reconstructed, since CloudCoder
+			// doesn't record them.)
+			evt.setOrder(nextEventOrderValue * EVENT_SPACING);
+			nextEventOrderValue++;
+			evt.setSessionId(sessionIdBase + evt.getSessionId());
+			mainTableWriter.writeEvent(evt);
+		}
+		sessionIdBase += batch.numSessions;
+	}
+
+	private void writeEvents(StudentBatch batch, Problem problem, User student, String termId, File codeStates,
 			List<Triple<Event, Change, SubmissionReceipt>> events) {
 		long sessionSep = getSeparationSeconds() * 1000L;
 
-		File codeStates = mainTableWriter.makeSubdir("CodeStates");
-
 		TextDocument doc = new TextDocument();
 		ApplyChangeToTextDocument applicator = new ApplyChangeToTextDocument();
 		
 		String currentCodeStateId = "";
 		
-		Term term = new Term();
-		term.setId(course.getTermId());
-		Database.getInstance().reloadModelObject(term);
-		String termId = term.getName() + " " + course.getYear();
-		
 		long lastEventTs = -1L;
 		long curSessionID = -1L;
 		long lastEventId = -1L;
@@ -191,18 +295,18 @@ public class Export {
 				if (lastEventTs > -1L) {
 					// Generate Session.End
 					long sessionEndEventId = eventId - 2L;
-					ProgSnap2Event endEvt = eventFactory.createEvent(
+					ProgSnap2Event endEvt = batch.createEvent(
 							EventType.SessionEnd, sessionEndEventId, student.getId(), termId, curSessionID, TOOL_INSTANCES);
 					populateBasicEventInfo(endEvt, problem.getCourseId(), problem.getProblemId(), lastEventTs + 1L); 
-					mainTableWriter.writeEvent(endEvt, currentCodeStateId);
+					batch.addEvent(endEvt, currentCodeStateId);
 				}
 				// Generate Session.Start
-				curSessionID = eventFactory.nextSessionId();
+				curSessionID = batch.nextSessionId();
 				long sessionStartEventId = eventId - 1L;
-				ProgSnap2Event startEvt = eventFactory.createEvent(
+				ProgSnap2Event startEvt = batch.createEvent(
 						EventType.SessionStart, sessionStartEventId, student.getId(), termId, curSessionID, TOOL_INSTANCES);
 				populateBasicEventInfo(startEvt, problem.getCourseId(), problem.getProblemId(), curEventTs);
-				mainTableWriter.writeEvent(startEvt, currentCodeStateId);
+				batch.addEvent(startEvt, currentCodeStateId);
 			}
 			
 			if (triple.getSecond() != null) {
@@ -221,7 +325,7 @@ public class Export {
 						applicator.apply(c, doc);
 						
 						// Create the edit event
-						ProgSnap2Event evt = eventFactory.createEvent(EventType.FileEdit, eventId, student.getId(), termId, curSessionID, TOOL_INSTANCES);
+						ProgSnap2Event evt = batch.createEvent(EventType.FileEdit, eventId, student.getId(), termId, curSessionID, TOOL_INSTANCES);
 						//evt.setAssignmentId(0); // CloudCoder doesn't really have the concept of assignments
 //						evt.setCourseId(problem.getCourseId());
 //						// TODO: course section id
@@ -244,7 +348,7 @@ public class Export {
 						evt.setCodeStateSection(codeStateSection);
 
 						// Write the event to the main table
-						mainTableWriter.writeEvent(evt);
+						batch.addEvent(evt);
 
 						File codeStateDir = new File(codeStates, evt.getCodeStateId());
 						if (!codeStateDir.mkdirs()) {
@@ -263,7 +367,7 @@ public class Export {
 			}
 			if (triple.getThird() != null) {
 				// Submission event
-				writeSubmission(eventId, student, problem, termId, triple.getThird(), currentCodeStateId, curSessionID);
+				writeSubmission(batch, eventId, student, problem, termId, triple.getThird(), currentCodeStateId, curSessionID);
 			}
 			
 			lastEventId = eventId;
@@ -274,10 +378,10 @@ public class Export {
 		if (curSessionID > -1L) {
 			// Generate Session.End
 			long sessionStartEventId = lastEventId + EVENT_SPACING - 1L;
-			ProgSnap2Event endEvt = eventFactory.createEvent(
+			ProgSnap2Event endEvt = batch.createEvent(
 					EventType.SessionEnd, sessionStartEventId, student.getId(), termId, curSessionID, TOOL_INSTANCES);
 			populateBasicEventInfo(endEvt, problem.getCourseId(), problem.getProblemId(), lastEventTs + 1L);
-			mainTableWriter.writeEvent(endEvt, currentCodeStateId);
+			batch.addEvent(endEvt, currentCodeStateId);
 		}
 	}
 
@@ -343,13 +447,11 @@ public class Export {
 //		}
 //	}
 
-	private void writeSubmission(long submitEventId, User student, Problem problem, String termId, SubmissionReceipt receipt, String currentCodeStateId, long curSessionId) {
+	private void writeSubmission(StudentBatch batch, long submitEventId, User student, Problem problem, String termId, SubmissionReceipt receipt, String currentCodeStateId, long curSessionId) {
 		IDatabase db = Database.getInstance();
 
 		SubmissionStatus status = receipt.getStatus();
 
-		mainTableWriter.makeSubdir("CodeStates");
-
 		// Not a real submission
 		if (status == SubmissionStatus.NOT_STARTED) {
 			//continue;
@@ -379,7 +481,7 @@ public class Export {
 			String codeStateSection = getCodeStateSection(currentCodeStateId, getSourceFileName(problem));
 
 			// Record Submit event
-			submit = eventFactory.createEvent(EventType.Submit, submitEventId, student.getId(), termId, curSessionId, TOOL_INSTANCES);
+			submit = batch.createEvent(EventType.Submit, submitEventId, student.getId(), termId, curSessionId, TOOL_INSTANCES);
 			
 			// Create an ExecutionID to link Run.Test events associated
 			// with this submission.
@@ -403,7 +505,7 @@ public class Export {
 
 			// Record Compile event
 			long compileEventId = submitEventId + 1L;
-			compile = eventFactory.createEvent(EventType.Compile, compileEventId, student.getId(), termId, curSessionId, TOOL_INSTANCES);
+			compile = batch.createEvent(EventType.Compile, compileEventId, student.getId(), termId, curSessionId, TOOL_INSTANCES);
 			compile.setParentEventId(submitEventId);
 			compile.setServerTimestamp(receipt.getEvent().getTimestamp());
 			compile.setProblemId(problem.getProblemId());
@@ -440,7 +542,7 @@ public class Export {
 						
 						long runTestEventId = compileEventId + (long)testCount;
 
-						ProgSnap2Event runTestEvent = eventFactory.createEvent(EventType.RunTest, runTestEventId, student.getId(), termId, curSessionId, TOOL_INSTANCES);
+						ProgSnap2Event runTestEvent = batch.createEvent(EventType.RunTest, runTestEventId, student.getId(), termId, curSessionId, TOOL_INSTANCES);
 						// note that TestID is qualified with problem id, to ensure uniqueness
 						runTestEvent.setTestId("p" + problem.getProblemId() + "/" + test.getTestCaseName());
 						runTestEvent.setParentEventId(submitEventId);
@@ -513,10 +615,10 @@ public class Export {
 			
 			// Now that scores have been computed (if appropriate),
 			// we can write all of the events related to this submission
-			mainTableWriter.writeEvent(submit, currentCodeStateId);
-			mainTableWriter.writeEvent(compile, currentCodeStateId);
+			batch.addEvent(submit, currentCodeStateId);
+			batch.addEvent(compile, currentCodeStateId);
 			for (ProgSnap2Event runTest : runTests) {
-				mainTableWriter.writeEvent(runTest, currentCodeStateId);
+				batch.addEvent(runTest, currentCodeStateId);
 			}
 		}
 	}
@@ -550,6 +652,22 @@ public class Export {
 		return result;
 	}
 
+	/**
+	 * @return number of worker threads to use (ps2.threads, defaulting to
+	 *         the number of available processors, up to 8)
+	 */
+	public int getNumThreads() {
+		String value = config.getProperty("ps2.threads");
+		if (value == null || value.trim().equals("")) {
+			return Math.min(8, Runtime.getRuntime().availableProcessors());
+		}
+		int numThreads = Integer.parseInt(value.trim());
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("ps2.threads must be at least 1");
+		}
+		return numThreads;
+	}
+
 	private int getSeparationSeconds() {
 		return Integer.valueOf(config.getProperty("ps2.separationSeconds"));
 	}
@@ -624,8 +742,6 @@ public class Export {
 		File destDir = new File(config.getProperty("ps2.dest"));
 		MainTableWriter mainTableWriter = new MainTableWriter(destDir);
 		exporter.setMainTableWriter(mainTableWriter);
-		
-		exporter.createEventFactory();
 
 		// Do the export
 		try {
@@ -21,6 +21,7 @@ import java.util.Scanner;
 import org.apache.commons.io.IOUtils;
 import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.server.submitsvc.oop.OutOfProcessSubmitService;
 import org.cloudcoder.app.shared.model.CompilationOutcome;
 import org.cloudcoder.app.shared.model.CompilationResult;
@@ -160,7 +161,7 @@ public class GatherCompileErrors {
 							// Submit the crud
 							try {
 								System.out.printf("  Recompiling event %s\n", rowView.get("EventID"));
-								IFutureSubmissionResult future = svc.submitAsync(p.getProblem(), p.getTestCaseData(), code);
+								IFutureSubmissionResult future = svc.submitAsync(p.getProblem(), p.getTestCaseData(), code, SubmissionPriority.BATCH, -1);
 								SubmissionResult result = null;
 								do {
 									result = future.waitFor(100L);
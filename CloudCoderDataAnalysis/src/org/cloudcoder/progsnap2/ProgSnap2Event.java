@@ -256,6 +256,10 @@ public class ProgSnap2Event {
 	public void setTermId(String termId) {
 		setFieldValue("TermID", termId);
 	}
+	
+	public void setSessionId(long sessionId) {
+		setFieldValue("SessionID", sessionId);
+	}
 
 	public String getCodeStateId() {
 		return getFieldValue("CodeStateID", String.class);
@@ -264,4 +268,8 @@ public class ProgSnap2Event {
 	public Long getEventId() {
 		return getFieldValue("EventID", Long.class);
 	}
+	
+	public Long getSessionId() {
+		return getFieldValue("SessionID", Long.class);
+	}
 }
\ No newline at end of file
@@ -18,32 +18,41 @@
 package org.cloudcoder.jetty;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.jar.JarInputStream;
+import java.util.zip.CRC32;
 
 import org.apache.commons.io.output.ByteArrayOutputStream;
 
 /**
  * <p>Load classes from jarfiles nested within the given jarfile.
- * This is <em>extremely</em> slow, since resources are located by a
- * sequential scan of the nested jarfiles.  We use it here
- * only because we're doing something (creating the webapp database)
- * that is not performance-critical.  Also, the URLs of resources
- * loaded from this classloader refer to temporary files (since jar:
- * URLs don't nest), and code that expects the URL of a returned resource
- * to bear some resemblance to its resource name will break.</p>
+ * Each nested jarfile is extracted once into an on-disk cache directory
+ * (see {@link #CACHE_DIR_PROPERTY}), keyed by the nested jarfile's
+ * name, CRC, and size, so that later runs can reuse the extracted
+ * jarfiles without inflating them again.  Because classes are loaded
+ * from the cache directory, it must belong to the current user: it is
+ * made accessible only to its owner, and a cached jarfile is only reused
+ * if its CRC matches the nested jarfile's CRC.  Classes and resources are then
+ * read from the extracted jarfiles with random access, and resource
+ * URLs are ordinary <code>jar:</code> URLs referring to the extracted
+ * jarfiles.</p>
  * 
  * <p>The {@link #runMain(Class, String, List)} method is a convenient
  * way to run the <code>main</code> method of a class in a nested
@@ -52,8 +61,17 @@ import org.apache.commons.io.output.ByteArrayOutputStream;
  * @author David Hovemeyer
  */
 public class NestedJarClassLoader extends ClassLoader {
+	/**
+	 * System property specifying the directory in which extracted
+	 * nested jarfiles are cached.  Defaults to a directory in the
+	 * system temporary directory.
+	 */
+	public static final String CACHE_DIR_PROPERTY = "cloudcoder.nestedjar.cachedir";
+	
 	private JarFile jar;
-	private Map<String, String> resourceToNestedJarMap;
+	private List<JarFile> nestedJars;
+	private Map<String, JarFile> resourceToNestedJarMap;
+	private Map<String, URL> resourceUrlCache;
 	
 	/**
 	 * Constructor.
@@ -61,12 +79,19 @@ public class NestedJarClassLoader extends ClassLoader {
 	 * @param jar     a {@link JarFile} containing nested jar files from which
 	 *                to load classes and resources
 	 * @param parent  the parent classloader
-	 * @throws IOException if an error occurs scanning the contents of the nested jarfiles
+	 * @throws IOException if an error occurs extracting or scanning the nested jarfiles
 	 */
 	public NestedJarClassLoader(JarFile jar, ClassLoader parent) throws IOException {
 		super(parent);
 		this.jar = jar;
-		scanNestedJarFiles();
+		this.nestedJars = new ArrayList<JarFile>();
+		this.resourceUrlCache = new ConcurrentHashMap<String, URL>();
+		try {
+			scanNestedJarFiles();
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
 	}
 	
 	/**
@@ -103,40 +128,198 @@ public class NestedJarClassLoader extends ClassLoader {
 			// along with its dependencies, some of which are also nested jarfiles. 
 			NestedJarClassLoader classLoader = new NestedJarClassLoader(jarFile, fromClass.getClassLoader());
 			
-			// Load and run the main class's main method via reflection.
-			Class<?> createWebappDatabase = classLoader.loadClass(mainClassName);
-			Method main = createWebappDatabase.getMethod("main", new Class<?>[]{String[].class});
-			main.invoke(null, new Object[]{ cmdLineArgs.toArray(new String[cmdLineArgs.size()]) });
+			try {
+				// Load and run the main class's main method via reflection.
+				Class<?> createWebappDatabase = classLoader.loadClass(mainClassName);
+				Method main = createWebappDatabase.getMethod("main", new Class<?>[]{String[].class});
+				main.invoke(null, new Object[]{ cmdLineArgs.toArray(new String[cmdLineArgs.size()]) });
+			} finally {
+				classLoader.close();
+			}
 		} finally {
 			jarFile.close();
 		}
 	}
 	
+	/**
+	 * Close the extracted nested jarfiles.
+	 * The extracted jarfiles remain in the cache directory.
+	 */
+	public void close() {
+		for (JarFile nestedJar : nestedJars) {
+			try {
+				nestedJar.close();
+			} catch (IOException e) {
+				System.err.println("Error closing " + nestedJar.getName());
+			}
+		}
+		nestedJars.clear();
+	}
+	
 	private void scanNestedJarFiles() throws IOException {
-		resourceToNestedJarMap = new HashMap<String, String>();
+		resourceToNestedJarMap = new HashMap<String, JarFile>();
+		
+		File cacheDir = getCacheDir();
 		
 		Enumeration<JarEntry> e = jar.entries();
 		while (e.hasMoreElements()) {
 			JarEntry entry = e.nextElement();
 			if (entry.getName().endsWith(".jar")) {
-				// Scan the nested jar for entries.
-				InputStream in = jar.getInputStream(entry);
-				try {
-					JarInputStream jin = new JarInputStream(in);
-					while (true) {
-						JarEntry nestedEntry = jin.getNextJarEntry();
-						if (nestedEntry == null) {
-							break;
-						}
-						//System.out.println(nestedEntry.getName() + " -> " + entry.getName());
-						resourceToNestedJarMap.put(nestedEntry.getName(), entry.getName());
-					}
-				} finally {
-					in.close();
+				// Extract the nested jar (if it isn't already cached),
+				// and scan its central directory for entries.
+				JarFile nestedJar = new JarFile(extractNestedJar(entry, cacheDir));
+				nestedJars.add(nestedJar);
+				Enumeration<JarEntry> ne = nestedJar.entries();
+				while (ne.hasMoreElements()) {
+					JarEntry nestedEntry = ne.nextElement();
+					//System.out.println(nestedEntry.getName() + " -> " + entry.getName());
+					resourceToNestedJarMap.put(nestedEntry.getName(), nestedJar);
 				}
 			}
 		}
 	}
+	
+	private static File getCacheDir() throws IOException {
+		String dirName = System.getProperty(CACHE_DIR_PROPERTY);
+		File cacheDir = dirName != null
+				? new File(dirName)
+				: new File(System.getProperty("java.io.tmpdir"), "cloudcoder-nested-jars-" + System.getProperty("user.name"));
+		if (!cacheDir.isDirectory() && !cacheDir.mkdirs() && !cacheDir.isDirectory()) {
+			throw new IOException("Could not create nested jar cache directory " + cacheDir.getPath());
+		}
+		
+		// The default directory name is predictable, so another user could
+		// have created it first: refuse to use a directory we don't own
+		if (!isOwnedByCurrentUser(cacheDir)) {
+			throw new IOException("Nested jar cache directory " + cacheDir.getPath() + " is not owned by the current user");
+		}
+		
+		// Make the directory accessible only to its owner.  (Changing the
+		// permissions also fails if the directory belongs to another user.)
+		if (File.separatorChar == '/') {
+			boolean restricted =
+					cacheDir.setReadable(false, false) && cacheDir.setReadable(true, true) &&
+					cacheDir.setWritable(false, false) && cacheDir.setWritable(true, true) &&
+					cacheDir.setExecutable(false, false) && cacheDir.setExecutable(true, true);
+			if (!restricted) {
+				throw new IOException("Could not make nested jar cache directory " + cacheDir.getPath() + " private");
+			}
+		}
+		return cacheDir;
+	}
+	
+	/**
+	 * Check whether given directory (not following symbolic links)
+	 * has the same owner as a file created in it by the current user.
+	 * The owner can only be determined with the java.nio.file API,
+	 * which is used via reflection: if it isn't available, the check
+	 * is skipped, and the caller relies on being able to change the
+	 * directory's permissions.
+	 */
+	private static boolean isOwnedByCurrentUser(File dir) throws IOException {
+		Method toPath, getOwner;
+		Object noFollowLinks;
+		try {
+			Class<?> pathClass = Class.forName("java.nio.file.Path");
+			Class<?> linkOptionClass = Class.forName("java.nio.file.LinkOption");
+			toPath = File.class.getMethod("toPath");
+			getOwner = Class.forName("java.nio.file.Files").getMethod("getOwner", pathClass, Array.newInstance(linkOptionClass, 0).getClass());
+			noFollowLinks = Array.newInstance(linkOptionClass, 1);
+			Array.set(noFollowLinks, 0, linkOptionClass.getField("NOFOLLOW_LINKS").get(null));
+		} catch (Exception e) {
+			return true;
+		}
+		
+		File probe = File.createTempFile("ccnj", ".tmp", dir);
+		try {
+			Object dirOwner = getOwner.invoke(null, toPath.invoke(dir), noFollowLinks);
+			Object currentUser = getOwner.invoke(null, toPath.invoke(probe), noFollowLinks);
+			return dirOwner.equals(currentUser);
+		} catch (IllegalAccessException e) {
+			throw new IOException("Could not determine owner of " + dir.getPath(), e);
+		} catch (InvocationTargetException e) {
+			throw new IOException("Could not determine owner of " + dir.getPath(), e.getCause());
+		} finally {
+			probe.delete();
+		}
+	}
+	
+	private File extractNestedJar(JarEntry entry, File cacheDir) throws IOException {
+		long crc = entry.getCrc();
+		long size = entry.getSize();
+		
+		if (crc < 0 || size < 0) {
+			// The CRC and size aren't known, so there is no way to tell
+			// whether a cached copy is current: extract to a temp file.
+			File tmp = File.createTempFile("ccnj", ".jar");
+			tmp.deleteOnExit();
+			copyEntryTo(entry, tmp);
+			return tmp;
+		}
+		
+		String baseName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+		baseName = baseName.substring(0, baseName.length() - ".jar".length());
+		File cached = new File(cacheDir, baseName + "-" + Long.toHexString(crc) + "-" + size + ".jar");
+		if (isExtracted(cached, crc, size)) {
+			return cached;
+		}
+		
+		// Extract to a temp file in the cache directory, and then rename it,
+		// so that a concurrent process never sees a partially-written jarfile
+		File tmp = File.createTempFile("ccnj", ".tmp", cacheDir);
+		try {
+			copyEntryTo(entry, tmp);
+			if (cached.exists()) {
+				// Damaged copy: rename won't replace it on all platforms
+				cached.delete();
+			}
+			if (!tmp.renameTo(cached) && !isExtracted(cached, crc, size)) {
+				throw new IOException("Could not move extracted nested jar to " + cached.getPath());
+			}
+		} finally {
+			tmp.delete();
+		}
+		return cached;
+	}
+	
+	/**
+	 * Check whether given file is a complete copy of a nested jarfile
+	 * with given CRC and size.
+	 */
+	private static boolean isExtracted(File file, long crc, long size) throws IOException {
+		if (!file.isFile() || file.length() != size) {
+			return false;
+		}
+		CRC32 fileCrc = new CRC32();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buf = new byte[8192];
+			while (true) {
+				int r = in.read(buf);
+				if (r < 0) {
+					break;
+				}
+				fileCrc.update(buf, 0, r);
+			}
+		} finally {
+			in.close();
+		}
+		return fileCrc.getValue() == crc;
+	}
+	
+	private void copyEntryTo(JarEntry entry, File file) throws IOException {
+		InputStream in = jar.getInputStream(entry);
+		try {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				copy(in, out);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
 
 	@Override
 	protected Class<?> findClass(String name) throws ClassNotFoundException {
@@ -145,7 +328,7 @@ public class NestedJarClassLoader extends ClassLoader {
 		//System.out.println("Looking for " + resourceName);
 		
 		// See if the resource is available in a nested jarfile
-		String nestedJar = resourceToNestedJarMap.get(resourceName);
+		JarFile nestedJar = resourceToNestedJarMap.get(resourceName);
 		if (nestedJar != null) {
 			// Load class bytes from nested jar
 			try {
@@ -163,33 +346,23 @@ public class NestedJarClassLoader extends ClassLoader {
 	
 	@Override
 	protected URL findResource(String name) {
+		URL url = resourceUrlCache.get(name);
+		if (url != null) {
+			return url;
+		}
+		
 		// See if the resource is in a nested jarfile
-		String nestedJar = resourceToNestedJarMap.get(name);
+		JarFile nestedJar = resourceToNestedJarMap.get(name);
 		
 		if (nestedJar != null) {
-			// Put it in a temp file, and return a URL pointing to the temp file.
-			// We'll cross our fingers and hope that the code loading the resource
-			// doesn't attempt to inspect the URI (which will be meaningless and
-			// have no relation to the resource name).
-			int lastDot = name.lastIndexOf('.');
+			// The nested jarfile has been extracted, so the resource
+			// can be referred to by an ordinary jar: URL
 			try {
-				File tmp = File.createTempFile("ccws", lastDot >= 0 ? name.substring(lastDot) : ".tmp");
-				tmp.deleteOnExit();
-				
-				// Get the resource data
-				byte[] bytes = loadDataFromNestedJar(nestedJar, name);
-				
-				// Write it to the temp file
-				FileOutputStream fos = new FileOutputStream(tmp);
-				try {
-					fos.write(bytes);
-				} finally {
-					fos.close();
-				}
-				
-				return tmp.toURI().toURL();
-			} catch (IOException e) {
-				System.err.println("Error loading resource " + name + " from " + nestedJar);
+				url = new URL("jar:" + new File(nestedJar.getName()).toURI().toURL().toExternalForm() + "!/" + name);
+				resourceUrlCache.put(name, url);
+				return url;
+			} catch (MalformedURLException e) {
+				System.err.println("Error creating URL for resource " + name + " in " + nestedJar.getName());
 				e.printStackTrace();
 			}
 		}
@@ -197,35 +370,33 @@ public class NestedJarClassLoader extends ClassLoader {
 		// Resolve via parent classloader
 		return super.findResource(name);
 	}
-
-	private byte[] loadDataFromNestedJar(String nestedJar, String resourceName) throws IOException {
-		JarEntry entry = jar.getJarEntry(nestedJar);
-		InputStream in = jar.getInputStream(entry);
+	
+	private byte[] loadDataFromNestedJar(JarFile nestedJar, String resourceName) throws IOException {
+		JarEntry entry = nestedJar.getJarEntry(resourceName);
+		if (entry == null) {
+			throw new IllegalStateException("Couldn't find resource " + resourceName + " in " + nestedJar.getName());
+		}
+		InputStream in = nestedJar.getInputStream(entry);
 		try {
-			JarInputStream jin = new JarInputStream(in);
-			while (true) {
-				JarEntry nestedEntry = jin.getNextJarEntry();
-				if (nestedEntry == null) {
-					throw new IllegalStateException("Couldn't find resource " + resourceName + " in " + nestedJar);
-				}
-				if (nestedEntry.getName().equals(resourceName)) {
-					// It turns out that some jar entries don't specify the size of the
-					// entry.  So, just read the data into a ByteArrayOutputStream
-					// and create the byte array that way.
-					ByteArrayOutputStream out = new ByteArrayOutputStream();
-					byte[] buf = new byte[4096];
-					while (true) {
-						int r = jin.read(buf);
-						if (r < 0) {
-							break;
-						}
-						out.write(buf, 0, r);
-					}
-					return out.toByteArray();
-				}
-			}
+			// It turns out that some jar entries don't specify the size of the
+			// entry.  So, just read the data into a ByteArrayOutputStream
+			// and create the byte array that way.
+			ByteArrayOutputStream out = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 4096);
+			copy(in, out);
+			return out.toByteArray();
 		} finally {
 			in.close();
 		}
 	}
+	
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buf = new byte[8192];
+		while (true) {
+			int r = in.read(buf);
+			if (r < 0) {
+				break;
+			}
+			out.write(buf, 0, r);
+		}
+	}
 }
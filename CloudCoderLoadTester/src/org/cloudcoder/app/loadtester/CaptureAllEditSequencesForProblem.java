@@ -28,6 +28,7 @@ import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.server.persist.JDBCDatabaseConfig;
 import org.cloudcoder.app.server.persist.util.DBUtil;
 import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ICallback;
 import org.cloudcoder.app.shared.model.Problem;
 
 /**
@@ -63,22 +64,24 @@ public class CaptureAllEditSequencesForProblem {
 		problem.setProblemId(problemId);
 		Database.getInstance().reloadModelObject(problem);
 		
-		List<Change> allChanges = Database.getInstance().loadChangesForAllUsersOnProblem(problemId);
-		
-		EditSequence seq = null;
-		int userId = -1;
-		
-		for (Change change : allChanges) {
-			if (change.getEvent().getUserId() != userId) {
-				// Make a new EditSequence
-				seq = new EditSequence();
-				seq.setExerciseName(problem.getTestname());
-				seq.setChangeList(new ArrayList<Change>());
-				userId = change.getEvent().getUserId();
-				editSequenceList.add(seq);
+		final String exerciseName = problem.getTestname();
+		Database.getInstance().visitChangesForAllUsersOnProblem(problemId, new ICallback<Change>() {
+			private EditSequence seq = null;
+			private int userId = -1;
+			
+			@Override
+			public void call(Change change) {
+				if (change.getEvent().getUserId() != userId) {
+					// Make a new EditSequence
+					seq = new EditSequence();
+					seq.setExerciseName(exerciseName);
+					seq.setChangeList(new ArrayList<Change>());
+					userId = change.getEvent().getUserId();
+					editSequenceList.add(seq);
+				}
+				seq.getChangeList().add(change);
 			}
-			seq.getChangeList().add(change);
-		}
+		});
 	}
 
 	public void write() throws IOException {
@@ -42,6 +42,8 @@ public class Main {
 			doCaptureEditSequences(opts);
 		} else if (command.equals("execute")) {
 			doExecute(opts);
+		} else if (command.equals("replayBenchmark")) {
+			doReplayBenchmark(opts);
 		} else if (command.equals("createTestUsers")) {
 			HostConfig hostConfig = opts.hasOption("hostConfig")
 					? getHostConfig(opts.getOptVal("hostConfig")) : HostConfigDatabase.forName("default");
@@ -85,6 +87,13 @@ public class Main {
 		loadTester.execute();
 	}
 
+	private static void doReplayBenchmark(Options opts) {
+		ReplayBenchmark benchmark = new ReplayBenchmark();
+		benchmark.setMix(MixDatabase.forName(opts.hasOption("mix") ? opts.getOptVal("mix") : "skip3"));
+		benchmark.setRepeatCount(opts.getOptValAsInt("repeatCount"));
+		benchmark.execute();
+	}
+
 	private static HostConfig getHostConfig(String hostConfigName) {
 		HostConfig hostConfig;
 		if (hostConfigName.indexOf(",") >= 0) {
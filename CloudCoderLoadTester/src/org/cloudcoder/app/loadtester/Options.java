@@ -115,5 +115,6 @@ public class Options {
 		System.out.println("  captureAllEditSequences problemId=<problem id>");
 		System.out.println("  execute hostConfig=<host config name> mix=<mix name> [numThreads=<n>] [repeatCount=<n>] [maxPause=<ms>]");
 		System.out.println("  createTestUsers [hostConfig=<host config name>]");
+		System.out.println("  replayBenchmark [mix=<mix name>] [repeatCount=<n>]");
 	}
 }
\ No newline at end of file
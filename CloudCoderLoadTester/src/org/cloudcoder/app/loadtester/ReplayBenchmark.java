@@ -0,0 +1,104 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package org.cloudcoder.app.loadtester;
+
+import org.cloudcoder.app.shared.model.ApplyChangeToTextDocument;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.TextDocument;
+
+/**
+ * Benchmark for replaying captured {@link EditSequence}s using
+ * {@link ApplyChangeToTextDocument}, which is how the webapp reconstructs
+ * the current program text and how the data export tools
+ * reconstruct code states.  The full text is retrieved after each change
+ * (as when exporting code states).
+ * 
+ * @author David Hovemeyer
+ */
+public class ReplayBenchmark {
+	private Mix mix;
+	private int repeatCount;
+	
+	/**
+	 * Constructor.
+	 */
+	public ReplayBenchmark() {
+		repeatCount = 1;
+	}
+	
+	/**
+	 * Set the {@link Mix} whose {@link EditSequence}s should be replayed.
+	 * 
+	 * @param mix the {@link Mix}
+	 */
+	public void setMix(Mix mix) {
+		this.mix = mix;
+	}
+	
+	/**
+	 * Set the number of times to replay the {@link EditSequence}s.
+	 * 
+	 * @param repeatCount the number of times to replay the {@link EditSequence}s
+	 */
+	public void setRepeatCount(int repeatCount) {
+		this.repeatCount = repeatCount;
+	}
+	
+	/**
+	 * Execute the benchmark, printing results to System.out.
+	 */
+	public void execute() {
+		// Warm up
+		replayAll();
+		
+		long numChanges = 0L, numFailures = 0L;
+		long begin = System.nanoTime();
+		for (int i = 0; i < repeatCount; i++) {
+			long[] counts = replayAll();
+			numChanges += counts[0];
+			numFailures += counts[1];
+		}
+		long elapsed = System.nanoTime() - begin;
+		
+		double ms = elapsed / 1000000.0;
+		System.out.printf("Replayed %d changes (%d failed) in %.1f ms: %.1f changes/ms\n",
+				numChanges, numFailures, ms, numChanges / ms);
+	}
+
+	private long[] replayAll() {
+		long numChanges = 0L, numFailures = 0L;
+		ApplyChangeToTextDocument applicator = new ApplyChangeToTextDocument();
+		for (EditSequence seq : mix.getEditSequenceList()) {
+			TextDocument doc = new TextDocument();
+			for (Change change : seq.getChangeList()) {
+				try {
+					applicator.apply(change, doc);
+				} catch (RuntimeException e) {
+					// Same as the data export: start over, hoping a later
+					// full-text change will resync the document
+					numFailures++;
+					doc = new TextDocument();
+				}
+				doc.getText();
+				numChanges++;
+			}
+		}
+		return new long[]{ numChanges, numFailures };
+	}
+}
@@ -0,0 +1,215 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.buildprotocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+
+import org.cloudcoder.app.shared.model.SubmissionResult;
+
+/**
+ * Constants and helper methods for the protocol used by the webapp
+ * (the out of process submit service) and remote Builders to communicate.
+ * 
+ * <p>When a Builder connects, the webapp immediately sends
+ * {@link #WEBAPP_GREETING}.  The Builder sends {@link #MAGIC}
+ * followed by a {@link FrameType#HELLO} frame, and the webapp answers
+ * with a {@link FrameType#HELLO_ACK} frame.  From then on, each side
+ * sends {@link Frame}s, each of which is encoded as
+ * <ul>
+ * <li> an int giving the number of bytes that follow
+ * <li> a byte giving the {@link FrameType} code
+ * <li> an int giving the request id
+ * <li> the payload
+ * </ul>
+ * Because every frame carries a request id, the webapp can send
+ * a new submission without waiting for the result of earlier ones,
+ * and the Builder can send results back in whatever order testing
+ * completes.
+ * 
+ * <p>Builders using the original (lock-step, one submission at a time)
+ * protocol don't send anything until they receive {@link #WEBAPP_GREETING},
+ * which is the header of a Java serialization stream.  They then answer
+ * with their own serialization stream header.  So the webapp can
+ * tell which protocol a Builder uses from the first four bytes it sends,
+ * without waiting for a timeout.
+ *
+ * @author David Hovemeyer
+ */
+public class BuildProtocol {
+	/** Sent by the Builder when it connects: "CCBP" in ASCII. */
+	public static final int MAGIC = 0x43434250;
+
+	/**
+	 * Sent by the webapp when a Builder connects: the header of a Java
+	 * serialization stream (which is also the first thing a Builder using
+	 * the lock-step protocol sends).
+	 */
+	public static final int WEBAPP_GREETING =
+			((ObjectStreamConstants.STREAM_MAGIC & 0xFFFF) << 16) | ObjectStreamConstants.STREAM_VERSION;
+
+	/** Current protocol version. */
+	public static final int VERSION = 1;
+
+	/** Maximum size of a frame: anything larger indicates a corrupted stream. */
+	public static final int MAX_FRAME_SIZE = 64*1024*1024;
+
+	/**
+	 * Create a {@link FrameType#RESULT} frame.
+	 * 
+	 * @param requestId  the request id of the submission
+	 * @param result     the {@link SubmissionResult}
+	 * @return the frame
+	 * @throws IOException
+	 */
+	public static Frame createResultFrame(int requestId, SubmissionResult result) throws IOException {
+		return new Frame(FrameType.RESULT, requestId, serialize(result));
+	}
+
+	/**
+	 * Get the {@link SubmissionResult} from a {@link FrameType#RESULT} frame.
+	 * 
+	 * @param frame the frame
+	 * @return the {@link SubmissionResult}
+	 * @throws IOException
+	 */
+	public static SubmissionResult getResult(Frame frame) throws IOException {
+		checkType(frame, FrameType.RESULT);
+		return deserialize(frame.getPayload());
+	}
+
+	/**
+	 * Check that a {@link Frame} has the expected {@link FrameType}.
+	 * 
+	 * @param frame  the frame
+	 * @param type   the expected {@link FrameType}
+	 * @throws IOException if the frame does not have the expected type
+	 */
+	public static void checkType(Frame frame, FrameType type) throws IOException {
+		if (frame.getType() != type) {
+			throw new IOException("Expected " + type + " frame, got " + frame.getType());
+		}
+	}
+
+	/**
+	 * Serialize an object to a byte array.
+	 * 
+	 * @param obj the object (which must be serializable)
+	 * @return the serialized object
+	 * @throws IOException
+	 */
+	public static byte[] serialize(Object obj) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(obj);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Deserialize an object from a byte array.
+	 * 
+	 * @param data the serialized object
+	 * @return the object
+	 * @throws IOException if the data can't be deserialized
+	 */
+	@SuppressWarnings("unchecked")
+	public static<E> E deserialize(byte[] data) throws IOException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+		try {
+			return (E) in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Class not found reading message: " + e.getMessage());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Write a string (which may be null) as a length-prefixed sequence of UTF-8 bytes.
+	 * Unlike {@link DataOutputStream#writeUTF(String)}, there is no limit on the
+	 * length of the string.
+	 * 
+	 * @param out  the DataOutputStream to write to
+	 * @param s    the string to write
+	 * @throws IOException
+	 */
+	public static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = s.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Read a string written by {@link #writeString(DataOutputStream, String)}.
+	 * 
+	 * @param in  the DataInputStream to read from
+	 * @return the string (which may be null)
+	 * @throws IOException
+	 */
+	public static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = readBytes(in);
+		return bytes != null ? new String(bytes, "UTF-8") : null;
+	}
+
+	/**
+	 * Write a byte array (which may be null), prefixed by its length.
+	 * 
+	 * @param out   the DataOutputStream to write to
+	 * @param data  the byte array to write
+	 * @throws IOException
+	 */
+	public static void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+		if (data == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(data.length);
+			out.write(data);
+		}
+	}
+
+	/**
+	 * Read a byte array written by {@link #writeBytes(DataOutputStream, byte[])}.
+	 * 
+	 * @param in  the DataInputStream to read from
+	 * @return the byte array (which may be null)
+	 * @throws IOException
+	 */
+	public static byte[] readBytes(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		if (length > MAX_FRAME_SIZE) {
+			throw new IOException("Invalid length: " + length);
+		}
+		byte[] data = new byte[length];
+		in.readFully(data);
+		return data;
+	}
+}
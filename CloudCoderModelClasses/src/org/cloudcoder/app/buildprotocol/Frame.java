@@ -0,0 +1,77 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.buildprotocol;
+
+/**
+ * A single message exchanged by the webapp and a Builder.
+ * The request id identifies the submission a frame refers to,
+ * allowing several submissions to be in flight on one connection.
+ *
+ * @author David Hovemeyer
+ */
+public class Frame {
+	private static final byte[] EMPTY = new byte[0];
+
+	private final FrameType type;
+	private final int requestId;
+	private final byte[] payload;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param type       the {@link FrameType}
+	 * @param requestId  the request id (0 if the frame does not refer to a submission)
+	 * @param payload    the payload (null if there is no payload)
+	 */
+	public Frame(FrameType type, int requestId, byte[] payload) {
+		this.type = type;
+		this.requestId = requestId;
+		this.payload = payload != null ? payload : EMPTY;
+	}
+
+	/**
+	 * Constructor for a frame with no payload.
+	 *
+	 * @param type       the {@link FrameType}
+	 * @param requestId  the request id (0 if the frame does not refer to a submission)
+	 */
+	public Frame(FrameType type, int requestId) {
+		this(type, requestId, null);
+	}
+
+	/**
+	 * @return the {@link FrameType}
+	 */
+	public FrameType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the request id
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
+
+	/**
+	 * @return the payload
+	 */
+	public byte[] getPayload() {
+		return payload;
+	}
+}
@@ -0,0 +1,131 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.buildprotocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Read and write {@link Frame}s on a connection between the webapp
+ * and a Builder.  Writing is thread-safe, so (for example) several
+ * threads testing submissions can send results on the same connection.
+ * Reading should be done by a single thread.
+ *
+ * @author David Hovemeyer
+ */
+public class FrameConnection {
+	private final DataInputStream in;
+	private final DataOutputStream out;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param in   the connection's InputStream
+	 * @param out  the connection's OutputStream
+	 */
+	public FrameConnection(InputStream in, OutputStream out) {
+		this.in = new DataInputStream(new BufferedInputStream(in));
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+	}
+
+	/**
+	 * Write {@link BuildProtocol#MAGIC}.  This is done by the Builder,
+	 * immediately after connecting.
+	 * 
+	 * @throws IOException
+	 */
+	public void writeMagic() throws IOException {
+		synchronized (out) {
+			out.writeInt(BuildProtocol.MAGIC);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Read {@link BuildProtocol#WEBAPP_GREETING}.  This is done by the Builder,
+	 * before reading the first frame.
+	 * 
+	 * @throws IOException if something other than the greeting is received
+	 */
+	public void readGreeting() throws IOException {
+		int greeting = in.readInt();
+		if (greeting != BuildProtocol.WEBAPP_GREETING) {
+			throw new IOException("Webapp sent invalid greeting " + Integer.toHexString(greeting));
+		}
+	}
+
+	/**
+	 * Write a {@link Frame}.
+	 * 
+	 * @param frame the frame to write
+	 * @throws IOException
+	 */
+	public void write(Frame frame) throws IOException {
+		byte[] payload = frame.getPayload();
+		synchronized (out) {
+			out.writeInt(1 + 4 + payload.length);
+			out.writeByte(frame.getType().getCode());
+			out.writeInt(frame.getRequestId());
+			out.write(payload);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Read a {@link Frame}.  Blocks until a frame is available.
+	 * 
+	 * @return the frame
+	 * @throws IOException if the frame can't be read, or is invalid
+	 */
+	public Frame read() throws IOException {
+		int length = in.readInt();
+		if (length < 5 || length > BuildProtocol.MAX_FRAME_SIZE) {
+			throw new IOException("Invalid frame length: " + length);
+		}
+		int code = in.readUnsignedByte();
+		FrameType type = FrameType.fromCode(code);
+		if (type == null) {
+			throw new IOException("Invalid frame type: " + code);
+		}
+		int requestId = in.readInt();
+		byte[] payload = new byte[length - 5];
+		in.readFully(payload);
+		return new Frame(type, requestId, payload);
+	}
+
+	/**
+	 * Close the connection's streams.
+	 */
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			// ignore
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+}
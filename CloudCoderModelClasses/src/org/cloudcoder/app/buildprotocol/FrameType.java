@@ -0,0 +1,70 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.buildprotocol;
+
+/**
+ * Types of {@link Frame}s exchanged by the webapp and a Builder.
+ *
+ * @author David Hovemeyer
+ */
+public enum FrameType {
+	/** Builder to webapp: protocol version and requested concurrency (see {@link Handshake}). */
+	HELLO(1),
+	/** Webapp to builder: agreed protocol version and concurrency (see {@link Handshake}). */
+	HELLO_ACK(2),
+	/** Either direction: sent when a connection would otherwise be idle; ignored. */
+	KEEPALIVE(3),
+	/** Webapp to builder: a submission to build and test (see {@link SubmitMessage}). */
+	SUBMIT(4),
+	/**
+	 * Builder to webapp: the builder does not have the problem and test cases
+	 * for a submission in its cache, so the submission must be sent again
+	 * with the problem and test cases included.
+	 */
+	NEED_PROBLEM(5),
+	/** Builder to webapp: the serialized SubmissionResult for a submission. */
+	RESULT(6);
+
+	private final int code;
+
+	private FrameType(int code) {
+		this.code = code;
+	}
+
+	/**
+	 * @return the code used to represent this frame type on the wire
+	 */
+	public int getCode() {
+		return code;
+	}
+
+	/**
+	 * Find the {@link FrameType} with the given code.
+	 *
+	 * @param code the code
+	 * @return the {@link FrameType}, or null if the code is not valid
+	 */
+	public static FrameType fromCode(int code) {
+		for (FrameType type : values()) {
+			if (type.code == code) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,98 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.buildprotocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Payload of the {@link FrameType#HELLO} and {@link FrameType#HELLO_ACK}
+ * frames.  In a HELLO frame, the version is the highest protocol version
+ * the Builder supports, and the concurrency is the maximum number of
+ * submissions the Builder can test at the same time.  In a HELLO_ACK frame,
+ * they are the protocol version and concurrency the webapp will use.
+ *
+ * @author David Hovemeyer
+ */
+public class Handshake {
+	private final int version;
+	private final int concurrency;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param version      the protocol version
+	 * @param concurrency  the number of submissions that may be in flight at once
+	 */
+	public Handshake(int version, int concurrency) {
+		this.version = version;
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * @return the protocol version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the number of submissions that may be in flight at once
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Create a frame containing this handshake.
+	 * 
+	 * @param type {@link FrameType#HELLO} or {@link FrameType#HELLO_ACK}
+	 * @return the frame
+	 * @throws IOException
+	 */
+	public Frame toFrame(FrameType type) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(version);
+		out.writeInt(concurrency);
+		out.close();
+		return new Frame(type, 0, bytes.toByteArray());
+	}
+
+	/**
+	 * Get the handshake from a frame.
+	 * 
+	 * @param frame the frame
+	 * @param type  the expected {@link FrameType} ({@link FrameType#HELLO} or {@link FrameType#HELLO_ACK})
+	 * @return the handshake
+	 * @throws IOException if the frame is not a valid handshake
+	 */
+	public static Handshake fromFrame(Frame frame, FrameType type) throws IOException {
+		BuildProtocol.checkType(frame, type);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame.getPayload()));
+		int version = in.readInt();
+		int concurrency = in.readInt();
+		if (version < 1 || concurrency < 1) {
+			throw new IOException("Invalid handshake: version=" + version + ", concurrency=" + concurrency);
+		}
+		return new Handshake(version, concurrency);
+	}
+}
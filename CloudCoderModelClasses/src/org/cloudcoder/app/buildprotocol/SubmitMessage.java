@@ -0,0 +1,184 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.buildprotocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudcoder.app.shared.model.ConvertBytesToHex;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.TestCase;
+
+/**
+ * Payload of a {@link FrameType#SUBMIT} frame: a submission to be
+ * built and tested.  The {@link Problem} and {@link TestCase}s are
+ * identified by the problem id and a hash of their content
+ * (see {@link #computeProblemHash(Problem, List)}), and are only included if the webapp does not think the Builder has
+ * them cached.  If the Builder does not have them, it responds with
+ * a {@link FrameType#NEED_PROBLEM} frame, and the webapp sends the
+ * submission again with the problem and test cases included.
+ *
+ * @author David Hovemeyer
+ */
+public class SubmitMessage {
+	private final int problemId;
+	private final String problemHash;
+	private final Problem problem;
+	private final List<TestCase> testCaseList;
+	private final String programText;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param problemId     the problem id
+	 * @param problemHash   hash of the problem and test cases (null if they should not be cached)
+	 * @param problem       the {@link Problem}, or null if it is not included
+	 * @param testCaseList  the {@link TestCase}s, or null if they are not included
+	 * @param programText   the program text
+	 */
+	public SubmitMessage(int problemId, String problemHash, Problem problem, List<TestCase> testCaseList, String programText) {
+		this.problemId = problemId;
+		this.problemHash = problemHash;
+		this.problem = problem;
+		this.testCaseList = testCaseList;
+		this.programText = programText;
+	}
+
+	/**
+	 * @return the problem id
+	 */
+	public int getProblemId() {
+		return problemId;
+	}
+
+	/**
+	 * @return hash of the problem and test cases (null if they should not be cached)
+	 */
+	public String getProblemHash() {
+		return problemHash;
+	}
+
+	/**
+	 * @return true if the {@link Problem} and {@link TestCase}s are included
+	 */
+	public boolean hasProblem() {
+		return problem != null;
+	}
+
+	/**
+	 * @return the {@link Problem}, or null if it is not included
+	 */
+	public Problem getProblem() {
+		return problem;
+	}
+
+	/**
+	 * @return the {@link TestCase}s, or null if they are not included
+	 */
+	public List<TestCase> getTestCaseList() {
+		return testCaseList;
+	}
+
+	/**
+	 * @return the program text
+	 */
+	public String getProgramText() {
+		return programText;
+	}
+
+	/**
+	 * Compute the hash identifying a {@link Problem} and its {@link TestCase}s,
+	 * which is used as the key for caching them (both in the Builder and
+	 * in the webapp).  The hash is a SHA-1 digest of exactly the data
+	 * sent to the Builder, so two problems have the same hash only if
+	 * they are identical.  (Unlike
+	 * {@link org.cloudcoder.app.shared.model.HashProblemAndTestCaseData},
+	 * which ignores leading and trailing whitespace and doesn't separate
+	 * the fields, and so isn't suitable as a cache key.)
+	 * 
+	 * @param problem       the {@link Problem}
+	 * @param testCaseList  the {@link TestCase}s
+	 * @return the hash
+	 * @throws IOException if the problem or test cases can't be serialized
+	 */
+	public static String computeProblemHash(Problem problem, List<TestCase> testCaseList) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not available", e);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		BuildProtocol.writeBytes(out, BuildProtocol.serialize(problem));
+		BuildProtocol.writeBytes(out, BuildProtocol.serialize(new ArrayList<TestCase>(testCaseList)));
+		out.close();
+		return new ConvertBytesToHex(md.digest(bytes.toByteArray())).convert();
+	}
+
+	/**
+	 * Create a frame containing this message.
+	 * 
+	 * @param requestId the request id
+	 * @return the frame
+	 * @throws IOException
+	 */
+	public Frame toFrame(int requestId) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(problemId);
+		BuildProtocol.writeString(out, problemHash);
+		out.writeBoolean(problem != null);
+		if (problem != null) {
+			BuildProtocol.writeBytes(out, BuildProtocol.serialize(problem));
+			BuildProtocol.writeBytes(out, BuildProtocol.serialize(testCaseList));
+		}
+		BuildProtocol.writeString(out, programText);
+		out.close();
+		return new Frame(FrameType.SUBMIT, requestId, bytes.toByteArray());
+	}
+
+	/**
+	 * Get the message from a {@link FrameType#SUBMIT} frame.
+	 * 
+	 * @param frame the frame
+	 * @return the message
+	 * @throws IOException if the frame is not a valid submit message
+	 */
+	public static SubmitMessage fromFrame(Frame frame) throws IOException {
+		BuildProtocol.checkType(frame, FrameType.SUBMIT);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame.getPayload()));
+		int problemId = in.readInt();
+		String problemHash = BuildProtocol.readString(in);
+		Problem problem = null;
+		List<TestCase> testCaseList = null;
+		if (in.readBoolean()) {
+			problem = BuildProtocol.deserialize(BuildProtocol.readBytes(in));
+			testCaseList = BuildProtocol.deserialize(BuildProtocol.readBytes(in));
+		}
+		String programText = BuildProtocol.readString(in);
+		return new SubmitMessage(problemId, problemHash, problem, testCaseList, programText);
+	}
+}
@@ -91,7 +91,7 @@ public class ApplyChangeToTextDocument {
 		            // XXX Is it possible for a multi-line remove
 		            String changeText=change.getText();
 		            // XXX try to remove \r to standardize on \n unix line endings
-		            changeText=changeText.replaceAll("\r", "");
+		            changeText=changeText.replace("\r", "");
 
 		            String[] textChanges=changeText.split("\n");
 
@@ -131,8 +131,10 @@ public class ApplyChangeToTextDocument {
 			
 			break;
 		case INSERT_LINES:
-			for (int i = 0; i < change.getNumLines(); i++) {
-				doc.insertLine(change.getStartRow() + i, change.getLine(i) + "\n");
+			// Split the text once, rather than once per line using Change.getLine()
+			String[] lines = change.getText().split("\n");
+			for (int i = 0; i < lines.length; i++) {
+				doc.insertLine(change.getStartRow() + i, lines[i] + "\n");
 			}
 			break;
 		case REMOVE_LINES:
@@ -148,14 +150,10 @@ public class ApplyChangeToTextDocument {
 		}
 		
 		// check integrity of TextDocument
-		if (DEBUG) {
-			for (int i = 0; i < doc.getNumLines(); i++) {
-				String line = doc.getLine(i);
-				int nl = line.indexOf('\n');
-				if (nl >= 0 && nl != line.length() - 1) {
-					throw new IllegalStateException("Line has enbedded newline!");
-				}
-			}
+		// (the document keeps track of lines with embedded newlines,
+		// so this doesn't require checking every line)
+		if (DEBUG && doc.hasLineWithEmbeddedNewline()) {
+			throw new IllegalStateException("Line has enbedded newline!");
 		}
 	}
 	
@@ -95,9 +95,9 @@ public class Change implements Serializable, IContainsEvent, IModelObject<Change
 	};
 	
 	/**
-	 * Description of fields.
+	 * Description of fields (schema version 0).
 	 */
-	public static final ModelObjectSchema<Change> SCHEMA = new ModelObjectSchema<Change>("change", Change.class)
+	public static final ModelObjectSchema<Change> SCHEMA_V0 = new ModelObjectSchema<Change>("change", Change.class)
 		.add(EVENT_ID)
 		.add(TYPE)
 		.add(START_ROW)
@@ -107,6 +107,22 @@ public class Change implements Serializable, IContainsEvent, IModelObject<Change
 		.add(TEXT_SHORT)
 		.add(TEXT);
 	
+	/**
+	 * Description of fields (schema version 1).
+	 */
+	public static final ModelObjectSchema<Change> SCHEMA_V1 = ModelObjectSchema.basedOn(SCHEMA_V0, Change.class)
+		// Index on (event id, change type): finding the most recent full text
+		// change walks a user's events for a problem backwards, and this
+		// index allows each candidate change's type to be checked without
+		// reading the (potentially large) change text.
+		.addIndexDelta(new ModelObjectIndex<Change>(ModelObjectIndexType.NON_UNIQUE).addField(EVENT_ID).addField(TYPE))
+		.finishDelta();
+	
+	/**
+	 * Description of fields (current schema version).
+	 */
+	public static final ModelObjectSchema<Change> SCHEMA = SCHEMA_V1;
+	
 	// Transient link to the Event object associated with this Change.
 	private Event event;
 
@@ -0,0 +1,207 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package org.cloudcoder.app.shared.model;
+
+import java.io.Serializable;
+
+/**
+ * A materialized full-text checkpoint of a {@link User}'s work on a
+ * {@link Problem}: the text that results from applying all of the user's
+ * {@link Change}s up to and including the change with a given event id.
+ * Checkpoints are written periodically as changes are stored, so that
+ * reconstructing the current text only requires replaying the changes
+ * newer than the checkpoint.  There is at most one checkpoint
+ * (the most recent one) for each user and problem.
+ * 
+ * @author David Hovemeyer
+ */
+public class ChangeCheckpoint implements Serializable, IModelObject<ChangeCheckpoint> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Maximum number of characters in the checkpoint text.
+	 */
+	public static final int MAX_TEXT_LEN = 1048576;
+
+	private int id;
+	private int userId;
+	private int problemId;
+	private int eventId;
+	private long timestamp;
+	private String text;
+
+	/** {@link ModelObjectField} for unique id. */
+	public static final ModelObjectField<ChangeCheckpoint, Integer> ID = new ModelObjectField<ChangeCheckpoint, Integer>("id", Integer.class, 0, ModelObjectIndexType.IDENTITY) {
+		public void set(ChangeCheckpoint obj, Integer value) { obj.setId(value); }
+		public Integer get(ChangeCheckpoint obj) { return obj.getId(); }
+	};
+	/** {@link ModelObjectField} for user id. */
+	public static final ModelObjectField<ChangeCheckpoint, Integer> USER_ID = new ModelObjectField<ChangeCheckpoint, Integer>("user_id", Integer.class, 0) {
+		public void set(ChangeCheckpoint obj, Integer value) { obj.setUserId(value); }
+		public Integer get(ChangeCheckpoint obj) { return obj.getUserId(); }
+	};
+	/** {@link ModelObjectField} for problem id. */
+	public static final ModelObjectField<ChangeCheckpoint, Integer> PROBLEM_ID = new ModelObjectField<ChangeCheckpoint, Integer>("problem_id", Integer.class, 0) {
+		public void set(ChangeCheckpoint obj, Integer value) { obj.setProblemId(value); }
+		public Integer get(ChangeCheckpoint obj) { return obj.getProblemId(); }
+	};
+	/** {@link ModelObjectField} for the event id of the last change included in the checkpoint. */
+	public static final ModelObjectField<ChangeCheckpoint, Integer> EVENT_ID = new ModelObjectField<ChangeCheckpoint, Integer>("event_id", Integer.class, 0) {
+		public void set(ChangeCheckpoint obj, Integer value) { obj.setEventId(value); }
+		public Integer get(ChangeCheckpoint obj) { return obj.getEventId(); }
+	};
+	/** {@link ModelObjectField} for the time the checkpoint was written. */
+	public static final ModelObjectField<ChangeCheckpoint, Long> TIMESTAMP = new ModelObjectField<ChangeCheckpoint, Long>("timestamp", Long.class, 0) {
+		public void set(ChangeCheckpoint obj, Long value) { obj.setTimestamp(value); }
+		public Long get(ChangeCheckpoint obj) { return obj.getTimestamp(); }
+	};
+	/** {@link ModelObjectField} for the checkpoint text. */
+	public static final ModelObjectField<ChangeCheckpoint, String> TEXT = new ModelObjectField<ChangeCheckpoint, String>("text", String.class, MAX_TEXT_LEN) {
+		public void set(ChangeCheckpoint obj, String value) { obj.setText(value); }
+		public String get(ChangeCheckpoint obj) { return obj.getText(); }
+	};
+
+	/**
+	 * Description of fields (schema version 0).
+	 */
+	public static final ModelObjectSchema<ChangeCheckpoint> SCHEMA_V0 = new ModelObjectSchema<ChangeCheckpoint>("change_checkpoint", ChangeCheckpoint.class)
+			.add(ID)
+			.add(USER_ID)
+			.add(PROBLEM_ID)
+			.add(EVENT_ID)
+			.add(TIMESTAMP)
+			.add(TEXT)
+			// There is at most one checkpoint for each user/problem
+			.addIndex(new ModelObjectIndex<ChangeCheckpoint>(ModelObjectIndexType.UNIQUE)
+					.addField(USER_ID)
+					.addField(PROBLEM_ID)
+					);
+
+	/**
+	 * Description of fields (current schema version).
+	 */
+	public static final ModelObjectSchema<ChangeCheckpoint> SCHEMA = SCHEMA_V0;
+
+	/**
+	 * Constructor.
+	 */
+	public ChangeCheckpoint() {
+	}
+
+	@Override
+	public ModelObjectSchema<? super ChangeCheckpoint> getSchema() {
+		return SCHEMA;
+	}
+
+	/**
+	 * Set the unique id.
+	 * 
+	 * @param id the unique id
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return the unique id
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Set the user id.
+	 * 
+	 * @param userId the user id
+	 */
+	public void setUserId(int userId) {
+		this.userId = userId;
+	}
+
+	/**
+	 * @return the user id
+	 */
+	public int getUserId() {
+		return userId;
+	}
+
+	/**
+	 * Set the problem id.
+	 * 
+	 * @param problemId the problem id
+	 */
+	public void setProblemId(int problemId) {
+		this.problemId = problemId;
+	}
+
+	/**
+	 * @return the problem id
+	 */
+	public int getProblemId() {
+		return problemId;
+	}
+
+	/**
+	 * Set the event id of the last {@link Change} included in the checkpoint.
+	 * 
+	 * @param eventId the event id
+	 */
+	public void setEventId(int eventId) {
+		this.eventId = eventId;
+	}
+
+	/**
+	 * @return the event id of the last {@link Change} included in the checkpoint
+	 */
+	public int getEventId() {
+		return eventId;
+	}
+
+	/**
+	 * Set the time the checkpoint was written.
+	 * 
+	 * @param timestamp the time the checkpoint was written
+	 */
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * @return the time the checkpoint was written
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Set the checkpoint text.
+	 * 
+	 * @param text the checkpoint text
+	 */
+	public void setText(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * @return the checkpoint text
+	 */
+	public String getText() {
+		return text;
+	}
+}
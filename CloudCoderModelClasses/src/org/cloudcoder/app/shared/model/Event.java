@@ -50,9 +50,9 @@ public class Event implements Serializable, IModelObject<Event> {
 	};
 	
 	/**
-	 * Description of fields.
+	 * Description of fields (schema version 0).
 	 */
-	public static final ModelObjectSchema<Event> SCHEMA = new ModelObjectSchema<Event>("event", Event.class)
+	public static final ModelObjectSchema<Event> SCHEMA_V0 = new ModelObjectSchema<Event>("event", Event.class)
 		.add(ID)
 		.add(USER_ID)
 		.add(PROBLEM_ID)
@@ -64,6 +64,22 @@ public class Event implements Serializable, IModelObject<Event> {
 			public void set(Event obj, Long value) { obj.setTimestamp(value); }
 			public Long get(Event obj) { return obj.getTimestamp(); }
 		});
+	
+	/**
+	 * Description of fields (schema version 1).
+	 */
+	public static final ModelObjectSchema<Event> SCHEMA_V1 = ModelObjectSchema.basedOn(SCHEMA_V0, Event.class)
+		// Composite index on (user id, problem id, id): the queries that load
+		// a user's changes for a problem (by id range, or the most recent one)
+		// can then find and order the events using a single index range scan,
+		// rather than merging the separate user id and problem id indexes.
+		.addIndexDelta(new ModelObjectIndex<Event>(ModelObjectIndexType.NON_UNIQUE).addField(USER_ID).addField(PROBLEM_ID).addField(ID))
+		.finishDelta();
+	
+	/**
+	 * Description of fields (current schema version).
+	 */
+	public static final ModelObjectSchema<Event> SCHEMA = SCHEMA_V1;
 
 	public Event() {
 
@@ -28,6 +28,28 @@ public class HealthData implements IModelObject<HealthData> {
 	private int submissionQueueSizeCurrent;
 	private int submissionQueueSizeMaxLastFiveMinutes;
 	private int numConnectedBuilderThreads;
+	private int dbPoolActiveConnections;
+	private int dbPoolIdleConnections;
+	private int dbPoolMaxSize;
+	private int dbPoolWaitingThreads;
+	private int dbPoolWaitTimeouts;
+	private int dbPoolConnectionsCreated;
+	private int submissionQueueSizeQuiz;
+	private int submissionQueueSizeExercise;
+	private int submissionQueueSizeWebService;
+	private int submissionQueueSizeBatch;
+	private int submissionsDispatched;
+	private int submissionsCoalesced;
+	private int submissionResultCacheHits;
+	private int dbTransactions;
+	private int dbTransactionDeadlocks;
+	private int dbTransactionDuplicateKeys;
+	private int dbTransactionFailures;
+	private int changeQueueSize;
+	private int changeWriterTransactions;
+	private int changeWriterBatches;
+	private int changeFlushLatencyAvgLastFiveMinutes;
+	private int changeFlushLatencyMaxLastFiveMinutes;
 	
 	public static final ModelObjectField<HealthData, Integer> SUBMISSION_QUEUE_SIZE_CURRENT = new ModelObjectField<HealthData, Integer>("submissionQueueSizeCurrent", Integer.class, 0) {
 		public void set(HealthData obj, Integer value) { obj.setSubmissionQueueSizeCurrent(value); }
@@ -44,6 +66,116 @@ public class HealthData implements IModelObject<HealthData> {
 		public Integer get(HealthData obj) { return obj.getNumConnectedBuilderThreads(); }
 	};
 	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_ACTIVE_CONNECTIONS = new ModelObjectField<HealthData, Integer>("dbPoolActiveConnections", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolActiveConnections(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolActiveConnections(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_IDLE_CONNECTIONS = new ModelObjectField<HealthData, Integer>("dbPoolIdleConnections", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolIdleConnections(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolIdleConnections(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_MAX_SIZE = new ModelObjectField<HealthData, Integer>("dbPoolMaxSize", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolMaxSize(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolMaxSize(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_WAITING_THREADS = new ModelObjectField<HealthData, Integer>("dbPoolWaitingThreads", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolWaitingThreads(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolWaitingThreads(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_WAIT_TIMEOUTS = new ModelObjectField<HealthData, Integer>("dbPoolWaitTimeouts", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolWaitTimeouts(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolWaitTimeouts(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_CONNECTIONS_CREATED = new ModelObjectField<HealthData, Integer>("dbPoolConnectionsCreated", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolConnectionsCreated(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolConnectionsCreated(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> SUBMISSION_QUEUE_SIZE_QUIZ = new ModelObjectField<HealthData, Integer>("submissionQueueSizeQuiz", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setSubmissionQueueSizeQuiz(value); }
+		public Integer get(HealthData obj) { return obj.getSubmissionQueueSizeQuiz(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> SUBMISSION_QUEUE_SIZE_EXERCISE = new ModelObjectField<HealthData, Integer>("submissionQueueSizeExercise", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setSubmissionQueueSizeExercise(value); }
+		public Integer get(HealthData obj) { return obj.getSubmissionQueueSizeExercise(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> SUBMISSION_QUEUE_SIZE_WEB_SERVICE = new ModelObjectField<HealthData, Integer>("submissionQueueSizeWebService", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setSubmissionQueueSizeWebService(value); }
+		public Integer get(HealthData obj) { return obj.getSubmissionQueueSizeWebService(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> SUBMISSION_QUEUE_SIZE_BATCH = new ModelObjectField<HealthData, Integer>("submissionQueueSizeBatch", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setSubmissionQueueSizeBatch(value); }
+		public Integer get(HealthData obj) { return obj.getSubmissionQueueSizeBatch(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> SUBMISSIONS_DISPATCHED = new ModelObjectField<HealthData, Integer>("submissionsDispatched", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setSubmissionsDispatched(value); }
+		public Integer get(HealthData obj) { return obj.getSubmissionsDispatched(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> SUBMISSIONS_COALESCED = new ModelObjectField<HealthData, Integer>("submissionsCoalesced", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setSubmissionsCoalesced(value); }
+		public Integer get(HealthData obj) { return obj.getSubmissionsCoalesced(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> SUBMISSION_RESULT_CACHE_HITS = new ModelObjectField<HealthData, Integer>("submissionResultCacheHits", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setSubmissionResultCacheHits(value); }
+		public Integer get(HealthData obj) { return obj.getSubmissionResultCacheHits(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_TRANSACTIONS = new ModelObjectField<HealthData, Integer>("dbTransactions", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbTransactions(value); }
+		public Integer get(HealthData obj) { return obj.getDbTransactions(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_TRANSACTION_DEADLOCKS = new ModelObjectField<HealthData, Integer>("dbTransactionDeadlocks", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbTransactionDeadlocks(value); }
+		public Integer get(HealthData obj) { return obj.getDbTransactionDeadlocks(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_TRANSACTION_DUPLICATE_KEYS = new ModelObjectField<HealthData, Integer>("dbTransactionDuplicateKeys", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbTransactionDuplicateKeys(value); }
+		public Integer get(HealthData obj) { return obj.getDbTransactionDuplicateKeys(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_TRANSACTION_FAILURES = new ModelObjectField<HealthData, Integer>("dbTransactionFailures", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbTransactionFailures(value); }
+		public Integer get(HealthData obj) { return obj.getDbTransactionFailures(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> CHANGE_QUEUE_SIZE = new ModelObjectField<HealthData, Integer>("changeQueueSize", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setChangeQueueSize(value); }
+		public Integer get(HealthData obj) { return obj.getChangeQueueSize(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> CHANGE_WRITER_TRANSACTIONS = new ModelObjectField<HealthData, Integer>("changeWriterTransactions", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setChangeWriterTransactions(value); }
+		public Integer get(HealthData obj) { return obj.getChangeWriterTransactions(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> CHANGE_WRITER_BATCHES = new ModelObjectField<HealthData, Integer>("changeWriterBatches", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setChangeWriterBatches(value); }
+		public Integer get(HealthData obj) { return obj.getChangeWriterBatches(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> CHANGE_FLUSH_LATENCY_AVG_LAST_FIVE_MINUTES = new ModelObjectField<HealthData, Integer>("changeFlushLatencyAvgLastFiveMinutes", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setChangeFlushLatencyAvgLastFiveMinutes(value); }
+		public Integer get(HealthData obj) { return obj.getChangeFlushLatencyAvgLastFiveMinutes(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> CHANGE_FLUSH_LATENCY_MAX_LAST_FIVE_MINUTES = new ModelObjectField<HealthData, Integer>("changeFlushLatencyMaxLastFiveMinutes", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setChangeFlushLatencyMaxLastFiveMinutes(value); }
+		public Integer get(HealthData obj) { return obj.getChangeFlushLatencyMaxLastFiveMinutes(); }
+	};
+	
 	/**
 	 * Model object fields (schema version 0).
 	 */
@@ -52,10 +184,68 @@ public class HealthData implements IModelObject<HealthData> {
 			.add(SUBMISSION_QUEUE_SIZE_MAX_LAST_FIVE_MINUTES)
 			.add(NUM_CONNECTED_BUILDER_THREADS);
 	
+	/**
+	 * Model object fields (schema version 1): adds database connection pool statistics.
+	 */
+	public static final ModelObjectSchema<HealthData> SCHEMA_V1 = ModelObjectSchema.basedOn(SCHEMA_V0, HealthData.class)
+			.addAfter(NUM_CONNECTED_BUILDER_THREADS, DB_POOL_ACTIVE_CONNECTIONS)
+			.addAfter(DB_POOL_ACTIVE_CONNECTIONS, DB_POOL_IDLE_CONNECTIONS)
+			.addAfter(DB_POOL_IDLE_CONNECTIONS, DB_POOL_MAX_SIZE)
+			.addAfter(DB_POOL_MAX_SIZE, DB_POOL_WAITING_THREADS)
+			.addAfter(DB_POOL_WAITING_THREADS, DB_POOL_WAIT_TIMEOUTS)
+			.addAfter(DB_POOL_WAIT_TIMEOUTS, DB_POOL_CONNECTIONS_CREATED)
+			.finishDelta();
+	
+	/**
+	 * Model object fields (schema version 2): adds submission queue sizes by priority class.
+	 */
+	public static final ModelObjectSchema<HealthData> SCHEMA_V2 = ModelObjectSchema.basedOn(SCHEMA_V1, HealthData.class)
+			.addAfter(SUBMISSION_QUEUE_SIZE_MAX_LAST_FIVE_MINUTES, SUBMISSION_QUEUE_SIZE_QUIZ)
+			.addAfter(SUBMISSION_QUEUE_SIZE_QUIZ, SUBMISSION_QUEUE_SIZE_EXERCISE)
+			.addAfter(SUBMISSION_QUEUE_SIZE_EXERCISE, SUBMISSION_QUEUE_SIZE_WEB_SERVICE)
+			.addAfter(SUBMISSION_QUEUE_SIZE_WEB_SERVICE, SUBMISSION_QUEUE_SIZE_BATCH)
+			.finishDelta();
+	
+	/**
+	 * Model object fields (schema version 3): adds submission coalescing statistics.
+	 */
+	public static final ModelObjectSchema<HealthData> SCHEMA_V3 = ModelObjectSchema.basedOn(SCHEMA_V2, HealthData.class)
+			.addAfter(NUM_CONNECTED_BUILDER_THREADS, SUBMISSIONS_DISPATCHED)
+			.addAfter(SUBMISSIONS_DISPATCHED, SUBMISSIONS_COALESCED)
+			.addAfter(SUBMISSIONS_COALESCED, SUBMISSION_RESULT_CACHE_HITS)
+			.finishDelta();
+	
+	/**
+	 * Model object fields (schema version 4): adds database transaction statistics.
+	 */
+	public static final ModelObjectSchema<HealthData> SCHEMA_V4 = ModelObjectSchema.basedOn(SCHEMA_V3, HealthData.class)
+			.addAfter(DB_POOL_CONNECTIONS_CREATED, DB_TRANSACTIONS)
+			.addAfter(DB_TRANSACTIONS, DB_TRANSACTION_DEADLOCKS)
+			.addAfter(DB_TRANSACTION_DEADLOCKS, DB_TRANSACTION_FAILURES)
+			.finishDelta();
+	
+	/**
+	 * Model object fields (schema version 5): adds statistics about writing changes.
+	 */
+	public static final ModelObjectSchema<HealthData> SCHEMA_V5 = ModelObjectSchema.basedOn(SCHEMA_V4, HealthData.class)
+			.addAfter(SUBMISSION_RESULT_CACHE_HITS, CHANGE_QUEUE_SIZE)
+			.addAfter(CHANGE_QUEUE_SIZE, CHANGE_WRITER_TRANSACTIONS)
+			.addAfter(CHANGE_WRITER_TRANSACTIONS, CHANGE_WRITER_BATCHES)
+			.addAfter(CHANGE_WRITER_BATCHES, CHANGE_FLUSH_LATENCY_AVG_LAST_FIVE_MINUTES)
+			.addAfter(CHANGE_FLUSH_LATENCY_AVG_LAST_FIVE_MINUTES, CHANGE_FLUSH_LATENCY_MAX_LAST_FIVE_MINUTES)
+			.finishDelta();
+	
+	/**
+	 * Model object fields (schema version 6): adds retried duplicate key errors.
+	 */
+	public static final ModelObjectSchema<HealthData> SCHEMA_V6 = ModelObjectSchema.basedOn(SCHEMA_V5, HealthData.class)
+			.addAfter(DB_TRANSACTION_DEADLOCKS, DB_TRANSACTION_DUPLICATE_KEYS)
+			.finishDelta();
+	
 	/**
 	 * Model object fields (current schema version).
 	 */
-	public static final ModelObjectSchema<HealthData> SCHEMA = SCHEMA_V0;
+	public static final ModelObjectSchema<HealthData> SCHEMA = SCHEMA_V6;
 	
 	/**
 	 * Constructor.
@@ -122,4 +312,400 @@ public class HealthData implements IModelObject<HealthData> {
 	public void setNumConnectedBuilderThreads(int numConnectedBuilderThreads) {
 		this.numConnectedBuilderThreads = numConnectedBuilderThreads;
 	}
+	
+	/**
+	 * Set the number of database connections currently in use.
+	 * 
+	 * @param dbPoolActiveConnections the number of database connections currently in use
+	 */
+	public void setDbPoolActiveConnections(int dbPoolActiveConnections) {
+		this.dbPoolActiveConnections = dbPoolActiveConnections;
+	}
+	
+	/**
+	 * Get the number of database connections currently in use.
+	 * 
+	 * @return the number of database connections currently in use
+	 */
+	public int getDbPoolActiveConnections() {
+		return dbPoolActiveConnections;
+	}
+	
+	/**
+	 * Set the number of idle database connections.
+	 * 
+	 * @param dbPoolIdleConnections the number of idle database connections
+	 */
+	public void setDbPoolIdleConnections(int dbPoolIdleConnections) {
+		this.dbPoolIdleConnections = dbPoolIdleConnections;
+	}
+	
+	/**
+	 * Get the number of idle database connections.
+	 * 
+	 * @return the number of idle database connections
+	 */
+	public int getDbPoolIdleConnections() {
+		return dbPoolIdleConnections;
+	}
+	
+	/**
+	 * Set the maximum size of the database connection pool (0 if unbounded).
+	 * 
+	 * @param dbPoolMaxSize the maximum size of the database connection pool (0 if unbounded)
+	 */
+	public void setDbPoolMaxSize(int dbPoolMaxSize) {
+		this.dbPoolMaxSize = dbPoolMaxSize;
+	}
+	
+	/**
+	 * Get the maximum size of the database connection pool (0 if unbounded).
+	 * 
+	 * @return the maximum size of the database connection pool (0 if unbounded)
+	 */
+	public int getDbPoolMaxSize() {
+		return dbPoolMaxSize;
+	}
+	
+	/**
+	 * Set the number of threads waiting for a database connection.
+	 * 
+	 * @param dbPoolWaitingThreads the number of threads waiting for a database connection
+	 */
+	public void setDbPoolWaitingThreads(int dbPoolWaitingThreads) {
+		this.dbPoolWaitingThreads = dbPoolWaitingThreads;
+	}
+	
+	/**
+	 * Get the number of threads waiting for a database connection.
+	 * 
+	 * @return the number of threads waiting for a database connection
+	 */
+	public int getDbPoolWaitingThreads() {
+		return dbPoolWaitingThreads;
+	}
+	
+	/**
+	 * Set the number of times a thread timed out waiting for a database connection.
+	 * 
+	 * @param dbPoolWaitTimeouts the number of times a thread timed out waiting for a database connection
+	 */
+	public void setDbPoolWaitTimeouts(int dbPoolWaitTimeouts) {
+		this.dbPoolWaitTimeouts = dbPoolWaitTimeouts;
+	}
+	
+	/**
+	 * Get the number of times a thread timed out waiting for a database connection.
+	 * 
+	 * @return the number of times a thread timed out waiting for a database connection
+	 */
+	public int getDbPoolWaitTimeouts() {
+		return dbPoolWaitTimeouts;
+	}
+	
+	/**
+	 * Set the total number of database connections created.
+	 * 
+	 * @param dbPoolConnectionsCreated the total number of database connections created
+	 */
+	public void setDbPoolConnectionsCreated(int dbPoolConnectionsCreated) {
+		this.dbPoolConnectionsCreated = dbPoolConnectionsCreated;
+	}
+	
+	/**
+	 * Get the total number of database connections created.
+	 * 
+	 * @return the total number of database connections created
+	 */
+	public int getDbPoolConnectionsCreated() {
+		return dbPoolConnectionsCreated;
+	}
+	
+	/**
+	 * Set the number of waiting quiz submissions.
+	 * 
+	 * @param submissionQueueSizeQuiz the number of waiting quiz submissions
+	 */
+	public void setSubmissionQueueSizeQuiz(int submissionQueueSizeQuiz) {
+		this.submissionQueueSizeQuiz = submissionQueueSizeQuiz;
+	}
+	
+	/**
+	 * Get the number of waiting quiz submissions.
+	 * 
+	 * @return the number of waiting quiz submissions
+	 */
+	public int getSubmissionQueueSizeQuiz() {
+		return submissionQueueSizeQuiz;
+	}
+	
+	/**
+	 * Set the number of waiting exercise submissions.
+	 * 
+	 * @param submissionQueueSizeExercise the number of waiting exercise submissions
+	 */
+	public void setSubmissionQueueSizeExercise(int submissionQueueSizeExercise) {
+		this.submissionQueueSizeExercise = submissionQueueSizeExercise;
+	}
+	
+	/**
+	 * Get the number of waiting exercise submissions.
+	 * 
+	 * @return the number of waiting exercise submissions
+	 */
+	public int getSubmissionQueueSizeExercise() {
+		return submissionQueueSizeExercise;
+	}
+	
+	/**
+	 * Set the number of waiting web service submissions.
+	 * 
+	 * @param submissionQueueSizeWebService the number of waiting web service submissions
+	 */
+	public void setSubmissionQueueSizeWebService(int submissionQueueSizeWebService) {
+		this.submissionQueueSizeWebService = submissionQueueSizeWebService;
+	}
+	
+	/**
+	 * Get the number of waiting web service submissions.
+	 * 
+	 * @return the number of waiting web service submissions
+	 */
+	public int getSubmissionQueueSizeWebService() {
+		return submissionQueueSizeWebService;
+	}
+	
+	/**
+	 * Set the number of waiting batch submissions.
+	 * 
+	 * @param submissionQueueSizeBatch the number of waiting batch submissions
+	 */
+	public void setSubmissionQueueSizeBatch(int submissionQueueSizeBatch) {
+		this.submissionQueueSizeBatch = submissionQueueSizeBatch;
+	}
+	
+	/**
+	 * Get the number of waiting batch submissions.
+	 * 
+	 * @return the number of waiting batch submissions
+	 */
+	public int getSubmissionQueueSizeBatch() {
+		return submissionQueueSizeBatch;
+	}
+	
+	/**
+	 * Set the total number of submissions sent to Builders to be tested.
+	 * 
+	 * @param submissionsDispatched the total number of submissions sent to Builders to be tested
+	 */
+	public void setSubmissionsDispatched(int submissionsDispatched) {
+		this.submissionsDispatched = submissionsDispatched;
+	}
+	
+	/**
+	 * Get the total number of submissions sent to Builders to be tested.
+	 * 
+	 * @return the total number of submissions sent to Builders to be tested
+	 */
+	public int getSubmissionsDispatched() {
+		return submissionsDispatched;
+	}
+	
+	/**
+	 * Set the total number of submissions that shared the result of an identical pending submission.
+	 * 
+	 * @param submissionsCoalesced the total number of submissions that shared the result of an identical pending submission
+	 */
+	public void setSubmissionsCoalesced(int submissionsCoalesced) {
+		this.submissionsCoalesced = submissionsCoalesced;
+	}
+	
+	/**
+	 * Get the total number of submissions that shared the result of an identical pending submission.
+	 * 
+	 * @return the total number of submissions that shared the result of an identical pending submission
+	 */
+	public int getSubmissionsCoalesced() {
+		return submissionsCoalesced;
+	}
+	
+	/**
+	 * Set the total number of submissions whose result was found in the result cache.
+	 * 
+	 * @param submissionResultCacheHits the total number of submissions whose result was found in the result cache
+	 */
+	public void setSubmissionResultCacheHits(int submissionResultCacheHits) {
+		this.submissionResultCacheHits = submissionResultCacheHits;
+	}
+	
+	/**
+	 * Get the total number of submissions whose result was found in the result cache.
+	 * 
+	 * @return the total number of submissions whose result was found in the result cache
+	 */
+	public int getSubmissionResultCacheHits() {
+		return submissionResultCacheHits;
+	}
+	
+	/**
+	 * Set the total number of database transactions executed.
+	 * 
+	 * @param dbTransactions the total number of database transactions executed
+	 */
+	public void setDbTransactions(int dbTransactions) {
+		this.dbTransactions = dbTransactions;
+	}
+	
+	/**
+	 * Get the total number of database transactions executed.
+	 * 
+	 * @return the total number of database transactions executed
+	 */
+	public int getDbTransactions() {
+		return dbTransactions;
+	}
+	
+	/**
+	 * Set the total number of database transaction attempts that failed because of a deadlock.
+	 * 
+	 * @param dbTransactionDeadlocks the total number of database transaction attempts that failed because of a deadlock
+	 */
+	public void setDbTransactionDeadlocks(int dbTransactionDeadlocks) {
+		this.dbTransactionDeadlocks = dbTransactionDeadlocks;
+	}
+	
+	/**
+	 * Get the total number of database transaction attempts that failed because of a deadlock.
+	 * 
+	 * @return the total number of database transaction attempts that failed because of a deadlock
+	 */
+	public int getDbTransactionDeadlocks() {
+		return dbTransactionDeadlocks;
+	}
+	
+	/**
+	 * Set the total number of database transaction attempts that failed with a duplicate key error and were retried.
+	 * 
+	 * @param dbTransactionDuplicateKeys the total number of database transaction attempts that failed with a duplicate key error and were retried
+	 */
+	public void setDbTransactionDuplicateKeys(int dbTransactionDuplicateKeys) {
+		this.dbTransactionDuplicateKeys = dbTransactionDuplicateKeys;
+	}
+	
+	/**
+	 * Get the total number of database transaction attempts that failed with a duplicate key error and were retried.
+	 * 
+	 * @return the total number of database transaction attempts that failed with a duplicate key error and were retried
+	 */
+	public int getDbTransactionDuplicateKeys() {
+		return dbTransactionDuplicateKeys;
+	}
+	
+	/**
+	 * Set the total number of database transactions that failed.
+	 * 
+	 * @param dbTransactionFailures the total number of database transactions that failed
+	 */
+	public void setDbTransactionFailures(int dbTransactionFailures) {
+		this.dbTransactionFailures = dbTransactionFailures;
+	}
+	
+	/**
+	 * Get the total number of database transactions that failed.
+	 * 
+	 * @return the total number of database transactions that failed
+	 */
+	public int getDbTransactionFailures() {
+		return dbTransactionFailures;
+	}
+	
+	/**
+	 * Set the number of changes waiting to be written to the database.
+	 * 
+	 * @param changeQueueSize the number of changes waiting to be written to the database
+	 */
+	public void setChangeQueueSize(int changeQueueSize) {
+		this.changeQueueSize = changeQueueSize;
+	}
+	
+	/**
+	 * Get the number of changes waiting to be written to the database.
+	 * 
+	 * @return the number of changes waiting to be written to the database
+	 */
+	public int getChangeQueueSize() {
+		return changeQueueSize;
+	}
+	
+	/**
+	 * Set the total number of transactions used to write changes.
+	 * 
+	 * @param changeWriterTransactions the total number of transactions used to write changes
+	 */
+	public void setChangeWriterTransactions(int changeWriterTransactions) {
+		this.changeWriterTransactions = changeWriterTransactions;
+	}
+	
+	/**
+	 * Get the total number of transactions used to write changes.
+	 * 
+	 * @return the total number of transactions used to write changes
+	 */
+	public int getChangeWriterTransactions() {
+		return changeWriterTransactions;
+	}
+	
+	/**
+	 * Set the total number of batches of changes written.
+	 * 
+	 * @param changeWriterBatches the total number of batches of changes written
+	 */
+	public void setChangeWriterBatches(int changeWriterBatches) {
+		this.changeWriterBatches = changeWriterBatches;
+	}
+	
+	/**
+	 * Get the total number of batches of changes written.
+	 * 
+	 * @return the total number of batches of changes written
+	 */
+	public int getChangeWriterBatches() {
+		return changeWriterBatches;
+	}
+	
+	/**
+	 * Set the average time (in milliseconds) taken to commit a batch of changes in the last five minutes.
+	 * 
+	 * @param changeFlushLatencyAvgLastFiveMinutes the average time (in milliseconds) taken to commit a batch of changes in the last five minutes
+	 */
+	public void setChangeFlushLatencyAvgLastFiveMinutes(int changeFlushLatencyAvgLastFiveMinutes) {
+		this.changeFlushLatencyAvgLastFiveMinutes = changeFlushLatencyAvgLastFiveMinutes;
+	}
+	
+	/**
+	 * Get the average time (in milliseconds) taken to commit a batch of changes in the last five minutes.
+	 * 
+	 * @return the average time (in milliseconds) taken to commit a batch of changes in the last five minutes
+	 */
+	public int getChangeFlushLatencyAvgLastFiveMinutes() {
+		return changeFlushLatencyAvgLastFiveMinutes;
+	}
+	
+	/**
+	 * Set the maximum time (in milliseconds) taken to commit a batch of changes in the last five minutes.
+	 * 
+	 * @param changeFlushLatencyMaxLastFiveMinutes the maximum time (in milliseconds) taken to commit a batch of changes in the last five minutes
+	 */
+	public void setChangeFlushLatencyMaxLastFiveMinutes(int changeFlushLatencyMaxLastFiveMinutes) {
+		this.changeFlushLatencyMaxLastFiveMinutes = changeFlushLatencyMaxLastFiveMinutes;
+	}
+	
+	/**
+	 * Get the maximum time (in milliseconds) taken to commit a batch of changes in the last five minutes.
+	 * 
+	 * @return the maximum time (in milliseconds) taken to commit a batch of changes in the last five minutes
+	 */
+	public int getChangeFlushLatencyMaxLastFiveMinutes() {
+		return changeFlushLatencyMaxLastFiveMinutes;
+	}
 }
@@ -0,0 +1,201 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.shared.model;
+
+import java.io.Serializable;
+
+/**
+ * Materialized summary of a {@link User}'s {@link SubmissionReceipt}s
+ * for a {@link Problem}: the event ids of the latest receipt and of the
+ * best receipt (the earliest one with the most tests passed).
+ * There is at most one summary for each user and problem.  It is
+ * updated in the same transaction as the receipts it summarizes,
+ * so that pages showing a user's progress on many problems do not
+ * have to search the user's entire submission history.
+ * 
+ * @author David Hovemeyer
+ */
+public class LatestSubmissionReceipt implements Serializable, IModelObject<LatestSubmissionReceipt> {
+	private static final long serialVersionUID = 1L;
+
+	private int id;
+	private int userId;
+	private int problemId;
+	private int latestEventId;
+	private int bestEventId;
+	private int bestNumTestsPassed;
+
+	/** {@link ModelObjectField} for unique id. */
+	public static final ModelObjectField<LatestSubmissionReceipt, Integer> ID = new ModelObjectField<LatestSubmissionReceipt, Integer>("id", Integer.class, 0, ModelObjectIndexType.IDENTITY) {
+		public void set(LatestSubmissionReceipt obj, Integer value) { obj.setId(value); }
+		public Integer get(LatestSubmissionReceipt obj) { return obj.getId(); }
+	};
+	/** {@link ModelObjectField} for user id. */
+	public static final ModelObjectField<LatestSubmissionReceipt, Integer> USER_ID = new ModelObjectField<LatestSubmissionReceipt, Integer>("user_id", Integer.class, 0) {
+		public void set(LatestSubmissionReceipt obj, Integer value) { obj.setUserId(value); }
+		public Integer get(LatestSubmissionReceipt obj) { return obj.getUserId(); }
+	};
+	/** {@link ModelObjectField} for problem id. */
+	public static final ModelObjectField<LatestSubmissionReceipt, Integer> PROBLEM_ID = new ModelObjectField<LatestSubmissionReceipt, Integer>("problem_id", Integer.class, 0) {
+		public void set(LatestSubmissionReceipt obj, Integer value) { obj.setProblemId(value); }
+		public Integer get(LatestSubmissionReceipt obj) { return obj.getProblemId(); }
+	};
+	/** {@link ModelObjectField} for the event id of the latest submission receipt. */
+	public static final ModelObjectField<LatestSubmissionReceipt, Integer> LATEST_EVENT_ID = new ModelObjectField<LatestSubmissionReceipt, Integer>("latest_event_id", Integer.class, 0) {
+		public void set(LatestSubmissionReceipt obj, Integer value) { obj.setLatestEventId(value); }
+		public Integer get(LatestSubmissionReceipt obj) { return obj.getLatestEventId(); }
+	};
+	/** {@link ModelObjectField} for the event id of the best submission receipt. */
+	public static final ModelObjectField<LatestSubmissionReceipt, Integer> BEST_EVENT_ID = new ModelObjectField<LatestSubmissionReceipt, Integer>("best_event_id", Integer.class, 0) {
+		public void set(LatestSubmissionReceipt obj, Integer value) { obj.setBestEventId(value); }
+		public Integer get(LatestSubmissionReceipt obj) { return obj.getBestEventId(); }
+	};
+	/** {@link ModelObjectField} for the number of tests passed by the best submission receipt. */
+	public static final ModelObjectField<LatestSubmissionReceipt, Integer> BEST_NUM_TESTS_PASSED = new ModelObjectField<LatestSubmissionReceipt, Integer>("best_num_tests_passed", Integer.class, 0) {
+		public void set(LatestSubmissionReceipt obj, Integer value) { obj.setBestNumTestsPassed(value); }
+		public Integer get(LatestSubmissionReceipt obj) { return obj.getBestNumTestsPassed(); }
+	};
+
+	/**
+	 * Description of fields (schema version 0).
+	 */
+	public static final ModelObjectSchema<LatestSubmissionReceipt> SCHEMA_V0 = new ModelObjectSchema<LatestSubmissionReceipt>("latest_submission_receipt", LatestSubmissionReceipt.class)
+			.add(ID)
+			.add(USER_ID)
+			.add(PROBLEM_ID)
+			.add(LATEST_EVENT_ID)
+			.add(BEST_EVENT_ID)
+			.add(BEST_NUM_TESTS_PASSED)
+			// There is at most one summary for each user/problem
+			.addIndex(new ModelObjectIndex<LatestSubmissionReceipt>(ModelObjectIndexType.UNIQUE)
+					.addField(USER_ID)
+					.addField(PROBLEM_ID)
+					);
+
+	/**
+	 * Description of fields (current schema version).
+	 */
+	public static final ModelObjectSchema<LatestSubmissionReceipt> SCHEMA = SCHEMA_V0;
+
+	/**
+	 * Constructor.
+	 */
+	public LatestSubmissionReceipt() {
+	}
+
+	@Override
+	public ModelObjectSchema<? super LatestSubmissionReceipt> getSchema() {
+		return SCHEMA;
+	}
+
+	/**
+	 * Set the unique id.
+	 * 
+	 * @param id the unique id
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return the unique id
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Set the user id.
+	 * 
+	 * @param userId the user id
+	 */
+	public void setUserId(int userId) {
+		this.userId = userId;
+	}
+
+	/**
+	 * @return the user id
+	 */
+	public int getUserId() {
+		return userId;
+	}
+
+	/**
+	 * Set the problem id.
+	 * 
+	 * @param problemId the problem id
+	 */
+	public void setProblemId(int problemId) {
+		this.problemId = problemId;
+	}
+
+	/**
+	 * @return the problem id
+	 */
+	public int getProblemId() {
+		return problemId;
+	}
+
+	/**
+	 * Set the event id of the latest {@link SubmissionReceipt}.
+	 * 
+	 * @param latestEventId the event id of the latest submission receipt
+	 */
+	public void setLatestEventId(int latestEventId) {
+		this.latestEventId = latestEventId;
+	}
+
+	/**
+	 * @return the event id of the latest {@link SubmissionReceipt}
+	 */
+	public int getLatestEventId() {
+		return latestEventId;
+	}
+
+	/**
+	 * Set the event id of the best {@link SubmissionReceipt}.
+	 * 
+	 * @param bestEventId the event id of the best submission receipt
+	 */
+	public void setBestEventId(int bestEventId) {
+		this.bestEventId = bestEventId;
+	}
+
+	/**
+	 * @return the event id of the best {@link SubmissionReceipt}
+	 */
+	public int getBestEventId() {
+		return bestEventId;
+	}
+
+	/**
+	 * Set the number of tests passed by the best {@link SubmissionReceipt}.
+	 * 
+	 * @param bestNumTestsPassed the number of tests passed by the best submission receipt
+	 */
+	public void setBestNumTestsPassed(int bestNumTestsPassed) {
+		this.bestNumTestsPassed = bestNumTestsPassed;
+	}
+
+	/**
+	 * @return the number of tests passed by the best {@link SubmissionReceipt}
+	 */
+	public int getBestNumTestsPassed() {
+		return bestNumTestsPassed;
+	}
+}
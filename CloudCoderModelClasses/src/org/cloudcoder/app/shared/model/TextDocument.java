@@ -17,20 +17,39 @@
 
 package org.cloudcoder.app.shared.model;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Simple text document class; treats document as sequence of lines.
+ * 
+ * <p>The lines are stored in a gap buffer: edits tend to be clustered
+ * around the same location, so inserting and removing lines only requires
+ * moving the lines between the previous edit location and the current one.
+ * The full text is cached until the document is modified, and the document
+ * keeps track of how many lines contain embedded newlines, so that
+ * {@link ApplyChangeToTextDocument} can check its integrity after each
+ * change without examining every line.
  */
 public class TextDocument {
-	private List<String> lineList;
+	private static final int INITIAL_CAPACITY = 16;
+
+	// Lines [0, gapStart) are at the beginning of the buffer,
+	// the remaining lines are in [gapEnd, buf.length)
+	private String[] buf;
+	private int gapStart;
+	private int gapEnd;
+
+	// Number of lines with a newline somewhere other than at the end
+	private int numLinesWithEmbeddedNewline;
+
+	// Cached text of the document, null if the document has been modified
+	private String text;
 
 	/**
 	 * Constructor: initialize empty text document.
 	 */
 	public TextDocument() {
-		lineList = new ArrayList<String>();
+		buf = new String[INITIAL_CAPACITY];
+		gapStart = 0;
+		gapEnd = buf.length;
 	}
 
 	/**
@@ -39,14 +58,14 @@ public class TextDocument {
 	 * @param line line of text to append
 	 */
 	public void append(String line) {
-		lineList.add(line);
+		insertLine(getNumLines(), line);
 	}
 	
 	/**
 	 * @return number of lines of text in document
 	 */
 	public int getNumLines() {
-		return lineList.size();
+		return buf.length - (gapEnd - gapStart);
 	}
 	
 	/**
@@ -56,7 +75,8 @@ public class TextDocument {
 	 * @return line of text
 	 */
 	public String getLine(int index) {
-		return lineList.get(index);
+		checkIndex(index, false);
+		return buf[toBufIndex(index)];
 	}
 	
 	/**
@@ -66,7 +86,11 @@ public class TextDocument {
 	 * @param line text value to set as new value of line
 	 */
 	public void setLine(int index, String line) {
-		lineList.set(index, line);
+		checkIndex(index, false);
+		int i = toBufIndex(index);
+		lineRemoved(buf[i]);
+		buf[i] = line;
+		lineAdded(line);
 	}
 	
 	/**
@@ -77,7 +101,13 @@ public class TextDocument {
 	 * @param line line of text to insert
 	 */
 	public void insertLine(int index, String line) {
-		lineList.add(index, line);
+		checkIndex(index, true);
+		if (gapStart == gapEnd) {
+			grow();
+		}
+		moveGap(index);
+		buf[gapStart++] = line;
+		lineAdded(line);
 	}
 
 	/**
@@ -87,30 +117,117 @@ public class TextDocument {
 	 * @param index index of line to remove
 	 */
 	public void removeLine(int index) {
-		lineList.remove(index);
+		checkIndex(index, false);
+		moveGap(index);
+		lineRemoved(buf[gapEnd]);
+		buf[gapEnd++] = null;
 	}
 
 	/**
 	 * @return complete text of document as string
 	 */
 	public String getText() {
-		StringBuilder buf = new StringBuilder();
-
-		for (String s : lineList) {
-			buf.append(s);
+		if (text == null) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < gapStart; i++) {
+				sb.append(buf[i]);
+			}
+			for (int i = gapEnd; i < buf.length; i++) {
+				sb.append(buf[i]);
+			}
+			text = sb.toString();
 		}
-		
-		return buf.toString();
+		return text;
 	}
 
 	public void setText(String text) {
-		lineList.clear();
 		String[] lines = text.split("\n");
+		buf = new String[Math.max(INITIAL_CAPACITY, lines.length * 2)];
+		gapStart = 0;
+		gapEnd = buf.length;
+		numLinesWithEmbeddedNewline = 0;
+		this.text = null;
 		for (String line : lines) {
-			lineList.add(line + "\n");
+			buf[gapStart++] = line + "\n";
 		}
 	}
+
+	/**
+	 * @return true if any line contains a newline other than at the end of the line
+	 */
+	boolean hasLineWithEmbeddedNewline() {
+		return numLinesWithEmbeddedNewline > 0;
+	}
+
 	public String toString() {
 	    return this.getText();
 	}
+
+	private int toBufIndex(int index) {
+		return index < gapStart ? index : index + (gapEnd - gapStart);
+	}
+
+	private void checkIndex(int index, boolean allowEnd) {
+		int size = getNumLines();
+		if (index < 0 || index > size || (index == size && !allowEnd)) {
+			// Same exception as java.util.ArrayList
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Move the gap so that it starts at given line index.
+	 */
+	private void moveGap(int index) {
+		if (index < gapStart) {
+			int n = gapStart - index;
+			System.arraycopy(buf, index, buf, gapEnd - n, n);
+			clear(index, Math.min(gapStart, gapEnd - n));
+			gapStart = index;
+			gapEnd -= n;
+		} else if (index > gapStart) {
+			int n = index - gapStart;
+			System.arraycopy(buf, gapEnd, buf, gapStart, n);
+			clear(Math.max(gapEnd, gapStart + n), gapEnd + n);
+			gapStart += n;
+			gapEnd += n;
+		}
+	}
+
+	private void clear(int from, int to) {
+		for (int i = from; i < to; i++) {
+			buf[i] = null;
+		}
+	}
+
+	private void grow() {
+		String[] newBuf = new String[buf.length * 2];
+		int tail = buf.length - gapEnd;
+		System.arraycopy(buf, 0, newBuf, 0, gapStart);
+		System.arraycopy(buf, gapEnd, newBuf, newBuf.length - tail, tail);
+		gapEnd = newBuf.length - tail;
+		buf = newBuf;
+	}
+
+	private void lineAdded(String line) {
+		text = null;
+		if (hasEmbeddedNewline(line)) {
+			numLinesWithEmbeddedNewline++;
+		}
+	}
+
+	private void lineRemoved(String line) {
+		text = null;
+		if (hasEmbeddedNewline(line)) {
+			numLinesWithEmbeddedNewline--;
+		}
+	}
+
+	private static boolean hasEmbeddedNewline(String line) {
+		if (line == null) {
+			return false;
+		}
+		int nl = line.indexOf('\n');
+		return nl >= 0 && nl != line.length() - 1;
+	}
 }
@@ -71,6 +71,11 @@ public abstract class AbstractConnectionPool implements IConnectionPool {
 		}
 	}
 
+	@Override
+	public boolean hasConnection() {
+		return tlc.get() != null;
+	}
+
 	/**
 	 * Downcall method to create a new {@link Connection} to the database.
 	 * 
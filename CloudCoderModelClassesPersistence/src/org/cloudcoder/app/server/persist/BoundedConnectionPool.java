@@ -0,0 +1,417 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+// Copyright (C) 2013, York College of Pennsylvania
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.cloudcoder.app.server.persist.JDBCDatabaseConfig.ConfigProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link IConnectionPool} which keeps a bounded
+ * number of physical connections to the database open and
+ * reuses them.  Connections are still handed out on a per-thread
+ * basis (see {@link AbstractConnectionPool}): when a thread's
+ * reference count drops to zero, its connection is returned to the
+ * pool rather than being closed.
+ *
+ * <p>Idle connections are validated when they are borrowed (if they
+ * have been idle for longer than the validation interval), closed
+ * when they exceed their maximum lifetime, and evicted by a
+ * background timer when they have been idle for too long.
+ * A thread that requests a connection when all connections are in
+ * use waits up to the configured maximum wait time, after which
+ * an {@link SQLException} is thrown.
+ *
+ * @author David Hovemeyer
+ */
+public class BoundedConnectionPool extends AbstractConnectionPool {
+	private static final Logger logger = LoggerFactory.getLogger(BoundedConnectionPool.class);
+
+	static {
+		try {
+			Class.forName(JDBCDatabase.JDBC_DRIVER_CLASS);
+		} catch (Exception e) {
+			throw new IllegalStateException("Could not load mysql jdbc driver", e);
+		}
+	}
+
+	/**
+	 * A physical connection managed by the pool.
+	 */
+	private static class PooledConnection {
+		final Connection conn;
+		final long createdAt;
+		long lastUsedAt;
+
+		PooledConnection(Connection conn, long now) {
+			this.conn = conn;
+			this.createdAt = now;
+			this.lastUsedAt = now;
+		}
+	}
+
+	private final String jdbcUrl;
+	private final String user;
+	private final String passwd;
+	private final ConnectionPoolConfig poolConfig;
+
+	private final ReentrantLock lock;
+	private final Condition available;
+
+	// Idle connections, most recently used first
+	private final LinkedList<PooledConnection> idle;
+
+	// Connections currently borrowed by a thread
+	private final IdentityHashMap<Connection, PooledConnection> inUse;
+
+	// Number of physical connections: idle, in use, or being opened
+	private int numOpen;
+
+	private int numWaiting;
+	private long waitTimeouts;
+	private long connectionsCreated;
+	private boolean destroyed;
+
+	private final Timer evictor;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param config the database configuration properties
+	 * @param poolConfig the connection pool configuration
+	 */
+	public BoundedConnectionPool(ConfigProperties config, ConnectionPoolConfig poolConfig) {
+		this.jdbcUrl =
+				"jdbc:mysql://" +
+				config.getHost() + config.getPortStr() +
+				"/" +
+				config.getDatabaseName();
+		this.user = config.getUser();
+		this.passwd = config.getPasswd();
+		this.poolConfig = poolConfig;
+
+		this.lock = new ReentrantLock();
+		this.available = lock.newCondition();
+		this.idle = new LinkedList<PooledConnection>();
+		this.inUse = new IdentityHashMap<Connection, PooledConnection>();
+
+		logger.info("Connection pool for {}: maxSize={}, minIdle={}",
+				new Object[]{jdbcUrl, poolConfig.getMaxSize(), poolConfig.getMinIdle()});
+
+		this.evictor = new Timer("BoundedConnectionPool evictor", true);
+		this.evictor.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				try {
+					evictIdleConnections();
+					fillMinIdle();
+				} catch (Throwable e) {
+					logger.error("Error maintaining connection pool", e);
+				}
+			}
+		}, poolConfig.getEvictionIntervalMs(), poolConfig.getEvictionIntervalMs());
+	}
+
+	@Override
+	protected Connection createConnection() throws SQLException {
+		long deadline = System.currentTimeMillis() + poolConfig.getMaxWaitMs();
+
+		while (true) {
+			PooledConnection pc = null;
+			boolean create = false;
+
+			lock.lock();
+			try {
+				while (pc == null && !create) {
+					if (destroyed) {
+						throw new SQLException("Connection pool has been destroyed");
+					}
+					if (!idle.isEmpty()) {
+						pc = idle.removeFirst();
+					} else if (numOpen < poolConfig.getMaxSize()) {
+						// Reserve a slot for a new connection
+						numOpen++;
+						create = true;
+					} else {
+						long remaining = deadline - System.currentTimeMillis();
+						if (remaining <= 0) {
+							waitTimeouts++;
+							throw new SQLException("Timed out waiting for a database connection (" +
+									poolConfig.getMaxSize() + " connections in use)");
+						}
+						numWaiting++;
+						try {
+							available.await(remaining, TimeUnit.MILLISECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new SQLException("Interrupted while waiting for a database connection", e);
+						} finally {
+							numWaiting--;
+						}
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			if (create) {
+				try {
+					pc = openConnection();
+				} catch (SQLException e) {
+					releaseSlot();
+					throw e;
+				}
+				checkOut(pc);
+				return pc.conn;
+			}
+
+			// Make sure the idle connection is still usable:
+			// if not, discard it and try again
+			if (isUsable(pc, System.currentTimeMillis())) {
+				checkOut(pc);
+				return pc.conn;
+			}
+			discard(pc);
+		}
+	}
+
+	@Override
+	protected void closeConnection(Connection conn) throws SQLException {
+		PooledConnection pc;
+		lock.lock();
+		try {
+			pc = inUse.remove(conn);
+		} finally {
+			lock.unlock();
+		}
+
+		if (pc == null) {
+			// Not one of ours (should not happen)
+			conn.close();
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		boolean reusable = now - pc.createdAt < poolConfig.getMaxLifetimeMs() && !conn.isClosed();
+		if (reusable) {
+			lock.lock();
+			try {
+				if (!destroyed) {
+					pc.lastUsedAt = now;
+					idle.addFirst(pc);
+					available.signal();
+					return;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		discard(pc);
+	}
+
+	@Override
+	public void destroy() throws SQLException {
+		evictor.cancel();
+
+		List<PooledConnection> toClose;
+		lock.lock();
+		try {
+			destroyed = true;
+			toClose = new ArrayList<PooledConnection>(idle);
+			numOpen -= idle.size();
+			idle.clear();
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		// Connections that are in use will be closed when they are returned
+		for (PooledConnection pc : toClose) {
+			closeQuietly(pc);
+		}
+	}
+
+	@Override
+	public ConnectionPoolStats getStats() {
+		lock.lock();
+		try {
+			return new ConnectionPoolStats(
+					inUse.size(),
+					idle.size(),
+					poolConfig.getMaxSize(),
+					numWaiting,
+					waitTimeouts,
+					connectionsCreated);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Close idle connections that have exceeded their maximum lifetime,
+	 * or that have been idle for longer than the idle timeout (as long as
+	 * the minimum number of idle connections is maintained).
+	 */
+	private void evictIdleConnections() {
+		long now = System.currentTimeMillis();
+		List<PooledConnection> toClose = new ArrayList<PooledConnection>();
+
+		lock.lock();
+		try {
+			// Check the least recently used connections first
+			for (Iterator<PooledConnection> i = idle.descendingIterator(); i.hasNext(); ) {
+				PooledConnection pc = i.next();
+				boolean expired = now - pc.createdAt >= poolConfig.getMaxLifetimeMs();
+				boolean idleTooLong = now - pc.lastUsedAt >= poolConfig.getIdleTimeoutMs()
+						&& idle.size() > poolConfig.getMinIdle();
+				if (expired || idleTooLong) {
+					i.remove();
+					numOpen--;
+					toClose.add(pc);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		if (!toClose.isEmpty()) {
+			logger.debug("Evicting {} idle database connections", toClose.size());
+		}
+		for (PooledConnection pc : toClose) {
+			closeQuietly(pc);
+		}
+	}
+
+	/**
+	 * Open connections until the minimum number of idle connections
+	 * is reached (without exceeding the maximum pool size).
+	 */
+	private void fillMinIdle() {
+		while (true) {
+			lock.lock();
+			try {
+				if (destroyed || idle.size() >= poolConfig.getMinIdle() || numOpen >= poolConfig.getMaxSize()) {
+					return;
+				}
+				numOpen++;
+			} finally {
+				lock.unlock();
+			}
+
+			PooledConnection pc;
+			try {
+				pc = openConnection();
+			} catch (SQLException e) {
+				releaseSlot();
+				logger.warn("Could not open idle database connection", e);
+				return;
+			}
+
+			lock.lock();
+			try {
+				if (!destroyed) {
+					idle.addLast(pc);
+					available.signal();
+					pc = null;
+				} else {
+					numOpen--;
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (pc != null) {
+				closeQuietly(pc);
+			}
+		}
+	}
+
+	private PooledConnection openConnection() throws SQLException {
+		Connection conn = DriverManager.getConnection(jdbcUrl, user, passwd);
+		lock.lock();
+		try {
+			connectionsCreated++;
+		} finally {
+			lock.unlock();
+		}
+		return new PooledConnection(conn, System.currentTimeMillis());
+	}
+
+	private boolean isUsable(PooledConnection pc, long now) {
+		if (now - pc.createdAt >= poolConfig.getMaxLifetimeMs()) {
+			return false;
+		}
+		if (now - pc.lastUsedAt < poolConfig.getValidationIntervalMs()) {
+			// Recently used, assume it's still good
+			return true;
+		}
+		try {
+			return pc.conn.isValid(poolConfig.getValidationTimeoutSec());
+		} catch (SQLException e) {
+			logger.debug("Error validating database connection", e);
+			return false;
+		}
+	}
+
+	private void checkOut(PooledConnection pc) {
+		lock.lock();
+		try {
+			inUse.put(pc.conn, pc);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void discard(PooledConnection pc) {
+		releaseSlot();
+		closeQuietly(pc);
+	}
+
+	private void releaseSlot() {
+		lock.lock();
+		try {
+			numOpen--;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static void closeQuietly(PooledConnection pc) {
+		try {
+			pc.conn.close();
+		} catch (SQLException e) {
+			logger.debug("Error closing database connection", e);
+		}
+	}
+}
@@ -36,9 +36,10 @@ public class C3P0ConnectionPool extends AbstractConnectionPool {
 	 * Constructor.
 	 * 
 	 * @param config the database configuration properties
+	 * @param poolConfig the connection pool configuration
 	 * @throws SQLException
 	 */
-	public C3P0ConnectionPool(JDBCDatabaseConfig.ConfigProperties config) throws SQLException {
+	public C3P0ConnectionPool(JDBCDatabaseConfig.ConfigProperties config, ConnectionPoolConfig poolConfig) throws SQLException {
 		cpds = new ComboPooledDataSource();
 		try {
 			cpds.setDriverClass(JDBCDatabase.JDBC_DRIVER_CLASS);
@@ -53,12 +54,15 @@ public class C3P0ConnectionPool extends AbstractConnectionPool {
 		cpds.setPassword(config.getPasswd());
 		
 		// Turn on connection pooling
-		// TODO: these should be tunable based on CloudCoder config properties
-		cpds.setMinPoolSize(10);
-		cpds.setMaxPoolSize(150);
+		cpds.setMinPoolSize(poolConfig.getMinIdle());
+		cpds.setMaxPoolSize(poolConfig.getMaxSize());
+		cpds.setCheckoutTimeout((int) Math.min(poolConfig.getMaxWaitMs(), Integer.MAX_VALUE));
+		cpds.setMaxIdleTimeExcessConnections((int) (poolConfig.getIdleTimeoutMs() / 1000L));
+		cpds.setMaxConnectionAge((int) (poolConfig.getMaxLifetimeMs() / 1000L));
+		cpds.setIdleConnectionTestPeriod((int) (poolConfig.getEvictionIntervalMs() / 1000L));
 		
 		// Turn on prepared statement pooling
-		cpds.setMaxStatements(180);
+		cpds.setMaxStatements(poolConfig.getMaxStatements());
 	}
 	
 	@Override
@@ -66,6 +70,21 @@ public class C3P0ConnectionPool extends AbstractConnectionPool {
 		cpds.close();
 	}
 	
+	@Override
+	public ConnectionPoolStats getStats() {
+		try {
+			return new ConnectionPoolStats(
+					cpds.getNumBusyConnectionsDefaultUser(),
+					cpds.getNumIdleConnectionsDefaultUser(),
+					cpds.getMaxPoolSize(),
+					cpds.getNumThreadsAwaitingCheckoutDefaultUser(),
+					0L,
+					0L);
+		} catch (SQLException e) {
+			return new ConnectionPoolStats(0, 0, cpds.getMaxPoolSize(), 0, 0L, 0L);
+		}
+	}
+	
 	@Override
 	protected Connection createConnection() throws SQLException {
 		return cpds.getConnection();
@@ -0,0 +1,232 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+// Copyright (C) 2013, York College of Pennsylvania
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist;
+
+import java.util.Properties;
+
+/**
+ * Configuration of the {@link IConnectionPool} used by {@link JDBCDatabase}.
+ * Values are read from configuration properties having the form
+ * <code><i>prefix</i>.pool.<i>name</i></code>, e.g.,
+ * <code>cloudcoder.db.pool.maxSize</code>.  Any property that is not
+ * specified gets a reasonable default value.
+ *
+ * @author David Hovemeyer
+ */
+public class ConnectionPoolConfig {
+	/**
+	 * Available {@link IConnectionPool} implementations.
+	 */
+	public enum Type {
+		/** {@link BoundedConnectionPool}: the default. */
+		BOUNDED,
+		/** {@link MysqlConnectionPool}: a new connection for each transaction. */
+		MYSQL,
+		/** {@link C3P0ConnectionPool}: requires the C3P0 library. */
+		C3P0,
+	}
+
+	/** Default maximum number of connections. */
+	public static final int DEFAULT_MAX_SIZE = 40;
+
+	/** Default minimum number of idle connections. */
+	public static final int DEFAULT_MIN_IDLE = 4;
+
+	/** Default maximum time to wait for a connection, in milliseconds. */
+	public static final long DEFAULT_MAX_WAIT_MS = 10000L;
+
+	/** Default time after which an idle connection is closed, in milliseconds. */
+	public static final long DEFAULT_IDLE_TIMEOUT_MS = 5L*60*1000;
+
+	/** Default maximum lifetime of a connection, in milliseconds. */
+	public static final long DEFAULT_MAX_LIFETIME_MS = 30L*60*1000;
+
+	/** Default time a connection may be idle before it is validated when borrowed, in milliseconds. */
+	public static final long DEFAULT_VALIDATION_INTERVAL_MS = 5000L;
+
+	/** Default timeout for validating a connection, in seconds. */
+	public static final int DEFAULT_VALIDATION_TIMEOUT_SEC = 2;
+
+	/** Default interval between runs of the idle connection evictor, in milliseconds. */
+	public static final long DEFAULT_EVICTION_INTERVAL_MS = 30000L;
+
+	/** Default number of cached prepared statements (C3P0 only). */
+	public static final int DEFAULT_MAX_STATEMENTS = 180;
+
+	private Type type;
+	private int maxSize;
+	private int minIdle;
+	private long maxWaitMs;
+	private long idleTimeoutMs;
+	private long maxLifetimeMs;
+	private long validationIntervalMs;
+	private int validationTimeoutSec;
+	private long evictionIntervalMs;
+	private int maxStatements;
+
+	/**
+	 * Constructor: all values are set to their defaults.
+	 */
+	public ConnectionPoolConfig() {
+		this.type = Type.BOUNDED;
+		this.maxSize = DEFAULT_MAX_SIZE;
+		this.minIdle = DEFAULT_MIN_IDLE;
+		this.maxWaitMs = DEFAULT_MAX_WAIT_MS;
+		this.idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+		this.maxLifetimeMs = DEFAULT_MAX_LIFETIME_MS;
+		this.validationIntervalMs = DEFAULT_VALIDATION_INTERVAL_MS;
+		this.validationTimeoutSec = DEFAULT_VALIDATION_TIMEOUT_SEC;
+		this.evictionIntervalMs = DEFAULT_EVICTION_INTERVAL_MS;
+		this.maxStatements = DEFAULT_MAX_STATEMENTS;
+	}
+
+	/**
+	 * Create a {@link ConnectionPoolConfig} from configuration properties
+	 * (e.g., loaded from cloudcoder.properties).
+	 *
+	 * @param config  the configuration properties
+	 * @param prefix  the prefix for database configuration properties (e.g., "cloudcoder.db")
+	 * @return the {@link ConnectionPoolConfig}
+	 */
+	public static ConnectionPoolConfig fromProperties(Properties config, String prefix) {
+		ConnectionPoolConfig result = new ConnectionPoolConfig();
+		String p = prefix + ".pool.";
+
+		String typeName = config.getProperty(p + "type");
+		if (typeName != null && !typeName.trim().equals("")) {
+			try {
+				result.type = Type.valueOf(typeName.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown connection pool type: " + typeName);
+			}
+		}
+		result.maxSize = getInt(config, p + "maxSize", result.maxSize);
+		result.minIdle = getInt(config, p + "minIdle", result.minIdle);
+		result.maxWaitMs = getLong(config, p + "maxWaitMs", result.maxWaitMs);
+		result.idleTimeoutMs = getLong(config, p + "idleTimeoutMs", result.idleTimeoutMs);
+		result.maxLifetimeMs = getLong(config, p + "maxLifetimeMs", result.maxLifetimeMs);
+		result.validationIntervalMs = getLong(config, p + "validationIntervalMs", result.validationIntervalMs);
+		result.validationTimeoutSec = getInt(config, p + "validationTimeoutSec", result.validationTimeoutSec);
+		result.evictionIntervalMs = getLong(config, p + "evictionIntervalMs", result.evictionIntervalMs);
+		result.maxStatements = getInt(config, p + "maxStatements", result.maxStatements);
+
+		if (result.maxSize < 1) {
+			throw new IllegalArgumentException(p + "maxSize must be at least 1");
+		}
+		if (result.minIdle > result.maxSize) {
+			result.minIdle = result.maxSize;
+		}
+
+		return result;
+	}
+
+	private static int getInt(Properties config, String propName, int defaultValue) {
+		String value = config.getProperty(propName);
+		if (value == null || value.trim().equals("")) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid integer value for " + propName + ": " + value);
+		}
+	}
+
+	private static long getLong(Properties config, String propName, long defaultValue) {
+		String value = config.getProperty(propName);
+		if (value == null || value.trim().equals("")) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid integer value for " + propName + ": " + value);
+		}
+	}
+
+	/**
+	 * @return the type of connection pool to use
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the maximum number of connections (idle and in use)
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of idle connections to keep open
+	 */
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	/**
+	 * @return the maximum time to wait for a connection when all connections are in use, in milliseconds
+	 */
+	public long getMaxWaitMs() {
+		return maxWaitMs;
+	}
+
+	/**
+	 * @return the time after which an idle connection (in excess of the minimum idle count) is closed, in milliseconds
+	 */
+	public long getIdleTimeoutMs() {
+		return idleTimeoutMs;
+	}
+
+	/**
+	 * @return the maximum lifetime of a connection, in milliseconds
+	 */
+	public long getMaxLifetimeMs() {
+		return maxLifetimeMs;
+	}
+
+	/**
+	 * @return how long a connection may be idle before it is validated when borrowed, in milliseconds
+	 */
+	public long getValidationIntervalMs() {
+		return validationIntervalMs;
+	}
+
+	/**
+	 * @return the timeout for validating a connection, in seconds
+	 */
+	public int getValidationTimeoutSec() {
+		return validationTimeoutSec;
+	}
+
+	/**
+	 * @return the interval between runs of the idle connection evictor, in milliseconds
+	 */
+	public long getEvictionIntervalMs() {
+		return evictionIntervalMs;
+	}
+
+	/**
+	 * @return the number of prepared statements to cache (C3P0 only)
+	 */
+	public int getMaxStatements() {
+		return maxStatements;
+	}
+}
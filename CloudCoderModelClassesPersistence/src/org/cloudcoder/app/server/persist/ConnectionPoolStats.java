@@ -0,0 +1,94 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+// Copyright (C) 2013, York College of Pennsylvania
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist;
+
+/**
+ * A snapshot of statistics about an {@link IConnectionPool}.
+ *
+ * @author David Hovemeyer
+ */
+public class ConnectionPoolStats {
+	private int active;
+	private int idle;
+	private int maxSize;
+	private int waiting;
+	private long waitTimeouts;
+	private long connectionsCreated;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param active             number of connections currently in use
+	 * @param idle               number of idle connections
+	 * @param maxSize            maximum number of connections (0 if unbounded)
+	 * @param waiting            number of threads waiting for a connection
+	 * @param waitTimeouts       number of times a thread gave up waiting for a connection
+	 * @param connectionsCreated total number of physical connections created
+	 */
+	public ConnectionPoolStats(int active, int idle, int maxSize, int waiting, long waitTimeouts, long connectionsCreated) {
+		this.active = active;
+		this.idle = idle;
+		this.maxSize = maxSize;
+		this.waiting = waiting;
+		this.waitTimeouts = waitTimeouts;
+		this.connectionsCreated = connectionsCreated;
+	}
+
+	/**
+	 * @return number of connections currently in use
+	 */
+	public int getActive() {
+		return active;
+	}
+
+	/**
+	 * @return number of idle connections
+	 */
+	public int getIdle() {
+		return idle;
+	}
+
+	/**
+	 * @return maximum number of connections (0 if unbounded)
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return number of threads waiting for a connection
+	 */
+	public int getWaiting() {
+		return waiting;
+	}
+
+	/**
+	 * @return number of times a thread gave up waiting for a connection
+	 */
+	public long getWaitTimeouts() {
+		return waitTimeouts;
+	}
+
+	/**
+	 * @return total number of physical connections created
+	 */
+	public long getConnectionsCreated() {
+		return connectionsCreated;
+	}
+}
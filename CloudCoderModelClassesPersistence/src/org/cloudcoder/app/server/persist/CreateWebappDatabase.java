@@ -31,12 +31,14 @@ import org.cloudcoder.app.server.persist.util.ConfigurationUtil;
 import org.cloudcoder.app.server.persist.util.DBUtil;
 import org.cloudcoder.app.server.persist.util.SchemaUtil;
 import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeCheckpoint;
 import org.cloudcoder.app.shared.model.ConfigurationSetting;
 import org.cloudcoder.app.shared.model.ConfigurationSettingName;
 import org.cloudcoder.app.shared.model.Course;
 import org.cloudcoder.app.shared.model.CourseRegistration;
 import org.cloudcoder.app.shared.model.CourseRegistrationType;
 import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.LatestSubmissionReceipt;
 import org.cloudcoder.app.shared.model.ModelObjectSchema;
 import org.cloudcoder.app.shared.model.Module;
 import org.cloudcoder.app.shared.model.Problem;
@@ -77,6 +79,8 @@ public class CreateWebappDatabase {
 		Quiz.SCHEMA,
 		Module.SCHEMA,
 		StartedQuiz.SCHEMA,
+		ChangeCheckpoint.SCHEMA,
+		LatestSubmissionReceipt.SCHEMA,
 	};
 	
 	private static class Props {
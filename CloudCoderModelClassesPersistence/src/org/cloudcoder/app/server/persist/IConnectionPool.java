@@ -47,9 +47,24 @@ public interface IConnectionPool {
 	 */
 	public void releaseConnection() throws SQLException;
 	
+	/**
+	 * Determine whether the current thread is holding a connection
+	 * (i.e., is in the middle of a transaction).
+	 * 
+	 * @return true if the current thread is holding a connection
+	 */
+	public boolean hasConnection();
+	
 	/**
 	 * Clean up all resources associated with this connection pool.
 	 * @throws SQLException 
 	 */
 	public void destroy() throws SQLException;
+	
+	/**
+	 * Get current statistics about this connection pool.
+	 * 
+	 * @return the {@link ConnectionPoolStats}
+	 */
+	public ConnectionPoolStats getStats();
 }
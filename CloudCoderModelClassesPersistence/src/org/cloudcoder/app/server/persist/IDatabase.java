@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.cloudcoder.app.shared.model.Anonymization;
 import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeCheckpoint;
 import org.cloudcoder.app.shared.model.CloudCoderAuthenticationException;
 import org.cloudcoder.app.shared.model.ConfigurationSetting;
 import org.cloudcoder.app.shared.model.ConfigurationSettingName;
@@ -151,6 +152,16 @@ public interface IDatabase {
 	 */
 	public List<Change> getAllChangesNewerThan(User user, int problemId, int baseRev);
 	
+	/**
+	 * Get the {@link ChangeCheckpoint} recording the most recent
+	 * materialized full text of given {@link User}'s work on given problem.
+	 * 
+	 * @param user       the {@link User}
+	 * @param problemId  the problem id
+	 * @return the {@link ChangeCheckpoint}, or null if there is no checkpoint
+	 */
+	public ChangeCheckpoint getChangeCheckpoint(User user, int problemId);
+	
 	public enum RetrieveChangesMode {
 		RETRIEVE_CHANGES_ONLY,
 		RETRIEVE_CHANGES_AND_EDIT_EVENTS,
@@ -209,6 +220,28 @@ public interface IDatabase {
 	 */
 	public void storeChanges(Change[] changeList);
 	
+	/**
+	 * Store a sequence of {@link Change}s representing a {@link User}'s work on
+	 * a {@link Problem}, along with a {@link ChangeCheckpoint} of the text
+	 * resulting from the last change.  The checkpoint's event id is set
+	 * to the event id of the last change.
+	 * 
+	 * @param changeList the sequence of changes to store
+	 * @param checkpoint the {@link ChangeCheckpoint}, or null if no checkpoint should be stored
+	 */
+	public void storeChanges(Change[] changeList, ChangeCheckpoint checkpoint);
+	
+	/**
+	 * Store several batches of {@link Change}s, possibly for different
+	 * {@link User}s and {@link Problem}s, in a single transaction.
+	 * Each batch may have a {@link ChangeCheckpoint} (as in
+	 * {@link #storeChanges(Change[], ChangeCheckpoint)}).
+	 * 
+	 * @param batchList list of batches: each is a sequence of changes and a
+	 *                  {@link ChangeCheckpoint} (null if no checkpoint should be stored)
+	 */
+	public void storeChangeBatches(List<Pair<Change[], ChangeCheckpoint>> batchList);
+	
 	/**
 	 * Load a sequence of {@link Change}s for given user on given problem,
 	 * within a specified range of event ids.
@@ -230,6 +263,19 @@ public interface IDatabase {
 	 */
 	public List<Change> loadChangesForAllUsersOnProblem(int problemId);
 	
+	/**
+	 * Visit the sequence of {@link Change}s for all users on given problem.
+	 * Changes are ordered by user id, and then by event id.
+	 * The changes are streamed from the database, so (unlike
+	 * {@link #loadChangesForAllUsersOnProblem(int)}) memory use does not
+	 * depend on the number of changes.  The visitor must not access
+	 * the database.
+	 * 
+	 * @param problemId the problem id
+	 * @param visitor   the callback to do the visitation of the {@link Change}s
+	 */
+	public void visitChangesForAllUsersOnProblem(int problemId, ICallback<Change> visitor);
+	
 	/**
 	 * Get List of {@link TestCase}s for {@link Problem} with given id.
 	 * Note that no authentication is done to ensure that the caller
@@ -656,11 +702,14 @@ public interface IDatabase {
 	 * This operation should only be performed if the current user
 	 * is an instructor in the course containing the problem.
 	 * 
-	 * @param problem the {@link Problem}
-	 * @param user    the {@link User}
+	 * @param problem        the {@link Problem}
+	 * @param user           the {@link User}
+	 * @param requestingUser the authenticated {@link User} requesting the submission receipts,
+	 *                       or null if they are not being requested on behalf of
+	 *                       a logged-in user (e.g., for data analysis)
 	 * @return list of all of the user's submissions receipts for this problem
 	 */
-	public SubmissionReceipt[] getAllSubmissionReceiptsForUser(Problem problem, User user);
+	public SubmissionReceipt[] getAllSubmissionReceiptsForUser(Problem problem, User user, User requestingUser);
 
 	/**
 	 * Get the text of a submission specified by the given submission receipt.
@@ -747,12 +796,27 @@ public interface IDatabase {
 	 */
 	public List<WorkSession> findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds);
 	
+	/**
+	 * Visit all {@link WorkSession}s matching given {@link SnapshotSelectionCriteria}.
+	 * The events are streamed from the database, so (unlike
+	 * {@link #findWorkSessions(SnapshotSelectionCriteria, int)}) memory use does not
+	 * depend on the number of events or sessions.  The visitor must not
+	 * access the database.
+	 * 
+	 * @param criteria             the {@link SnapshotSelectionCriteria}
+	 * @param separationSeconds    events separated by this much time are considered to be
+	 *                             in separate sessions
+	 * @param visitor              the callback to do the visitation of the {@link WorkSession}s
+	 */
+	public void visitWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds, ICallback<WorkSession> visitor);
+	
 	/**
 	 * Retrieve submissions/snapshots matching given {@link SnapshotSelectionCriteria}.
 	 * 
 	 * @param criteria the {@link SnapshotSelectionCriteria}
 	 * @param callback the {@link SnapshotCallback} which will receive the retrieved
-	 *        snapshots
+	 *        snapshots (the snapshots are streamed from the database, so the
+	 *        callback must not access the database)
 	 */
 	public void retrieveSnapshots(SnapshotSelectionCriteria criteria, SnapshotCallback callback);
 
@@ -842,4 +906,27 @@ public interface IDatabase {
 	 *              the {@link Change} or {@link SubmissionReceipt}
 	 */
 	public List<Triple<Event, Change, SubmissionReceipt>> retrieveEvents(Problem problem, User user);
+	
+	/**
+	 * Get current statistics about the database connection pool.
+	 * 
+	 * @return the {@link ConnectionPoolStats}
+	 */
+	public ConnectionPoolStats getConnectionPoolStats();
+	
+	/**
+	 * Get current statistics about the connection pool for the read
+	 * replica database.
+	 * 
+	 * @return the {@link ConnectionPoolStats}, or null if there is no read replica
+	 */
+	public ConnectionPoolStats getReplicaConnectionPoolStats();
+	
+	/**
+	 * Get current statistics about the transactions executed, one
+	 * {@link TransactionStats} object per transaction description.
+	 * 
+	 * @return list of {@link TransactionStats}, sorted by description
+	 */
+	public List<TransactionStats> getTransactionStats();
 }
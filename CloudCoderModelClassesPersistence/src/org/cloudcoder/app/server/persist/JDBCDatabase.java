@@ -22,8 +22,11 @@ import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.cloudcoder.app.server.persist.txn.AddRepoProblemTag;
 import org.cloudcoder.app.server.persist.txn.AddTestCasesToProblem;
@@ -46,9 +49,11 @@ import org.cloudcoder.app.server.persist.txn.FindUnfinishedQuizForStudent;
 import org.cloudcoder.app.server.persist.txn.FindUserRegistrationRequestGivenSecret;
 import org.cloudcoder.app.server.persist.txn.FindWorkSessions;
 import org.cloudcoder.app.server.persist.txn.VisitAllChangesNewerThan;
+import org.cloudcoder.app.server.persist.txn.VisitChangesForAllUsersOnProblem;
 import org.cloudcoder.app.server.persist.txn.GetAllSubmissionReceiptsForUserAndProblem;
 import org.cloudcoder.app.server.persist.txn.GetBestSubmissionReceiptsForProblem;
 import org.cloudcoder.app.server.persist.txn.GetBestSubmissionReceiptsForProblemForAuthenticatedUser;
+import org.cloudcoder.app.server.persist.txn.GetChangeCheckpoint;
 import org.cloudcoder.app.server.persist.txn.GetChangeGivenChangeEventId;
 import org.cloudcoder.app.server.persist.txn.GetConfigurationSetting;
 import org.cloudcoder.app.server.persist.txn.GetCoursesForUser;
@@ -81,7 +86,6 @@ import org.cloudcoder.app.server.persist.txn.InsertUsersFromInputStream;
 import org.cloudcoder.app.server.persist.txn.InstructorStartQuiz;
 import org.cloudcoder.app.server.persist.txn.IsInstructorFor;
 import org.cloudcoder.app.server.persist.txn.LoadChanges;
-import org.cloudcoder.app.server.persist.txn.LoadChangesForAllUsersOnProblem;
 import org.cloudcoder.app.server.persist.txn.RegisterExistingUser;
 import org.cloudcoder.app.server.persist.txn.ReloadModelObject;
 import org.cloudcoder.app.server.persist.txn.ReplaceSubmissionReceipt;
@@ -104,6 +108,7 @@ import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthExce
 import org.cloudcoder.app.server.persist.util.DatabaseRunnable;
 import org.cloudcoder.app.shared.model.Anonymization;
 import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeCheckpoint;
 import org.cloudcoder.app.shared.model.CloudCoderAuthenticationException;
 import org.cloudcoder.app.shared.model.ConfigurationSetting;
 import org.cloudcoder.app.shared.model.ConfigurationSettingName;
@@ -158,12 +163,75 @@ public class JDBCDatabase implements IDatabase {
 	
 	static final Logger logger=LoggerFactory.getLogger(JDBCDatabase.class);
 
+	/**
+	 * Maximum number of distinct transaction descriptions for which
+	 * {@link TransactionStats} are kept: any further descriptions are
+	 * counted under {@link #OTHER_TRANSACTIONS}.
+	 */
+	public static final int MAX_TRANSACTION_STATS = 256;
+	
+	/** Description under which transactions in excess of {@link #MAX_TRANSACTION_STATS} are counted. */
+	public static final String OTHER_TRANSACTIONS = "(other transactions)";
+
 	private IConnectionPool connectionPool;
+	private IConnectionPool replicaConnectionPool;
+	private RetryPolicy retryPolicy;
+	private ConcurrentHashMap<String, TransactionStats> transactionStats;
 	
 	public JDBCDatabase() throws SQLException {
 		JDBCDatabaseConfig.ConfigProperties config = JDBCDatabaseConfig.getInstance().getConfigProperties();
-		this.connectionPool = new MysqlConnectionPool(config);
-//		this.connectionPool = new C3P0ConnectionPool(config);
+		this.connectionPool = createConnectionPool(config);
+		JDBCDatabaseConfig.ConfigProperties replicaConfig = config.getReplicaConfigProperties();
+		if (replicaConfig != null) {
+			logger.info("Read-only transactions will use replica database at {}", replicaConfig.getHost());
+			this.replicaConnectionPool = createConnectionPool(replicaConfig);
+		}
+		this.retryPolicy = config.getRetryPolicy();
+		if (this.retryPolicy == null) {
+			this.retryPolicy = new RetryPolicy();
+		}
+		this.transactionStats = new ConcurrentHashMap<String, TransactionStats>();
+	}
+	
+	private static IConnectionPool createConnectionPool(JDBCDatabaseConfig.ConfigProperties config) throws SQLException {
+		ConnectionPoolConfig poolConfig = config.getConnectionPoolConfig();
+		if (poolConfig == null) {
+			poolConfig = new ConnectionPoolConfig();
+		}
+		logger.info("Using {} connection pool", poolConfig.getType());
+		switch (poolConfig.getType()) {
+		case MYSQL:
+			return new MysqlConnectionPool(config);
+		case C3P0:
+			return new C3P0ConnectionPool(config, poolConfig);
+		default:
+			return new BoundedConnectionPool(config, poolConfig);
+		}
+	}
+	
+	@Override
+	public ConnectionPoolStats getConnectionPoolStats() {
+		return connectionPool.getStats();
+	}
+	
+	@Override
+	public ConnectionPoolStats getReplicaConnectionPoolStats() {
+		return replicaConnectionPool != null ? replicaConnectionPool.getStats() : null;
+	}
+	
+	@Override
+	public List<TransactionStats> getTransactionStats() {
+		List<TransactionStats> result = new ArrayList<TransactionStats>();
+		for (TransactionStats stats : transactionStats.values()) {
+			result.add(stats.copy());
+		}
+		Collections.sort(result, new Comparator<TransactionStats>() {
+			@Override
+			public int compare(TransactionStats o1, TransactionStats o2) {
+				return o1.getDescription().compareTo(o2.getDescription());
+			}
+		});
+		return result;
 	}
 	
 	@Override
@@ -227,6 +295,11 @@ public class JDBCDatabase implements IDatabase {
 		return result;
 	}
 	
+	@Override
+	public ChangeCheckpoint getChangeCheckpoint(User user, int problemId) {
+		return databaseRun(new GetChangeCheckpoint(problemId, user));
+	}
+	
 	@Override
 	public void visitAllChangesNewerThan(User user, int problemId, int baseRev, ICallback<Change> visitor, IDatabase.RetrieveChangesMode mode) {
 		databaseRun(new VisitAllChangesNewerThan(problemId, user, baseRev, visitor, mode));
@@ -254,6 +327,16 @@ public class JDBCDatabase implements IDatabase {
 		databaseRun(new StoreChanges(changeList));
 	}
 	
+	@Override
+	public void storeChanges(Change[] changeList, ChangeCheckpoint checkpoint) {
+		databaseRun(new StoreChanges(changeList, checkpoint));
+	}
+	
+	@Override
+	public void storeChangeBatches(List<Pair<Change[], ChangeCheckpoint>> batchList) {
+		databaseRun(new StoreChanges(batchList));
+	}
+	
 	@Override
 	public List<Change> loadChanges(int userId, int problemId, int minEventId, int maxEventId) {
 		return databaseRun(new LoadChanges(userId, problemId, minEventId, maxEventId));
@@ -261,7 +344,19 @@ public class JDBCDatabase implements IDatabase {
 
 	@Override
 	public List<Change> loadChangesForAllUsersOnProblem(int problemId) {
-		return databaseRun(new LoadChangesForAllUsersOnProblem(problemId));
+		final List<Change> result = new ArrayList<Change>();
+		visitChangesForAllUsersOnProblem(problemId, new ICallback<Change>() {
+			@Override
+			public void call(Change value) {
+				result.add(value);
+			}
+		});
+		return result;
+	}
+	
+	@Override
+	public void visitChangesForAllUsersOnProblem(int problemId, ICallback<Change> visitor) {
+		databaseRun(new VisitChangesForAllUsersOnProblem(problemId, visitor));
 	}
 	
 	@Override
@@ -483,8 +578,8 @@ public class JDBCDatabase implements IDatabase {
 	}
 	
 	@Override
-	public SubmissionReceipt[] getAllSubmissionReceiptsForUser(final Problem problem, final User user) {
-		return databaseRun(new GetAllSubmissionReceiptsForUserAndProblem(problem, user));
+	public SubmissionReceipt[] getAllSubmissionReceiptsForUser(final Problem problem, final User user, final User requestingUser) {
+		return databaseRun(new GetAllSubmissionReceiptsForUserAndProblem(problem, user, requestingUser));
 	}
 	
 	@Override
@@ -524,7 +619,19 @@ public class JDBCDatabase implements IDatabase {
 	
 	@Override
 	public List<WorkSession> findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds) {
-		return databaseRun(new FindWorkSessions(criteria, separationSeconds));
+		final List<WorkSession> result = new ArrayList<WorkSession>();
+		visitWorkSessions(criteria, separationSeconds, new ICallback<WorkSession>() {
+			@Override
+			public void call(WorkSession value) {
+				result.add(value);
+			}
+		});
+		return result;
+	}
+	
+	@Override
+	public void visitWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds, ICallback<WorkSession> visitor) {
+		databaseRun(new FindWorkSessions(criteria, separationSeconds, visitor));
 	}
 	
 	@Override
@@ -612,78 +719,165 @@ public class JDBCDatabase implements IDatabase {
 		// Give the DatabaseRunnable access to the logger
 		databaseRunnable.setLogger(logger);
 		
+		// Read-only transactions run in autocommit mode, and if possible,
+		// use the replica database.  However, a transaction nested in
+		// another transaction must use the same connection.
+		boolean readOnly = databaseRunnable.isReadOnly();
+		IConnectionPool pool = connectionPool;
+		if (readOnly && databaseRunnable.isReplicaSafe() && replicaConnectionPool != null
+				&& !connectionPool.hasConnection()) {
+			pool = replicaConnectionPool;
+		}
+		
+		long startTime = System.currentTimeMillis();
 		int attempts = 0;
+		int deadlocks = 0;
+		int duplicateKeys = 0;
+		long delayMs = 0L;
+		long backoffMs = 0L;
 		
 		boolean successfulCommit = false;
 		E result = null;
 
-		// Attempt the transaction until a maximum number of attempts is reached.
-		while (!successfulCommit && attempts < 20) {
-			attempts++;
-			
-			Connection conn;
-			boolean origAutocommit;
-			
-			// Attempt to get a connection
-			try {
-				conn = connectionPool.getConnection();
-				origAutocommit = conn.getAutoCommit();
-			} catch (SQLException e) {
-				throw new PersistenceException("SQLException", e);
-			}
-			
-			// Attempt the execute the transaction.
-			// If the transaction is not successful (throws SQLException),
-			// determine if it is because of a deadlock or other recoverable
-			// error, and if so, retry.
-			try {
-				conn.setAutoCommit(false);
-				result = databaseRunnable.run(conn);
-				conn.commit();
-				successfulCommit = true; // Hooray!
-			} catch (SQLException e) {
-				String sqlState = e.getSQLState();
-				if (sqlState != null && (sqlState.equals("40001") || sqlState.equals("41000") || sqlState.equals("23000"))) {
-					// Deadlock detected: retry transaction
-					// NOTE: I have also included duplicate key errors (23000).
-					// There is evidence that a MySQL bug can cause spurious
-					// duplicate key errors on auto increment fields, which I *think*
-					// I have actually seen in CloudCoder error logs.
-					//   See: http://www.softwareprojects.com/resources/programming/t-mysql-innodb-deadlocks-and-duplicate-key-errors-12-1970.html
-					// Workaround is to retry the transaction.
-					logger.info("MySQL deadlock detected (sqlState=" + sqlState + ")", e);
-				} else {
-					// Some other kind of transaction failure.
-					logger.error("Transaction failed with SQLException", e);
-					throw new PersistenceException("SQLException", e);
-				}
-			} finally {
-				// If the transaction didn't succeed, roll back
-				if (!successfulCommit) {
+		try {
+			// Attempt the transaction until a maximum number of attempts is reached.
+			while (!successfulCommit && attempts < retryPolicy.getMaxAttempts()) {
+				if (delayMs > 0) {
+					// Back off before retrying, so that transactions that
+					// deadlocked with each other don't just collide again
 					try {
-						conn.rollback();
-					} catch (SQLException ex) {
-						throw new PersistenceException("SQLException (on rollback)", ex);
+						Thread.sleep(delayMs);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new PersistenceException("Interrupted while waiting to retry transaction");
 					}
+					backoffMs += delayMs;
+					delayMs = 0L;
 				}
+				attempts++;
 				
-				// Restore the original autocommit value and release the connection.
+				Connection conn;
+				boolean origAutocommit;
+				
+				// Attempt to get a connection
 				try {
-					conn.setAutoCommit(origAutocommit);
-					connectionPool.releaseConnection();
+					conn = pool.getConnection();
+					origAutocommit = conn.getAutoCommit();
 				} catch (SQLException e) {
-					throw new PersistenceException("SQLException (releasing connection)", e);
+					throw new PersistenceException("SQLException", e);
+				}
+				
+				// Attempt the execute the transaction.
+				// If the transaction is not successful (throws SQLException),
+				// determine if it is because of a deadlock or other recoverable
+				// error, and if so, retry.
+				try {
+					if (readOnly) {
+						// Fast path: there is nothing to commit, so just run the
+						// transaction's statements with whatever autocommit mode
+						// the connection is in (autocommit if this is not a
+						// nested transaction)
+						if (pool == replicaConnectionPool) {
+							// The driver remembers the read-only flag, so this
+							// is only sent to the server the first time
+							conn.setReadOnly(true);
+						}
+						result = databaseRunnable.run(conn);
+					} else {
+						conn.setAutoCommit(false);
+						result = databaseRunnable.run(conn);
+						conn.commit();
+					}
+					successfulCommit = true; // Hooray!
+				} catch (SQLException e) {
+					String sqlState = e.getSQLState();
+					if (retryPolicy.isDeadlock(sqlState)) {
+						// Deadlock detected: retry transaction after a delay
+						deadlocks++;
+						delayMs = retryPolicy.getDelayMs(deadlocks);
+						logger.info("MySQL deadlock detected (sqlState=" + sqlState + ")", e);
+					} else if (retryPolicy.isDuplicateKey(sqlState)
+							&& duplicateKeys + 1 < retryPolicy.getMaxDuplicateKeyAttempts()) {
+						// Duplicate key: retry transaction immediately
+						// (see RetryPolicy.isDuplicateKey for why)
+						duplicateKeys++;
+						logger.info("MySQL duplicate key error (sqlState=" + sqlState + ")", e);
+					} else {
+						// Some other kind of transaction failure.
+						logger.error("Transaction failed with SQLException", e);
+						throw new PersistenceException("SQLException", e);
+					}
+				} finally {
+					try {
+						// If the transaction didn't succeed, roll back
+						// (unless it was a read-only transaction in autocommit mode)
+						if (!successfulCommit && !(readOnly && origAutocommit)) {
+							try {
+								conn.rollback();
+							} catch (SQLException ex) {
+								throw new PersistenceException("SQLException (on rollback)", ex);
+							}
+						}
+						
+						// Restore the original autocommit value.
+						if (!readOnly) {
+							try {
+								conn.setAutoCommit(origAutocommit);
+							} catch (SQLException e) {
+								throw new PersistenceException("SQLException (restoring autocommit)", e);
+							}
+						}
+					} finally {
+						// Always release the connection, so that a pooled connection
+						// is never leaked.
+						try {
+							pool.releaseConnection();
+						} catch (SQLException e) {
+							throw new PersistenceException("SQLException (releasing connection)", e);
+						}
+					}
 				}
 			}
+		} finally {
+			recordTransactionStats(databaseRunnable, System.currentTimeMillis() - startTime,
+					attempts, deadlocks, duplicateKeys, backoffMs, successfulCommit);
 		}
 		
 		// If the transaction was never executed successfully, throw a PersistenceException
 		if (!successfulCommit) {
+			logger.warn("Transaction \"{}\" gave up after {} attempts ({} deadlocks, {} duplicate keys)",
+					new Object[]{databaseRunnable.getDescription(), attempts, deadlocks, duplicateKeys});
 			throw new PersistenceException("Could not complete transaction (gave up after " + attempts + " attempts)");
 		}
 		
 		// Success!
 		return result;
 	}
+
+	private void recordTransactionStats(DatabaseRunnable<?> databaseRunnable, long latencyMs,
+			int attempts, int deadlocks, int duplicateKeys, long backoffMs, boolean success) {
+		String description = databaseRunnable.getDescription();
+		if (description == null) {
+			description = databaseRunnable.getClass().getName();
+		}
+		description = description.trim();
+		
+		TransactionStats stats = transactionStats.get(description);
+		if (stats == null) {
+			// Don't let transactions with varying descriptions grow the map without bound
+			if (transactionStats.size() >= MAX_TRANSACTION_STATS) {
+				description = OTHER_TRANSACTIONS;
+			}
+			stats = transactionStats.get(description);
+			if (stats == null) {
+				TransactionStats newStats = new TransactionStats(description);
+				stats = transactionStats.putIfAbsent(description, newStats);
+				if (stats == null) {
+					stats = newStats;
+				}
+			}
+		}
+		stats.record(latencyMs, attempts, deadlocks, duplicateKeys, backoffMs, success);
+	}
 	
 }
@@ -55,6 +55,22 @@ public class JDBCDatabaseConfig {
 		 * @return the database port string (e.g., ":8889" if using MAMP, empty string if MySQL is listening on its default port)
 		 */
 		public String getPortStr();
+		
+		/**
+		 * @return the {@link ConnectionPoolConfig} specifying the type and size of the connection pool
+		 */
+		public ConnectionPoolConfig getConnectionPoolConfig();
+		
+		/**
+		 * @return the {@link RetryPolicy} for transactions that fail because of a deadlock
+		 */
+		public RetryPolicy getRetryPolicy();
+		
+		/**
+		 * @return the configuration properties of a read replica of the database,
+		 *         or null if there is no read replica
+		 */
+		public ConfigProperties getReplicaConfigProperties();
 	}
 	
 	private static JDBCDatabaseConfig instance;
@@ -97,6 +113,13 @@ public class JDBCDatabaseConfig {
 	 * @param config the {@link Properties} containing the database configuration information
 	 */
 	public static void createFromProperties(final Properties config) {
+		final ConnectionPoolConfig poolConfig = ConnectionPoolConfig.fromProperties(config, "cloudcoder.db");
+		final RetryPolicy retryPolicy = RetryPolicy.fromProperties(config, "cloudcoder.db");
+		final ConfigProperties replica = createReplicaConfigProperties(config, "cloudcoder.db",
+				config.getProperty("cloudcoder.db.user", "root"),
+				config.getProperty("cloudcoder.db.passwd", "root"),
+				config.getProperty("cloudcoder.db.databaseName", "cloudcoderdb"),
+				retryPolicy);
 		create(new JDBCDatabaseConfig.ConfigProperties() {
 			@Override
 			public String getUser() {
@@ -122,9 +145,95 @@ public class JDBCDatabaseConfig {
 			public String getDatabaseName() {
 				return config.getProperty("cloudcoder.db.databaseName", "cloudcoderdb");
 			}
+			
+			@Override
+			public ConnectionPoolConfig getConnectionPoolConfig() {
+				return poolConfig;
+			}
+			
+			@Override
+			public RetryPolicy getRetryPolicy() {
+				return retryPolicy;
+			}
+			
+			@Override
+			public ConfigProperties getReplicaConfigProperties() {
+				return replica;
+			}
 		});
 	}
 	
+	/**
+	 * Create the {@link ConfigProperties} for a read replica of the database
+	 * from configuration properties having the form
+	 * <code><i>prefix</i>.replica.<i>name</i></code>, e.g.,
+	 * <code>cloudcoder.db.replica.host</code>.  The user, password, and
+	 * database name default to those of the primary database, and the
+	 * connection pool is configured by the
+	 * <code><i>prefix</i>.replica.pool.<i>name</i></code> properties.
+	 * 
+	 * @param config        the configuration properties
+	 * @param prefix        the prefix for database configuration properties (e.g., "cloudcoder.db")
+	 * @param user          the primary database user
+	 * @param passwd        the primary database password
+	 * @param databaseName  the primary database name
+	 * @param retryPolicy   the {@link RetryPolicy} (shared with the primary database)
+	 * @return the replica {@link ConfigProperties}, or null if
+	 *         <code><i>prefix</i>.replica.host</code> is not set
+	 */
+	public static ConfigProperties createReplicaConfigProperties(
+			final Properties config, String prefix,
+			final String user, final String passwd, final String databaseName,
+			final RetryPolicy retryPolicy) {
+		final String p = prefix + ".replica.";
+		final String host = config.getProperty(p + "host");
+		if (host == null || host.trim().equals("")) {
+			return null;
+		}
+		final ConnectionPoolConfig poolConfig = ConnectionPoolConfig.fromProperties(config, prefix + ".replica");
+		return new JDBCDatabaseConfig.ConfigProperties() {
+			@Override
+			public String getUser() {
+				return config.getProperty(p + "user", user);
+			}
+			
+			@Override
+			public String getPortStr() {
+				return config.getProperty(p + "portStr", "");
+			}
+			
+			@Override
+			public String getPasswd() {
+				return config.getProperty(p + "passwd", passwd);
+			}
+			
+			@Override
+			public String getHost() {
+				return host.trim();
+			}
+			
+			@Override
+			public String getDatabaseName() {
+				return config.getProperty(p + "databaseName", databaseName);
+			}
+			
+			@Override
+			public ConnectionPoolConfig getConnectionPoolConfig() {
+				return poolConfig;
+			}
+			
+			@Override
+			public RetryPolicy getRetryPolicy() {
+				return retryPolicy;
+			}
+			
+			@Override
+			public ConfigProperties getReplicaConfigProperties() {
+				return null;
+			}
+		};
+	}
+	
 	/**
 	 * Destroy the singleton instance of JDBCDatabaseCOonfig.
 	 */
@@ -17,6 +17,9 @@
 
 package org.cloudcoder.app.server.persist;
 
+import java.util.Enumeration;
+import java.util.Properties;
+
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
@@ -52,6 +55,16 @@ public abstract class JDBCDatabaseConfigServletContextListener implements Servle
 	public void contextInitialized(final ServletContextEvent e) {
 		// Initialize the JDBCDatabaseConfig singleton from the
 		// init params in the servlet context.
+		final ConnectionPoolConfig poolConfig =
+				ConnectionPoolConfig.fromProperties(getParams(e.getServletContext(), ".pool."), propertyPrefix);
+		final RetryPolicy retryPolicy =
+				RetryPolicy.fromProperties(getParams(e.getServletContext(), ".retry."), propertyPrefix);
+		final JDBCDatabaseConfig.ConfigProperties replica = JDBCDatabaseConfig.createReplicaConfigProperties(
+				getParams(e.getServletContext(), ".replica."), propertyPrefix,
+				getParam(e.getServletContext(), propertyPrefix + ".user", "root"),
+				getParam(e.getServletContext(), propertyPrefix + ".passwd", "root"),
+				getDatabaseName(e.getServletContext()),
+				retryPolicy);
 		JDBCDatabaseConfig.create(new JDBCDatabaseConfig.ConfigProperties() {
 			@Override
 			public String getUser() {
@@ -65,10 +78,7 @@ public abstract class JDBCDatabaseConfigServletContextListener implements Servle
 
 			@Override
 			public String getDatabaseName() {
-				return getParam(
-						e.getServletContext(),
-						propertyPrefix + ".databaseName",
-						propertyPrefix.equals("cloudcoder.db") ? "cloudcoder" : "cloudcoderrepodb");
+				return JDBCDatabaseConfigServletContextListener.this.getDatabaseName(e.getServletContext());
 			}
 
 			@Override
@@ -91,9 +101,46 @@ public abstract class JDBCDatabaseConfigServletContextListener implements Servle
 				}
 				return getParam(e.getServletContext(), propertyPrefix + ".portStr", "");
 			}
+			
+			@Override
+			public ConnectionPoolConfig getConnectionPoolConfig() {
+				return poolConfig;
+			}
+			
+			@Override
+			public RetryPolicy getRetryPolicy() {
+				return retryPolicy;
+			}
+			
+			@Override
+			public JDBCDatabaseConfig.ConfigProperties getReplicaConfigProperties() {
+				return replica;
+			}
 		});
 	}
 	
+	private String getDatabaseName(ServletContext ctx) {
+		return getParam(
+				ctx,
+				propertyPrefix + ".databaseName",
+				propertyPrefix.equals("cloudcoder.db") ? "cloudcoder" : "cloudcoderrepodb");
+	}
+	
+	private Properties getParams(ServletContext ctx, String suffix) {
+		// Collect the init params for the connection pool, retry policy,
+		// or read replica (e.g., cloudcoder.db.pool.maxSize,
+		// cloudcoder.db.retry.maxAttempts, cloudcoder.db.replica.host)
+		Properties params = new Properties();
+		String paramPrefix = propertyPrefix + suffix;
+		for (Enumeration<?> names = ctx.getInitParameterNames(); names.hasMoreElements(); ) {
+			String name = (String) names.nextElement();
+			if (name.startsWith(paramPrefix)) {
+				params.setProperty(name, ctx.getInitParameter(name));
+			}
+		}
+		return params;
+	}
+	
 	private String getParam(ServletContext ctx, String paramName, String defaultValue) {
 		String value = ctx.getInitParameter(paramName);
 		return (value != null) ? value : defaultValue; 
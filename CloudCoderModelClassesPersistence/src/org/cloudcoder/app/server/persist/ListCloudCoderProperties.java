@@ -20,10 +20,30 @@ public class ListCloudCoderProperties
             "cloudcoder.db.databaseName",
             "cloudcoder.db.host",
             "cloudcoder.db.portStr",
+            "cloudcoder.db.pool.type",
+            "cloudcoder.db.pool.maxSize",
+            "cloudcoder.db.pool.minIdle",
+            "cloudcoder.db.pool.maxWaitMs",
+            "cloudcoder.db.pool.idleTimeoutMs",
+            "cloudcoder.db.pool.maxLifetimeMs",
+            "cloudcoder.db.retry.maxAttempts",
+            "cloudcoder.db.retry.baseDelayMs",
+            "cloudcoder.db.retry.maxDelayMs",
+            "cloudcoder.db.retry.maxDuplicateKeyAttempts",
+            "cloudcoder.db.replica.host",
+            "cloudcoder.db.replica.portStr",
+            "cloudcoder.db.replica.user",
+            "cloudcoder.db.replica.passwd",
+            "cloudcoder.db.replica.databaseName",
+            "cloudcoder.db.replica.pool.maxSize",
             "cloudcoder.login.service",
             "cloudcoder.submitsvc.oop.host",
+            "cloudcoder.submitsvc.oop.maxQueueSize",
             "cloudcoder.submitsvc.oop.numThreads",
             "cloudcoder.submitsvc.oop.port",
+            "cloudcoder.submitsvc.oop.problemCacheSize",
+            "cloudcoder.submitsvc.oop.resultCacheSize",
+            "cloudcoder.submitsvc.oop.resultCacheTtlMs",
             "cloudcoder.submitsvc.ssl.cn",
             "cloudcoder.submitsvc.ssl.keystore",
             "cloudcoder.submitsvc.ssl.keystore.password",
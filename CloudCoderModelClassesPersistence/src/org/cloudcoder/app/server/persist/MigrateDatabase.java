@@ -20,7 +20,9 @@ package org.cloudcoder.app.server.persist;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Properties;
 import java.util.Scanner;
 
@@ -29,10 +31,41 @@ import org.cloudcoder.app.server.persist.util.SchemaUtil;
 import org.cloudcoder.app.shared.model.ModelObjectSchema;
 
 public class MigrateDatabase {
+	/**
+	 * Callback to populate tables containing data derived from other tables.
+	 * A derived table is populated whenever it is empty after migration,
+	 * so if populating it fails (or is interrupted), running the migration
+	 * again retries it.
+	 */
+	public interface DerivedTableCallback {
+		/**
+		 * Check whether a table contains data derived from other tables.
+		 * 
+		 * @param table  the table
+		 * @return true if the table is derived from other tables
+		 */
+		public boolean isDerived(ModelObjectSchema<?> table);
+		
+		/**
+		 * Populate an empty derived table.  This must be idempotent,
+		 * and should be atomic.
+		 * 
+		 * @param conn   the connection to the database
+		 * @param table  the table to populate
+		 * @throws SQLException
+		 */
+		public void populate(Connection conn, ModelObjectSchema<?> table) throws SQLException;
+	}
 
 	protected static void migrateDatabase(ModelObjectSchema<?>[] tables,
 			String appName, String dbConfigPrefix)
 			throws ClassNotFoundException, IOException, SQLException {
+		migrateDatabase(tables, appName, dbConfigPrefix, null);
+	}
+
+	protected static void migrateDatabase(ModelObjectSchema<?>[] tables,
+			String appName, String dbConfigPrefix, DerivedTableCallback callback)
+			throws ClassNotFoundException, IOException, SQLException {
 		System.out.println("Migrate the " + appName + " database to the latest schema.");
 		System.out.println("Important: make sure " + appName + " is not currently running!");
 		
@@ -67,11 +100,35 @@ public class MigrateDatabase {
 			}
 		}
 		
+		if (callback != null) {
+			for (ModelObjectSchema<?> table : tables) {
+				if (callback.isDerived(table) && isEmpty(conn, table)) {
+					System.out.print("Populating " + table.getDbTableName() + "...");
+					System.out.flush();
+					callback.populate(conn, table);
+					System.out.println("done");
+				}
+			}
+		}
+		
 		if (numMigrated == 0) {
 			System.out.println("Your database is already up to date");
 		} else {
 			System.out.println("Successfully migrated " + numMigrated + " table(s)");
 		}
 	}
+	
+	private static boolean isEmpty(Connection conn, ModelObjectSchema<?> table) throws SQLException {
+		Statement stmt = null;
+		ResultSet resultSet = null;
+		try {
+			stmt = conn.createStatement();
+			resultSet = stmt.executeQuery("select 1 from " + table.getDbTableName() + " limit 1");
+			return !resultSet.next();
+		} finally {
+			DBUtil.closeQuietly(resultSet);
+			DBUtil.closeQuietly(stmt);
+		}
+	}
 
 }
@@ -1,19 +1,94 @@
 package org.cloudcoder.app.server.persist;
 
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import org.cloudcoder.app.server.persist.util.ConfigurationUtil;
+import org.cloudcoder.app.server.persist.util.DBUtil;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.LatestSubmissionReceipt;
+import org.cloudcoder.app.shared.model.ModelObjectSchema;
+import org.cloudcoder.app.shared.model.SubmissionReceipt;
 
 public class MigrateWebappDatabase {
 	public static void main(String[] args) throws IOException, ClassNotFoundException {
 		ConfigurationUtil.configureLog4j();
 		
 		try {
-			MigrateDatabase.migrateDatabase(CreateWebappDatabase.TABLES, "CloudCoder", "cloudcoder.db");
+			MigrateDatabase.migrateDatabase(CreateWebappDatabase.TABLES, "CloudCoder", "cloudcoder.db", new MigrateDatabase.DerivedTableCallback() {
+				@Override
+				public boolean isDerived(ModelObjectSchema<?> table) {
+					return table == LatestSubmissionReceipt.SCHEMA;
+				}
+				
+				@Override
+				public void populate(Connection conn, ModelObjectSchema<?> table) throws SQLException {
+					populateLatestSubmissionReceipts(conn);
+				}
+			});
 		} catch (SQLException e) {
 			System.err.println("Database error: " + e.getMessage());
+			System.err.println("Fix the problem and run the migration again");
 			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Populate the {@link LatestSubmissionReceipt} table from the existing
+	 * submission receipts.  The best receipt for each user/problem is the
+	 * earliest receipt with the most tests passed.  The table is rebuilt
+	 * from scratch in a single transaction, so this can safely be retried
+	 * if it fails.
+	 * 
+	 * @param conn the connection to the database
+	 * @throws SQLException
+	 */
+	private static void populateLatestSubmissionReceipts(Connection conn) throws SQLException {
+		String latestTable = LatestSubmissionReceipt.SCHEMA.getDbTableName();
+		String receiptTable = SubmissionReceipt.SCHEMA.getDbTableName();
+		String eventTable = Event.SCHEMA.getDbTableName();
+		
+		Statement stmt = null;
+		boolean committed = false;
+		conn.setAutoCommit(false);
+		try {
+			stmt = conn.createStatement();
+			
+			stmt.executeUpdate("delete from " + latestTable);
+			
+			// Latest receipt and best number of tests passed
+			stmt.executeUpdate(
+					"insert into " + latestTable +
+					"    (user_id, problem_id, latest_event_id, best_event_id, best_num_tests_passed)" +
+					"  select e.user_id, e.problem_id, max(sr.event_id), 0, max(sr.num_tests_passed)" +
+					"    from " + receiptTable + " as sr, " + eventTable + " as e" +
+					"   where sr.event_id = e.id" +
+					"   group by e.user_id, e.problem_id"
+			);
+			
+			// Earliest receipt with the best number of tests passed
+			stmt.executeUpdate(
+					"update " + latestTable + " as lsr" +
+					"   set lsr.best_event_id =" +
+					"         (select min(sr.event_id)" +
+					"            from " + receiptTable + " as sr, " + eventTable + " as e" +
+					"           where sr.event_id = e.id" +
+					"             and e.user_id = lsr.user_id" +
+					"             and e.problem_id = lsr.problem_id" +
+					"             and sr.num_tests_passed = lsr.best_num_tests_passed)"
+			);
+			
+			conn.commit();
+			committed = true;
+		} finally {
+			DBUtil.closeQuietly(stmt);
+			if (!committed) {
+				conn.rollback();
+			}
+			conn.setAutoCommit(true);
 		}
 	}
 }
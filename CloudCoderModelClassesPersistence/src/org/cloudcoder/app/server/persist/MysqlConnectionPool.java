@@ -21,6 +21,8 @@ package org.cloudcoder.app.server.persist;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.cloudcoder.app.server.persist.JDBCDatabaseConfig.ConfigProperties;
 import org.slf4j.Logger;
@@ -47,6 +49,8 @@ public class MysqlConnectionPool extends AbstractConnectionPool {
 	}
 	
 	private String jdbcUrl;
+	private AtomicInteger active;
+	private AtomicLong connectionsCreated;
 	
 	/**
 	 * Constructor.
@@ -63,15 +67,21 @@ public class MysqlConnectionPool extends AbstractConnectionPool {
 				config.getUser() +
 				"&password=" + config.getPasswd();
 		logger.debug("Database URL: "+jdbcUrl);
+		this.active = new AtomicInteger();
+		this.connectionsCreated = new AtomicLong();
 	}
 	
 	@Override
 	protected Connection createConnection() throws SQLException {
-		return DriverManager.getConnection(jdbcUrl);
+		Connection conn = DriverManager.getConnection(jdbcUrl);
+		connectionsCreated.incrementAndGet();
+		active.incrementAndGet();
+		return conn;
 	}
 	
 	@Override
 	protected void closeConnection(Connection conn) throws SQLException {
+		active.decrementAndGet();
 		conn.close();
 	}
 	
@@ -79,4 +89,10 @@ public class MysqlConnectionPool extends AbstractConnectionPool {
 	public void destroy() {
 		// We don't actually do anything here
 	}
+	
+	@Override
+	public ConnectionPoolStats getStats() {
+		// No idle connections are kept, and there is no upper bound
+		return new ConnectionPoolStats(active.get(), 0, 0, 0, 0L, connectionsCreated.get());
+	}
 }
@@ -0,0 +1,214 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+// Copyright (C) 2013, York College of Pennsylvania
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.app.server.persist;
+
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Policy for retrying transactions that fail because of a deadlock
+ * or other transient error in {@link JDBCDatabase}.
+ * Retries after deadlocks and lock wait timeouts are delayed using
+ * exponential backoff with "full jitter": after the <i>n</i>th such
+ * failure, the transaction waits a random time between 0 and
+ * <code>min(maxDelayMs, baseDelayMs * 2<sup>n-1</sup>)</code>
+ * milliseconds.  This spreads out transactions that collided, rather
+ * than having them all retry at once and collide again.
+ * Duplicate key errors are retried immediately, but only a few times,
+ * since most of them are genuine constraint violations that no amount
+ * of retrying will fix.
+ *
+ * <p>Values are read from configuration properties having the form
+ * <code><i>prefix</i>.retry.<i>name</i></code>, e.g.,
+ * <code>cloudcoder.db.retry.maxAttempts</code>.  Any property that is not
+ * specified gets a reasonable default value.
+ *
+ * @author David Hovemeyer
+ */
+public class RetryPolicy {
+	/** Default maximum number of times a transaction is attempted. */
+	public static final int DEFAULT_MAX_ATTEMPTS = 20;
+
+	/** Default delay before the first retry, in milliseconds (before jitter is applied). */
+	public static final long DEFAULT_BASE_DELAY_MS = 5L;
+
+	/** Default upper bound on the delay before a retry, in milliseconds. */
+	public static final long DEFAULT_MAX_DELAY_MS = 1000L;
+
+	/** Default maximum number of times a transaction is attempted if it fails with duplicate key errors. */
+	public static final int DEFAULT_MAX_DUPLICATE_KEY_ATTEMPTS = 3;
+
+	private static final Random random = new Random();
+
+	private int maxAttempts;
+	private long baseDelayMs;
+	private long maxDelayMs;
+	private int maxDuplicateKeyAttempts;
+
+	/**
+	 * Constructor: all values are set to their defaults.
+	 */
+	public RetryPolicy() {
+		this.maxAttempts = DEFAULT_MAX_ATTEMPTS;
+		this.baseDelayMs = DEFAULT_BASE_DELAY_MS;
+		this.maxDelayMs = DEFAULT_MAX_DELAY_MS;
+		this.maxDuplicateKeyAttempts = DEFAULT_MAX_DUPLICATE_KEY_ATTEMPTS;
+	}
+
+	/**
+	 * Create a {@link RetryPolicy} from configuration properties
+	 * (e.g., loaded from cloudcoder.properties).
+	 *
+	 * @param config  the configuration properties
+	 * @param prefix  the prefix for database configuration properties (e.g., "cloudcoder.db")
+	 * @return the {@link RetryPolicy}
+	 */
+	public static RetryPolicy fromProperties(Properties config, String prefix) {
+		RetryPolicy result = new RetryPolicy();
+		String p = prefix + ".retry.";
+
+		result.maxAttempts = getInt(config, p + "maxAttempts", result.maxAttempts);
+		result.baseDelayMs = getLong(config, p + "baseDelayMs", result.baseDelayMs);
+		result.maxDelayMs = getLong(config, p + "maxDelayMs", result.maxDelayMs);
+		result.maxDuplicateKeyAttempts = getInt(config, p + "maxDuplicateKeyAttempts", result.maxDuplicateKeyAttempts);
+
+		if (result.maxAttempts < 1) {
+			throw new IllegalArgumentException(p + "maxAttempts must be at least 1");
+		}
+		if (result.maxDuplicateKeyAttempts < 1) {
+			throw new IllegalArgumentException(p + "maxDuplicateKeyAttempts must be at least 1");
+		}
+		if (result.baseDelayMs < 0 || result.maxDelayMs < 0) {
+			throw new IllegalArgumentException(p + "baseDelayMs and " + p + "maxDelayMs must not be negative");
+		}
+
+		return result;
+	}
+
+	private static int getInt(Properties config, String propName, int defaultValue) {
+		String value = config.getProperty(propName);
+		if (value == null || value.trim().equals("")) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid integer value for " + propName + ": " + value);
+		}
+	}
+
+	private static long getLong(Properties config, String propName, long defaultValue) {
+		String value = config.getProperty(propName);
+		if (value == null || value.trim().equals("")) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid integer value for " + propName + ": " + value);
+		}
+	}
+
+	/**
+	 * Determine whether a transaction failed with given SQLState because
+	 * of a deadlock or lock wait timeout (40001, 41000).  Such transactions
+	 * are retried after a delay (see {@link #getDelayMs(int)}).
+	 *
+	 * @param sqlState the SQLState of the failure (may be null)
+	 * @return true if the failure was a deadlock or lock wait timeout
+	 */
+	public boolean isDeadlock(String sqlState) {
+		return sqlState != null && (sqlState.equals("40001") || sqlState.equals("41000"));
+	}
+
+	/**
+	 * Determine whether a transaction failed with given SQLState because
+	 * of a duplicate key error (23000).  Such transactions are retried
+	 * immediately, up to {@link #getMaxDuplicateKeyAttempts()} times:
+	 * there is evidence that a MySQL bug can cause spurious duplicate key
+	 * errors on auto increment fields, and a transaction that lost a race
+	 * to insert a row will find the row when it is retried.
+	 *   See: http://www.softwareprojects.com/resources/programming/t-mysql-innodb-deadlocks-and-duplicate-key-errors-12-1970.html
+	 *
+	 * @param sqlState the SQLState of the failure (may be null)
+	 * @return true if the failure was a duplicate key error
+	 */
+	public boolean isDuplicateKey(String sqlState) {
+		return sqlState != null && sqlState.equals("23000");
+	}
+
+	/**
+	 * Get the time to wait before retrying a transaction that failed
+	 * because of a deadlock or lock wait timeout.  This is a random
+	 * time between 0 and {@link #getDelayCeilingMs(int)}.
+	 *
+	 * @param deadlocks the number of attempts that have failed because of a deadlock
+	 *                  or lock wait timeout so far (at least 1)
+	 * @return the delay in milliseconds
+	 */
+	public long getDelayMs(int deadlocks) {
+		long ceiling = getDelayCeilingMs(deadlocks);
+		if (ceiling <= 0) {
+			return 0L;
+		}
+		return (long) (random.nextDouble() * (ceiling + 1));
+	}
+
+	/**
+	 * Get the upper bound of the time to wait before retrying a transaction
+	 * that failed because of a deadlock or lock wait timeout.
+	 *
+	 * @param deadlocks the number of attempts that have failed because of a deadlock
+	 *                  or lock wait timeout so far (at least 1)
+	 * @return <code>min(maxDelayMs, baseDelayMs * 2<sup>deadlocks-1</sup>)</code>
+	 */
+	public long getDelayCeilingMs(int deadlocks) {
+		if (deadlocks <= 62 && baseDelayMs <= (maxDelayMs >> (deadlocks - 1))) {
+			return baseDelayMs << (deadlocks - 1);
+		}
+		return maxDelayMs;
+	}
+
+	/**
+	 * @return the maximum number of times a transaction is attempted
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @return the maximum number of times a transaction is attempted if it fails with duplicate key errors
+	 */
+	public int getMaxDuplicateKeyAttempts() {
+		return maxDuplicateKeyAttempts;
+	}
+
+	/**
+	 * @return the delay before the first retry, in milliseconds (before jitter is applied)
+	 */
+	public long getBaseDelayMs() {
+		return baseDelayMs;
+	}
+
+	/**
+	 * @return the upper bound on the delay before a retry, in milliseconds
+	 */
+	public long getMaxDelayMs() {
+		return maxDelayMs;
+	}
+}
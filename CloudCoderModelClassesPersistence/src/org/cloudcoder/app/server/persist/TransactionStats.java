@@ -0,0 +1,254 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist;
+
+import org.cloudcoder.app.server.persist.util.DatabaseRunnable;
+
+/**
+ * Statistics about the executions of one class of transaction
+ * (all {@link DatabaseRunnable}s with the same description)
+ * by {@link JDBCDatabase}: how long they took, how many attempts
+ * they needed, and how many attempts failed because of a deadlock
+ * (or lock wait timeout) or a duplicate key error.  Latencies include the time spent
+ * waiting between attempts.
+ *
+ * <p>Instances recording statistics are updated concurrently
+ * by {@link JDBCDatabase}; {@link IDatabase#getTransactionStats()}
+ * returns snapshots (see {@link #copy()}).
+ *
+ * @author David Hovemeyer
+ */
+public class TransactionStats {
+	/**
+	 * Upper bounds (exclusive, in milliseconds) of the latency histogram buckets:
+	 * there is one additional bucket for latencies greater than the last bound.
+	 */
+	public static final long[] LATENCY_BUCKET_BOUNDS_MS = { 1L, 5L, 10L, 50L, 100L, 500L, 1000L, 5000L };
+
+	/**
+	 * Upper bounds (inclusive) of the attempts histogram buckets:
+	 * there is one additional bucket for transactions needing more
+	 * attempts than the last bound.
+	 */
+	public static final int[] ATTEMPTS_BUCKET_BOUNDS = { 1, 2, 3, 5, 10 };
+
+	private final String description;
+	private long count;
+	private long failures;
+	private long deadlocks;
+	private long duplicateKeys;
+	private long totalAttempts;
+	private int maxAttempts;
+	private long totalLatencyMs;
+	private long maxLatencyMs;
+	private long totalBackoffMs;
+	private final long[] latencyHistogram;
+	private final long[] attemptsHistogram;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param description the transaction description
+	 */
+	public TransactionStats(String description) {
+		this.description = description;
+		this.latencyHistogram = new long[LATENCY_BUCKET_BOUNDS_MS.length + 1];
+		this.attemptsHistogram = new long[ATTEMPTS_BUCKET_BOUNDS.length + 1];
+	}
+
+	/**
+	 * Record one execution of the transaction.
+	 *
+	 * @param latencyMs  total time taken, in milliseconds
+	 * @param attempts   number of attempts
+	 * @param deadlocks      number of attempts that failed because of a deadlock or lock wait timeout
+	 * @param duplicateKeys  number of attempts that failed with a duplicate key error and were retried
+	 * @param backoffMs      total time spent waiting between attempts, in milliseconds
+	 * @param success        true if the transaction eventually committed
+	 */
+	public synchronized void record(long latencyMs, int attempts, int deadlocks, int duplicateKeys,
+			long backoffMs, boolean success) {
+		count++;
+		if (!success) {
+			failures++;
+		}
+		this.deadlocks += deadlocks;
+		this.duplicateKeys += duplicateKeys;
+		totalAttempts += attempts;
+		maxAttempts = Math.max(maxAttempts, attempts);
+		totalLatencyMs += latencyMs;
+		maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+		totalBackoffMs += backoffMs;
+
+		int i = 0;
+		while (i < LATENCY_BUCKET_BOUNDS_MS.length && latencyMs >= LATENCY_BUCKET_BOUNDS_MS[i]) {
+			i++;
+		}
+		latencyHistogram[i]++;
+
+		int j = 0;
+		while (j < ATTEMPTS_BUCKET_BOUNDS.length && attempts > ATTEMPTS_BUCKET_BOUNDS[j]) {
+			j++;
+		}
+		attemptsHistogram[j]++;
+	}
+
+	/**
+	 * Add the counts recorded by another {@link TransactionStats} object
+	 * to this one.
+	 *
+	 * @param other the other {@link TransactionStats} (which should be a snapshot)
+	 */
+	public synchronized void add(TransactionStats other) {
+		count += other.count;
+		failures += other.failures;
+		deadlocks += other.deadlocks;
+		duplicateKeys += other.duplicateKeys;
+		totalAttempts += other.totalAttempts;
+		maxAttempts = Math.max(maxAttempts, other.maxAttempts);
+		totalLatencyMs += other.totalLatencyMs;
+		maxLatencyMs = Math.max(maxLatencyMs, other.maxLatencyMs);
+		totalBackoffMs += other.totalBackoffMs;
+		for (int i = 0; i < latencyHistogram.length; i++) {
+			latencyHistogram[i] += other.latencyHistogram[i];
+		}
+		for (int i = 0; i < attemptsHistogram.length; i++) {
+			attemptsHistogram[i] += other.attemptsHistogram[i];
+		}
+	}
+
+	/**
+	 * @return a snapshot of the current statistics
+	 */
+	public synchronized TransactionStats copy() {
+		TransactionStats result = new TransactionStats(description);
+		result.add(this);
+		return result;
+	}
+
+	/**
+	 * @return labels for the latency histogram buckets (e.g., "<5ms", ">=5000ms")
+	 */
+	public static String[] getLatencyBucketLabels() {
+		String[] result = new String[LATENCY_BUCKET_BOUNDS_MS.length + 1];
+		for (int i = 0; i < LATENCY_BUCKET_BOUNDS_MS.length; i++) {
+			result[i] = "<" + LATENCY_BUCKET_BOUNDS_MS[i] + "ms";
+		}
+		result[LATENCY_BUCKET_BOUNDS_MS.length] = ">=" + LATENCY_BUCKET_BOUNDS_MS[LATENCY_BUCKET_BOUNDS_MS.length - 1] + "ms";
+		return result;
+	}
+
+	/**
+	 * @return labels for the attempts histogram buckets (e.g., "1", "4-5", ">10")
+	 */
+	public static String[] getAttemptsBucketLabels() {
+		String[] result = new String[ATTEMPTS_BUCKET_BOUNDS.length + 1];
+		int lo = 1;
+		for (int i = 0; i < ATTEMPTS_BUCKET_BOUNDS.length; i++) {
+			int hi = ATTEMPTS_BUCKET_BOUNDS[i];
+			result[i] = (lo == hi) ? String.valueOf(hi) : lo + "-" + hi;
+			lo = hi + 1;
+		}
+		result[ATTEMPTS_BUCKET_BOUNDS.length] = ">" + ATTEMPTS_BUCKET_BOUNDS[ATTEMPTS_BUCKET_BOUNDS.length - 1];
+		return result;
+	}
+
+	/**
+	 * @return the transaction description
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return the number of times the transaction was executed
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of times the transaction failed (for any reason, including running out of attempts)
+	 */
+	public synchronized long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return the number of attempts that failed because of a deadlock or lock wait timeout
+	 */
+	public synchronized long getDeadlocks() {
+		return deadlocks;
+	}
+
+	/**
+	 * @return the number of attempts that failed with a duplicate key error and were retried
+	 */
+	public synchronized long getDuplicateKeys() {
+		return duplicateKeys;
+	}
+
+	/**
+	 * @return the total number of attempts
+	 */
+	public synchronized long getTotalAttempts() {
+		return totalAttempts;
+	}
+
+	/**
+	 * @return the largest number of attempts needed by one execution
+	 */
+	public synchronized int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @return the total time taken by all executions, in milliseconds
+	 */
+	public synchronized long getTotalLatencyMs() {
+		return totalLatencyMs;
+	}
+
+	/**
+	 * @return the longest time taken by one execution, in milliseconds
+	 */
+	public synchronized long getMaxLatencyMs() {
+		return maxLatencyMs;
+	}
+
+	/**
+	 * @return the total time spent waiting between attempts, in milliseconds
+	 */
+	public synchronized long getTotalBackoffMs() {
+		return totalBackoffMs;
+	}
+
+	/**
+	 * @return the latency histogram (see {@link #LATENCY_BUCKET_BOUNDS_MS})
+	 */
+	public synchronized long[] getLatencyHistogram() {
+		return latencyHistogram.clone();
+	}
+
+	/**
+	 * @return the attempts histogram (see {@link #ATTEMPTS_BUCKET_BOUNDS})
+	 */
+	public synchronized long[] getAttemptsHistogram() {
+		return attemptsHistogram.clone();
+	}
+}
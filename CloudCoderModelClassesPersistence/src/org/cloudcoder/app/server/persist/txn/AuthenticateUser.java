@@ -64,4 +64,9 @@ public class AuthenticateUser extends AbstractDatabaseRunnableNoAuthException<Us
 	public String getDescription() {
 		return " retrieving user";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
@@ -40,6 +40,11 @@ public class FindCourseRegistrationsForUser extends AbstractDatabaseRunnableNoAu
 		return " find course registrations for user";
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
 	@Override
 	public CourseRegistrationList run(Connection conn) throws SQLException {
 		// Find user
@@ -84,4 +84,9 @@ public class FindCurrentQuiz extends AbstractDatabaseRunnableNoAuthException<Qui
 	public String getDescription() {
 		return " finding current quiz for problem";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
@@ -73,4 +73,9 @@ public class FindUnfinishedQuizForStudent extends AbstractDatabaseRunnableNoAuth
 	public String getDescription() {
 		return " finding unfinished quiz for user";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
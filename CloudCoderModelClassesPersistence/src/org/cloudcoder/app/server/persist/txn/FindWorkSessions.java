@@ -38,12 +38,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
 import org.cloudcoder.app.server.persist.util.DBUtil;
 import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.ICallback;
 import org.cloudcoder.app.shared.model.SnapshotSelectionCriteria;
 import org.cloudcoder.app.shared.model.WorkSession;
 import org.slf4j.Logger;
@@ -51,18 +50,32 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Find all {@link WorkSession}s in a course.
+ * The events are streamed from the database, and each {@link WorkSession}
+ * is sent to a visitor as soon as it is found, so memory use does not
+ * depend on the number of events or sessions.
  * 
  * @author David Hovemeyer
  */
-public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<List<WorkSession>> {
+public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Boolean> {
 	private static final Logger logger = LoggerFactory.getLogger(FindWorkSessions.class);
 	
 	private SnapshotSelectionCriteria criteria;
 	private int separationSeconds;
+	private ICallback<WorkSession> visitor;
 
-	public FindWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds) {
+	/**
+	 * Constructor.
+	 * 
+	 * @param criteria           the {@link SnapshotSelectionCriteria}
+	 * @param separationSeconds  events separated by this much time are considered to be
+	 *                           in separate sessions
+	 * @param visitor            the visitor (callback) to which the {@link WorkSession}s
+	 *                           should be sent
+	 */
+	public FindWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds, ICallback<WorkSession> visitor) {
 		this.criteria = criteria;
 		this.separationSeconds = separationSeconds;
+		this.visitor = visitor;
 	}
 	
 	private static class EventInCourse {
@@ -75,9 +88,9 @@ public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Li
 	}
 
 	@Override
-	public List<WorkSession> run(Connection conn) throws SQLException {
+	public Boolean run(Connection conn) throws SQLException {
 		// Select all events, ordered first by user id, then by timestamp
-		PreparedStatement stmt = prepareStatement(
+		PreparedStatement stmt = prepareStreamingStatement(
 				conn,
 				"select e.*, p.course_id from cc_events as e, cc_problems as p " +
 				" where e.problem_id = p.problem_id " +
@@ -93,7 +106,6 @@ public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Li
 		stmt.setInt(5, criteria.getProblemId());
 		stmt.setInt(6, criteria.getProblemId());
 		
-		List<WorkSession> workSessions = new ArrayList<WorkSession>();
 		ResultSet resultSet = executeQuery(stmt);
 
 		// Scan results to find sequences of events representing work on the same
@@ -115,7 +127,7 @@ public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Li
 				start = eventInCourse;
 				end = eventInCourse;
 			} else if (isDifferentSession(start, eventInCourse)) {
-				workSessions.add(createSession(start, end));
+				visitor.call(createSession(start, end));
 				start = eventInCourse;
 				end = eventInCourse;
 			} else {
@@ -123,11 +135,11 @@ public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Li
 			}
 		}
 		if (start != null) {
-			workSessions.add(createSession(start, end));
+			visitor.call(createSession(start, end));
 		}
 		logger.info("FindWorkSessions: processed {} events\n", count);
 		
-		return workSessions;
+		return true;
 	}
 
 	private boolean isDifferentSession(EventInCourse start, EventInCourse e) {
@@ -154,4 +166,14 @@ public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Li
 		return " finding work sessions in course";
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public boolean isReplicaSafe() {
+		return true;
+	}
+
 }
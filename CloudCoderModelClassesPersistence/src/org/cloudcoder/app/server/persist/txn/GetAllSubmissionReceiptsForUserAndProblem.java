@@ -37,16 +37,21 @@ import org.cloudcoder.app.shared.model.User;
 public class GetAllSubmissionReceiptsForUserAndProblem extends AbstractDatabaseRunnableNoAuthException<SubmissionReceipt[]> {
 	private final Problem problem;
 	private final User user;
+	private final User requestingUser;
 
 	/**
 	 * Constructor.
 	 * 
-	 * @param problem  the {@link Problem}
-	 * @param user     the {@link User}
+	 * @param problem         the {@link Problem}
+	 * @param user            the {@link User}
+	 * @param requestingUser  the {@link User} requesting the submission receipts,
+	 *                        or null if they are not being requested on behalf
+	 *                        of a logged-in user (e.g., for data analysis)
 	 */
-	public GetAllSubmissionReceiptsForUserAndProblem(Problem problem, User user) {
+	public GetAllSubmissionReceiptsForUserAndProblem(Problem problem, User user, User requestingUser) {
 		this.problem = problem;
 		this.user = user;
+		this.requestingUser = requestingUser;
 	}
 
 	@Override
@@ -84,4 +89,17 @@ public class GetAllSubmissionReceiptsForUserAndProblem extends AbstractDatabaseR
 	public String getDescription() {
 		return " getting subscription receipts for user";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public boolean isReplicaSafe() {
+		// A student viewing their own submissions expects to see the
+		// submission they just made, but an instructor viewing a student's
+		// submissions (or a data analysis) can tolerate replica lag
+		return requestingUser == null || requestingUser.getId() != user.getId();
+	}
 }
\ No newline at end of file
@@ -59,4 +59,14 @@ public class GetBestSubmissionReceiptsForProblem
 	public String getDescription() {
 		return " getting best submission receipts for problem/course";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public boolean isReplicaSafe() {
+		return true;
+	}
 }
\ No newline at end of file
@@ -69,4 +69,14 @@ public class GetBestSubmissionReceiptsForProblemForAuthenticatedUser
 	public String getDescription() {
 		return " getting best submission receipts for problem";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public boolean isReplicaSafe() {
+		return true;
+	}
 }
\ No newline at end of file
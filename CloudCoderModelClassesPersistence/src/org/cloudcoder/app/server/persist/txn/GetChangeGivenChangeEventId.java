@@ -69,4 +69,9 @@ public class GetChangeGivenChangeEventId extends AbstractDatabaseRunnableNoAuthE
 	public String getDescription() {
 		return "get text change";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
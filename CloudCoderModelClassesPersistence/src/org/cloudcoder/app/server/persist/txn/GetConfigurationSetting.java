@@ -60,4 +60,9 @@ public class GetConfigurationSetting extends AbstractDatabaseRunnableNoAuthExcep
 	public String getDescription() {
 		return " retrieving configuration setting";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
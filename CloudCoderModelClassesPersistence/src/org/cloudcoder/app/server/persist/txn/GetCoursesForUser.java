@@ -50,4 +50,9 @@ public class GetCoursesForUser extends AbstractDatabaseRunnableNoAuthException<L
 	public String getDescription() {
 		return " retrieving courses for user";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
@@ -55,6 +55,16 @@ public class GetEventsWithChanges extends AbstractDatabaseRunnableNoAuthExceptio
 		return " getting events and changes";
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public boolean isReplicaSafe() {
+		return true;
+	}
+
 	@Override
 	public List<Pair<Event, Change>> run(Connection conn) throws SQLException {
 		PreparedStatement stmt = prepareStatement(
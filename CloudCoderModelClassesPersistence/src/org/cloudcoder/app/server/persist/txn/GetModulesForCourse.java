@@ -74,4 +74,9 @@ public class GetModulesForCourse extends AbstractDatabaseRunnableNoAuthException
 	public String getDescription() {
 		return " getting modules in course";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
@@ -48,17 +48,20 @@ public class GetMostRecentChangeForUserAndProblem extends AbstractDatabaseRunnab
 
 	@Override
 	public Change run(Connection conn) throws SQLException {
+		// Scan the user's events for the problem backwards using the
+		// (user_id, problem_id, id) index, stopping at the first one
+		// that is a change
 		PreparedStatement stmt = prepareStatement(
 				conn,
-				"select c.* from " + Change.SCHEMA.getDbTableName() + " as c, " + Event.SCHEMA.getDbTableName() + " as e " +
-				" where c.event_id = e.id " +
-				"   and e.id = (select max(ee.id) from " + Change.SCHEMA.getDbTableName() + " as cc, " + Event.SCHEMA.getDbTableName() + " as ee " +
-				"                where cc.event_id = ee.id " +
-				"                  and ee.problem_id = ? " +
-				"                  and ee.user_id = ?)"
+				"select straight_join c.* from " + Event.SCHEMA.getDbTableName() + " as e, " + Change.SCHEMA.getDbTableName() + " as c " +
+				" where e.user_id = ? " +
+				"   and e.problem_id = ? " +
+				"   and c.event_id = e.id " +
+				" order by e.id desc " +
+				" limit 1"
 		);
-		stmt.setInt(1, problemId);
-		stmt.setInt(2, user.getId());
+		stmt.setInt(1, user.getId());
+		stmt.setInt(2, problemId);
 		
 		ResultSet resultSet = executeQuery(stmt);
 		if (!resultSet.next()) {
@@ -73,4 +76,9 @@ public class GetMostRecentChangeForUserAndProblem extends AbstractDatabaseRunnab
 	public String getDescription() {
 		return "retrieving latest code change";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
@@ -49,18 +49,22 @@ public class GetMostRecentFullTextChange extends AbstractDatabaseRunnableNoAuthE
 
 	@Override
 	public Change run(Connection conn) throws SQLException {
+		// Scan the user's events for the problem backwards using the
+		// (user_id, problem_id, id) index, checking the type of each change
+		// using the (event_id, type) index, and stop at the first full
+		// text change
 		PreparedStatement stmt = prepareStatement(
 				conn,
-				"select c.* from " + Change.SCHEMA.getDbTableName() + " as c, " + Event.SCHEMA.getDbTableName() + " as e " +
-				" where c.event_id = e.id " +
-				"   and e.id = (select max(ee.id) from " + Change.SCHEMA.getDbTableName() + " as cc, " + Event.SCHEMA.getDbTableName() + " as ee " +
-				"                where cc.event_id = ee.id " +
-				"                  and ee.problem_id = ? " +
-				"                  and ee.user_id = ? " +
-				"                  and cc.type = ?)"
+				"select straight_join c.* from " + Event.SCHEMA.getDbTableName() + " as e, " + Change.SCHEMA.getDbTableName() + " as c " +
+				" where e.user_id = ? " +
+				"   and e.problem_id = ? " +
+				"   and c.event_id = e.id " +
+				"   and c.type = ? " +
+				" order by e.id desc " +
+				" limit 1"
 		);
-		stmt.setInt(1, problemId);
-		stmt.setInt(2, user.getId());
+		stmt.setInt(1, user.getId());
+		stmt.setInt(2, problemId);
 		stmt.setInt(3, ChangeType.FULL_TEXT.ordinal());
 
 		ResultSet resultSet = executeQuery(stmt);
@@ -76,4 +80,9 @@ public class GetMostRecentFullTextChange extends AbstractDatabaseRunnableNoAuthE
 	public String getDescription() {
 		return " retrieving most recent full text change";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
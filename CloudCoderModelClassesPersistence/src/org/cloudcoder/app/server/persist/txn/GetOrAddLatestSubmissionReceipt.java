@@ -24,6 +24,7 @@ import java.sql.SQLException;
 
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
 import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.LatestSubmissionReceipt;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.SubmissionReceipt;
 import org.cloudcoder.app.shared.model.SubmissionStatus;
@@ -59,12 +60,12 @@ public class GetOrAddLatestSubmissionReceipt extends
 		// Get most recent submission receipt for user/problem
 		PreparedStatement stmt = prepareStatement(
 				conn,
-				"select r.*, e.* from " + SubmissionReceipt.SCHEMA.getDbTableName() + " as r, " + Event.SCHEMA.getDbTableName() + " as e " +
-				" where r.event_id = e.id " +
-				"   and e.id = (select max(ee.id) from " + SubmissionReceipt.SCHEMA.getDbTableName() + " as rr, " + Event.SCHEMA.getDbTableName() + " as ee " +
-				"                where rr.event_id = ee.id " +
-				"                  and ee.problem_id = ? " +
-				"                  and ee.user_id = ?)");
+				"select r.*, e.* from " + SubmissionReceipt.SCHEMA.getDbTableName() + " as r, " + Event.SCHEMA.getDbTableName() + " as e, " +
+				"       " + LatestSubmissionReceipt.SCHEMA.getDbTableName() + " as lsr " +
+				" where lsr.problem_id = ? " +
+				"   and lsr.user_id = ? " +
+				"   and r.event_id = lsr.latest_event_id " +
+				"   and e.id = lsr.latest_event_id");
 		stmt.setInt(1, problem.getProblemId());
 		stmt.setInt(2, user.getId());
 		
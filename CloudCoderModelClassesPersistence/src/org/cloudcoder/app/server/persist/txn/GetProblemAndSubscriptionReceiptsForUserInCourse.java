@@ -30,6 +30,7 @@ import org.cloudcoder.app.shared.model.Course;
 import org.cloudcoder.app.shared.model.CourseRegistrationList;
 import org.cloudcoder.app.shared.model.CourseRegistrationType;
 import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.LatestSubmissionReceipt;
 import org.cloudcoder.app.shared.model.Module;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.ProblemAndSubmissionReceipt;
@@ -68,50 +69,45 @@ public class GetProblemAndSubscriptionReceiptsForUserInCourse
 			}
 		}
 		
-		// See: https://gist.github.com/4408441
+		// The user's latest submission receipt for each problem is found
+		// using the LatestSubmissionReceipt summary table, so the cost of
+		// this query does not depend on the user's submission history.
+		// A problem is included if it is visible, if the requesting user is
+		// an instructor, or if there is an active quiz for the problem
+		// in the user's section.
 		PreparedStatement stmt = prepareStatement(
 				conn,
-				"select p.*, m.*, sr.*, e.*, sr_ids.max_sr_event_id" +
+				"select p.*, m.*, sr.*, e.*" +
 				"  from cc_problems as p" +
-				" join (select p.problem_id, sm.max_sr_event_id" +
-				"         from cc_problems as p" +
-				"       left join (select e.problem_id as problem_id, max(sr.event_id) as max_sr_event_id" +
-				"                    from cc_submission_receipts as sr, cc_events as e" +
-				"                  where e.id = sr.event_id" +
-				"                    and e.user_id = ?" +
-				"                  group by e.problem_id) as sm on p.problem_id = sm.problem_id" +
-				"        where p.course_id = ?" +
-				"        ) as sr_ids on sr_ids.problem_id = p.problem_id" +
-				" join cc_modules as m on p.module_id = m.id " +
-				" left join cc_submission_receipts as sr on sr.event_id = sr_ids.max_sr_event_id" +
-				" left join cc_events as e on e.id = sr_ids.max_sr_event_id" + 
-				" where p.deleted = 0" +
-				"   and p.problem_id in" +
-				"          (select p.problem_id from cc_problems as p" +
-				"          join cc_course_registrations as cr on cr.course_id = p.course_id and cr.user_id = ?" +
-				"          where" +
-				"             p.course_id = ?" +
-				"             and (   p.visible <> 0" +
-				"                  or cr.registration_type >= ?" +
-				"                  or p.problem_id in (select q.problem_id" +
-				"                                        from cc_quizzes as q, cc_course_registrations as cr" +
-				"                                       where cr.user_id = ?" +
-				"                                         and cr.course_id = ?" +
-				"                                         and q.course_id = cr.course_id" +
-				"                                         and q.section = cr.section" +
-				"                                         and q.start_time <= ?" +
-				"                                         and (q.end_time >= ? or q.end_time = 0))))"
+				" join cc_modules as m on p.module_id = m.id" +
+				" left join " + LatestSubmissionReceipt.SCHEMA.getDbTableName() + " as lsr" +
+				"        on lsr.problem_id = p.problem_id and lsr.user_id = ?" +
+				" left join cc_submission_receipts as sr on sr.event_id = lsr.latest_event_id" +
+				" left join cc_events as e on e.id = lsr.latest_event_id" +
+				" where p.course_id = ?" +
+				"   and p.deleted = 0" +
+				"   and exists (select 1 from cc_course_registrations as cr" +
+				"                where cr.course_id = p.course_id" +
+				"                  and cr.user_id = ?" +
+				"                  and (   p.visible <> 0" +
+				"                       or cr.registration_type >= ?" +
+				"                       or exists (select 1 from cc_quizzes as q, cc_course_registrations as qcr" +
+				"                                   where q.problem_id = p.problem_id" +
+				"                                     and qcr.user_id = ?" +
+				"                                     and qcr.course_id = p.course_id" +
+				"                                     and q.course_id = qcr.course_id" +
+				"                                     and q.section = qcr.section" +
+				"                                     and q.start_time <= ?" +
+				"                                     and (q.end_time >= ? or q.end_time = 0))))"
 		);
 		stmt.setInt(1, forUser.getId());
 		stmt.setInt(2, course.getId());
 		stmt.setInt(3, requestingUser.getId());
-		stmt.setInt(4, course.getId());
-		stmt.setInt(5, CourseRegistrationType.INSTRUCTOR.ordinal());
-		stmt.setInt(6, forUser.getId());
-		stmt.setInt(7, course.getId());
+		stmt.setInt(4, CourseRegistrationType.INSTRUCTOR.ordinal());
+		stmt.setInt(5, forUser.getId());
 		long currentTime = System.currentTimeMillis();
-		stmt.setLong(8, currentTime);
-		stmt.setLong(9, currentTime);
+		stmt.setLong(6, currentTime);
+		stmt.setLong(7, currentTime);
 		
 		List<ProblemAndSubmissionReceipt> result = new ArrayList<ProblemAndSubmissionReceipt>();
 		
@@ -161,4 +157,17 @@ public class GetProblemAndSubscriptionReceiptsForUserInCourse
 	public String getDescription() {
 		return "retrieving problems and subscription receipts for course";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public boolean isReplicaSafe() {
+		// A student viewing their own progress expects to see the
+		// results of submissions they just made, but an instructor
+		// viewing a student's progress can tolerate replica lag
+		return requestingUser.getId() != forUser.getId();
+	}
 }
\ No newline at end of file
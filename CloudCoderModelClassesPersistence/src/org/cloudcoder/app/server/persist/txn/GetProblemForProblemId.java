@@ -63,4 +63,9 @@ public class GetProblemForProblemId extends AbstractDatabaseRunnableNoAuthExcept
 	public String getDescription() {
 		return "get problem";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
@@ -106,4 +106,9 @@ public class GetProblemForUser extends
 	public String getDescription() {
 		return "retrieving problem";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
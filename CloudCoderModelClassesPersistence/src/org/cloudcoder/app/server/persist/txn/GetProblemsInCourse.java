@@ -53,4 +53,9 @@ public class GetProblemsInCourse extends AbstractDatabaseRunnableNoAuthException
 	public String getDescription() {
 		return "retrieving problems for course";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
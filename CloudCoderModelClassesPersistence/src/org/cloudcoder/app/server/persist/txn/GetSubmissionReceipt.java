@@ -67,4 +67,9 @@ public class GetSubmissionReceipt extends
 	public String getDescription() {
 		return "getting submission receipt";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
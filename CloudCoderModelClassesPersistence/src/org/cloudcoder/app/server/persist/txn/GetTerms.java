@@ -39,6 +39,11 @@ public class GetTerms extends AbstractDatabaseRunnableNoAuthException<Term[]> {
 		return " get terms";
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
 	@Override
 	public Term[] run(Connection conn) throws SQLException {
 		PreparedStatement stmt = prepareStatement(
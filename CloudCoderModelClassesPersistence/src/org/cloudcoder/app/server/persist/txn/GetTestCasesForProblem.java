@@ -48,4 +48,9 @@ public class GetTestCasesForProblem extends AbstractDatabaseRunnableNoAuthExcept
 	public String getDescription() {
 		return " getting test cases for problem";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
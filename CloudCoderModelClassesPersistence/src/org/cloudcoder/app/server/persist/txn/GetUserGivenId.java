@@ -47,4 +47,9 @@ public class GetUserGivenId extends AbstractDatabaseRunnableNoAuthException<User
 	public String getDescription() {
 		return " retrieving user for username";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
@@ -53,4 +53,9 @@ public class GetUserWithoutAuthentication extends AbstractDatabaseRunnableNoAuth
 	public String getDescription() {
 		return "retrieving user for username";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
@@ -76,4 +76,9 @@ public class GetUsersInCourse extends AbstractDatabaseRunnableNoAuthException<Li
 	public String getDescription() {
 	    return "retrieving users in courseId "+courseId;
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
\ No newline at end of file
@@ -46,6 +46,11 @@ public class IsInstructorFor extends AbstractDatabaseRunnableNoAuthException<Boo
 		return " checking whether user is an instructor for specified user";
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
 	@Override
 	public Boolean run(Connection conn) throws SQLException {
 		// Count the number of cases where the authenticated user
@@ -65,9 +65,11 @@ public class LoadChanges extends AbstractDatabaseRunnableNoAuthException<List<Ch
 
 	@Override
 	public List<Change> run(Connection conn) throws SQLException {
+		// The (user_id, problem_id, id) index on events yields the
+		// requested range of events already in order
 		PreparedStatement stmt = prepareStatement(
 				conn,
-				"select e.*, c.* from cc_events as e, cc_changes as c " +
+				"select straight_join e.*, c.* from cc_events as e, cc_changes as c " +
 				" where e.id = c.event_id " +
 				"  and e.user_id = ? " +
 				"  and e.problem_id = ? " +
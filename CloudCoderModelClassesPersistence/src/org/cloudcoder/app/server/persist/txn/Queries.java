@@ -30,7 +30,9 @@ import java.util.Scanner;
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnable;
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
 import org.cloudcoder.app.server.persist.util.DBUtil;
+import org.cloudcoder.app.server.persist.util.ModelObjectRowMapper;
 import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeCheckpoint;
 import org.cloudcoder.app.shared.model.ConfigurationSetting;
 import org.cloudcoder.app.shared.model.Course;
 import org.cloudcoder.app.shared.model.CourseRegistration;
@@ -38,6 +40,7 @@ import org.cloudcoder.app.shared.model.CourseRegistrationList;
 import org.cloudcoder.app.shared.model.CourseRegistrationType;
 import org.cloudcoder.app.shared.model.Event;
 import org.cloudcoder.app.shared.model.IContainsEvent;
+import org.cloudcoder.app.shared.model.LatestSubmissionReceipt;
 import org.cloudcoder.app.shared.model.ModelObjectField;
 import org.cloudcoder.app.shared.model.ModelObjectSchema;
 import org.cloudcoder.app.shared.model.Problem;
@@ -64,6 +67,11 @@ import org.cloudcoder.app.shared.model.UserAndSubmissionReceipt;
  * @author David Hovemeyer
  */
 public class Queries {
+	/**
+	 * Maximum number of rows inserted by one multi-row insert statement
+	 * (see {@link #doStoreChanges(Change[], Connection, AbstractDatabaseRunnable)}).
+	 */
+	public static final int MAX_ROWS_PER_INSERT = 500;
 
 	/**
 	 * Generic method to load model object data from the current row of
@@ -77,14 +85,7 @@ public class Queries {
 	 * @throws SQLException
 	 */
 	public static<E> int loadGeneric(E modelObj, ResultSet resultSet, int index, ModelObjectSchema<E> schema) throws SQLException {
-		for (ModelObjectField<? super E, ?> field : schema.getFieldList()) {
-			// Note: this could return an object which does not exactly match the field type
-			Object value = resultSet.getObject(index++);
-			value = DBUtil.convertValue(value, field.getType());
-			
-			field.setUntyped(modelObj, value);
-		}
-		return index;
+		return ModelObjectRowMapper.forSchema(schema).load(modelObj, resultSet, index);
 	}
 
 	public static void load(User user, ResultSet resultSet, int index) throws SQLException {
@@ -176,17 +177,21 @@ public class Queries {
 		
 		String text = null;
 		
-		for (ModelObjectField<? super Change, ?> field : Change.SCHEMA.getFieldList()) {
-			Object value = resultSet.getObject(index++);
+		ModelObjectRowMapper<Change> mapper = ModelObjectRowMapper.forSchema(Change.SCHEMA);
+		List<ModelObjectField<? super Change, ?>> fieldList = Change.SCHEMA.getFieldList();
+		for (int i = 0; i < fieldList.size(); i++) {
+			ModelObjectField<? super Change, ?> field = fieldList.get(i);
 			if (field != Change.TEXT_SHORT && field != Change.TEXT) {
-				field.setUntyped(change, DBUtil.convertValue(value, field.getType()));
+				mapper.loadField(i, change, resultSet, index);
 			} else {
 				// This is the value of either the text_short or text columns.
 				// Use whichever is not null.
+				String value = resultSet.getString(index);
 				if (value != null) {
-					text = (String) value;
+					text = value;
 				}
 			}
+			index++;
 		}
 		change.setText(text);
 		
@@ -323,28 +328,21 @@ public class Queries {
 	 * @throws SQLException
 	 */
 	public static<E> int storeNoIdGeneric(E modelObj, PreparedStatement stmt, int index, ModelObjectSchema<E> schema) throws SQLException {
-		for (ModelObjectField<? super E, ?> field : schema.getFieldList()) {
-			if (!field.isUniqueId()) {
-				Object value = field.get(modelObj);
-				value = DBUtil.convertValueToStore(value);
-				
-				if (value instanceof String) {
-					String s = (String) value;
-					// Somewhat hackish solution to avoiding "string too long" errors inserting into database
-					// FIXME: broken if string contains characters that don't have a 1-byte encoding in UTF8
-					if (s.length() > field.getSize()) {
-						s = s.substring(0, field.getSize());
-						value = s;
-					}
-				}
-				
-				stmt.setObject(index++, value);
-			}
-		}
-		return index;
+		// String values that are too long for their fields are truncated
+		return ModelObjectRowMapper.forSchema(schema).storeNoId(modelObj, stmt, index, true);
 	}
 
-	public static void store(Change change, PreparedStatement stmt, int index) throws SQLException {
+	/**
+	 * Store the field values of a {@link Change} in the parameters of the
+	 * given PreparedStatement.
+	 * 
+	 * @param change the {@link Change}
+	 * @param stmt   the PreparedStatement
+	 * @param index  the index of the first PreparedStatement parameter where the change's data should be stored
+	 * @return the index of the parameter just after where the change's field values are stored
+	 * @throws SQLException
+	 */
+	public static int store(Change change, PreparedStatement stmt, int index) throws SQLException {
 		// Change objects require special handling so that we use the correct
 		// database column to store the change text.
 		
@@ -353,14 +351,135 @@ public class Queries {
 		String textShort = isShort ? changeText : null;
 		String textLong  = !isShort ? changeText : null;
 		
-		for (ModelObjectField<? super Change, ?> field : Change.SCHEMA.getFieldList()) {
+		ModelObjectRowMapper<Change> mapper = ModelObjectRowMapper.forSchema(Change.SCHEMA);
+		List<ModelObjectField<? super Change, ?>> fieldList = Change.SCHEMA.getFieldList();
+		for (int i = 0; i < fieldList.size(); i++) {
+			ModelObjectField<? super Change, ?> field = fieldList.get(i);
 			if (field == Change.TEXT_SHORT) {
 				stmt.setString(index++, textShort);
 			} else if (field == Change.TEXT) {
 				stmt.setString(index++, textLong);
 			} else {
-				stmt.setObject(index++, DBUtil.convertValueToStore(field.get(change)));
+				mapper.storeField(i, change, stmt, index++, false);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Store {@link Change}s using multi-row insert statements, each
+	 * inserting at most {@link #MAX_ROWS_PER_INSERT} rows.  The event ids
+	 * of the changes must already have been set (see
+	 * {@link #storeEvents(IContainsEvent[], Connection, AbstractDatabaseRunnableNoAuthException)}).
+	 * 
+	 * @param changeList  the {@link Change}s to store
+	 * @param conn        the database connection
+	 * @param dbRunnable  the {@link AbstractDatabaseRunnable}
+	 * @throws SQLException
+	 */
+	public static void doStoreChanges(Change[] changeList, Connection conn, AbstractDatabaseRunnable<?> dbRunnable)
+			throws SQLException {
+		int numFields = Change.SCHEMA.getFieldList().size();
+		PreparedStatement fullInsert = null;
+		for (int start = 0; start < changeList.length; start += MAX_ROWS_PER_INSERT) {
+			int numRows = Math.min(MAX_ROWS_PER_INSERT, changeList.length - start);
+			
+			// All but the last statement insert the maximum number of rows,
+			// so the same statement can be reused for them
+			PreparedStatement stmt;
+			if (numRows == MAX_ROWS_PER_INSERT && fullInsert != null) {
+				stmt = fullInsert;
+			} else {
+				stmt = dbRunnable.prepareStatement(conn, getMultiRowInsertSql(Change.SCHEMA.getDbTableName(), numFields, numRows));
+				if (numRows == MAX_ROWS_PER_INSERT) {
+					fullInsert = stmt;
+				}
+			}
+			
+			int index = 1;
+			for (int i = start; i < start + numRows; i++) {
+				index = store(changeList[i], stmt, index);
+			}
+			stmt.executeUpdate();
+		}
+	}
+	
+	private static String getMultiRowInsertSql(String tableName, int numFields, int numRows) {
+		StringBuilder row = new StringBuilder();
+		row.append("(");
+		for (int i = 0; i < numFields; i++) {
+			if (i > 0) {
+				row.append(", ");
+			}
+			row.append("?");
+		}
+		row.append(")");
+		
+		StringBuilder sql = new StringBuilder();
+		sql.append("insert into ");
+		sql.append(tableName);
+		sql.append(" values ");
+		for (int i = 0; i < numRows; i++) {
+			if (i > 0) {
+				sql.append(", ");
 			}
+			sql.append(row);
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Get the {@link ChangeCheckpoint} for given user and problem.
+	 * 
+	 * @param userId     the user id
+	 * @param problemId  the problem id
+	 * @param conn       the database connection
+	 * @param dbRunnable the {@link AbstractDatabaseRunnable}
+	 * @return the {@link ChangeCheckpoint}, or null if there is no checkpoint
+	 * @throws SQLException
+	 */
+	public static ChangeCheckpoint doGetChangeCheckpoint(
+			int userId,
+			int problemId,
+			Connection conn,
+			AbstractDatabaseRunnableNoAuthException<?> dbRunnable) throws SQLException {
+		PreparedStatement stmt = dbRunnable.prepareStatement(
+				conn,
+				"select cp.* from " + ChangeCheckpoint.SCHEMA.getDbTableName() + " as cp " +
+				" where cp.user_id = ? " +
+				"   and cp.problem_id = ?"
+		);
+		stmt.setInt(1, userId);
+		stmt.setInt(2, problemId);
+		
+		ResultSet resultSet = dbRunnable.executeQuery(stmt);
+		if (!resultSet.next()) {
+			return null;
+		}
+		ChangeCheckpoint checkpoint = new ChangeCheckpoint();
+		DBUtil.loadModelObjectFields(checkpoint, ChangeCheckpoint.SCHEMA, resultSet);
+		return checkpoint;
+	}
+
+	/**
+	 * Store a {@link ChangeCheckpoint}, replacing the existing checkpoint
+	 * (if any) for the same user and problem.
+	 * 
+	 * @param checkpoint the {@link ChangeCheckpoint} to store
+	 * @param conn       the database connection
+	 * @param dbRunnable the {@link AbstractDatabaseRunnable}
+	 * @throws SQLException
+	 */
+	public static void doStoreChangeCheckpoint(
+			ChangeCheckpoint checkpoint,
+			Connection conn,
+			AbstractDatabaseRunnableNoAuthException<?> dbRunnable) throws SQLException {
+		ChangeCheckpoint existing = doGetChangeCheckpoint(checkpoint.getUserId(), checkpoint.getProblemId(), conn, dbRunnable);
+		if (existing == null) {
+			DBUtil.storeModelObject(conn, checkpoint);
+		} else if (existing.getEventId() < checkpoint.getEventId()) {
+			checkpoint.setId(existing.getId());
+			DBUtil.updateModelObject(conn, checkpoint);
 		}
 	}
 
@@ -390,6 +509,153 @@ public class Queries {
 		
 		// Store the TestResults
 		Queries.doInsertTestResults(testResultList, receipt.getEventId(), conn, dbRunnable);
+		
+		// Update the user's latest/best submission receipt summary for the problem
+		Queries.doUpdateLatestSubmissionReceipt(receipt, conn, dbRunnable);
+	}
+
+	/**
+	 * Get the {@link LatestSubmissionReceipt} summarizing given user's
+	 * submission receipts for given problem.
+	 * 
+	 * @param userId     the user id
+	 * @param problemId  the problem id
+	 * @param forUpdate  true if the row should be locked because the caller
+	 *                   will update it (so that concurrent updates for the
+	 *                   same user and problem are serialized)
+	 * @param conn       the database connection
+	 * @param dbRunnable the {@link AbstractDatabaseRunnable}
+	 * @return the {@link LatestSubmissionReceipt}, or null if the user has no
+	 *         submission receipts for the problem
+	 * @throws SQLException
+	 */
+	public static LatestSubmissionReceipt doGetLatestSubmissionReceipt(
+			int userId,
+			int problemId,
+			boolean forUpdate,
+			Connection conn,
+			AbstractDatabaseRunnable<?> dbRunnable) throws SQLException {
+		PreparedStatement stmt = dbRunnable.prepareStatement(
+				conn,
+				"select lsr.* from " + LatestSubmissionReceipt.SCHEMA.getDbTableName() + " as lsr " +
+				" where lsr.user_id = ? " +
+				"   and lsr.problem_id = ?" +
+				(forUpdate ? " for update" : "")
+		);
+		stmt.setInt(1, userId);
+		stmt.setInt(2, problemId);
+		
+		ResultSet resultSet = dbRunnable.executeQuery(stmt);
+		if (!resultSet.next()) {
+			return null;
+		}
+		LatestSubmissionReceipt latest = new LatestSubmissionReceipt();
+		DBUtil.loadModelObjectFields(latest, LatestSubmissionReceipt.SCHEMA, resultSet);
+		return latest;
+	}
+
+	/**
+	 * Update the {@link LatestSubmissionReceipt} for the user and problem
+	 * of a newly-inserted {@link SubmissionReceipt}.  The new receipt becomes
+	 * the latest receipt, and also the best receipt if it passed more
+	 * tests than the previous best receipt.
+	 * 
+	 * @param receipt    the newly-inserted {@link SubmissionReceipt}
+	 * @param conn       the database connection
+	 * @param dbRunnable the {@link AbstractDatabaseRunnable}
+	 * @throws SQLException
+	 */
+	public static void doUpdateLatestSubmissionReceipt(
+			SubmissionReceipt receipt,
+			Connection conn,
+			AbstractDatabaseRunnable<?> dbRunnable) throws SQLException {
+		Event event = receipt.getEvent();
+		LatestSubmissionReceipt latest = doGetLatestSubmissionReceipt(event.getUserId(), event.getProblemId(), true, conn, dbRunnable);
+		if (latest == null) {
+			// If another transaction inserts the summary concurrently, one of the
+			// inserts fails (duplicate key or deadlock), and its transaction is
+			// retried, this time finding (and locking) the existing summary
+			latest = new LatestSubmissionReceipt();
+			latest.setUserId(event.getUserId());
+			latest.setProblemId(event.getProblemId());
+			latest.setLatestEventId(receipt.getEventId());
+			latest.setBestEventId(receipt.getEventId());
+			latest.setBestNumTestsPassed(receipt.getNumTestsPassed());
+			DBUtil.storeModelObject(conn, latest);
+			return;
+		}
+		
+		if (receipt.getEventId() > latest.getLatestEventId()) {
+			latest.setLatestEventId(receipt.getEventId());
+		}
+		if (receipt.getNumTestsPassed() > latest.getBestNumTestsPassed()) {
+			latest.setBestEventId(receipt.getEventId());
+			latest.setBestNumTestsPassed(receipt.getNumTestsPassed());
+		}
+		DBUtil.updateModelObject(conn, latest);
+	}
+
+	/**
+	 * Recompute the {@link LatestSubmissionReceipt} for given user and problem
+	 * from all of the user's submission receipts for the problem.
+	 * This is necessary when an existing receipt changes (e.g., because
+	 * the submission was retested).
+	 * 
+	 * @param userId     the user id
+	 * @param problemId  the problem id
+	 * @param conn       the database connection
+	 * @param dbRunnable the {@link AbstractDatabaseRunnable}
+	 * @throws SQLException
+	 */
+	public static void doRecomputeLatestSubmissionReceipt(
+			int userId,
+			int problemId,
+			Connection conn,
+			AbstractDatabaseRunnable<?> dbRunnable) throws SQLException {
+		// Lock the existing summary (if any) before reading the receipts,
+		// so that a receipt inserted concurrently is either seen here or
+		// applied to the recomputed summary after this transaction commits
+		LatestSubmissionReceipt existing = doGetLatestSubmissionReceipt(userId, problemId, true, conn, dbRunnable);
+		
+		PreparedStatement stmt = dbRunnable.prepareStatement(
+				conn,
+				"select sr.event_id, sr.num_tests_passed" +
+				"  from " + SubmissionReceipt.SCHEMA.getDbTableName() + " as sr, " + Event.SCHEMA.getDbTableName() + " as e " +
+				" where sr.event_id = e.id " +
+				"   and e.user_id = ? " +
+				"   and e.problem_id = ? " +
+				" order by sr.event_id"
+		);
+		stmt.setInt(1, userId);
+		stmt.setInt(2, problemId);
+		
+		LatestSubmissionReceipt computed = null;
+		ResultSet resultSet = dbRunnable.executeQuery(stmt);
+		while (resultSet.next()) {
+			int eventId = resultSet.getInt(1);
+			int numTestsPassed = resultSet.getInt(2);
+			if (computed == null) {
+				computed = new LatestSubmissionReceipt();
+				computed.setUserId(userId);
+				computed.setProblemId(problemId);
+				computed.setBestEventId(eventId);
+				computed.setBestNumTestsPassed(numTestsPassed);
+			} else if (numTestsPassed > computed.getBestNumTestsPassed()) {
+				computed.setBestEventId(eventId);
+				computed.setBestNumTestsPassed(numTestsPassed);
+			}
+			computed.setLatestEventId(eventId);
+		}
+		if (computed == null) {
+			return;
+		}
+		
+		if (existing == null) {
+			DBUtil.storeModelObject(conn, computed);
+		} else {
+			computed.setId(existing.getId());
+			DBUtil.updateModelObject(conn, computed);
+		}
 	}
 
 	/**
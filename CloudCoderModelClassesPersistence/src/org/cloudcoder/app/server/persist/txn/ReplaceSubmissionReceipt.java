@@ -19,9 +19,11 @@ package org.cloudcoder.app.server.persist.txn;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
+import org.cloudcoder.app.shared.model.Event;
 import org.cloudcoder.app.shared.model.SubmissionReceipt;
 
 /**
@@ -51,13 +53,27 @@ public class ReplaceSubmissionReceipt extends
 		PreparedStatement stmt = prepareStatement(
 				conn,
 				"update " + SubmissionReceipt.SCHEMA.getDbTableName() + 
-				"  set status = ?, num_tests_attempted = ?, num_tests_passed = ?");
+				"  set status = ?, num_tests_attempted = ?, num_tests_passed = ?" +
+				" where event_id = ?");
 		stmt.setInt(1, receipt.getStatus().ordinal());
 		stmt.setInt(2, receipt.getNumTestsAttempted());
 		stmt.setInt(3, receipt.getNumTestsPassed());
+		stmt.setInt(4, receipt.getEventId());
 		
 		stmt.executeUpdate();
 		
+		// The number of tests passed may have changed, so the best
+		// submission receipt for the user/problem must be recomputed
+		PreparedStatement getEvent = prepareStatement(
+				conn,
+				"select e.user_id, e.problem_id from " + Event.SCHEMA.getDbTableName() + " as e" +
+				" where e.id = ?");
+		getEvent.setInt(1, receipt.getEventId());
+		ResultSet resultSet = executeQuery(getEvent);
+		if (resultSet.next()) {
+			Queries.doRecomputeLatestSubmissionReceipt(resultSet.getInt(1), resultSet.getInt(2), conn, this);
+		}
+		
 		return true;
 	}
 
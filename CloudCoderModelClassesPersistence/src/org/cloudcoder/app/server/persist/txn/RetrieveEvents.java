@@ -104,4 +104,14 @@ public class RetrieveEvents extends AbstractDatabaseRunnableNoAuthException<List
 	public String getDescription() {
 		return " retrieve events for problem/user";
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public boolean isReplicaSafe() {
+		return true;
+	}
 }
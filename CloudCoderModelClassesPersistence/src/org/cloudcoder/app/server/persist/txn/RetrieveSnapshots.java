@@ -74,7 +74,7 @@ public class RetrieveSnapshots extends AbstractDatabaseRunnableNoAuthException<B
 		String query = sql.toString();
 		logger.info("Retrieving snapshots: {}", query);
 		
-		PreparedStatement stmt = prepareStatement(conn, query);
+		PreparedStatement stmt = prepareStreamingStatement(conn, query);
 		int place = 1;
 		if (criteria.getCourseId() != SnapshotSelectionCriteria.ANY) {
 			stmt.setInt(place++, criteria.getCourseId());
@@ -123,4 +123,14 @@ public class RetrieveSnapshots extends AbstractDatabaseRunnableNoAuthException<B
 		return " retrieving snapshots/submissions";
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public boolean isReplicaSafe() {
+		return true;
+	}
+
 }
@@ -18,18 +18,26 @@
 package org.cloudcoder.app.server.persist.txn;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
 import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeCheckpoint;
+import org.cloudcoder.app.shared.model.Pair;
 
 /**
  * Store a sequence of {@link Change}s representing a user's edits
- * on a problem.
+ * on a problem, optionally along with a {@link ChangeCheckpoint}
+ * of the text resulting from applying the changes.
+ * Several such batches (possibly for different users and problems)
+ * can be stored in one transaction, in which case their events and
+ * changes are inserted using a small number of multi-row inserts.
  */
 public class StoreChanges extends AbstractDatabaseRunnableNoAuthException<Boolean> {
-	private final Change[] changeList;
+	private final List<Pair<Change[], ChangeCheckpoint>> batchList;
 
 	/**
 	 * Constructor.
@@ -37,30 +45,74 @@ public class StoreChanges extends AbstractDatabaseRunnableNoAuthException<Boolea
 	 * @param changeList list of changes to be stored
 	 */
 	public StoreChanges(Change[] changeList) {
-		this.changeList = changeList;
+		this(changeList, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param changeList list of changes to be stored
+	 * @param checkpoint checkpoint of the text after the last change is applied
+	 *                   (null if no checkpoint should be stored): its event id
+	 *                   is set to the event id of the last change
+	 */
+	public StoreChanges(Change[] changeList, ChangeCheckpoint checkpoint) {
+		this(Collections.singletonList(new Pair<Change[], ChangeCheckpoint>(changeList, checkpoint)));
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param batchList list of batches to be stored, each consisting of a list
+	 *                  of changes and a checkpoint (null if no checkpoint should
+	 *                  be stored): each checkpoint's event id is set to the
+	 *                  event id of the last change in its batch
+	 */
+	public StoreChanges(List<Pair<Change[], ChangeCheckpoint>> batchList) {
+		this.batchList = batchList;
 	}
 
 	@Override
 	public Boolean run(Connection conn) throws SQLException {
+		Change[] allChanges = getAllChanges();
+		if (allChanges.length == 0) {
+			return true;
+		}
+		
 		// Store Events
-		Queries.storeEvents(changeList, conn, this);
+		Queries.storeEvents(allChanges, conn, this);
 		
 		// Store Changes
-		PreparedStatement insertChange = prepareStatement(
-				conn,
-				"insert into " + Change.SCHEMA.getDbTableName() + " values (?, ?, ?, ?, ?, ?, ?, ?)"
-		);
-		for (Change change : changeList) {
-			Queries.store(change, insertChange, 1);
-			insertChange.addBatch();
+		Queries.doStoreChanges(allChanges, conn, this);
+		
+		// Store checkpoints
+		for (Pair<Change[], ChangeCheckpoint> batch : batchList) {
+			Change[] changeList = batch.getLeft();
+			ChangeCheckpoint checkpoint = batch.getRight();
+			if (checkpoint != null && changeList.length > 0) {
+				checkpoint.setEventId(changeList[changeList.length - 1].getEventId());
+				Queries.doStoreChangeCheckpoint(checkpoint, conn, this);
+			}
 		}
-		insertChange.executeBatch();
 		
 		return true;
 	}
 
+	private Change[] getAllChanges() {
+		if (batchList.size() == 1) {
+			return batchList.get(0).getLeft();
+		}
+		List<Change> result = new ArrayList<Change>();
+		for (Pair<Change[], ChangeCheckpoint> batch : batchList) {
+			for (Change change : batch.getLeft()) {
+				result.add(change);
+			}
+		}
+		return result.toArray(new Change[result.size()]);
+	}
+
 	@Override
 	public String getDescription() {
 		return "storing text changes";
 	}
-}
\ No newline at end of file
+}
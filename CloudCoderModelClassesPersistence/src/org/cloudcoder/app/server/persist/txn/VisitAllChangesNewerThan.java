@@ -72,18 +72,20 @@ public class VisitAllChangesNewerThan extends AbstractDatabaseRunnableNoAuthExce
 		} else {
 			throw new IllegalArgumentException("Mode not handled: " + mode);
 		}
+		// The (user_id, problem_id, id) index on events yields the
+		// events newer than the base revision already in order
 		stmt = prepareStatement(
 				conn,
-				"select c.* " + selectEvent + " from " + Change.SCHEMA.getDbTableName() + " as c, " + Event.SCHEMA.getDbTableName() + " as e " +
-				" where c.event_id = e.id " +
-				"   and e.id > ? " +
-				"   and e.user_id = ? " +
+				"select straight_join c.* " + selectEvent + " from " + Event.SCHEMA.getDbTableName() + " as e, " + Change.SCHEMA.getDbTableName() + " as c " +
+				" where e.user_id = ? " +
 				"   and e.problem_id = ? " +
+				"   and e.id > ? " +
+				"   and c.event_id = e.id " +
 				" order by e.id asc"
 		);
-		stmt.setInt(1, baseRev);
-		stmt.setInt(2, user.getId());
-		stmt.setInt(3, problemId);
+		stmt.setInt(1, user.getId());
+		stmt.setInt(2, problemId);
+		stmt.setInt(3, baseRev);
 		
 		ResultSet resultSet = executeQuery(stmt);
 		while (resultSet.next()) {
@@ -22,30 +22,34 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
 import org.cloudcoder.app.server.persist.util.DBUtil;
 import org.cloudcoder.app.shared.model.Change;
 import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.ICallback;
 
 /**
- * Query to get all {@link Change}s (edits) for all users on a
- * specified problem.
+ * Query to visit all {@link Change}s (edits) for all users on a
+ * specified problem.  The changes are streamed from the database,
+ * so memory use does not depend on the number of changes.
  * 
  * @author David Hovemeyer
  */
-public class LoadChangesForAllUsersOnProblem extends AbstractDatabaseRunnableNoAuthException<List<Change>> {
+public class VisitChangesForAllUsersOnProblem extends AbstractDatabaseRunnableNoAuthException<Boolean> {
 	private int problemId;
+	private ICallback<Change> visitor;
 
 	/**
 	 * Constructor.
 	 * 
 	 * @param problemId the problem id
+	 * @param visitor   the visitor (callback) to which the {@link Change}s
+	 *                  should be sent
 	 */
-	public LoadChangesForAllUsersOnProblem(int problemId) {
+	public VisitChangesForAllUsersOnProblem(int problemId, ICallback<Change> visitor) {
 		this.problemId = problemId;
+		this.visitor = visitor;
 	}
 
 	@Override
@@ -54,8 +58,18 @@ public class LoadChangesForAllUsersOnProblem extends AbstractDatabaseRunnableNoA
 	}
 
 	@Override
-	public List<Change> run(Connection conn) throws SQLException {
-		PreparedStatement stmt = prepareStatement(
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public boolean isReplicaSafe() {
+		return true;
+	}
+
+	@Override
+	public Boolean run(Connection conn) throws SQLException {
+		PreparedStatement stmt = prepareStreamingStatement(
 				conn,
 				"select e.*, c.* " +
 				"  from cc_events as e, cc_changes as c " +
@@ -65,8 +79,6 @@ public class LoadChangesForAllUsersOnProblem extends AbstractDatabaseRunnableNoA
 		);
 		stmt.setInt(1, problemId);
 		
-		List<Change> result = new ArrayList<Change>();
-		
 		ResultSet resultSet = executeQuery(stmt);
 		while (resultSet.next()) {
 			Event event = new Event();
@@ -74,9 +86,9 @@ public class LoadChangesForAllUsersOnProblem extends AbstractDatabaseRunnableNoA
 			Change change = new Change();
 			change.setEvent(event);
 			Queries.load(change, resultSet, index);
-			result.add(change);
+			visitor.call(change);
 		}
 		
-		return result;
+		return true;
 	}
 }
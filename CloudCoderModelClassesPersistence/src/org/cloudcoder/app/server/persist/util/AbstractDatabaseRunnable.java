@@ -19,6 +19,11 @@ import org.slf4j.Logger;
  * @param <E>
  */
 public abstract class AbstractDatabaseRunnable<E> implements DatabaseRunnable<E> {
+	/**
+	 * Number of rows fetched from the server at a time by statements
+	 * created by {@link #prepareStreamingStatement(Connection, String)}.
+	 */
+	public static final int STREAMING_FETCH_SIZE = 1000;
 
 	private Stack<Object> cleanupStack = new Stack<Object>();
 	private Logger logger;
@@ -58,6 +63,31 @@ public abstract class AbstractDatabaseRunnable<E> implements DatabaseRunnable<E>
 		return stmt;
 	}
 
+	/**
+	 * Create a PreparedStatement for a query whose results should be
+	 * streamed rather than loaded into memory all at once, adding it to
+	 * the cleanup stack.  The ResultSet is forward-only and read-only,
+	 * and rows are fetched from the server {@link #STREAMING_FETCH_SIZE}
+	 * at a time, so memory use doesn't depend on the number of rows.
+	 * Use this for queries over large tables (e.g., cc_events/cc_changes)
+	 * whose rows are processed one at a time.
+	 * 
+	 * <p>While the ResultSet is being read, no other statements should be
+	 * executed using the same connection: the driver would need to read
+	 * the remaining rows into memory first.
+	 * 
+	 * @param conn the database connection
+	 * @param sql  the SQL to execute
+	 * @return the PreparedStatement, which will be cleaned up automatically
+	 * @throws SQLException
+	 */
+	public PreparedStatement prepareStreamingStatement(Connection conn, String sql) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		cleanupStack.push(stmt);
+		stmt.setFetchSize(STREAMING_FETCH_SIZE);
+		return stmt;
+	}
+
 	/**
 	 * Execute a PreparedStatement to produce a ResultSet.
 	 * The ResultSet will be added to the cleanup stack.
@@ -97,6 +127,24 @@ public abstract class AbstractDatabaseRunnable<E> implements DatabaseRunnable<E>
 		}
 	}
 	
+	/**
+	 * Transactions are assumed to be read/write: override to return
+	 * true if the transaction only reads from the database.
+	 */
+	@Override
+	public boolean isReadOnly() {
+		return false;
+	}
+	
+	/**
+	 * Transactions are assumed not to be safe to run against a read
+	 * replica: override to return true if they are.
+	 */
+	@Override
+	public boolean isReplicaSafe() {
+		return false;
+	}
+	
 	@Override
 	public void setLogger(Logger logger) {
 		this.logger = logger;
@@ -34,6 +34,7 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.cloudcoder.app.server.persist.JDBCDatabase;
 import org.cloudcoder.app.server.persist.NoSuchUniqueIdException;
@@ -58,6 +59,8 @@ import org.slf4j.LoggerFactory;
 public class DBUtil {
     private static final Logger logger=LoggerFactory.getLogger(DBUtil.class);
     
+    private static final ConcurrentHashMap<Class<?>, Object[]> enumConstantsCache = new ConcurrentHashMap<Class<?>, Object[]>();
+    
     static {
         try {
             Class.forName(JDBCDatabase.JDBC_DRIVER_CLASS);
@@ -627,20 +630,9 @@ public class DBUtil {
 	 */
 	public static <E> void bindModelObjectValuesForInsert(E bean, ModelObjectSchema<E> schema, PreparedStatement stmt)
 			throws SQLException {
-		// Now for the magic: iterate through the schema fields
-		// and bind the query parameters based on the bean properties.
-		int index = 1;
-		for (ModelObjectField<? super E, ?> field : schema.getFieldList()) {
-			if (field.isUniqueId()) {
-				continue;
-			}
-			Object value = field.get(bean);
-			if (value instanceof Enum) {
-				// Enum values are converted to integers
-				value = Integer.valueOf(((Enum<?>)value).ordinal());
-			}
-			stmt.setObject(index++, value);
-		}
+		// Now for the magic: bind the query parameters based on the
+		// bean properties (see ModelObjectRowMapper).
+		ModelObjectRowMapper.forSchema(schema).storeNoId(bean, stmt, 1, false);
 	}
 	
 	/**
@@ -658,21 +650,9 @@ public class DBUtil {
      */
     public static <E> int bindModelObjectValuesForUpdate(E bean, ModelObjectSchema<E> schema, PreparedStatement stmt)
             throws SQLException {
-        // Now for the magic: iterate through the schema fields
-        // and bind the query parameters based on the bean properties.
-        int index = 1;
-        for (ModelObjectField<? super E, ?> field : schema.getFieldList()) {
-            if (field.isUniqueId()) {
-                continue;
-            }
-            Object value = field.get(bean);
-            if (value instanceof Enum) {
-                // Enum values are converted to integers
-                value = Integer.valueOf(((Enum<?>)value).ordinal());
-            }
-            stmt.setObject(index++, value);
-        }
-        return index;
+        // Now for the magic: bind the query parameters based on the
+        // bean properties (see ModelObjectRowMapper).
+        return ModelObjectRowMapper.forSchema(schema).storeNoId(bean, stmt, 1, false);
     }
 
 	/**
@@ -834,7 +814,7 @@ public class DBUtil {
 		
 		if (type.isEnum()) {
 			// value must be an Integer
-			return type.getEnumConstants()[(Integer)value];
+			return getEnumConstants(type)[(Integer)value];
 		} else if (type == Boolean.class) {
 			// value must be some kind of integer
 			if (value instanceof Number) {
@@ -846,6 +826,23 @@ public class DBUtil {
 		throw new IllegalArgumentException("Unsupported conversion from " + value.getClass().getName() + " to " + type.getName());
 	}
 
+	/**
+	 * Get the enum constants of given enum type.  Unlike
+	 * {@link Class#getEnumConstants()}, this does not create a new
+	 * array each time it is called.
+	 * 
+	 * @param type the enum type
+	 * @return the enum constants (must not be modified)
+	 */
+	public static Object[] getEnumConstants(Class<?> type) {
+		Object[] members = enumConstantsCache.get(type);
+		if (members == null) {
+			members = type.getEnumConstants();
+			enumConstantsCache.put(type, members);
+		}
+		return members;
+	}
+
 	/**
 	 * Convert a model object field value so it is suitable for storing
 	 * in the database.  The main issue that is addressed here is
@@ -947,12 +944,7 @@ public class DBUtil {
 	public static <E> int loadModelObjectFields(E obj,
 			ModelObjectSchema<E> schema, ResultSet resultSet, int index)
 			throws SQLException {
-		for (ModelObjectField<? super E, ?> field : schema.getFieldList()) {
-			Object value = resultSet.getObject(index++);
-			value = convertValue(value, field.getType());
-			field.setUntyped(obj, value);
-		}
-		return index;
+		return ModelObjectRowMapper.forSchema(schema).load(obj, resultSet, index);
 	}
 
 	/**
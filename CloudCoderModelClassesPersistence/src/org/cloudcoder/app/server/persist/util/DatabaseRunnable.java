@@ -33,6 +33,30 @@ import org.slf4j.Logger;
 public interface DatabaseRunnable<E> {
 	public E run(Connection conn) throws SQLException, CloudCoderAuthenticationException;
 	public String getDescription();
+	
+	/**
+	 * Determine whether this transaction only reads from the database.
+	 * A read-only transaction is run in autocommit mode, avoiding the
+	 * round trips needed to start, commit, and finish an explicit
+	 * transaction.  Each statement it executes therefore sees the
+	 * latest committed data (rather than one consistent snapshot),
+	 * so a transaction should only be marked read-only if that is
+	 * acceptable.
+	 * 
+	 * @return true if the transaction is read-only
+	 */
+	public boolean isReadOnly();
+	
+	/**
+	 * Determine whether this transaction may be run against a read
+	 * replica of the database, if one is configured.  A replica may lag
+	 * behind the primary database, so this should only be true for
+	 * read-only transactions that don't need to see data that was just
+	 * written (e.g., instructor views and data exports).
+	 * 
+	 * @return true if the transaction may be run against a read replica
+	 */
+	public boolean isReplicaSafe();
 	public void cleanup();
 	public void setLogger(Logger logger);
 	public Logger getLogger();
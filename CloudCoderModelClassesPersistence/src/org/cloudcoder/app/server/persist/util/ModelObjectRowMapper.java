@@ -0,0 +1,336 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist.util;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.cloudcoder.app.shared.model.ModelObjectField;
+import org.cloudcoder.app.shared.model.ModelObjectSchema;
+
+/**
+ * Maps the fields of a model object to and from database columns.
+ * A row mapper is built once for each {@link ModelObjectSchema}
+ * (see {@link #forSchema(ModelObjectSchema)}): it has one column
+ * mapper per field, specialized for the field's type, so loading
+ * and storing use the typed {@link ResultSet} and {@link PreparedStatement}
+ * accessors (<code>getInt</code>, <code>setLong</code>, etc.) rather
+ * than <code>getObject</code>/<code>setObject</code>, and enum
+ * fields are converted using a table of enum constants computed once.
+ * Since the typed accessors return 0 (or false) for SQL NULL values,
+ * {@link ResultSet#wasNull()} is only checked for those values.
+ * 
+ * @author David Hovemeyer
+ *
+ * @param <E> the model object type
+ */
+public class ModelObjectRowMapper<E> {
+	private static final ConcurrentHashMap<ModelObjectSchema<?>, ModelObjectRowMapper<?>> mapperCache =
+			new ConcurrentHashMap<ModelObjectSchema<?>, ModelObjectRowMapper<?>>();
+	
+	/**
+	 * Maps a single field to and from a database column.
+	 */
+	private static abstract class ColumnMapper<E> {
+		/**
+		 * Load the field value from a {@link ResultSet} column.
+		 */
+		public abstract void load(E obj, ResultSet resultSet, int index) throws SQLException;
+		
+		/**
+		 * Bind the field value to a {@link PreparedStatement} parameter.
+		 */
+		public abstract void store(E obj, PreparedStatement stmt, int index, boolean truncateStrings) throws SQLException;
+	}
+	
+	private static class IntegerColumnMapper<E> extends ColumnMapper<E> {
+		private final ModelObjectField<? super E, Integer> field;
+		
+		public IntegerColumnMapper(ModelObjectField<? super E, Integer> field) {
+			this.field = field;
+		}
+		
+		@Override
+		public void load(E obj, ResultSet resultSet, int index) throws SQLException {
+			int value = resultSet.getInt(index);
+			field.set(obj, value == 0 && resultSet.wasNull() ? null : Integer.valueOf(value));
+		}
+		
+		@Override
+		public void store(E obj, PreparedStatement stmt, int index, boolean truncateStrings) throws SQLException {
+			Integer value = field.get(obj);
+			if (value == null) {
+				stmt.setObject(index, null);
+			} else {
+				stmt.setInt(index, value.intValue());
+			}
+		}
+	}
+	
+	private static class LongColumnMapper<E> extends ColumnMapper<E> {
+		private final ModelObjectField<? super E, Long> field;
+		
+		public LongColumnMapper(ModelObjectField<? super E, Long> field) {
+			this.field = field;
+		}
+		
+		@Override
+		public void load(E obj, ResultSet resultSet, int index) throws SQLException {
+			long value = resultSet.getLong(index);
+			field.set(obj, value == 0L && resultSet.wasNull() ? null : Long.valueOf(value));
+		}
+		
+		@Override
+		public void store(E obj, PreparedStatement stmt, int index, boolean truncateStrings) throws SQLException {
+			Long value = field.get(obj);
+			if (value == null) {
+				stmt.setObject(index, null);
+			} else {
+				stmt.setLong(index, value.longValue());
+			}
+		}
+	}
+	
+	private static class BooleanColumnMapper<E> extends ColumnMapper<E> {
+		private final ModelObjectField<? super E, Boolean> field;
+		
+		public BooleanColumnMapper(ModelObjectField<? super E, Boolean> field) {
+			this.field = field;
+		}
+		
+		@Override
+		public void load(E obj, ResultSet resultSet, int index) throws SQLException {
+			boolean value = resultSet.getBoolean(index);
+			field.set(obj, !value && resultSet.wasNull() ? null : Boolean.valueOf(value));
+		}
+		
+		@Override
+		public void store(E obj, PreparedStatement stmt, int index, boolean truncateStrings) throws SQLException {
+			Boolean value = field.get(obj);
+			if (value == null) {
+				stmt.setObject(index, null);
+			} else {
+				stmt.setBoolean(index, value.booleanValue());
+			}
+		}
+	}
+	
+	private static class StringColumnMapper<E> extends ColumnMapper<E> {
+		private final ModelObjectField<? super E, String> field;
+		
+		public StringColumnMapper(ModelObjectField<? super E, String> field) {
+			this.field = field;
+		}
+		
+		@Override
+		public void load(E obj, ResultSet resultSet, int index) throws SQLException {
+			field.set(obj, resultSet.getString(index));
+		}
+		
+		@Override
+		public void store(E obj, PreparedStatement stmt, int index, boolean truncateStrings) throws SQLException {
+			String value = field.get(obj);
+			if (value == null) {
+				stmt.setObject(index, null);
+			} else {
+				// Somewhat hackish solution to avoiding "string too long" errors inserting into database
+				// FIXME: broken if string contains characters that don't have a 1-byte encoding in UTF8
+				if (truncateStrings && value.length() > field.getSize()) {
+					value = value.substring(0, field.getSize());
+				}
+				stmt.setString(index, value);
+			}
+		}
+	}
+	
+	private static class EnumColumnMapper<E, T extends Enum<T>> extends ColumnMapper<E> {
+		private final ModelObjectField<? super E, T> field;
+		private final T[] members;
+		
+		public EnumColumnMapper(ModelObjectField<? super E, T> field, Class<T> type) {
+			this.field = field;
+			this.members = type.getEnumConstants();
+		}
+		
+		@Override
+		public void load(E obj, ResultSet resultSet, int index) throws SQLException {
+			int value = resultSet.getInt(index);
+			field.set(obj, value == 0 && resultSet.wasNull() ? null : members[value]);
+		}
+		
+		@Override
+		public void store(E obj, PreparedStatement stmt, int index, boolean truncateStrings) throws SQLException {
+			// Enum values are stored as their ordinal values
+			T value = field.get(obj);
+			if (value == null) {
+				stmt.setObject(index, null);
+			} else {
+				stmt.setInt(index, value.ordinal());
+			}
+		}
+	}
+	
+	private static class GenericColumnMapper<E> extends ColumnMapper<E> {
+		private final ModelObjectField<? super E, ?> field;
+		
+		public GenericColumnMapper(ModelObjectField<? super E, ?> field) {
+			this.field = field;
+		}
+		
+		@Override
+		public void load(E obj, ResultSet resultSet, int index) throws SQLException {
+			Object value = resultSet.getObject(index);
+			field.setUntyped(obj, DBUtil.convertValue(value, field.getType()));
+		}
+		
+		@Override
+		public void store(E obj, PreparedStatement stmt, int index, boolean truncateStrings) throws SQLException {
+			stmt.setObject(index, DBUtil.convertValueToStore(field.get(obj)));
+		}
+	}
+	
+	private final ModelObjectSchema<E> schema;
+	private final ColumnMapper<E>[] columnMappers;
+	private final boolean[] isUniqueId;
+	
+	@SuppressWarnings("unchecked")
+	private ModelObjectRowMapper(ModelObjectSchema<E> schema) {
+		this.schema = schema;
+		List<ModelObjectField<? super E, ?>> fieldList = schema.getFieldList();
+		this.columnMappers = new ColumnMapper[fieldList.size()];
+		this.isUniqueId = new boolean[fieldList.size()];
+		for (int i = 0; i < fieldList.size(); i++) {
+			ModelObjectField<? super E, ?> field = fieldList.get(i);
+			columnMappers[i] = createColumnMapper(field);
+			isUniqueId[i] = field.isUniqueId();
+		}
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static<E> ColumnMapper<E> createColumnMapper(ModelObjectField<? super E, ?> field) {
+		Class<?> type = field.getType();
+		if (type == Integer.class) {
+			return new IntegerColumnMapper<E>((ModelObjectField<? super E, Integer>) field);
+		} else if (type == Long.class) {
+			return new LongColumnMapper<E>((ModelObjectField<? super E, Long>) field);
+		} else if (type == Boolean.class) {
+			return new BooleanColumnMapper<E>((ModelObjectField<? super E, Boolean>) field);
+		} else if (type == String.class) {
+			return new StringColumnMapper<E>((ModelObjectField<? super E, String>) field);
+		} else if (type.isEnum()) {
+			return new EnumColumnMapper(field, type);
+		} else {
+			return new GenericColumnMapper<E>(field);
+		}
+	}
+	
+	/**
+	 * Get the row mapper for given schema, creating it if necessary.
+	 * 
+	 * @param schema the {@link ModelObjectSchema}
+	 * @return the row mapper for the schema
+	 */
+	@SuppressWarnings("unchecked")
+	public static<E> ModelObjectRowMapper<E> forSchema(ModelObjectSchema<E> schema) {
+		ModelObjectRowMapper<E> mapper = (ModelObjectRowMapper<E>) mapperCache.get(schema);
+		if (mapper == null) {
+			mapper = new ModelObjectRowMapper<E>(schema);
+			ModelObjectRowMapper<E> existing = (ModelObjectRowMapper<E>) mapperCache.putIfAbsent(schema, mapper);
+			if (existing != null) {
+				mapper = existing;
+			}
+		}
+		return mapper;
+	}
+	
+	/**
+	 * @return the {@link ModelObjectSchema}
+	 */
+	public ModelObjectSchema<E> getSchema() {
+		return schema;
+	}
+	
+	/**
+	 * Load all of a model object's fields from a {@link ResultSet}.
+	 * 
+	 * @param obj        the model object
+	 * @param resultSet  the {@link ResultSet}
+	 * @param index      the index of the first model object field in the {@link ResultSet}
+	 * @return the index of the column in the result set just past the model object fields
+	 * @throws SQLException
+	 */
+	public int load(E obj, ResultSet resultSet, int index) throws SQLException {
+		for (ColumnMapper<E> columnMapper : columnMappers) {
+			columnMapper.load(obj, resultSet, index++);
+		}
+		return index;
+	}
+	
+	/**
+	 * Load a single model object field from a {@link ResultSet}.
+	 * 
+	 * @param fieldNum   the position of the field in the schema's field list
+	 * @param obj        the model object
+	 * @param resultSet  the {@link ResultSet}
+	 * @param index      the index of the field's column in the {@link ResultSet}
+	 * @throws SQLException
+	 */
+	public void loadField(int fieldNum, E obj, ResultSet resultSet, int index) throws SQLException {
+		columnMappers[fieldNum].load(obj, resultSet, index);
+	}
+	
+	/**
+	 * Bind the values of all of a model object's fields except the unique id
+	 * to the parameters of a {@link PreparedStatement}.
+	 * 
+	 * @param obj              the model object
+	 * @param stmt             the {@link PreparedStatement}
+	 * @param index            the index of the first parameter to bind
+	 * @param truncateStrings  true if string values longer than the field size
+	 *                         should be truncated
+	 * @return the index of the parameter just after the model object's field values
+	 * @throws SQLException
+	 */
+	public int storeNoId(E obj, PreparedStatement stmt, int index, boolean truncateStrings) throws SQLException {
+		for (int i = 0; i < columnMappers.length; i++) {
+			if (!isUniqueId[i]) {
+				columnMappers[i].store(obj, stmt, index++, truncateStrings);
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Bind the value of a single model object field to a parameter
+	 * of a {@link PreparedStatement}.
+	 * 
+	 * @param fieldNum         the position of the field in the schema's field list
+	 * @param obj              the model object
+	 * @param stmt             the {@link PreparedStatement}
+	 * @param index            the index of the parameter to bind
+	 * @param truncateStrings  true if a string value longer than the field size
+	 *                         should be truncated
+	 * @throws SQLException
+	 */
+	public void storeField(int fieldNum, E obj, PreparedStatement stmt, int index, boolean truncateStrings) throws SQLException {
+		columnMappers[fieldNum].store(obj, stmt, index, truncateStrings);
+	}
+}
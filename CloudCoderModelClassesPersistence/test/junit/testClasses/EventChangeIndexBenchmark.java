@@ -0,0 +1,347 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package testClasses;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.cloudcoder.app.server.persist.IDatabase.RetrieveChangesMode;
+import org.cloudcoder.app.server.persist.JDBCDatabase;
+import org.cloudcoder.app.server.persist.txn.GetMostRecentChangeForUserAndProblem;
+import org.cloudcoder.app.server.persist.txn.GetMostRecentFullTextChange;
+import org.cloudcoder.app.server.persist.txn.LoadChanges;
+import org.cloudcoder.app.server.persist.txn.VisitAllChangesNewerThan;
+import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
+import org.cloudcoder.app.server.persist.util.DBUtil;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeType;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.EventType;
+import org.cloudcoder.app.shared.model.ICallback;
+import org.cloudcoder.app.shared.model.ModelObjectSchema;
+import org.cloudcoder.app.shared.model.ModelObjectSchema.AddIndexToFieldDelta;
+import org.cloudcoder.app.shared.model.ModelObjectSchema.Delta;
+import org.cloudcoder.app.shared.model.User;
+
+/**
+ * Benchmark for the queries that load a user's changes on a problem,
+ * comparing the original queries on the original (schema version 0)
+ * cc_events and cc_changes tables with the rewritten queries on the
+ * tables with the composite indexes added in schema version 1.
+ *
+ * <p>Run as a Java application with a cloudcoder.properties file
+ * that specifies a MySQL server: a scratch database called
+ * <code>cloudcoder_index_benchmark</code> is created (replacing any
+ * existing database with that name), populated with synthetic
+ * events and changes, and dropped at the end.  The optional arguments
+ * are the number of users, the number of problems, and the number of
+ * changes per user and problem.
+ *
+ * @author David Hovemeyer
+ */
+public class EventChangeIndexBenchmark {
+	private static final String DB_NAME = "cloudcoder_index_benchmark";
+
+	// Every FULL_TEXT_INTERVAL'th change is a full text change
+	private static final int FULL_TEXT_INTERVAL = 100;
+
+	// Number of changes loaded by LoadChanges and VisitAllChangesNewerThan
+	private static final int RECENT_CHANGES = 50;
+
+	private static final int BATCH_SIZE = 1000;
+	private static final int WARMUP_SAMPLES = 20;
+	private static final int SAMPLES = 200;
+
+	// The original queries
+	private static final String LEGACY_MOST_RECENT_CHANGE =
+			"select c.* from cc_changes as c, cc_events as e " +
+			" where c.event_id = e.id " +
+			"   and e.id = (select max(ee.id) from cc_changes as cc, cc_events as ee " +
+			"                where cc.event_id = ee.id " +
+			"                  and ee.problem_id = ? " +
+			"                  and ee.user_id = ?)";
+	private static final String LEGACY_MOST_RECENT_FULL_TEXT =
+			"select c.* from cc_changes as c, cc_events as e " +
+			" where c.event_id = e.id " +
+			"   and e.id = (select max(ee.id) from cc_changes as cc, cc_events as ee " +
+			"                where cc.event_id = ee.id " +
+			"                  and ee.problem_id = ? " +
+			"                  and ee.user_id = ? " +
+			"                  and cc.type = " + ChangeType.FULL_TEXT.ordinal() + ")";
+	private static final String LEGACY_LOAD_CHANGES =
+			"select e.*, c.* from cc_events as e, cc_changes as c " +
+			" where e.id = c.event_id " +
+			"  and e.user_id = ? " +
+			"  and e.problem_id = ? " +
+			"  and e.id >= ? " +
+			"  and e.id <= ? " +
+			"order by e.id asc";
+	private static final String LEGACY_VISIT_NEWER_THAN =
+			"select c.* from cc_changes as c, cc_events as e " +
+			" where c.event_id = e.id " +
+			"   and e.id > ? " +
+			"   and e.user_id = ? " +
+			"   and e.problem_id = ? " +
+			" order by e.id asc";
+
+	/**
+	 * A query on the changes of one user on one problem.
+	 */
+	private interface Query {
+		public void run(Connection conn, int userId, int problemId, int firstEventId, int lastEventId) throws SQLException;
+	}
+
+	private static int numUsers;
+	private static int numProblems;
+	private static int changesPerUserAndProblem;
+
+	public static void main(String[] args) throws Exception {
+		numUsers = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		numProblems = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		changesPerUserAndProblem = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+		Class.forName(JDBCDatabase.JDBC_DRIVER_CLASS);
+		Properties config = DBUtil.getConfigProperties();
+		Connection conn = DBUtil.connectToDatabaseServer(config, "cloudcoder.db");
+		try {
+			DBUtil.execSql(conn, "drop database if exists " + DB_NAME);
+			DBUtil.createDatabase(conn, DB_NAME);
+			DBUtil.execSql(conn, "use " + DB_NAME);
+
+			DBUtil.createTable(conn, Event.SCHEMA_V0);
+			DBUtil.createTable(conn, Change.SCHEMA_V0);
+			populate(conn);
+
+			System.out.println("Schema version 0, original queries:");
+			runLegacyQueries(conn);
+			System.out.println("Schema version 0, new queries:");
+			runNewQueries(conn);
+
+			long start = System.currentTimeMillis();
+			addIndexes(conn, Event.SCHEMA_V1);
+			addIndexes(conn, Change.SCHEMA_V1);
+			System.out.println("Added schema version 1 indexes in " + (System.currentTimeMillis() - start) + " ms");
+
+			System.out.println("Schema version 1, original queries:");
+			runLegacyQueries(conn);
+			System.out.println("Schema version 1, new queries:");
+			runNewQueries(conn);
+		} finally {
+			try {
+				DBUtil.execSql(conn, "drop database if exists " + DB_NAME);
+			} finally {
+				DBUtil.closeQuietly(conn);
+			}
+		}
+	}
+
+	/**
+	 * Get the id of the event for given user, problem, and change number.
+	 * Changes are inserted in rounds, with each round inserting one
+	 * change for every user and problem, so the changes of different
+	 * users are interleaved as they would be in a real database.
+	 */
+	private static int getEventId(int userId, int problemId, int changeNum) {
+		return changeNum * numUsers * numProblems + (userId - 1) * numProblems + problemId;
+	}
+
+	private static void populate(Connection conn) throws SQLException {
+		System.out.print("Inserting " + ((long)numUsers * numProblems * changesPerUserAndProblem) + " events and changes...");
+		System.out.flush();
+		long start = System.currentTimeMillis();
+
+		StringBuilder fullText = new StringBuilder();
+		while (fullText.length() < 2000) {
+			fullText.append("public static int sumOfSquares(int n) { return n * (n + 1) * (2 * n + 1) / 6; }\n");
+		}
+
+		PreparedStatement insertEvent = null;
+		PreparedStatement insertChange = null;
+		conn.setAutoCommit(false);
+		try {
+			insertEvent = conn.prepareStatement("insert into cc_events values (?, ?, ?, ?, ?)");
+			insertChange = conn.prepareStatement("insert into cc_changes values (?, ?, ?, ?, ?, ?, ?, ?)");
+			int count = 0;
+			for (int changeNum = 0; changeNum < changesPerUserAndProblem; changeNum++) {
+				boolean isFullText = changeNum % FULL_TEXT_INTERVAL == 0;
+				for (int userId = 1; userId <= numUsers; userId++) {
+					for (int problemId = 1; problemId <= numProblems; problemId++) {
+						int eventId = getEventId(userId, problemId, changeNum);
+
+						insertEvent.setInt(1, eventId);
+						insertEvent.setInt(2, userId);
+						insertEvent.setInt(3, problemId);
+						insertEvent.setInt(4, EventType.CHANGE.ordinal());
+						insertEvent.setLong(5, 1500000000000L + eventId);
+						insertEvent.addBatch();
+
+						insertChange.setInt(1, eventId);
+						insertChange.setInt(2, isFullText ? ChangeType.FULL_TEXT.ordinal() : ChangeType.INSERT_TEXT.ordinal());
+						insertChange.setInt(3, 0);
+						insertChange.setInt(4, 0);
+						insertChange.setInt(5, changeNum % 40);
+						insertChange.setInt(6, changeNum % 40);
+						insertChange.setString(7, isFullText ? null : "x");
+						insertChange.setString(8, isFullText ? fullText.toString() : null);
+						insertChange.addBatch();
+
+						if (++count % BATCH_SIZE == 0) {
+							insertEvent.executeBatch();
+							insertChange.executeBatch();
+							conn.commit();
+						}
+					}
+				}
+			}
+			insertEvent.executeBatch();
+			insertChange.executeBatch();
+			conn.commit();
+		} finally {
+			DBUtil.closeQuietly(insertChange);
+			DBUtil.closeQuietly(insertEvent);
+			conn.setAutoCommit(true);
+		}
+
+		DBUtil.execSql(conn, "analyze table cc_events, cc_changes");
+		System.out.println("done in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	private static<E> void addIndexes(Connection conn, ModelObjectSchema<E> schema) throws SQLException {
+		for (Delta<? super E> delta : schema.getDeltaList()) {
+			if (delta instanceof AddIndexToFieldDelta) {
+				DBUtil.createIndex(conn, schema, ((AddIndexToFieldDelta<? super E>) delta).getIndex());
+			}
+		}
+		DBUtil.execSql(conn, "analyze table " + schema.getDbTableName());
+	}
+
+	private static void runLegacyQueries(Connection conn) throws SQLException {
+		measure(conn, "GetMostRecentChangeForUserAndProblem", new Query() {
+			public void run(Connection conn, int userId, int problemId, int firstEventId, int lastEventId) throws SQLException {
+				drain(conn, LEGACY_MOST_RECENT_CHANGE, problemId, userId);
+			}
+		});
+		measure(conn, "GetMostRecentFullTextChange", new Query() {
+			public void run(Connection conn, int userId, int problemId, int firstEventId, int lastEventId) throws SQLException {
+				drain(conn, LEGACY_MOST_RECENT_FULL_TEXT, problemId, userId);
+			}
+		});
+		measure(conn, "LoadChanges", new Query() {
+			public void run(Connection conn, int userId, int problemId, int firstEventId, int lastEventId) throws SQLException {
+				drain(conn, LEGACY_LOAD_CHANGES, userId, problemId, firstEventId, lastEventId);
+			}
+		});
+		measure(conn, "VisitAllChangesNewerThan", new Query() {
+			public void run(Connection conn, int userId, int problemId, int firstEventId, int lastEventId) throws SQLException {
+				drain(conn, LEGACY_VISIT_NEWER_THAN, firstEventId - 1, userId, problemId);
+			}
+		});
+	}
+
+	private static void runNewQueries(Connection conn) throws SQLException {
+		measure(conn, "GetMostRecentChangeForUserAndProblem", new Query() {
+			public void run(Connection conn, int userId, int problemId, int firstEventId, int lastEventId) throws SQLException {
+				execute(conn, new GetMostRecentChangeForUserAndProblem(problemId, createUser(userId)));
+			}
+		});
+		measure(conn, "GetMostRecentFullTextChange", new Query() {
+			public void run(Connection conn, int userId, int problemId, int firstEventId, int lastEventId) throws SQLException {
+				execute(conn, new GetMostRecentFullTextChange(problemId, createUser(userId)));
+			}
+		});
+		measure(conn, "LoadChanges", new Query() {
+			public void run(Connection conn, int userId, int problemId, int firstEventId, int lastEventId) throws SQLException {
+				execute(conn, new LoadChanges(userId, problemId, firstEventId, lastEventId));
+			}
+		});
+		measure(conn, "VisitAllChangesNewerThan", new Query() {
+			public void run(Connection conn, int userId, int problemId, int firstEventId, int lastEventId) throws SQLException {
+				ICallback<Change> visitor = new ICallback<Change>() {
+					public void call(Change value) {
+					}
+				};
+				execute(conn, new VisitAllChangesNewerThan(problemId, createUser(userId), firstEventId - 1, visitor, RetrieveChangesMode.RETRIEVE_CHANGES_ONLY));
+			}
+		});
+	}
+
+	private static void measure(Connection conn, String name, Query query) throws SQLException {
+		Random rng = new Random(12345L);
+		List<Long> times = new ArrayList<Long>();
+		for (int i = 0; i < WARMUP_SAMPLES + SAMPLES; i++) {
+			int userId = 1 + rng.nextInt(numUsers);
+			int problemId = 1 + rng.nextInt(numProblems);
+			int lastChange = changesPerUserAndProblem - 1;
+			int firstChange = Math.max(0, changesPerUserAndProblem - RECENT_CHANGES);
+			int firstEventId = getEventId(userId, problemId, firstChange);
+			int lastEventId = getEventId(userId, problemId, lastChange);
+
+			long start = System.nanoTime();
+			query.run(conn, userId, problemId, firstEventId, lastEventId);
+			long elapsed = System.nanoTime() - start;
+			if (i >= WARMUP_SAMPLES) {
+				times.add(elapsed);
+			}
+		}
+		Long[] sorted = times.toArray(new Long[times.size()]);
+		Arrays.sort(sorted);
+		System.out.printf("  %-40s median %8d us, 90th percentile %8d us%n",
+				name, sorted[sorted.length / 2] / 1000L, sorted[(sorted.length * 9) / 10] / 1000L);
+	}
+
+	private static void drain(Connection conn, String sql, int... params) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(sql);
+		ResultSet resultSet = null;
+		try {
+			for (int i = 0; i < params.length; i++) {
+				stmt.setInt(i + 1, params[i]);
+			}
+			resultSet = stmt.executeQuery();
+			int numColumns = resultSet.getMetaData().getColumnCount();
+			while (resultSet.next()) {
+				for (int i = 1; i <= numColumns; i++) {
+					resultSet.getObject(i);
+				}
+			}
+		} finally {
+			DBUtil.closeQuietly(resultSet);
+			DBUtil.closeQuietly(stmt);
+		}
+	}
+
+	private static void execute(Connection conn, AbstractDatabaseRunnableNoAuthException<?> txn) throws SQLException {
+		try {
+			txn.run(conn);
+		} finally {
+			txn.cleanup();
+		}
+	}
+
+	private static User createUser(int userId) {
+		User user = new User();
+		user.setId(userId);
+		return user;
+	}
+}
@@ -0,0 +1,268 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package testClasses;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.cloudcoder.app.server.persist.txn.Queries;
+import org.cloudcoder.app.server.persist.util.DBUtil;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeType;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.EventType;
+import org.cloudcoder.app.shared.model.ModelObjectField;
+import org.cloudcoder.app.shared.model.ModelObjectSchema;
+import org.cloudcoder.app.shared.model.SubmissionReceipt;
+import org.cloudcoder.app.shared.model.SubmissionStatus;
+
+/**
+ * Benchmark comparing loading and storing {@link Change}, {@link Event},
+ * and {@link SubmissionReceipt} objects using the per-schema row mappers
+ * (see {@link org.cloudcoder.app.server.persist.util.ModelObjectRowMapper})
+ * with the <code>getObject</code>/<code>setObject</code>-based
+ * implementation they replaced.  Run as a Java application: the optional
+ * argument is the number of measured rows per trial.
+ *
+ * <p>No database is needed: the {@link ResultSet} and {@link PreparedStatement}
+ * are dynamic proxies over a single in-memory row, so the times measure
+ * the mapping code plus a fixed per-call proxy overhead (which is the
+ * same for both implementations, since both make one call per column).</p>
+ *
+ * @author David Hovemeyer
+ */
+public class ModelObjectRowMapperBenchmark {
+	private static final int TRIALS = 15;
+	
+	// A row containing a change and its event
+	private static final Object[] CHANGE_ROW = {
+		// cc_changes
+		1234567, ChangeType.INSERT_TEXT.ordinal(), 12, 12, 7, 8, "x", null,
+		// cc_events
+		1234567, 4321, 987, EventType.CHANGE.ordinal(), 1500000000000L,
+	};
+	
+	// A row containing a submission receipt and its event
+	private static final Object[] RECEIPT_ROW = {
+		// cc_submission_receipts
+		1234570, 1234567, SubmissionStatus.TESTS_FAILED.ordinal(), 10, 7,
+		// cc_events
+		1234570, 4321, 987, EventType.SUBMIT.ordinal(), 1500000000000L,
+	};
+	
+	private interface Trial {
+		public void run(int rows) throws SQLException;
+	}
+
+	public static void main(String[] args) throws SQLException {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		
+		final ResultSet changeRow = createResultSet(CHANGE_ROW);
+		final ResultSet receiptRow = createResultSet(RECEIPT_ROW);
+		final PreparedStatement stmt = createPreparedStatement();
+		
+		final Change change = new Change();
+		int index = Queries.load(change, changeRow, 1);
+		final Event event = new Event();
+		Queries.loadGeneric(event, changeRow, index, Event.SCHEMA);
+		final SubmissionReceipt receipt = new SubmissionReceipt();
+		Queries.loadGeneric(receipt, receiptRow, 1, SubmissionReceipt.SCHEMA);
+		
+		measure("load Change+Event, original", rows, new Trial() {
+			public void run(int rows) throws SQLException {
+				for (int i = 0; i < rows; i++) {
+					Change c = new Change();
+					int index = legacyLoadChange(c, changeRow, 1);
+					Event e = new Event();
+					legacyLoadGeneric(e, changeRow, index, Event.SCHEMA);
+					c.setEvent(e);
+				}
+			}
+		});
+		measure("load Change+Event, row mapper", rows, new Trial() {
+			public void run(int rows) throws SQLException {
+				for (int i = 0; i < rows; i++) {
+					Change c = new Change();
+					int index = Queries.load(c, changeRow, 1);
+					Event e = new Event();
+					Queries.loadGeneric(e, changeRow, index, Event.SCHEMA);
+					c.setEvent(e);
+				}
+			}
+		});
+		measure("load SubmissionReceipt+Event, original", rows, new Trial() {
+			public void run(int rows) throws SQLException {
+				for (int i = 0; i < rows; i++) {
+					SubmissionReceipt r = new SubmissionReceipt();
+					int index = legacyLoadGeneric(r, receiptRow, 1, SubmissionReceipt.SCHEMA);
+					legacyLoadGeneric(r.getEvent(), receiptRow, index, Event.SCHEMA);
+				}
+			}
+		});
+		measure("load SubmissionReceipt+Event, row mapper", rows, new Trial() {
+			public void run(int rows) throws SQLException {
+				for (int i = 0; i < rows; i++) {
+					SubmissionReceipt r = new SubmissionReceipt();
+					int index = Queries.loadGeneric(r, receiptRow, 1, SubmissionReceipt.SCHEMA);
+					Queries.loadGeneric(r.getEvent(), receiptRow, index, Event.SCHEMA);
+				}
+			}
+		});
+		measure("store Event+SubmissionReceipt, original", rows, new Trial() {
+			public void run(int rows) throws SQLException {
+				for (int i = 0; i < rows; i++) {
+					legacyStoreNoIdGeneric(event, stmt, 1, Event.SCHEMA);
+					legacyStoreNoIdGeneric(receipt, stmt, 1, SubmissionReceipt.SCHEMA);
+				}
+			}
+		});
+		measure("store Event+SubmissionReceipt, row mapper", rows, new Trial() {
+			public void run(int rows) throws SQLException {
+				for (int i = 0; i < rows; i++) {
+					Queries.storeNoIdGeneric(event, stmt, 1, Event.SCHEMA);
+					Queries.storeNoIdGeneric(receipt, stmt, 1, SubmissionReceipt.SCHEMA);
+				}
+			}
+		});
+	}
+	
+	private static void measure(String name, int rows, Trial trial) throws SQLException {
+		long[] times = new long[TRIALS];
+		for (int i = 0; i < TRIALS; i++) {
+			long start = System.nanoTime();
+			trial.run(rows);
+			times[i] = System.nanoTime() - start;
+		}
+		// Discard the first third of the trials as warmup
+		long[] measured = Arrays.copyOfRange(times, TRIALS / 3, TRIALS);
+		Arrays.sort(measured);
+		System.out.printf("%-45s %8.1f ns/row%n", name, (double) measured[measured.length / 2] / rows);
+	}
+	
+	// The original implementations of Queries.load(Change), Queries.loadGeneric,
+	// and Queries.storeNoIdGeneric
+	
+	private static int legacyLoadChange(Change change, ResultSet resultSet, int index) throws SQLException {
+		String text = null;
+		for (ModelObjectField<? super Change, ?> field : Change.SCHEMA.getFieldList()) {
+			Object value = resultSet.getObject(index++);
+			if (field != Change.TEXT_SHORT && field != Change.TEXT) {
+				field.setUntyped(change, legacyConvertValue(value, field.getType()));
+			} else if (value != null) {
+				text = (String) value;
+			}
+		}
+		change.setText(text);
+		return index;
+	}
+	
+	private static<E> int legacyLoadGeneric(E modelObj, ResultSet resultSet, int index, ModelObjectSchema<E> schema) throws SQLException {
+		for (ModelObjectField<? super E, ?> field : schema.getFieldList()) {
+			Object value = resultSet.getObject(index++);
+			value = legacyConvertValue(value, field.getType());
+			field.setUntyped(modelObj, value);
+		}
+		return index;
+	}
+	
+	private static Object legacyConvertValue(Object value, Class<?> type) {
+		if (value == null || value.getClass() == type) {
+			return value;
+		}
+		if (type.isEnum()) {
+			return type.getEnumConstants()[(Integer)value];
+		} else if (type == Boolean.class && value instanceof Number) {
+			return ((Number) value).intValue() == 0 ? Boolean.FALSE : Boolean.TRUE;
+		}
+		throw new IllegalArgumentException("Unsupported conversion from " + value.getClass().getName() + " to " + type.getName());
+	}
+	
+	private static<E> int legacyStoreNoIdGeneric(E modelObj, PreparedStatement stmt, int index, ModelObjectSchema<E> schema) throws SQLException {
+		for (ModelObjectField<? super E, ?> field : schema.getFieldList()) {
+			if (!field.isUniqueId()) {
+				Object value = field.get(modelObj);
+				value = DBUtil.convertValueToStore(value);
+				if (value instanceof String) {
+					String s = (String) value;
+					if (s.length() > field.getSize()) {
+						s = s.substring(0, field.getSize());
+						value = s;
+					}
+				}
+				stmt.setObject(index++, value);
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Create a {@link ResultSet} positioned on a single row, which
+	 * (like a MySQL JDBC driver) returns int columns as Integer and
+	 * bigint columns as Long from <code>getObject</code>.
+	 */
+	private static ResultSet createResultSet(final Object[] row) {
+		return (ResultSet) Proxy.newProxyInstance(
+				ModelObjectRowMapperBenchmark.class.getClassLoader(),
+				new Class<?>[]{ ResultSet.class },
+				new InvocationHandler() {
+					private Object last;
+					
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if (name.equals("wasNull")) {
+							return last == null;
+						}
+						last = row[(Integer) args[0] - 1];
+						if (name.equals("getObject") || name.equals("getString")) {
+							return last;
+						} else if (name.equals("getInt")) {
+							// Return the already-boxed value, so that calling getInt
+							// doesn't allocate
+							return last != null ? last : Integer.valueOf(0);
+						} else if (name.equals("getLong")) {
+							return last != null ? last : Long.valueOf(0L);
+						} else if (name.equals("getBoolean")) {
+							return last != null && ((Number) last).intValue() != 0;
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+	}
+	
+	/**
+	 * Create a {@link PreparedStatement} that ignores parameter values.
+	 */
+	private static PreparedStatement createPreparedStatement() {
+		return (PreparedStatement) Proxy.newProxyInstance(
+				ModelObjectRowMapperBenchmark.class.getClassLoader(),
+				new Class<?>[]{ PreparedStatement.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().startsWith("set")) {
+							return null;
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+}
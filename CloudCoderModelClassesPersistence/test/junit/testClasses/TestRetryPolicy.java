@@ -0,0 +1,112 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package testClasses;
+
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+
+import org.cloudcoder.app.server.persist.RetryPolicy;
+import org.junit.Test;
+
+public class TestRetryPolicy
+{
+    private static RetryPolicy createPolicy(long baseDelayMs, long maxDelayMs)
+    {
+        Properties config = new Properties();
+        config.setProperty("cloudcoder.db.retry.baseDelayMs", String.valueOf(baseDelayMs));
+        config.setProperty("cloudcoder.db.retry.maxDelayMs", String.valueOf(maxDelayMs));
+        return RetryPolicy.fromProperties(config, "cloudcoder.db");
+    }
+
+    @Test
+    public void testDefaults()
+    throws Exception
+    {
+        RetryPolicy policy = RetryPolicy.fromProperties(new Properties(), "cloudcoder.db");
+        assertEquals(RetryPolicy.DEFAULT_MAX_ATTEMPTS, policy.getMaxAttempts());
+        assertEquals(RetryPolicy.DEFAULT_MAX_DUPLICATE_KEY_ATTEMPTS, policy.getMaxDuplicateKeyAttempts());
+        assertEquals(RetryPolicy.DEFAULT_BASE_DELAY_MS, policy.getBaseDelayMs());
+        assertEquals(RetryPolicy.DEFAULT_MAX_DELAY_MS, policy.getMaxDelayMs());
+    }
+
+    @Test
+    public void testClassifySqlState()
+    throws Exception
+    {
+        RetryPolicy policy = new RetryPolicy();
+        assertTrue(policy.isDeadlock("40001"));
+        assertTrue(policy.isDeadlock("41000"));
+        assertFalse(policy.isDeadlock("23000"));
+        assertFalse(policy.isDeadlock(null));
+        assertTrue(policy.isDuplicateKey("23000"));
+        assertFalse(policy.isDuplicateKey("40001"));
+        assertFalse(policy.isDuplicateKey(null));
+    }
+
+    @Test
+    public void testDelayCeilingDoublesUpToMax()
+    throws Exception
+    {
+        RetryPolicy policy = createPolicy(5L, 1000L);
+        assertEquals(5L, policy.getDelayCeilingMs(1));
+        assertEquals(10L, policy.getDelayCeilingMs(2));
+        assertEquals(20L, policy.getDelayCeilingMs(3));
+        assertEquals(640L, policy.getDelayCeilingMs(8));
+        assertEquals(1000L, policy.getDelayCeilingMs(9));
+        assertEquals(1000L, policy.getDelayCeilingMs(20));
+        // No overflow for large numbers of failures
+        assertEquals(1000L, policy.getDelayCeilingMs(63));
+        assertEquals(1000L, policy.getDelayCeilingMs(1000));
+    }
+
+    @Test
+    public void testDelayIsWithinCeiling()
+    throws Exception
+    {
+        RetryPolicy policy = createPolicy(5L, 1000L);
+        for (int deadlocks = 1; deadlocks <= 20; deadlocks++) {
+            long ceiling = policy.getDelayCeilingMs(deadlocks);
+            for (int i = 0; i < 1000; i++) {
+                long delay = policy.getDelayMs(deadlocks);
+                assertTrue(delay >= 0L);
+                assertTrue(delay <= ceiling);
+            }
+        }
+    }
+
+    @Test
+    public void testNoDelay()
+    throws Exception
+    {
+        RetryPolicy policy = createPolicy(0L, 1000L);
+        for (int deadlocks = 1; deadlocks <= 20; deadlocks++) {
+            assertEquals(0L, policy.getDelayMs(deadlocks));
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidMaxDuplicateKeyAttempts()
+    throws Exception
+    {
+        Properties config = new Properties();
+        config.setProperty("cloudcoder.db.retry.maxDuplicateKeyAttempts", "0");
+        RetryPolicy.fromProperties(config, "cloudcoder.db");
+    }
+}
@@ -0,0 +1,106 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package testClasses;
+
+import static org.junit.Assert.*;
+
+import org.cloudcoder.app.server.persist.TransactionStats;
+import org.junit.Test;
+
+public class TestTransactionStats
+{
+    private static long[] recordLatencies(long... latenciesMs)
+    {
+        TransactionStats stats = new TransactionStats("test");
+        for (long latencyMs : latenciesMs) {
+            stats.record(latencyMs, 1, 0, 0, 0L, true);
+        }
+        return stats.getLatencyHistogram();
+    }
+
+    private static long[] recordAttempts(int... attempts)
+    {
+        TransactionStats stats = new TransactionStats("test");
+        for (int n : attempts) {
+            stats.record(0L, n, n - 1, 0, 0L, true);
+        }
+        return stats.getAttemptsHistogram();
+    }
+
+    @Test
+    public void testLatencyBucketBoundsAreExclusive()
+    throws Exception
+    {
+        // Bounds are { 1, 5, 10, 50, 100, 500, 1000, 5000 }
+        assertArrayEquals(new long[]{ 1, 0, 0, 0, 0, 0, 0, 0, 0 }, recordLatencies(0L));
+        assertArrayEquals(new long[]{ 0, 1, 0, 0, 0, 0, 0, 0, 0 }, recordLatencies(1L));
+        assertArrayEquals(new long[]{ 0, 1, 0, 0, 0, 0, 0, 0, 0 }, recordLatencies(4L));
+        assertArrayEquals(new long[]{ 0, 0, 1, 0, 0, 0, 0, 0, 0 }, recordLatencies(5L));
+        assertArrayEquals(new long[]{ 0, 0, 0, 0, 0, 0, 0, 1, 0 }, recordLatencies(4999L));
+        assertArrayEquals(new long[]{ 0, 0, 0, 0, 0, 0, 0, 0, 2 }, recordLatencies(5000L, 60000L));
+    }
+
+    @Test
+    public void testAttemptsBucketBoundsAreInclusive()
+    throws Exception
+    {
+        // Bounds are { 1, 2, 3, 5, 10 }
+        assertArrayEquals(new long[]{ 1, 0, 0, 0, 0, 0 }, recordAttempts(1));
+        assertArrayEquals(new long[]{ 0, 1, 0, 0, 0, 0 }, recordAttempts(2));
+        assertArrayEquals(new long[]{ 0, 0, 1, 0, 0, 0 }, recordAttempts(3));
+        assertArrayEquals(new long[]{ 0, 0, 0, 2, 0, 0 }, recordAttempts(4, 5));
+        assertArrayEquals(new long[]{ 0, 0, 0, 0, 1, 0 }, recordAttempts(10));
+        assertArrayEquals(new long[]{ 0, 0, 0, 0, 0, 2 }, recordAttempts(11, 20));
+    }
+
+    @Test
+    public void testBucketLabels()
+    throws Exception
+    {
+        assertArrayEquals(
+                new String[]{ "<1ms", "<5ms", "<10ms", "<50ms", "<100ms", "<500ms", "<1000ms", "<5000ms", ">=5000ms" },
+                TransactionStats.getLatencyBucketLabels());
+        assertArrayEquals(
+                new String[]{ "1", "2", "3", "4-5", "6-10", ">10" },
+                TransactionStats.getAttemptsBucketLabels());
+    }
+
+    @Test
+    public void testTotalsAndAdd()
+    throws Exception
+    {
+        TransactionStats stats = new TransactionStats("test");
+        stats.record(3L, 1, 0, 0, 0L, true);
+        stats.record(700L, 4, 2, 1, 25L, false);
+
+        TransactionStats total = new TransactionStats("test");
+        total.add(stats.copy());
+        total.add(stats.copy());
+
+        assertEquals(4L, total.getCount());
+        assertEquals(2L, total.getFailures());
+        assertEquals(4L, total.getDeadlocks());
+        assertEquals(2L, total.getDuplicateKeys());
+        assertEquals(10L, total.getTotalAttempts());
+        assertEquals(4, total.getMaxAttempts());
+        assertEquals(1406L, total.getTotalLatencyMs());
+        assertEquals(700L, total.getMaxLatencyMs());
+        assertEquals(50L, total.getTotalBackoffMs());
+    }
+}
@@ -0,0 +1,60 @@
+package org.cloudcoder.app.buildprotocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SubmitMessageTest {
+	private Problem problem;
+	private List<TestCase> testCaseList;
+	
+	@Before
+	public void setUp() {
+		problem = new Problem();
+		problem.setProblemId(42);
+		problem.setTestname("hello");
+		problem.setDescription("Print hello");
+		
+		testCaseList = new ArrayList<TestCase>();
+		testCaseList.add(createTestCase("t1", "ab", "c"));
+	}
+	
+	private static TestCase createTestCase(String name, String input, String output) {
+		TestCase testCase = new TestCase();
+		testCase.setProblemId(42);
+		testCase.setTestCaseName(name);
+		testCase.setInput(input);
+		testCase.setOutput(output);
+		return testCase;
+	}
+	
+	@Test
+	public void testSameContentSameHash() throws Exception {
+		List<TestCase> copy = new ArrayList<TestCase>();
+		copy.add(createTestCase("t1", "ab", "c"));
+		assertEquals(
+				SubmitMessage.computeProblemHash(problem, testCaseList),
+				SubmitMessage.computeProblemHash(problem, copy));
+	}
+	
+	@Test
+	public void testWhitespaceChangesHash() throws Exception {
+		String hash = SubmitMessage.computeProblemHash(problem, testCaseList);
+		testCaseList.get(0).setOutput("c\n");
+		assertFalse(hash.equals(SubmitMessage.computeProblemHash(problem, testCaseList)));
+	}
+	
+	@Test
+	public void testFieldBoundariesChangeHash() throws Exception {
+		String hash = SubmitMessage.computeProblemHash(problem, testCaseList);
+		testCaseList.set(0, createTestCase("t1", "a", "bc"));
+		assertFalse(hash.equals(SubmitMessage.computeProblemHash(problem, testCaseList)));
+	}
+}
@@ -0,0 +1,90 @@
+package org.cloudcoder.app.shared.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ApplyChangeToTextDocumentTest {
+	private ApplyChangeToTextDocument applicator;
+	private TextDocument doc;
+	
+	@Before
+	public void setUp() {
+		applicator = new ApplyChangeToTextDocument();
+		doc = new TextDocument();
+		doc.setText("public class A {\n}\n");
+	}
+	
+	private void apply(ChangeType type, int sr, int sc, int er, int ec, String text) {
+		applicator.apply(new Change(type, sr, sc, er, ec, 0L, 1, 1, text), doc);
+	}
+	
+	@Test
+	public void testInsertText() throws Exception {
+		apply(ChangeType.INSERT_TEXT, 0, 14, 0, 15, "B");
+		assertEquals("public class AB {\n}\n", doc.getText());
+	}
+	
+	@Test
+	public void testInsertTextWithNewlines() throws Exception {
+		// Typing a newline splits the line
+		apply(ChangeType.INSERT_TEXT, 0, 16, 1, 0, "\n");
+		assertEquals(3, doc.getNumLines());
+		assertEquals("public class A {\n\n}\n", doc.getText());
+		
+		// Pasting text with several newlines splits it into several lines
+		apply(ChangeType.INSERT_TEXT, 1, 0, 3, 0, "\tint x;\n\tint y;\n");
+		assertEquals(5, doc.getNumLines());
+		assertEquals("\tint y;\n", doc.getLine(2));
+		assertEquals("public class A {\n\tint x;\n\tint y;\n\n}\n", doc.getText());
+	}
+	
+	@Test
+	public void testInsertTextAtEnd() throws Exception {
+		apply(ChangeType.INSERT_TEXT, 2, 0, 2, 2, "//");
+		assertEquals("public class A {\n}\n//", doc.getText());
+	}
+	
+	@Test
+	public void testRemoveText() throws Exception {
+		apply(ChangeType.REMOVE_TEXT, 0, 0, 0, 7, "public ");
+		assertEquals("class A {\n}\n", doc.getText());
+	}
+	
+	@Test
+	public void testRemoveNewline() throws Exception {
+		apply(ChangeType.REMOVE_TEXT, 0, 16, 1, 0, "\n");
+		assertEquals(1, doc.getNumLines());
+		assertEquals("public class A {}\n", doc.getText());
+	}
+	
+	@Test
+	public void testInsertLinesWithEmbeddedNewlines() throws Exception {
+		apply(ChangeType.INSERT_LINES, 1, 0, 4, 0, "\tint x;\n\tint y;\n\tint z;");
+		assertEquals(5, doc.getNumLines());
+		assertEquals("\tint x;\n", doc.getLine(1));
+		assertEquals("\tint z;\n", doc.getLine(3));
+		assertEquals("public class A {\n\tint x;\n\tint y;\n\tint z;\n}\n", doc.getText());
+		assertFalse(doc.hasLineWithEmbeddedNewline());
+	}
+	
+	@Test
+	public void testRemoveLines() throws Exception {
+		apply(ChangeType.INSERT_LINES, 1, 0, 4, 0, "\tint x;\n\tint y;\n\tint z;");
+		apply(ChangeType.REMOVE_LINES, 1, 0, 3, 0, "\tint x;\n\tint y;");
+		assertEquals("public class A {\n\tint z;\n}\n", doc.getText());
+	}
+	
+	@Test
+	public void testFullText() throws Exception {
+		apply(ChangeType.INSERT_LINES, 1, 0, 2, 0, "\tint x;");
+		apply(ChangeType.FULL_TEXT, 0, 0, 2, 0, "class B {\n}\n");
+		assertEquals(2, doc.getNumLines());
+		assertEquals("class B {\n}\n", doc.getText());
+		
+		// Changes after a full text change apply to the new text
+		apply(ChangeType.INSERT_TEXT, 0, 7, 0, 8, "C");
+		assertEquals("class BC {\n}\n", doc.getText());
+	}
+}
@@ -0,0 +1,156 @@
+package org.cloudcoder.app.shared.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TextDocumentTest {
+	private TextDocument doc;
+	
+	@Before
+	public void setUp() {
+		doc = new TextDocument();
+	}
+	
+	private static String line(int n) {
+		return "line " + n + "\n";
+	}
+	
+	private void checkLines(List<String> expected) {
+		assertEquals(expected.size(), doc.getNumLines());
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i), doc.getLine(i));
+			text.append(expected.get(i));
+		}
+		assertEquals(text.toString(), doc.getText());
+	}
+	
+	@Test
+	public void testAppend() throws Exception {
+		List<String> expected = new ArrayList<String>();
+		// Enough lines to make the buffer grow more than once
+		for (int i = 0; i < 100; i++) {
+			doc.append(line(i));
+			expected.add(line(i));
+		}
+		checkLines(expected);
+	}
+	
+	@Test
+	public void testInsertAndRemoveOnBothSidesOfGap() throws Exception {
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 20; i++) {
+			doc.append(line(i));
+			expected.add(line(i));
+		}
+		
+		// The gap is at the end: insert in the middle, then before
+		// and after the previous edit location
+		doc.insertLine(10, "a\n");
+		expected.add(10, "a\n");
+		doc.insertLine(3, "b\n");
+		expected.add(3, "b\n");
+		doc.insertLine(18, "c\n");
+		expected.add(18, "c\n");
+		checkLines(expected);
+		
+		doc.removeLine(0);
+		expected.remove(0);
+		doc.removeLine(expected.size() - 1);
+		expected.remove(expected.size() - 1);
+		doc.removeLine(9);
+		expected.remove(9);
+		checkLines(expected);
+		
+		doc.setLine(2, "d\n");
+		expected.set(2, "d\n");
+		doc.setLine(15, "e\n");
+		expected.set(15, "e\n");
+		checkLines(expected);
+	}
+	
+	@Test
+	public void testRandomEdits() throws Exception {
+		Random rng = new Random(12345L);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 1000; i++) {
+			int op = rng.nextInt(3);
+			if (op == 0 || expected.isEmpty()) {
+				int index = rng.nextInt(expected.size() + 1);
+				doc.insertLine(index, line(i));
+				expected.add(index, line(i));
+			} else if (op == 1) {
+				int index = rng.nextInt(expected.size());
+				doc.removeLine(index);
+				expected.remove(index);
+			} else {
+				int index = rng.nextInt(expected.size());
+				doc.setLine(index, line(i));
+				expected.set(index, line(i));
+			}
+			if (i % 50 == 0) {
+				checkLines(expected);
+			}
+		}
+		checkLines(expected);
+	}
+	
+	@Test
+	public void testGetTextAfterSetText() throws Exception {
+		doc.append("old\n");
+		assertEquals("old\n", doc.getText());
+		
+		doc.setText("first\nsecond\nthird\n");
+		assertEquals(3, doc.getNumLines());
+		assertEquals("second\n", doc.getLine(1));
+		assertEquals("first\nsecond\nthird\n", doc.getText());
+		
+		// Editing after setText must invalidate the cached text
+		doc.insertLine(1, "inserted\n");
+		assertEquals("first\ninserted\nsecond\nthird\n", doc.getText());
+		doc.removeLine(3);
+		assertEquals("first\ninserted\nsecond\n", doc.getText());
+	}
+	
+	@Test
+	public void testSetTextAddsFinalNewline() throws Exception {
+		doc.setText("a\nb");
+		assertEquals(2, doc.getNumLines());
+		assertEquals("a\nb\n", doc.getText());
+	}
+	
+	@Test
+	public void testEmbeddedNewlineTracking() throws Exception {
+		doc.append("a\n");
+		doc.append("b\n");
+		assertFalse(doc.hasLineWithEmbeddedNewline());
+		
+		doc.setLine(0, "x\ny\n");
+		assertTrue(doc.hasLineWithEmbeddedNewline());
+		doc.insertLine(2, "p\nq");
+		assertTrue(doc.hasLineWithEmbeddedNewline());
+		
+		doc.setLine(0, "a\n");
+		assertTrue(doc.hasLineWithEmbeddedNewline());
+		doc.removeLine(2);
+		assertFalse(doc.hasLineWithEmbeddedNewline());
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testGetLineOutOfBounds() throws Exception {
+		doc.append("a\n");
+		doc.getLine(1);
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testInsertLineOutOfBounds() throws Exception {
+		doc.append("a\n");
+		doc.insertLine(2, "b\n");
+	}
+}
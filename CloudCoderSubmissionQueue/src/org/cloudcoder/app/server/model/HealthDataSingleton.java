@@ -21,7 +21,9 @@ package org.cloudcoder.app.server.model;
 import java.util.Iterator;
 import java.util.LinkedList;
 
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.server.submitsvc.oop.OutOfProcessSubmitService;
+import org.cloudcoder.app.server.submitsvc.oop.SubmissionCoalescer;
 import org.cloudcoder.app.shared.model.HealthData;
 
 /**
@@ -55,9 +57,11 @@ public class HealthDataSingleton {
 	private LinkedList<SubmissionQueueSizeSample> submissionQueueSizeSampleList;
 	private volatile int submissionQueueSizeCurrent;
 	private volatile int submissionQueueSizeMaxLastFiveMinutes;
+	private volatile int[] submissionQueueSizeByPriority;
 	
 	private HealthDataSingleton() {
 		this.submissionQueueSizeSampleList = new LinkedList<SubmissionQueueSizeSample>();
+		this.submissionQueueSizeByPriority = new int[SubmissionPriority.values().length];
 	}
 	
 	/**
@@ -90,6 +94,27 @@ public class HealthDataSingleton {
 		this.submissionQueueSizeMaxLastFiveMinutes = max;
 	}
 	
+	/**
+	 * Update the current number of waiting submissions in each
+	 * {@link SubmissionPriority} class.
+	 * 
+	 * @param sizeByPriority number of waiting submissions, indexed by
+	 *                       {@link SubmissionPriority} ordinal
+	 */
+	public void updateSubmissionQueueSizeByPriority(int[] sizeByPriority) {
+		this.submissionQueueSizeByPriority = sizeByPriority.clone();
+	}
+	
+	/**
+	 * Get the current number of waiting submissions in given priority class.
+	 * 
+	 * @param priority the {@link SubmissionPriority}
+	 * @return the current number of waiting submissions in the priority class
+	 */
+	public int getSubmissionQueueSize(SubmissionPriority priority) {
+		return submissionQueueSizeByPriority[priority.ordinal()];
+	}
+	
 	/**
 	 * Get the current submission queue size.
 	 * 
@@ -117,7 +142,18 @@ public class HealthDataSingleton {
 		HealthData healthData = new HealthData();
 		healthData.setSubmissionQueueSizeCurrent(submissionQueueSizeCurrent);
 		healthData.setSubmissionQueueSizeMaxLastFiveMinutes(submissionQueueSizeMaxLastFiveMinutes);
+		int[] sizeByPriority = submissionQueueSizeByPriority;
+		healthData.setSubmissionQueueSizeQuiz(sizeByPriority[SubmissionPriority.QUIZ.ordinal()]);
+		healthData.setSubmissionQueueSizeExercise(sizeByPriority[SubmissionPriority.EXERCISE.ordinal()]);
+		healthData.setSubmissionQueueSizeWebService(sizeByPriority[SubmissionPriority.WEB_SERVICE.ordinal()]);
+		healthData.setSubmissionQueueSizeBatch(sizeByPriority[SubmissionPriority.BATCH.ordinal()]);
 		healthData.setNumConnectedBuilderThreads(OutOfProcessSubmitService.getInstance().getNumBuilderThreads());
+		SubmissionCoalescer coalescer = OutOfProcessSubmitService.getInstance().getCoalescer();
+		if (coalescer != null) {
+			healthData.setSubmissionsDispatched((int) coalescer.getNumDispatched());
+			healthData.setSubmissionsCoalesced((int) coalescer.getNumCoalesced());
+			healthData.setSubmissionResultCacheHits((int) coalescer.getNumResultCacheHits());
+		}
 		return healthData;
 	}
 }
@@ -46,4 +46,14 @@ public interface IFutureSubmissionResult {
 	 * @throws InterruptedException 
 	 */
 	public SubmissionResult waitFor(long timeoutMs) throws SubmissionException, InterruptedException;
+
+	/**
+	 * Register an {@link ISubmissionCompletionListener} to be notified
+	 * when compilation/testing completes.  If it has already completed,
+	 * the listener is notified immediately (in the calling thread).
+	 * Each listener is notified at most once.
+	 * 
+	 * @param listener the {@link ISubmissionCompletionListener}
+	 */
+	public void addCompletionListener(ISubmissionCompletionListener listener);
 }
@@ -0,0 +1,41 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc;
+
+/**
+ * Callback interface notified when an {@link IFutureSubmissionResult}
+ * completes (either successfully or with an error).
+ * This allows code waiting for a submission result (e.g., a servlet
+ * handling a request for the result) to be notified of completion,
+ * rather than having a thread block in {@link IFutureSubmissionResult#waitFor(long)}.
+ * 
+ * @author David Hovemeyer
+ */
+public interface ISubmissionCompletionListener {
+	/**
+	 * Called when the submission is complete.  Calling
+	 * {@link IFutureSubmissionResult#waitFor(long)} with a timeout
+	 * of 0 is guaranteed to return the result (or throw an exception)
+	 * without waiting.  Note that this method may be called from a thread
+	 * that is managing communication with a Builder, so it should
+	 * return promptly and must not block.
+	 * 
+	 * @param future the completed {@link IFutureSubmissionResult}
+	 */
+	public void onSubmissionComplete(IFutureSubmissionResult future);
+}
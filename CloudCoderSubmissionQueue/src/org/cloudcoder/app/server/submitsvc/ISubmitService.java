@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.SubmissionException;
+import org.cloudcoder.app.shared.model.SubmissionQueueFullException;
 import org.cloudcoder.app.shared.model.SubmissionResult;
 import org.cloudcoder.app.shared.model.TestCase;
 
@@ -50,4 +51,24 @@ public interface ISubmitService {
 	 *         a {@link SubmissionResult}
 	 */
 	public IFutureSubmissionResult submitAsync(Problem problem, List<TestCase> testCaseList, String programText) throws SubmissionException;
+
+	/**
+	 * Submit a problem and program text with an explicit {@link SubmissionPriority}.
+	 * Submissions in the same priority class are scheduled so that
+	 * each user gets a fair share of the available Builders.
+	 * 
+	 * @param problem      a Problem
+	 * @param testCaseList the test cases
+	 * @param programText  program text
+	 * @param priority     the {@link SubmissionPriority}
+	 * @param userId       id of the user making the submission, or -1 if the submission
+	 *                     is not associated with a user
+	 * @return an {@link IFutureSubmissionResult}, which will eventually yield
+	 *         a {@link SubmissionResult}
+	 * @throws SubmissionException if the submission cannot be accepted
+	 *         (for example, a {@link SubmissionQueueFullException} if there
+	 *         are too many submissions waiting in the same priority class)
+	 */
+	public IFutureSubmissionResult submitAsync(Problem problem, List<TestCase> testCaseList, String programText,
+			SubmissionPriority priority, int userId) throws SubmissionException;
 }
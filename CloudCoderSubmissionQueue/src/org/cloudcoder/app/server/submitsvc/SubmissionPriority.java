@@ -0,0 +1,40 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc;
+
+/**
+ * Priority classes for submissions.  When several submissions are
+ * waiting to be tested, submissions in a higher priority class are always
+ * dispatched to a Builder before submissions in a lower priority class.
+ * Constants are listed in order of decreasing priority.
+ * 
+ * @author David Hovemeyer
+ */
+public enum SubmissionPriority {
+	/** Submission by a student working on a problem as part of a quiz. */
+	QUIZ,
+	
+	/** Submission by a user working on an exercise (or in the playground). */
+	EXERCISE,
+	
+	/** Submission by a client of the builder web service. */
+	WEB_SERVICE,
+	
+	/** Submission made as part of a batch job, e.g., retesting historical snapshots. */
+	BATCH;
+}
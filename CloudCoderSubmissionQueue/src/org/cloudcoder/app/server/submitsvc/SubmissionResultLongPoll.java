@@ -0,0 +1,149 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.cloudcoder.app.shared.model.SubmissionException;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationSupport;
+import org.eclipse.jetty.continuation.ContinuationThrowable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Long-poll for an {@link IFutureSubmissionResult} from a servlet
+ * without tying up a request thread while the submission is being
+ * compiled and tested.  The request is suspended using a Jetty
+ * {@link Continuation}, and is resumed by an {@link ISubmissionCompletionListener}
+ * when the result becomes available (or when the poll times out).
+ * If continuations are not supported by the servlet container, a
+ * standard synchronous wait (see {@link IFutureSubmissionResult#STANDARD_POLL_WAIT_MS})
+ * is used instead.
+ * 
+ * <p>Because the request is suspended by throwing a {@link ContinuationThrowable}
+ * (see {@link Continuation#undispatch()}), a servlet calling {@link #poll(HttpServletRequest, IFutureSubmissionResult, long)}
+ * must not catch and handle {@link Error}s, and must allow the
+ * request to be dispatched a second time, at which point the
+ * result (or null, if the poll timed out) is returned.
+ * 
+ * @author David Hovemeyer
+ */
+public class SubmissionResultLongPoll {
+	private static final Logger logger = LoggerFactory.getLogger(SubmissionResultLongPoll.class);
+	
+	/**
+	 * Default maximum time for a long poll, in milliseconds.
+	 */
+	public static final long DEFAULT_LONG_POLL_MS = 20000L;
+	
+	// Set to false if the continuation classes are not available
+	private static volatile boolean continuationsAvailable = true;
+	
+	/**
+	 * Poll for a {@link SubmissionResult}.
+	 * 
+	 * @param req        the request
+	 * @param future     the {@link IFutureSubmissionResult}
+	 * @param timeoutMs  maximum time to wait for the result, in milliseconds
+	 * @return the {@link SubmissionResult}, or null if the submission is still pending
+	 * @throws SubmissionException   if the submission completed with an error
+	 * @throws InterruptedException
+	 */
+	public static SubmissionResult poll(HttpServletRequest req, IFutureSubmissionResult future, long timeoutMs)
+			throws SubmissionException, InterruptedException {
+		// See if the result is already available
+		SubmissionResult result = future.waitFor(0L);
+		if (result != null) {
+			return result;
+		}
+		
+		final Continuation continuation = getContinuation(req);
+		if (continuation == null) {
+			// No continuations: wait synchronously
+			return future.waitFor(IFutureSubmissionResult.STANDARD_POLL_WAIT_MS);
+		}
+		
+		if (!continuation.isInitial()) {
+			// The request was resumed (because the result became available),
+			// or the long poll expired
+			return null;
+		}
+		
+		continuation.setTimeout(timeoutMs);
+		continuation.suspend();
+		future.addCompletionListener(new ISubmissionCompletionListener() {
+			@Override
+			public void onSubmissionComplete(IFutureSubmissionResult future) {
+				try {
+					continuation.resume();
+				} catch (IllegalStateException e) {
+					// The long poll already expired
+					logger.debug("Could not resume continuation", e);
+				}
+			}
+		});
+		
+		// Return the request thread to the container
+		continuation.undispatch();
+		
+		throw new IllegalStateException("Continuation failed to undispatch");
+	}
+	
+	/**
+	 * Check whether given exception (or one of its causes) indicates
+	 * that a request was suspended by {@link #poll(HttpServletRequest, IFutureSubmissionResult, long)}.
+	 * If so, the underlying {@link Error} is rethrown so that it
+	 * can be handled by the servlet container.  This is useful when
+	 * the exception has been wrapped by a framework (e.g., GWT RPC).
+	 * 
+	 * @param e an exception
+	 */
+	public static void rethrowIfSuspended(Throwable e) {
+		if (!continuationsAvailable) {
+			return;
+		}
+		try {
+			while (e != null) {
+				if (e instanceof ContinuationThrowable) {
+					throw (ContinuationThrowable) e;
+				}
+				e = e.getCause();
+			}
+		} catch (LinkageError ex) {
+			continuationsAvailable = false;
+		}
+	}
+	
+	private static Continuation getContinuation(HttpServletRequest req) {
+		if (!continuationsAvailable) {
+			return null;
+		}
+		try {
+			return ContinuationSupport.getContinuation(req);
+		} catch (IllegalStateException e) {
+			// Container supports neither Jetty continuations nor Servlet 3.0
+			return null;
+		} catch (LinkageError e) {
+			logger.warn("Jetty continuations are not available, using synchronous polling for submission results");
+			continuationsAvailable = false;
+			return null;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
+import org.cloudcoder.app.shared.model.SubmissionException;
+import org.cloudcoder.app.shared.model.SubmissionQueueFullException;
+
+/**
+ * Default implementation of {@link ISubmissionScheduler}.
+ * Submissions are dispatched in strict {@link SubmissionPriority} order.
+ * Within a priority class, users are served round-robin (one submission
+ * per user per turn), so a single user with many waiting submissions
+ * cannot delay other users' submissions for long.  Each priority class
+ * holds a bounded number of waiting submissions: when a class is
+ * full, new submissions in that class are rejected with a
+ * {@link SubmissionQueueFullException}.
+ * 
+ * @author David Hovemeyer
+ */
+public class FairShareSubmissionScheduler implements ISubmissionScheduler {
+	/**
+	 * Default maximum number of waiting submissions per priority class.
+	 */
+	public static final int DEFAULT_MAX_QUEUE_SIZE = 10000;
+	
+	/**
+	 * Waiting submissions for one priority class.
+	 */
+	private static class PriorityClass {
+		// Per-user queues, keyed by user id
+		final Map<Integer, LinkedList<OOPBuildServiceSubmission>> userQueues =
+				new HashMap<Integer, LinkedList<OOPBuildServiceSubmission>>();
+		
+		// User ids with waiting submissions, in the order they will be served
+		final LinkedList<Integer> rotation = new LinkedList<Integer>();
+		
+		int size;
+		
+		void add(OOPBuildServiceSubmission submission, boolean atFront) {
+			Integer userId = submission.getUserId();
+			LinkedList<OOPBuildServiceSubmission> userQueue = userQueues.get(userId);
+			if (userQueue == null) {
+				userQueue = new LinkedList<OOPBuildServiceSubmission>();
+				userQueues.put(userId, userQueue);
+				if (atFront) {
+					rotation.addFirst(userId);
+				} else {
+					rotation.addLast(userId);
+				}
+			} else if (atFront) {
+				rotation.remove(userId);
+				rotation.addFirst(userId);
+			}
+			if (atFront) {
+				userQueue.addFirst(submission);
+			} else {
+				userQueue.addLast(submission);
+			}
+			size++;
+		}
+		
+		OOPBuildServiceSubmission remove() {
+			Integer userId = rotation.removeFirst();
+			LinkedList<OOPBuildServiceSubmission> userQueue = userQueues.get(userId);
+			OOPBuildServiceSubmission submission = userQueue.removeFirst();
+			if (userQueue.isEmpty()) {
+				userQueues.remove(userId);
+			} else {
+				// User goes to the back of the line
+				rotation.addLast(userId);
+			}
+			size--;
+			return submission;
+		}
+	}
+	
+	private final int maxQueueSize;
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+	private final PriorityClass[] classes;
+	private int size;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxQueueSize maximum number of waiting submissions per priority class
+	 */
+	public FairShareSubmissionScheduler(int maxQueueSize) {
+		this.maxQueueSize = maxQueueSize;
+		this.lock = new ReentrantLock();
+		this.notEmpty = lock.newCondition();
+		this.classes = new PriorityClass[SubmissionPriority.values().length];
+		for (int i = 0; i < classes.length; i++) {
+			classes[i] = new PriorityClass();
+		}
+	}
+	
+	@Override
+	public void add(OOPBuildServiceSubmission submission) throws SubmissionException {
+		lock.lock();
+		try {
+			PriorityClass pc = classes[submission.getPriority().ordinal()];
+			if (pc.size >= maxQueueSize) {
+				throw new SubmissionQueueFullException("Too many submissions are waiting to be tested, please try again later");
+			}
+			pc.add(submission, false);
+			size++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public void requeue(OOPBuildServiceSubmission submission) {
+		lock.lock();
+		try {
+			classes[submission.getPriority().ordinal()].add(submission, true);
+			size++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public OOPBuildServiceSubmission poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (size == 0) {
+				if (nanos <= 0L) {
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			for (PriorityClass pc : classes) {
+				if (pc.size > 0) {
+					size--;
+					return pc.remove();
+				}
+			}
+			throw new IllegalStateException("Submission queue size is inconsistent");
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int size(SubmissionPriority priority) {
+		lock.lock();
+		try {
+			return classes[priority.ordinal()].size;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
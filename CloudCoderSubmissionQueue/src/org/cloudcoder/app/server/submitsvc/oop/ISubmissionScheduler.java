@@ -0,0 +1,75 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.util.concurrent.TimeUnit;
+
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
+import org.cloudcoder.app.shared.model.SubmissionException;
+
+/**
+ * Queue of {@link OOPBuildServiceSubmission}s waiting to be sent
+ * to a remote Builder.  The implementation decides the order
+ * in which waiting submissions are dispatched.
+ * All methods must be thread-safe.
+ * 
+ * @author David Hovemeyer
+ */
+public interface ISubmissionScheduler {
+	/**
+	 * Add a new submission.
+	 * 
+	 * @param submission the submission
+	 * @throws SubmissionException if the submission cannot be accepted
+	 *         (e.g., because the queue is full)
+	 */
+	public void add(OOPBuildServiceSubmission submission) throws SubmissionException;
+	
+	/**
+	 * Return a submission whose testing could not be completed
+	 * (e.g., because the connection to the Builder failed).
+	 * The submission is always accepted, and should be dispatched
+	 * ahead of other waiting submissions in the same priority class.
+	 * 
+	 * @param submission the submission
+	 */
+	public void requeue(OOPBuildServiceSubmission submission);
+	
+	/**
+	 * Wait for a submission to be available for testing.
+	 * 
+	 * @param timeout maximum amount of time to wait
+	 * @param unit    the {@link TimeUnit} of the timeout
+	 * @return the next submission to test, or null if none became available
+	 * @throws InterruptedException
+	 */
+	public OOPBuildServiceSubmission poll(long timeout, TimeUnit unit) throws InterruptedException;
+	
+	/**
+	 * @return the total number of waiting submissions
+	 */
+	public int size();
+	
+	/**
+	 * Get the number of waiting submissions in given priority class.
+	 * 
+	 * @param priority the {@link SubmissionPriority}
+	 * @return the number of waiting submissions in the priority class
+	 */
+	public int size(SubmissionPriority priority);
+}
@@ -0,0 +1,311 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudcoder.app.buildprotocol.BuildProtocol;
+import org.cloudcoder.app.buildprotocol.Frame;
+import org.cloudcoder.app.buildprotocol.FrameConnection;
+import org.cloudcoder.app.buildprotocol.FrameType;
+import org.cloudcoder.app.buildprotocol.SubmitMessage;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Communicate with a remote Builder using the multiplexed protocol
+ * (see {@link BuildProtocol}).  Up to the concurrency agreed on at
+ * handshake, submissions are sent to the Builder without waiting
+ * for the results of earlier submissions.  A separate reader thread
+ * receives results (in whatever order the Builder completes them)
+ * and marks the corresponding submissions as ready.
+ * 
+ * @author David Hovemeyer
+ */
+public class MultiplexedBuilderSession {
+	private static final Logger logger = LoggerFactory.getLogger(MultiplexedBuilderSession.class);
+
+	/**
+	 * Number of milliseconds between attempts to poll the
+	 * submission queue.
+	 */
+	private static final long POLL_INTERVAL_MILLIS = 1000L;
+
+	/**
+	 * Maximum number of milliseconds that the connection is allowed
+	 * to be idle (no frames sent) before a keepalive signal is sent
+	 * to the builder.
+	 */
+	private static final long MAX_IDLE_TIME_MILLIS = 5000L;
+
+	/**
+	 * Maximum number of problems we remember having sent to the builder.
+	 * (If the builder has evicted one of them from its cache, it will
+	 * just ask for it again.)
+	 */
+	private static final int MAX_SENT_PROBLEMS = 256;
+
+	/**
+	 * Maximum number of attempts to test a submission.
+	 */
+	private static final int MAX_ATTEMPTS = 10;
+
+	private final FrameConnection conn;
+	private final ISubmissionScheduler submissionQueue;
+	private final int concurrency;
+	private final Semaphore slots;
+	private final Map<Integer, OOPBuildServiceSubmission> inFlight;
+	private final Map<Integer, String> sentProblems;
+	private int nextRequestId;
+	private volatile long lastSendTime;
+	private volatile boolean shutdownRequested;
+	private volatile boolean connectionBroken;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param conn             the {@link FrameConnection} (the handshake must already be complete)
+	 * @param submissionQueue  queue of submissions requiring compilation and testing
+	 * @param concurrency      maximum number of submissions in flight
+	 */
+	public MultiplexedBuilderSession(FrameConnection conn, ISubmissionScheduler submissionQueue, int concurrency) {
+		this.conn = conn;
+		this.submissionQueue = submissionQueue;
+		this.concurrency = concurrency;
+		this.slots = new Semaphore(concurrency);
+		this.inFlight = new HashMap<Integer, OOPBuildServiceSubmission>();
+		this.sentProblems = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+				return size() > MAX_SENT_PROBLEMS;
+			}
+		};
+		this.nextRequestId = 1;
+	}
+
+	/**
+	 * @return the maximum number of submissions in flight
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Request that the session end.
+	 */
+	public void shutdown() {
+		shutdownRequested = true;
+	}
+
+	/**
+	 * Send submissions to the builder until a shutdown is requested
+	 * or the connection fails.  When this method returns, any submissions
+	 * whose results were not received have been placed back in the
+	 * submission queue.  The caller is responsible for closing the
+	 * connection.
+	 */
+	public void run() {
+		Thread readerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readResults();
+			}
+		}, "MultiplexedBuilderSession reader");
+		readerThread.setDaemon(true);
+		readerThread.start();
+
+		lastSendTime = System.currentTimeMillis();
+		try {
+			while (!shutdownRequested && !connectionBroken) {
+				// Wait for the builder to have a free slot
+				if (!slots.tryAcquire(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+					sendKeepaliveIfIdle();
+					continue;
+				}
+
+				OOPBuildServiceSubmission submission =
+						submissionQueue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				if (submission == null) {
+					slots.release();
+					sendKeepaliveIfIdle();
+					continue;
+				}
+
+				// Check to make sure there isn't some kind of persistent error
+				// affecting the testing of this submission
+				if (submission.getNumAttempts() >= MAX_ATTEMPTS) {
+					// Too many testing failures for this submission!
+					submission.setReady();
+					slots.release();
+					continue;
+				}
+				submission.setNumAttempts(submission.getNumAttempts() + 1);
+
+				int requestId = nextRequestId++;
+				synchronized (inFlight) {
+					inFlight.put(requestId, submission);
+				}
+				try {
+					sendSubmission(requestId, submission, false);
+				} catch (IOException e) {
+					logger.error("IOException attempting to send submission for testing", e);
+					connectionBroken = true;
+				}
+			}
+		} catch (InterruptedException e) {
+			if (!shutdownRequested) {
+				logger.error("Unexpected interruption", e);
+			}
+		}
+
+		// Closing the connection causes the reader thread to exit
+		conn.close();
+		try {
+			readerThread.join();
+		} catch (InterruptedException e) {
+			logger.warn("Interrupted waiting for reader thread to exit");
+		}
+
+		// Place submissions that weren't completed back in the queue
+		// so they have an opportunity to be re-tested
+		List<OOPBuildServiceSubmission> incomplete;
+		synchronized (inFlight) {
+			incomplete = new ArrayList<OOPBuildServiceSubmission>(inFlight.values());
+			inFlight.clear();
+		}
+		for (OOPBuildServiceSubmission submission : incomplete) {
+			submissionQueue.requeue(submission);
+		}
+		if (!incomplete.isEmpty()) {
+			logger.info("Returned {} incomplete submissions to the submission queue", incomplete.size());
+		}
+	}
+
+	private void sendKeepaliveIfIdle() {
+		if (System.currentTimeMillis() - lastSendTime >= MAX_IDLE_TIME_MILLIS) {
+			try {
+				send(new Frame(FrameType.KEEPALIVE, 0));
+			} catch (IOException e) {
+				logger.error("Error sending keepalive signal to Builder", e);
+				connectionBroken = true;
+			}
+		}
+	}
+
+	private void sendSubmission(int requestId, OOPBuildServiceSubmission submission, boolean forceIncludeProblem) throws IOException {
+		Problem problem = submission.getProblem();
+		Integer problemId = problem.getProblemId();
+		String problemHash = null;
+		if (problemId != null) {
+			problemHash = submission.getProblemHash();
+		} else {
+			// Problem isn't in the database (e.g., it was submitted
+			// to the builder web service), so it can't be cached
+			problemId = -1;
+		}
+
+		// Only include the problem and test cases if we haven't already
+		// sent this version of them
+		boolean includeProblem;
+		synchronized (sentProblems) {
+			includeProblem = forceIncludeProblem
+					|| problemHash == null
+					|| !problemHash.equals(sentProblems.get(problemId));
+			if (problemHash != null) {
+				sentProblems.put(problemId, problemHash);
+			}
+		}
+
+		SubmitMessage msg = new SubmitMessage(
+				problemId,
+				problemHash,
+				includeProblem ? problem : null,
+				includeProblem ? submission.getTestCaseList() : null,
+				submission.getProgramText());
+		send(msg.toFrame(requestId));
+	}
+
+	private void send(Frame frame) throws IOException {
+		conn.write(frame);
+		lastSendTime = System.currentTimeMillis();
+	}
+
+	private void readResults() {
+		try {
+			while (true) {
+				Frame frame = conn.read();
+				switch (frame.getType()) {
+				case RESULT:
+					handleResult(frame);
+					break;
+				case NEED_PROBLEM:
+					handleNeedProblem(frame);
+					break;
+				case KEEPALIVE:
+					break;
+				default:
+					throw new IOException("Unexpected frame type " + frame.getType());
+				}
+			}
+		} catch (IOException e) {
+			if (!shutdownRequested && !connectionBroken) {
+				logger.error("Error reading from Builder", e);
+			}
+		} finally {
+			connectionBroken = true;
+		}
+	}
+
+	private void handleResult(Frame frame) throws IOException {
+		SubmissionResult result = BuildProtocol.getResult(frame);
+		OOPBuildServiceSubmission submission;
+		synchronized (inFlight) {
+			submission = inFlight.remove(frame.getRequestId());
+		}
+		if (submission == null) {
+			logger.warn("Received result for unknown request id {}", frame.getRequestId());
+			return;
+		}
+		submission.setSubmissionResult(result);
+		submission.setReady();
+		slots.release();
+	}
+
+	private void handleNeedProblem(Frame frame) throws IOException {
+		OOPBuildServiceSubmission submission;
+		synchronized (inFlight) {
+			submission = inFlight.get(frame.getRequestId());
+		}
+		if (submission == null) {
+			logger.warn("Builder requested problem for unknown request id {}", frame.getRequestId());
+			return;
+		}
+		sendSubmission(frame.getRequestId(), submission, true);
+	}
+}
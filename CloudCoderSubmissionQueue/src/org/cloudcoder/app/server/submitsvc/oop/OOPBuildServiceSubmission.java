@@ -17,14 +17,21 @@
 
 package org.cloudcoder.app.server.submitsvc.oop;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.cloudcoder.app.buildprotocol.SubmitMessage;
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.ISubmissionCompletionListener;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.Submission;
 import org.cloudcoder.app.shared.model.SubmissionException;
 import org.cloudcoder.app.shared.model.SubmissionResult;
 import org.cloudcoder.app.shared.model.TestCase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A Submission (Problem, TestCases, and program text)
@@ -33,15 +40,35 @@ import org.cloudcoder.app.shared.model.TestCase;
  * @author David Hovemeyer
  */
 public class OOPBuildServiceSubmission implements IFutureSubmissionResult {
+	private static final Logger logger = LoggerFactory.getLogger(OOPBuildServiceSubmission.class);
+	
 	private Object lock = new Object();
 	private Submission submission;
+	private final SubmissionPriority priority;
+	private final int userId;
 	private boolean ready;
 	private SubmissionResult submissionResult;
 	private Exception error;
 	private int numAttempts;
+	private String problemHash;
+	private boolean problemHashComputed;
+	private List<ISubmissionCompletionListener> listeners;
 	
 	public OOPBuildServiceSubmission(Submission submission) {
+		this(submission, SubmissionPriority.EXERCISE, -1);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param submission the {@link Submission}
+	 * @param priority   the {@link SubmissionPriority}
+	 * @param userId     id of the user making the submission, or -1 if none
+	 */
+	public OOPBuildServiceSubmission(Submission submission, SubmissionPriority priority, int userId) {
 		this.submission = submission;
+		this.priority = priority;
+		this.userId = userId;
 	}
 	
 	@Override
@@ -60,6 +87,35 @@ public class OOPBuildServiceSubmission implements IFutureSubmissionResult {
 		}
 	}
 	
+	@Override
+	public void addCompletionListener(ISubmissionCompletionListener listener) {
+		synchronized (lock) {
+			if (!ready) {
+				if (listeners == null) {
+					listeners = new ArrayList<ISubmissionCompletionListener>();
+				}
+				listeners.add(listener);
+				return;
+			}
+		}
+		// Already complete
+		listener.onSubmissionComplete(this);
+	}
+	
+	/**
+	 * @return the {@link SubmissionPriority}
+	 */
+	public SubmissionPriority getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * @return id of the user making the submission, or -1 if none
+	 */
+	public int getUserId() {
+		return userId;
+	}
+	
 	public Problem getProblem() {
 		synchronized (lock) {
 			return submission.getProblem();
@@ -78,6 +134,30 @@ public class OOPBuildServiceSubmission implements IFutureSubmissionResult {
 		}
 	}
 	
+	/**
+	 * Get a hash of the content of the {@link Problem} and {@link TestCase}s,
+	 * allowing a remote Builder to cache them
+	 * (see {@link SubmitMessage#computeProblemHash(Problem, List)}).
+	 * The hash is computed the first time this method is called.
+	 * 
+	 * @return the hash, or null if a hash could not be computed
+	 *         (in which case the problem and test cases should not be cached)
+	 */
+	public String getProblemHash() {
+		synchronized (lock) {
+			if (!problemHashComputed) {
+				try {
+					problemHash = SubmitMessage.computeProblemHash(submission.getProblem(), submission.getTestCaseList());
+				} catch (IOException e) {
+					logger.warn("Could not compute hash of problem and test cases", e);
+					problemHash = null;
+				}
+				problemHashComputed = true;
+			}
+			return problemHash;
+		}
+	}
+	
 	public void setSubmissionResult(SubmissionResult result) {
 		this.submissionResult = result;
 	}
@@ -94,9 +174,23 @@ public class OOPBuildServiceSubmission implements IFutureSubmissionResult {
 	 * must be called before setting ready to true.
 	 */
 	public void setReady() {
+		List<ISubmissionCompletionListener> toNotify;
 		synchronized (lock) {
 			this.ready = true;
 			lock.notifyAll();
+			toNotify = listeners;
+			listeners = null;
+		}
+		
+		// Notify listeners without holding the lock
+		if (toNotify != null) {
+			for (ISubmissionCompletionListener listener : toNotify) {
+				try {
+					listener.onSubmissionComplete(this);
+				} catch (RuntimeException e) {
+					logger.error("Submission completion listener threw exception", e);
+				}
+			}
 		}
 	}
 	
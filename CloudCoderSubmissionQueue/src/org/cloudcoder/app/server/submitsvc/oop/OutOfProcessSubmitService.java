@@ -43,6 +43,7 @@ import javax.net.ssl.X509TrustManager;
 
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
 import org.cloudcoder.app.server.submitsvc.ISubmitService;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.Submission;
 import org.cloudcoder.app.shared.model.SubmissionException;
@@ -88,10 +89,15 @@ public class OutOfProcessSubmitService implements ISubmitService {
 	private String keystoreFilename;
 	private String keystorePassword;
 	private int port;
+	private int maxQueueSize = FairShareSubmissionScheduler.DEFAULT_MAX_QUEUE_SIZE;
+	private int resultCacheSize = SubmissionCoalescer.DEFAULT_RESULT_CACHE_SIZE;
+	private long resultCacheTtlMs = SubmissionCoalescer.DEFAULT_RESULT_CACHE_TTL_MS;
+	private volatile SubmissionCoalescer coalescer;
 
 	/**
-	 * Poll to see how many worker tasks, and thus how many connected builder threads,
-	 * there are.
+	 * Poll to see how many connected builder threads there are.
+	 * Each worker task communicates with one remote Builder connection,
+	 * which may test several submissions at the same time.
 	 * 
 	 * @return number of connected builder threads
 	 */
@@ -105,7 +111,18 @@ public class OutOfProcessSubmitService implements ISubmitService {
 			logger.warn("getNumBuilderThreads() called, but there is no server task");
 			return 0;
 		}
-		return theServerTask.getNumWorkerTasks();
+		return theServerTask.getNumBuilderThreads();
+	}
+	
+	/**
+	 * Get the {@link SubmissionCoalescer}, which keeps statistics about
+	 * how many submissions did not need to be tested because an
+	 * identical submission was pending or had been tested recently.
+	 * 
+	 * @return the {@link SubmissionCoalescer}, or null if the service has not been started
+	 */
+	public SubmissionCoalescer getCoalescer() {
+		return coalescer;
 	}
 	
 	private String getOptionalProperty(Properties config, String propName, String defVal) {
@@ -140,17 +157,29 @@ public class OutOfProcessSubmitService implements ISubmitService {
 			logger.info("Using keystore {}. password={}", this.keystoreFilename, this.keystorePassword);
 		}
 		this.port = Integer.parseInt(getRequiredProperty(config, "cloudcoder.submitsvc.oop.port"));
+		this.maxQueueSize = Integer.parseInt(getOptionalProperty(config, "cloudcoder.submitsvc.oop.maxQueueSize",
+				String.valueOf(FairShareSubmissionScheduler.DEFAULT_MAX_QUEUE_SIZE)));
+		this.resultCacheSize = Integer.parseInt(getOptionalProperty(config, "cloudcoder.submitsvc.oop.resultCacheSize",
+				String.valueOf(SubmissionCoalescer.DEFAULT_RESULT_CACHE_SIZE)));
+		this.resultCacheTtlMs = Long.parseLong(getOptionalProperty(config, "cloudcoder.submitsvc.oop.resultCacheTtlMs",
+				String.valueOf(SubmissionCoalescer.DEFAULT_RESULT_CACHE_TTL_MS)));
 	}
 	
 	@Override
 	public IFutureSubmissionResult submitAsync(Problem problem, List<TestCase> testCaseList, String programText) 
 	throws SubmissionException 
 	{
+		return submitAsync(problem, testCaseList, programText, SubmissionPriority.EXERCISE, -1);
+	}
+	
+	@Override
+	public IFutureSubmissionResult submitAsync(Problem problem, List<TestCase> testCaseList, String programText,
+			SubmissionPriority priority, int userId) throws SubmissionException {
 		if (serverTask == null) {
 			throw new IllegalStateException();
 		}
 		
-		if (serverTask.getNumWorkerTasks() == 0) {
+		if (serverTask.getNumBuilderThreads() == 0) {
 			// If no remote Builder threads are connected and running,
 			// then there is no point in adding this submission to the queue,
 			// since it could sit there forever.  Fail early in this case
@@ -158,12 +187,11 @@ public class OutOfProcessSubmitService implements ISubmitService {
 			throw new SubmissionException("Cannot test submission: no Builders are available");
 		}
 
-		// Add the submission to the queue.
-		OOPBuildServiceSubmission future = new OOPBuildServiceSubmission(
-				new Submission(problem, testCaseList, programText));
-		serverTask.submit(future);
-		
-		return future;
+		// Add the submission to the queue, unless an identical submission
+		// is already pending or was tested recently.
+		OOPBuildServiceSubmission submission = new OOPBuildServiceSubmission(
+				new Submission(problem, testCaseList, programText), priority, userId);
+		return coalescer.submit(submission, serverTask);
 	}
 	
 	private ServerSocket createSSLServerSocket(int port)
@@ -259,7 +287,8 @@ public class OutOfProcessSubmitService implements ISubmitService {
 	    	serverSocket = new ServerSocket(port);
 	    }
 		
-		serverTask = new ServerTask(serverSocket, useSSL, hostName);
+		coalescer = new SubmissionCoalescer(resultCacheSize, resultCacheTtlMs);
+		serverTask = new ServerTask(serverSocket, useSSL, hostName, new FairShareSubmissionScheduler(maxQueueSize));
 		serverThread = new Thread(serverTask);
 		serverThread.start();
 		logger.info("Out of process submit service server thread started");
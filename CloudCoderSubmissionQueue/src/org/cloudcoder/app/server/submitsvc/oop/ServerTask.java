@@ -22,9 +22,9 @@ import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import org.cloudcoder.app.server.model.HealthDataSingleton;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.shared.model.SubmissionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,6 +49,13 @@ public class ServerTask implements Runnable {
     				int size = submissionQueue.size();
     				HealthDataSingleton.getInstance().updateSubmissionQueueSize(size);
     				
+    				SubmissionPriority[] priorities = SubmissionPriority.values();
+    				int[] sizeByPriority = new int[priorities.length];
+    				for (SubmissionPriority priority : priorities) {
+    					sizeByPriority[priority.ordinal()] = submissionQueue.size(priority);
+    				}
+    				HealthDataSingleton.getInstance().updateSubmissionQueueSizeByPriority(sizeByPriority);
+    				
     				Thread.sleep(UPDATE_SUBMISSION_QUEUE_SIZE_INTERVAL);
     			} catch (InterruptedException e) {
     				// Shutting down
@@ -58,7 +65,7 @@ public class ServerTask implements Runnable {
     	}
     }
 
-	private LinkedBlockingQueue<OOPBuildServiceSubmission> submissionQueue;
+	private ISubmissionScheduler submissionQueue;
 	private ServerSocket serverSocket;
 	private WorkerTaskSet workerTaskSet;
 	private volatile boolean shutdownRequested;
@@ -74,9 +81,10 @@ public class ServerTask implements Runnable {
 	 *                     if false, we will reject connections originating from the
 	 *                     external network
 	 * @param hostName     the (external) hostname of this host 
+	 * @param submissionQueue the {@link ISubmissionScheduler} to hold submissions waiting to be tested
 	 */
-	public ServerTask(ServerSocket serverSocket, boolean usingSSL, String hostName) {
-		this.submissionQueue = new LinkedBlockingQueue<OOPBuildServiceSubmission>();
+	public ServerTask(ServerSocket serverSocket, boolean usingSSL, String hostName, ISubmissionScheduler submissionQueue) {
+		this.submissionQueue = submissionQueue;
 		this.serverSocket = serverSocket;
 		this.workerTaskSet = new WorkerTaskSet();
 		this.shutdownRequested = false;
@@ -88,8 +96,13 @@ public class ServerTask implements Runnable {
 		return workerTaskSet.getNumWorkerTasks();
 	}
 	
+	public int getNumBuilderThreads() {
+		return workerTaskSet.getNumBuilderThreads();
+	}
+	
 	public void submit(OOPBuildServiceSubmission submission) throws SubmissionException {
-		// add it to the queue so a worker can grab it	
+		// add it to the queue so a worker can grab it
+		// (fails if too many submissions are waiting)
 	    submissionQueue.add(submission);
 	}
 	
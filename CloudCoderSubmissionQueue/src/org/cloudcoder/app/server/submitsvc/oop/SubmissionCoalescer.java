@@ -0,0 +1,329 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.ISubmissionCompletionListener;
+import org.cloudcoder.app.shared.model.CompilationOutcome;
+import org.cloudcoder.app.shared.model.CompilationResult;
+import org.cloudcoder.app.shared.model.ConvertBytesToHex;
+import org.cloudcoder.app.shared.model.SubmissionException;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Avoid testing identical submissions more than once.
+ * Submissions are identified by a fingerprint of the problem id,
+ * the content of the problem and test cases, and the program text.
+ * A submission that is identical to one that is already waiting or
+ * being tested shares the result of the earlier submission.
+ * Optionally, the results of recently completed submissions are
+ * kept in a bounded LRU cache for a limited time, so that an identical
+ * submission made shortly afterwards does not need to be tested at all.
+ * Results reporting a Builder error are not cached.
+ * 
+ * <p>Each caller receives its own copy of the {@link SubmissionResult},
+ * since callers are free to modify it (e.g., when storing the
+ * test results in the database).
+ * 
+ * @author David Hovemeyer
+ */
+public class SubmissionCoalescer {
+	private static final Logger logger = LoggerFactory.getLogger(SubmissionCoalescer.class);
+	
+	/** Default maximum number of cached results (0 disables the cache). */
+	public static final int DEFAULT_RESULT_CACHE_SIZE = 1000;
+	
+	/** Default time that a cached result remains valid, in milliseconds. */
+	public static final long DEFAULT_RESULT_CACHE_TTL_MS = 60000L;
+	
+	/**
+	 * A submission whose result may be shared by several callers.
+	 */
+	private static class Entry {
+		final String key;
+		final OOPBuildServiceSubmission submission;
+		byte[] serializedResult;
+		long completionTime;
+		
+		Entry(String key, OOPBuildServiceSubmission submission) {
+			this.key = key;
+			this.submission = submission;
+		}
+		
+		synchronized byte[] getSerializedResult(SubmissionResult result) {
+			if (serializedResult == null) {
+				serializedResult = serialize(result);
+			}
+			return serializedResult;
+		}
+	}
+	
+	/**
+	 * The {@link IFutureSubmissionResult} returned to each caller.
+	 */
+	private static class SharedSubmissionResult implements IFutureSubmissionResult {
+		private final Entry entry;
+		private SubmissionResult copy;
+		
+		SharedSubmissionResult(Entry entry) {
+			this.entry = entry;
+		}
+		
+		@Override
+		public synchronized SubmissionResult waitFor(long timeoutMs) throws SubmissionException, InterruptedException {
+			if (copy == null) {
+				SubmissionResult result = entry.submission.waitFor(timeoutMs);
+				if (result != null) {
+					copy = deserialize(entry.getSerializedResult(result));
+				}
+			}
+			return copy;
+		}
+		
+		@Override
+		public void addCompletionListener(final ISubmissionCompletionListener listener) {
+			entry.submission.addCompletionListener(new ISubmissionCompletionListener() {
+				@Override
+				public void onSubmissionComplete(IFutureSubmissionResult future) {
+					listener.onSubmissionComplete(SharedSubmissionResult.this);
+				}
+			});
+		}
+	}
+	
+	private final int resultCacheSize;
+	private final long resultCacheTtlMs;
+	private final Map<String, Entry> inFlight;
+	private final LinkedHashMap<String, Entry> resultCache;
+	private final AtomicLong numCoalesced;
+	private final AtomicLong numResultCacheHits;
+	private final AtomicLong numDispatched;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param resultCacheSize  maximum number of cached results (0 to disable the result cache)
+	 * @param resultCacheTtlMs time that a cached result remains valid, in milliseconds
+	 */
+	public SubmissionCoalescer(final int resultCacheSize, long resultCacheTtlMs) {
+		this.resultCacheSize = resultCacheSize;
+		this.resultCacheTtlMs = resultCacheTtlMs;
+		this.inFlight = new HashMap<String, Entry>();
+		this.resultCache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > resultCacheSize;
+			}
+		};
+		this.numCoalesced = new AtomicLong();
+		this.numResultCacheHits = new AtomicLong();
+		this.numDispatched = new AtomicLong();
+	}
+	
+	/**
+	 * Submit a submission for testing, unless an identical submission
+	 * is already being tested or was tested recently.
+	 * 
+	 * @param submission  the submission
+	 * @param serverTask  the {@link ServerTask} to which the submission should be
+	 *                    added if it needs to be tested
+	 * @return an {@link IFutureSubmissionResult} which will yield the result of the submission
+	 * @throws SubmissionException if the submission could not be added to the queue
+	 */
+	public IFutureSubmissionResult submit(OOPBuildServiceSubmission submission, ServerTask serverTask) throws SubmissionException {
+		String key = computeKey(submission);
+		if (key == null) {
+			// Can't fingerprint this submission, so just test it
+			numDispatched.incrementAndGet();
+			serverTask.submit(submission);
+			return submission;
+		}
+		
+		final Entry entry;
+		synchronized (this) {
+			Entry cached = resultCache.get(key);
+			if (cached != null) {
+				if (System.currentTimeMillis() - cached.completionTime < resultCacheTtlMs) {
+					numResultCacheHits.incrementAndGet();
+					return new SharedSubmissionResult(cached);
+				}
+				resultCache.remove(key);
+			}
+			
+			Entry existing = inFlight.get(key);
+			if (existing != null && existing.submission.getPriority().compareTo(submission.getPriority()) <= 0) {
+				// An identical submission with the same or higher priority is pending
+				numCoalesced.incrementAndGet();
+				return new SharedSubmissionResult(existing);
+			}
+			
+			entry = new Entry(key, submission);
+			inFlight.put(key, entry);
+		}
+		
+		try {
+			serverTask.submit(submission);
+		} catch (SubmissionException e) {
+			synchronized (this) {
+				if (inFlight.get(key) == entry) {
+					inFlight.remove(key);
+				}
+			}
+			throw e;
+		}
+		numDispatched.incrementAndGet();
+		
+		submission.addCompletionListener(new ISubmissionCompletionListener() {
+			@Override
+			public void onSubmissionComplete(IFutureSubmissionResult future) {
+				onComplete(entry);
+			}
+		});
+		
+		return new SharedSubmissionResult(entry);
+	}
+	
+	/**
+	 * @return number of submissions that shared the result of an identical pending submission
+	 */
+	public long getNumCoalesced() {
+		return numCoalesced.get();
+	}
+	
+	/**
+	 * @return number of submissions whose result was found in the result cache
+	 */
+	public long getNumResultCacheHits() {
+		return numResultCacheHits.get();
+	}
+	
+	/**
+	 * @return number of submissions that were sent to the submission queue to be tested
+	 */
+	public long getNumDispatched() {
+		return numDispatched.get();
+	}
+	
+	private void onComplete(Entry entry) {
+		SubmissionResult result = null;
+		try {
+			result = entry.submission.waitFor(0L);
+		} catch (SubmissionException e) {
+			// Don't cache failures
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		// Serialize the result (outside the lock)
+		byte[] serializedResult = null;
+		if (result != null && resultCacheSize > 0 && isCacheable(result)) {
+			serializedResult = entry.getSerializedResult(result);
+		}
+		
+		synchronized (this) {
+			if (inFlight.get(entry.key) == entry) {
+				inFlight.remove(entry.key);
+			}
+			if (serializedResult != null) {
+				entry.completionTime = System.currentTimeMillis();
+				resultCache.put(entry.key, entry);
+			}
+		}
+	}
+	
+	/**
+	 * Only results describing the outcome of actually building and testing
+	 * the submission are cached: a BUILDER_ERROR result may be caused by
+	 * a transient problem with the Builder, so an identical submission
+	 * should be tested again.
+	 */
+	private static boolean isCacheable(SubmissionResult result) {
+		CompilationResult compilationResult = result.getCompilationResult();
+		if (compilationResult == null) {
+			return false;
+		}
+		CompilationOutcome outcome = compilationResult.getOutcome();
+		return outcome == CompilationOutcome.SUCCESS || outcome == CompilationOutcome.FAILURE;
+	}
+	
+	/**
+	 * Submissions are identical if they have the same program text
+	 * and exactly the same problem and test cases: the problem hash
+	 * (see {@link org.cloudcoder.app.buildprotocol.SubmitMessage#computeProblemHash})
+	 * is a digest of the complete problem and test case data, not of a
+	 * normalized version of it, so problems that differ only in whitespace
+	 * (e.g., in a test case's expected output) have different keys.
+	 */
+	private static String computeKey(OOPBuildServiceSubmission submission) {
+		String problemHash = submission.getProblemHash();
+		if (problemHash == null) {
+			return null;
+		}
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			md.update(submission.getProgramText().getBytes("UTF-8"));
+			return submission.getProblem().getProblemId() + ":" + problemHash + ":" + new ConvertBytesToHex(md.digest()).convert();
+		} catch (NoSuchAlgorithmException e) {
+			logger.error("SHA-1 is not available", e);
+			return null;
+		} catch (UnsupportedEncodingException e) {
+			logger.error("UTF-8 is not available", e);
+			return null;
+		}
+	}
+	
+	private static byte[] serialize(SubmissionResult result) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(result);
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not serialize SubmissionResult", e);
+		}
+	}
+	
+	private static SubmissionResult deserialize(byte[] data) throws SubmissionException {
+		try {
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+			return (SubmissionResult) in.readObject();
+		} catch (IOException e) {
+			throw new SubmissionException("Could not copy submission result", e);
+		} catch (ClassNotFoundException e) {
+			throw new SubmissionException("Could not copy submission result", e);
+		}
+	}
+}
@@ -17,15 +17,22 @@
 
 package org.cloudcoder.app.server.submitsvc.oop;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
+import org.cloudcoder.app.buildprotocol.BuildProtocol;
+import org.cloudcoder.app.buildprotocol.FrameConnection;
+import org.cloudcoder.app.buildprotocol.FrameType;
+import org.cloudcoder.app.buildprotocol.Handshake;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.SubmissionResult;
 import org.cloudcoder.app.shared.model.SubmissionResultAnnotation;
@@ -35,6 +42,11 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Worker task to communicate with a remote Builder process.
+ * Builders that send {@link BuildProtocol#MAGIC} when they connect
+ * are handled by a {@link MultiplexedBuilderSession}; Builders that
+ * answer {@link BuildProtocol#WEBAPP_GREETING} with a serialization
+ * stream header use the original lock-step protocol, in which one
+ * submission at a time is sent and tested.
  * 
  * @author David Hovemeyer
  */
@@ -52,34 +64,157 @@ public class WorkerTask implements Runnable {
 	 */
 	private static final long MAX_IDLE_TIME_MILLIS = 5000L;
 
+	/**
+	 * Number of milliseconds to wait for a newly-connected Builder to
+	 * send its first four bytes.  Builders of either kind send them
+	 * right away, so this only limits how long a connection that
+	 * never sends anything is kept open.
+	 */
+	private static final int PROTOCOL_DETECT_TIMEOUT_MILLIS = 30000;
+
+	/**
+	 * Maximum concurrency we will agree to for a single Builder connection.
+	 */
+	private static final int MAX_CONCURRENCY = 64;
+
 	private static Logger logger = LoggerFactory.getLogger(WorkerTask.class);
 	
 	private volatile boolean shutdownRequested;
 	private Socket clientSocket;
-	private LinkedBlockingQueue<OOPBuildServiceSubmission> submissionQueue;
+	private ISubmissionScheduler submissionQueue;
 	private WorkerTaskSet workerTaskSet;
 	
 	private ObjectOutputStream out;
 	private ObjectInputStream in;
+	
+	private volatile MultiplexedBuilderSession session;
+	private volatile int concurrency;
 
-	public WorkerTask(Socket clientSocket, LinkedBlockingQueue<OOPBuildServiceSubmission> submissionQueue, WorkerTaskSet workerTaskSet) throws IOException {
+	public WorkerTask(Socket clientSocket, ISubmissionScheduler submissionQueue, WorkerTaskSet workerTaskSet) {
 		this.shutdownRequested = false;
 		this.clientSocket = clientSocket;
 		this.submissionQueue = submissionQueue;
 		this.workerTaskSet = workerTaskSet;
-		
-		this.out = new ObjectOutputStream(clientSocket.getOutputStream());
-		this.in = new ObjectInputStream(clientSocket.getInputStream());
 	}
 
 	public void shutdown() {
 		shutdownRequested = true;
+		MultiplexedBuilderSession theSession = session;
+		if (theSession != null) {
+			theSession.shutdown();
+		}
+	}
+	
+	/**
+	 * Get the number of submissions the remote Builder can test at the same time.
+	 * 
+	 * @return the number of submissions the remote Builder can test at the same time
+	 *         (0 if the connection has not been established yet)
+	 */
+	public int getConcurrency() {
+		return concurrency;
 	}
 
 	@Override
 	public void run() {
 		logger.info("oop buildsvc WorkerTask starting");
 		
+		try {
+			InputStream rawIn = new BufferedInputStream(clientSocket.getInputStream());
+			OutputStream rawOut = clientSocket.getOutputStream();
+			
+			// Creating the ObjectOutputStream sends the serialization stream
+			// header (BuildProtocol.WEBAPP_GREETING), which a Builder using
+			// the lock-step protocol waits for before sending anything
+			this.out = new ObjectOutputStream(rawOut);
+			out.flush();
+			
+			if (detectMultiplexedProtocol(rawIn)) {
+				runMultiplexed(new FrameConnection(rawIn, rawOut));
+			} else {
+				this.in = new ObjectInputStream(rawIn);
+				runLockStep();
+			}
+		} catch (IOException e) {
+			logger.error("Error establishing connection with Builder", e);
+		}
+
+		// End the connection with the Builder
+		IOUtils.closeQuietly(in);
+		IOUtils.closeQuietly(out);
+		try {
+			clientSocket.close();
+		} catch (IOException e) {
+			logger.warn("Exception closing client socket", e);
+		}
+		
+		workerTaskSet.onWorkerExit(this);
+		
+		logger.info("oop buildsvc WorkerTask exiting");
+	}
+
+	/**
+	 * Check whether the Builder sends {@link BuildProtocol#MAGIC}, indicating
+	 * that it uses the multiplexed protocol, or a serialization stream
+	 * header, indicating that it uses the lock-step protocol.
+	 * In the latter case, the header is left unread, so that it can
+	 * be read by an ObjectInputStream.
+	 * 
+	 * @param rawIn the (buffered) input stream of the connection
+	 * @return true if the Builder uses the multiplexed protocol, false
+	 *         if it uses the lock-step protocol
+	 * @throws IOException
+	 */
+	private boolean detectMultiplexedProtocol(InputStream rawIn) throws IOException {
+		clientSocket.setSoTimeout(PROTOCOL_DETECT_TIMEOUT_MILLIS);
+		try {
+			rawIn.mark(4);
+			int magic = new DataInputStream(rawIn).readInt();
+			if (magic == BuildProtocol.MAGIC) {
+				return true;
+			}
+			if (magic == BuildProtocol.WEBAPP_GREETING) {
+				rawIn.reset();
+				return false;
+			}
+			throw new IOException("Builder sent invalid protocol magic " + Integer.toHexString(magic));
+		} finally {
+			clientSocket.setSoTimeout(0);
+		}
+	}
+
+	/**
+	 * Communicate with the Builder using the multiplexed protocol.
+	 * 
+	 * @param conn the {@link FrameConnection}
+	 * @throws IOException
+	 */
+	private void runMultiplexed(FrameConnection conn) throws IOException {
+		Handshake hello = Handshake.fromFrame(conn.read(), FrameType.HELLO);
+		int version = Math.min(hello.getVersion(), BuildProtocol.VERSION);
+		int agreedConcurrency = Math.min(hello.getConcurrency(), MAX_CONCURRENCY);
+		conn.write(new Handshake(version, agreedConcurrency).toFrame(FrameType.HELLO_ACK));
+		logger.info("Builder using protocol version {}, concurrency {}", version, agreedConcurrency);
+
+		session = new MultiplexedBuilderSession(conn, submissionQueue, agreedConcurrency);
+		if (shutdownRequested) {
+			// shutdown() was called before the session was created
+			session.shutdown();
+		}
+		concurrency = agreedConcurrency;
+		try {
+			session.run();
+		} finally {
+			concurrency = 0;
+		}
+	}
+
+	/**
+	 * Communicate with the Builder using the lock-step protocol.
+	 */
+	private void runLockStep() {
+		concurrency = 1;
+		
 		OOPBuildServiceSubmission submission = null;
 		
 		// Keep track of how long it has been since we sent
@@ -154,27 +289,10 @@ public class WorkerTask implements Runnable {
 		// If the testing of a submission was not completed,
 		// place it back in the queue so it has an opportunity to be re-tested
 		if (submission != null) {
-			try {
-				submissionQueue.put(submission);
-			} catch (InterruptedException e) {
-				logger.error("Failed to put submission back in submission queue", e);
-				submission.setError(e);
-				submission.setReady();
-			}
+			submissionQueue.requeue(submission);
 		}
-
-		// End the connection with the Builder
-		IOUtils.closeQuietly(in);
-		IOUtils.closeQuietly(out);
-		try {
-			clientSocket.close();
-		} catch (IOException e) {
-			logger.warn("Exception closing client socket", e);
-		}
-		
-		workerTaskSet.onWorkerExit(this);
 		
-		logger.info("oop buildsvc WorkerTask exiting");
+		concurrency = 0;
 	}
 
 	private void sendSubmissionForTesting(OOPBuildServiceSubmission submission) throws IOException, ClassNotFoundException {
@@ -22,7 +22,6 @@ import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,6 +73,22 @@ public class WorkerTaskSet {
 		}
 	}
 
+	/**
+	 * Get the total number of submissions that the remote Builders
+	 * connected to the worker tasks can test at the same time.
+	 * 
+	 * @return the total number of builder threads
+	 */
+	public int getNumBuilderThreads() {
+		synchronized (lock) {
+			int total = 0;
+			for (WorkerThreadAndTaskPair pair : workerThreadAndTaskPairList) {
+				total += pair.task.getConcurrency();
+			}
+			return total;
+		}
+	}
+
 	/**
 	 * Create a {@link WorkerTask} to communicate with a remote
 	 * Builder thread.
@@ -82,7 +97,7 @@ public class WorkerTaskSet {
 	 * @param submissionQueue  queue of submissions requiring compilation and testing
 	 * @throws IOException
 	 */
-	public void createWorker(Socket clientSocket, LinkedBlockingQueue<OOPBuildServiceSubmission> submissionQueue) throws IOException {
+	public void createWorker(Socket clientSocket, ISubmissionScheduler submissionQueue) throws IOException {
 		WorkerTask workerTask = new WorkerTask(clientSocket, submissionQueue, this);
 		Thread workerThread = new Thread(workerTask);
 		WorkerThreadAndTaskPair pair = new WorkerThreadAndTaskPair(workerThread, workerTask);
@@ -0,0 +1,188 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2017, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2017, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
+import org.cloudcoder.app.shared.model.CompilationOutcome;
+import org.cloudcoder.app.shared.model.CompilationResult;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.Submission;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SubmissionCoalescerTest {
+	/**
+	 * Scheduler that just records the submissions added to it.
+	 */
+	private static class RecordingScheduler implements ISubmissionScheduler {
+		List<OOPBuildServiceSubmission> added = new ArrayList<OOPBuildServiceSubmission>();
+		
+		@Override
+		public void add(OOPBuildServiceSubmission submission) {
+			added.add(submission);
+		}
+		
+		@Override
+		public void requeue(OOPBuildServiceSubmission submission) {
+			added.add(submission);
+		}
+		
+		@Override
+		public OOPBuildServiceSubmission poll(long timeout, TimeUnit unit) {
+			return null;
+		}
+		
+		@Override
+		public int size() {
+			return 0;
+		}
+		
+		@Override
+		public int size(SubmissionPriority priority) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Submission with a fixed problem hash (so that the problem and
+	 * test cases don't need to be fully populated).
+	 */
+	private static class TestSubmission extends OOPBuildServiceSubmission {
+		TestSubmission(String programText) {
+			super(new Submission(createProblem(), new ArrayList<TestCase>(), programText));
+		}
+		
+		@Override
+		public String getProblemHash() {
+			return "hash";
+		}
+	}
+	
+	private static Problem createProblem() {
+		Problem problem = new Problem();
+		problem.setProblemId(42);
+		return problem;
+	}
+	
+	private RecordingScheduler scheduler;
+	private ServerTask serverTask;
+	private SubmissionCoalescer coalescer;
+	
+	@Before
+	public void setUp() {
+		scheduler = new RecordingScheduler();
+		serverTask = new ServerTask(null, false, "localhost", scheduler);
+		coalescer = new SubmissionCoalescer(100, 60000L);
+	}
+	
+	private static void complete(OOPBuildServiceSubmission submission, CompilationOutcome outcome) {
+		submission.setSubmissionResult(new SubmissionResult(new CompilationResult(outcome)));
+		submission.setReady();
+	}
+	
+	@Test
+	public void testSuccessIsCached() throws Exception {
+		TestSubmission first = new TestSubmission("int main() { }");
+		coalescer.submit(first, serverTask);
+		complete(first, CompilationOutcome.SUCCESS);
+		
+		IFutureSubmissionResult second = coalescer.submit(new TestSubmission("int main() { }"), serverTask);
+		assertEquals(1, scheduler.added.size());
+		assertEquals(1L, coalescer.getNumResultCacheHits());
+		SubmissionResult result = second.waitFor(0L);
+		assertEquals(CompilationOutcome.SUCCESS, result.getCompilationResult().getOutcome());
+		assertNotSame(first.waitFor(0L), result);
+	}
+	
+	@Test
+	public void testFailureIsCached() throws Exception {
+		TestSubmission first = new TestSubmission("int main() {");
+		coalescer.submit(first, serverTask);
+		complete(first, CompilationOutcome.FAILURE);
+		
+		coalescer.submit(new TestSubmission("int main() {"), serverTask);
+		assertEquals(1, scheduler.added.size());
+		assertEquals(1L, coalescer.getNumResultCacheHits());
+	}
+	
+	@Test
+	public void testWhitespaceInTestCaseIsSignificant() throws Exception {
+		OOPBuildServiceSubmission first = new OOPBuildServiceSubmission(
+				new Submission(createProblem(), createTestCaseList("hello"), "int main() { }"));
+		coalescer.submit(first, serverTask);
+		complete(first, CompilationOutcome.SUCCESS);
+		
+		// Same program, but the expected output differs by a trailing space
+		coalescer.submit(new OOPBuildServiceSubmission(
+				new Submission(createProblem(), createTestCaseList("hello "), "int main() { }")), serverTask);
+		assertEquals(2, scheduler.added.size());
+		assertEquals(0L, coalescer.getNumResultCacheHits());
+		
+		// An exact copy of the first submission is a cache hit
+		coalescer.submit(new OOPBuildServiceSubmission(
+				new Submission(createProblem(), createTestCaseList("hello"), "int main() { }")), serverTask);
+		assertEquals(2, scheduler.added.size());
+		assertEquals(1L, coalescer.getNumResultCacheHits());
+	}
+	
+	private static List<TestCase> createTestCaseList(String output) {
+		TestCase testCase = new TestCase();
+		testCase.setProblemId(42);
+		testCase.setTestCaseName("t1");
+		testCase.setInput("");
+		testCase.setOutput(output);
+		List<TestCase> testCaseList = new ArrayList<TestCase>();
+		testCaseList.add(testCase);
+		return testCaseList;
+	}
+	
+	@Test
+	public void testBuilderErrorIsNotCached() throws Exception {
+		TestSubmission first = new TestSubmission("int main() { }");
+		IFutureSubmissionResult firstResult = coalescer.submit(first, serverTask);
+		
+		// An identical submission made while the first is pending shares its result
+		IFutureSubmissionResult coalesced = coalescer.submit(new TestSubmission("int main() { }"), serverTask);
+		assertEquals(1L, coalescer.getNumCoalesced());
+		
+		complete(first, CompilationOutcome.BUILDER_ERROR);
+		assertEquals(CompilationOutcome.BUILDER_ERROR, firstResult.waitFor(0L).getCompilationResult().getOutcome());
+		assertEquals(CompilationOutcome.BUILDER_ERROR, coalesced.waitFor(0L).getCompilationResult().getOutcome());
+		
+		// ...but a later identical submission is tested again
+		TestSubmission retry = new TestSubmission("int main() { }");
+		coalescer.submit(retry, serverTask);
+		assertEquals(2, scheduler.added.size());
+		assertEquals(0L, coalescer.getNumResultCacheHits());
+		
+		complete(retry, CompilationOutcome.SUCCESS);
+		coalescer.submit(new TestSubmission("int main() { }"), serverTask);
+		assertEquals(2, scheduler.added.size());
+		assertEquals(1L, coalescer.getNumResultCacheHits());
+	}
+}
@@ -69,6 +69,9 @@ public class OutOfProcessSubmitServiceServletContextListener implements ServletC
 				setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.ssl.keystore.password", null);
 			}
 			setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.oop.port", String.valueOf(OutOfProcessSubmitService.DEFAULT_PORT));
+			setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.oop.maxQueueSize", String.valueOf(FairShareSubmissionScheduler.DEFAULT_MAX_QUEUE_SIZE));
+			setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.oop.resultCacheSize", String.valueOf(SubmissionCoalescer.DEFAULT_RESULT_CACHE_SIZE));
+			setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.oop.resultCacheTtlMs", String.valueOf(SubmissionCoalescer.DEFAULT_RESULT_CACHE_TTL_MS));
 
 			// Initialize and start the OutOfProcessSubmitService
 			svc.initFromConfigProperties(config);